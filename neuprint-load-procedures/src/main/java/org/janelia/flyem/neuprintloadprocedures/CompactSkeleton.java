@@ -0,0 +1,386 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.spatial.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONTAINS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LINKS_TO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LOCATION;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.RADIUS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROW_NUMBER;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_NODE;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_PARENTS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_RADII;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_ROW_NUMBERS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_TYPES;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_X;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_Y;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_Z;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TYPE;
+
+/**
+ * A skeleton stored as array properties on its :Skeleton node (one entry per swc row) instead of as :SkelNode nodes
+ * linked by LinksTo relationships. Parents are stored as row numbers, with -1 for a root. :SkelNodes for a compact
+ * skeleton are only created on demand, with the same skelNodeIds as for a skeleton loaded with :SkelNodes.
+ */
+public class CompactSkeleton {
+
+    private final int[] rowNumbers;
+    private final int[] parentRowNumbers;
+    private final int[] x;
+    private final int[] y;
+    private final int[] z;
+    private final double[] radii;
+    private final int[] types;
+    private final int[] parentIndices;
+    private Map<Integer, Integer> rowIndices;
+    private int[] rootFirstOrder;
+    private double[] distancesFromRoot;
+
+    /**
+     * @param rowNumbers       swc row numbers
+     * @param parentRowNumbers parent row number of each row, or -1 for a root
+     * @param x                x coordinate of each row
+     * @param y                y coordinate of each row
+     * @param z                z coordinate of each row
+     * @param radii            radius of each row
+     * @param types            swc type of each row
+     * @throws IllegalArgumentException if the arrays differ in length or a parent row is not in the skeleton
+     */
+    public CompactSkeleton(final int[] rowNumbers, final int[] parentRowNumbers, final int[] x, final int[] y, final int[] z, final double[] radii, final int[] types) {
+        final int size = rowNumbers.length;
+        if (parentRowNumbers.length != size || x.length != size || y.length != size || z.length != size || radii.length != size || types.length != size) {
+            throw new IllegalArgumentException("Compact skeleton arrays must all have the same length.");
+        }
+        this.rowNumbers = rowNumbers;
+        this.parentRowNumbers = parentRowNumbers;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radii = radii;
+        this.types = types;
+        this.parentIndices = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (parentRowNumbers[i] == -1) {
+                parentIndices[i] = -1;
+            } else {
+                parentIndices[i] = indexOfRowNumber(parentRowNumbers[i]);
+                if (parentIndices[i] < 0) {
+                    throw new IllegalArgumentException("Parent row " + parentRowNumbers[i] + " of row " + rowNumbers[i] + " is not in the skeleton.");
+                }
+            }
+        }
+    }
+
+    /**
+     * @param skeletonNode :Skeleton node
+     * @return true if the skeleton is stored as array properties
+     */
+    public static boolean isCompact(final Node skeletonNode) {
+        return skeletonNode.hasProperty(SKEL_ROW_NUMBERS);
+    }
+
+    /**
+     * Reads the array properties of a compact :Skeleton node.
+     *
+     * @param skeletonNode :Skeleton node with array properties
+     * @return {@link CompactSkeleton}
+     */
+    public static CompactSkeleton fromNode(final Node skeletonNode) {
+        return new CompactSkeleton(
+                toIntArray(skeletonNode.getProperty(SKEL_ROW_NUMBERS)),
+                toIntArray(skeletonNode.getProperty(SKEL_PARENTS)),
+                toIntArray(skeletonNode.getProperty(SKEL_X)),
+                toIntArray(skeletonNode.getProperty(SKEL_Y)),
+                toIntArray(skeletonNode.getProperty(SKEL_Z)),
+                (double[]) skeletonNode.getProperty(SKEL_RADII),
+                toIntArray(skeletonNode.getProperty(SKEL_TYPES)));
+    }
+
+    /**
+     * Reads the :SkelNodes contained by a :Skeleton node, following LinksTo relationships from parent to child.
+     *
+     * @param skeletonNode :Skeleton node with :SkelNodes
+     * @return {@link CompactSkeleton}
+     */
+    public static CompactSkeleton fromSkelNodes(final Node skeletonNode) {
+        final List<Node> skelNodes = new ArrayList<>();
+        for (Relationship containsRelationship : skeletonNode.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+            final Node containedNode = containsRelationship.getEndNode();
+            if (containedNode.hasLabel(Label.label(SKEL_NODE))) {
+                skelNodes.add(containedNode);
+            }
+        }
+
+        final int size = skelNodes.size();
+        final int[] rowNumbers = new int[size];
+        final int[] parentRowNumbers = new int[size];
+        final int[] x = new int[size];
+        final int[] y = new int[size];
+        final int[] z = new int[size];
+        final double[] radii = new double[size];
+        final int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            final Node skelNode = skelNodes.get(i);
+            rowNumbers[i] = ((Number) skelNode.getProperty(ROW_NUMBER)).intValue();
+            final List<Double> coordinates = ((Point) skelNode.getProperty(LOCATION)).getCoordinate().getCoordinate();
+            x[i] = (int) Math.round(coordinates.get(0));
+            y[i] = (int) Math.round(coordinates.get(1));
+            z[i] = (int) Math.round(coordinates.get(2));
+            radii[i] = ((Number) skelNode.getProperty(RADIUS)).doubleValue();
+            types[i] = ((Number) skelNode.getProperty(TYPE, 0)).intValue();
+            final Relationship parentRelationship = skelNode.getSingleRelationship(RelationshipType.withName(LINKS_TO), Direction.INCOMING);
+            parentRowNumbers[i] = parentRelationship == null ? -1 : ((Number) parentRelationship.getStartNode().getProperty(ROW_NUMBER)).intValue();
+        }
+        return new CompactSkeleton(rowNumbers, parentRowNumbers, x, y, z, radii, types);
+    }
+
+    private static int[] toIntArray(final Object property) {
+        if (property instanceof int[]) {
+            return (int[]) property;
+        }
+        // integer lists set through cypher are stored as long arrays
+        final long[] values = (long[]) property;
+        final int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ints[i] = (int) values[i];
+        }
+        return ints;
+    }
+
+    /**
+     * Sets the array properties of this skeleton on a :Skeleton node.
+     *
+     * @param skeletonNode :Skeleton node
+     */
+    public void writeTo(final Node skeletonNode) {
+        skeletonNode.setProperty(SKEL_ROW_NUMBERS, rowNumbers);
+        skeletonNode.setProperty(SKEL_PARENTS, parentRowNumbers);
+        skeletonNode.setProperty(SKEL_X, x);
+        skeletonNode.setProperty(SKEL_Y, y);
+        skeletonNode.setProperty(SKEL_Z, z);
+        skeletonNode.setProperty(SKEL_RADII, radii);
+        skeletonNode.setProperty(SKEL_TYPES, types);
+    }
+
+    /**
+     * @return number of rows in this skeleton
+     */
+    public int size() {
+        return rowNumbers.length;
+    }
+
+    public int getRowNumber(final int index) {
+        return rowNumbers[index];
+    }
+
+    public int getX(final int index) {
+        return x[index];
+    }
+
+    public int getY(final int index) {
+        return y[index];
+    }
+
+    public int getZ(final int index) {
+        return z[index];
+    }
+
+    public double getRadius(final int index) {
+        return radii[index];
+    }
+
+    public int getType(final int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index row index
+     * @return index of the parent row, or -1 for a root
+     */
+    public int getParentIndex(final int index) {
+        return parentIndices[index];
+    }
+
+    /**
+     * @param index row index
+     * @return distance from the row to its parent row, or 0 for a root
+     */
+    public double getDistanceToParent(final int index) {
+        return parentIndices[index] == -1 ? 0 : distance(index, parentIndices[index]);
+    }
+
+    /**
+     * @param index row index
+     * @return location of the row
+     */
+    public Location getLocation(final int index) {
+        return new Location((long) x[index], (long) y[index], (long) z[index]);
+    }
+
+    /**
+     * Returns the skelNodeId of a row, as used for :SkelNodes.
+     *
+     * @param dataset relevant dataset
+     * @param bodyId  bodyId of the skeleton's neuron
+     * @param index   row index
+     * @return skelNodeId
+     */
+    public String getSkelNodeId(final String dataset, final long bodyId, final int index) {
+        return dataset + ":" + bodyId + ":" + x[index] + ":" + y[index] + ":" + z[index] + ":" + rowNumbers[index];
+    }
+
+    /**
+     * @param rowNumber swc row number
+     * @return index of the row, or -1 if there is no such row
+     */
+    public int indexOfRowNumber(final int rowNumber) {
+        // rows are usually numbered from 1 in order
+        if (rowNumber >= 1 && rowNumber <= rowNumbers.length && rowNumbers[rowNumber - 1] == rowNumber) {
+            return rowNumber - 1;
+        }
+        if (rowIndices == null) {
+            rowIndices = new HashMap<>();
+            for (int i = 0; i < rowNumbers.length; i++) {
+                rowIndices.put(rowNumbers[i], i);
+            }
+        }
+        return rowIndices.getOrDefault(rowNumber, -1);
+    }
+
+    /**
+     * @param pointX x coordinate of point
+     * @param pointY y coordinate of point
+     * @param pointZ z coordinate of point
+     * @return index of the row closest to the point, or -1 if the skeleton is empty
+     */
+    public int nearestIndex(final long pointX, final long pointY, final long pointZ) {
+        int nearest = -1;
+        long nearestDistanceSquared = Long.MAX_VALUE;
+        for (int i = 0; i < rowNumbers.length; i++) {
+            final long dx = x[i] - pointX;
+            final long dy = y[i] - pointY;
+            final long dz = z[i] - pointZ;
+            final long distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared < nearestDistanceSquared) {
+                nearest = i;
+                nearestDistanceSquared = distanceSquared;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the rows in breadth-first order from the roots, so that each row comes after its parent. Rows that
+     * cannot be reached from a root (i.e. that are part of a cycle) are left out.
+     *
+     * @return row indices
+     */
+    public int[] getRootFirstOrder() {
+        if (rootFirstOrder == null) {
+            final int size = rowNumbers.length;
+
+            // children of each row, grouped by parent
+            final int[] childStart = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                if (parentIndices[i] != -1) {
+                    childStart[parentIndices[i] + 1]++;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                childStart[i + 1] += childStart[i];
+            }
+            final int[] children = new int[childStart[size]];
+            final int[] nextChild = new int[size];
+            for (int i = 0; i < size; i++) {
+                final int parent = parentIndices[i];
+                if (parent != -1) {
+                    children[childStart[parent] + nextChild[parent]++] = i;
+                }
+            }
+
+            final int[] order = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (parentIndices[i] == -1) {
+                    order[count++] = i;
+                }
+            }
+            for (int head = 0; head < count; head++) {
+                final int row = order[head];
+                for (int c = childStart[row]; c < childStart[row + 1]; c++) {
+                    order[count++] = children[c];
+                }
+            }
+            rootFirstOrder = count == size ? order : Arrays.copyOf(order, count);
+        }
+        return rootFirstOrder;
+    }
+
+    /**
+     * @param index row index
+     * @return length of the path along the skeleton from the root of the row's tree to the row, or NaN if the row
+     * cannot be reached from a root
+     */
+    public double getDistanceFromRoot(final int index) {
+        if (distancesFromRoot == null) {
+            final double[] distances = new double[rowNumbers.length];
+            Arrays.fill(distances, Double.NaN);
+            for (int row : getRootFirstOrder()) {
+                final int parent = parentIndices[row];
+                distances[row] = parent == -1 ? 0 : distances[parent] + getDistanceToParent(row);
+            }
+            distancesFromRoot = distances;
+        }
+        return distancesFromRoot[index];
+    }
+
+    /**
+     * Calculates the length of the path along the skeleton between two rows.
+     *
+     * @param indexA index of first row
+     * @param indexB index of second row
+     * @return sum of the distances between consecutive rows on the path
+     * @throws IllegalArgumentException if the rows are in different trees of the skeleton
+     */
+    public double pathLength(final int indexA, final int indexB) {
+        // depth of each row on the path from A to its root
+        final Map<Integer, Double> distancesFromA = new HashMap<>();
+        double distance = 0;
+        for (int i = indexA; i != -1; i = parentIndices[i]) {
+            distancesFromA.put(i, distance);
+            if (parentIndices[i] != -1) {
+                distance += distance(i, parentIndices[i]);
+            }
+        }
+        distance = 0;
+        for (int i = indexB; i != -1; i = parentIndices[i]) {
+            final Double distanceFromA = distancesFromA.get(i);
+            if (distanceFromA != null) {
+                return distance + distanceFromA;
+            }
+            if (parentIndices[i] != -1) {
+                distance += distance(i, parentIndices[i]);
+            }
+        }
+        throw new IllegalArgumentException("Rows " + rowNumbers[indexA] + " and " + rowNumbers[indexB] + " are not connected in the skeleton.");
+    }
+
+    private double distance(final int indexA, final int indexB) {
+        final long dx = (long) x[indexA] - x[indexB];
+        final long dy = (long) y[indexA] - y[indexB];
+        final long dz = (long) z[indexA] - z[indexB];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+}
@@ -66,10 +66,34 @@ public class GraphTraversalTools {
     public static final String SOMA_RADIUS = "somaRadius";
     public static final String SUPER_LEVEL_ROIS = "superLevelRois";
     public static final String MUTATION_UUID_ID = "mutationUuidAndId";
+    public static final String DISTANCE = "distance";
+    //Compact skeleton array property names (see CompactSkeleton)
+    public static final String SKEL_ROW_NUMBERS = "skelRowNumbers";
+    public static final String SKEL_PARENTS = "skelParents";
+    public static final String SKEL_X = "skelX";
+    public static final String SKEL_Y = "skelY";
+    public static final String SKEL_Z = "skelZ";
+    public static final String SKEL_RADII = "skelRadii";
+    public static final String SKEL_TYPES = "skelTypes";
+    //Skeleton morphology property names (see SkeletonMetrics)
+    public static final String CABLE_LENGTH = "cableLength";
+    public static final String BRANCH_POINT_COUNT = "branchPointCount";
+    public static final String TIP_COUNT = "tipCount";
+    public static final String MAX_PATH_LENGTH = "maxPathLength";
+    public static final String STRAHLER_ORDER = "strahlerOrder";
+    //Synapse attachment array property names (see SynapseAttachment)
+    public static final String ATTACHED_SKELETON = "attachedSkeleton";
+    public static final String ATTACHED_X = "attachedX";
+    public static final String ATTACHED_Y = "attachedY";
+    public static final String ATTACHED_Z = "attachedZ";
+    public static final String ATTACHED_SKEL_ROWS = "attachedSkelRows";
+    public static final String ATTACHED_PATH_OFFSETS = "attachedPathOffsets";
+    public static final String ATTACHED_DISTANCES = "attachedDistances";
     //Relationship names
     public static final String CONNECTS_TO = "ConnectsTo";
     public static final String CONTAINS = "Contains";
     public static final String LINKS_TO = "LinksTo";
+    public static final String ATTACHED_TO = "AttachedTo";
     public static final String SYNAPSES_TO = "SynapsesTo";
     public static final String TO = "To";
     public static final String FROM = "From";
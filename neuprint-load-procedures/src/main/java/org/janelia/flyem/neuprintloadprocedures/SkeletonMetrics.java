@@ -0,0 +1,142 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.neo4j.graphdb.Node;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BRANCH_POINT_COUNT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CABLE_LENGTH;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.MAX_PATH_LENGTH;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.STRAHLER_ORDER;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TIP_COUNT;
+
+/**
+ * Morphology metrics of a skeleton, computed in one pass down and one pass up each tree of a
+ * {@link CompactSkeleton}. Rows that cannot be reached from a root (i.e. that are part of a cycle) are ignored.
+ * <ul>
+ * <li>cable length: sum of the distances from each row to its parent</li>
+ * <li>branch point count: rows with more than one child</li>
+ * <li>tip count: rows with no children</li>
+ * <li>max path length: largest distance along the skeleton from a root to any row</li>
+ * <li>Strahler order: 1 for tips; for other rows the largest order of its children, plus one if more than one child
+ * has that order. The order of the skeleton is the largest order of its roots.</li>
+ * </ul>
+ */
+public class SkeletonMetrics {
+
+    private final double cableLength;
+    private final long branchPointCount;
+    private final long tipCount;
+    private final double maxPathLength;
+    private final long strahlerOrder;
+
+    private SkeletonMetrics(final double cableLength, final long branchPointCount, final long tipCount, final double maxPathLength, final long strahlerOrder) {
+        this.cableLength = cableLength;
+        this.branchPointCount = branchPointCount;
+        this.tipCount = tipCount;
+        this.maxPathLength = maxPathLength;
+        this.strahlerOrder = strahlerOrder;
+    }
+
+    /**
+     * @param skeleton {@link CompactSkeleton}
+     * @return metrics of the skeleton
+     */
+    public static SkeletonMetrics compute(final CompactSkeleton skeleton) {
+        final int size = skeleton.size();
+
+        final int[] childCount = new int[size];
+        for (int i = 0; i < size; i++) {
+            final int parent = skeleton.getParentIndex(i);
+            if (parent != -1) {
+                childCount[parent]++;
+            }
+        }
+
+        // parents come before their children
+        final int[] order = skeleton.getRootFirstOrder();
+        final int count = order.length;
+
+        double cableLength = 0;
+        double maxPathLength = 0;
+        long branchPointCount = 0;
+        long tipCount = 0;
+        for (int row : order) {
+            final int parent = skeleton.getParentIndex(row);
+            if (parent != -1) {
+                cableLength += skeleton.getDistanceToParent(row);
+                maxPathLength = Math.max(maxPathLength, skeleton.getDistanceFromRoot(row));
+            }
+            if (childCount[row] == 0) {
+                tipCount++;
+            } else if (childCount[row] > 1) {
+                branchPointCount++;
+            }
+        }
+
+        // children come after their parents, so walking backwards sees every child before its parent
+        final int[] maxChildOrder = new int[size];
+        final int[] maxChildOrderCount = new int[size];
+        long strahlerOrder = 0;
+        for (int k = count - 1; k >= 0; k--) {
+            final int row = order[k];
+            final int rowOrder = maxChildOrder[row] == 0 ? 1 : maxChildOrder[row] + (maxChildOrderCount[row] > 1 ? 1 : 0);
+            final int parent = skeleton.getParentIndex(row);
+            if (parent == -1) {
+                strahlerOrder = Math.max(strahlerOrder, rowOrder);
+            } else if (rowOrder > maxChildOrder[parent]) {
+                maxChildOrder[parent] = rowOrder;
+                maxChildOrderCount[parent] = 1;
+            } else if (rowOrder == maxChildOrder[parent]) {
+                maxChildOrderCount[parent]++;
+            }
+        }
+
+        return new SkeletonMetrics(cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder);
+    }
+
+    /**
+     * Sets the metrics as properties of a :Segment node.
+     *
+     * @param segment :Segment node
+     */
+    public void writeTo(final Node segment) {
+        segment.setProperty(CABLE_LENGTH, cableLength);
+        segment.setProperty(BRANCH_POINT_COUNT, branchPointCount);
+        segment.setProperty(TIP_COUNT, tipCount);
+        segment.setProperty(MAX_PATH_LENGTH, maxPathLength);
+        segment.setProperty(STRAHLER_ORDER, strahlerOrder);
+    }
+
+    /**
+     * Removes the metric properties from a :Segment node, e.g. when its skeleton is deleted.
+     *
+     * @param segment :Segment node
+     */
+    public static void removeFrom(final Node segment) {
+        segment.removeProperty(CABLE_LENGTH);
+        segment.removeProperty(BRANCH_POINT_COUNT);
+        segment.removeProperty(TIP_COUNT);
+        segment.removeProperty(MAX_PATH_LENGTH);
+        segment.removeProperty(STRAHLER_ORDER);
+    }
+
+    public double getCableLength() {
+        return cableLength;
+    }
+
+    public long getBranchPointCount() {
+        return branchPointCount;
+    }
+
+    public long getTipCount() {
+        return tipCount;
+    }
+
+    public double getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    public long getStrahlerOrder() {
+        return strahlerOrder;
+    }
+
+}
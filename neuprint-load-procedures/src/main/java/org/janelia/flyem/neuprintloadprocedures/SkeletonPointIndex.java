@@ -0,0 +1,129 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+/**
+ * A k-d tree over the rows of a {@link CompactSkeleton} for finding the row nearest to many points. The tree is
+ * implicit: each range of the row array is split at its middle element on x, y and z in turn, so no nodes are
+ * allocated. Building takes O(n log n) time and each query takes O(log n) time on average.
+ */
+public class SkeletonPointIndex {
+
+    private final CompactSkeleton skeleton;
+    private final int[] rows;
+
+    /**
+     * @param skeleton {@link CompactSkeleton}
+     */
+    public SkeletonPointIndex(final CompactSkeleton skeleton) {
+        this.skeleton = skeleton;
+        this.rows = new int[skeleton.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        build(0, rows.length, 0);
+    }
+
+    private void build(final int from, final int to, final int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        build(from, middle, (axis + 1) % 3);
+        build(middle + 1, to, (axis + 1) % 3);
+    }
+
+    // moves the row with the kth smallest coordinate to position k, with smaller coordinates before it and larger after
+    private void select(int left, int right, final int k, final int axis) {
+        while (right > left) {
+            final int pivot = coordinate(rows[(left + right) >>> 1], axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(rows[i], axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(rows[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final int swap = rows[i];
+                    rows[i++] = rows[j];
+                    rows[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int coordinate(final int row, final int axis) {
+        return axis == 0 ? skeleton.getX(row) : axis == 1 ? skeleton.getY(row) : skeleton.getZ(row);
+    }
+
+    /**
+     * Returns the index of the row closest to a point. Ties go to the lowest row index, as for
+     * {@link CompactSkeleton#nearestIndex(long, long, long)}.
+     *
+     * @param x x coordinate of point
+     * @param y y coordinate of point
+     * @param z z coordinate of point
+     * @return index of the nearest row, or -1 if the skeleton is empty
+     */
+    public int nearestIndex(final long x, final long y, final long z) {
+        final Query query = new Query(x, y, z);
+        search(query, 0, rows.length, 0);
+        return query.nearest;
+    }
+
+    private void search(final Query query, final int from, final int to, final int axis) {
+        if (from >= to) {
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        final int row = rows[middle];
+        final long dx = skeleton.getX(row) - query.x;
+        final long dy = skeleton.getY(row) - query.y;
+        final long dz = skeleton.getZ(row) - query.z;
+        final long distanceSquared = dx * dx + dy * dy + dz * dz;
+        if (distanceSquared < query.nearestDistanceSquared || (distanceSquared == query.nearestDistanceSquared && row < query.nearest)) {
+            query.nearest = row;
+            query.nearestDistanceSquared = distanceSquared;
+        }
+
+        final long axisDifference = axis == 0 ? -dx : axis == 1 ? -dy : -dz;
+        final int nextAxis = (axis + 1) % 3;
+        if (axisDifference < 0) {
+            search(query, from, middle, nextAxis);
+            if (axisDifference * axisDifference <= query.nearestDistanceSquared) {
+                search(query, middle + 1, to, nextAxis);
+            }
+        } else {
+            search(query, middle + 1, to, nextAxis);
+            if (axisDifference * axisDifference <= query.nearestDistanceSquared) {
+                search(query, from, middle, nextAxis);
+            }
+        }
+    }
+
+    private static class Query {
+
+        private final long x;
+        private final long y;
+        private final long z;
+        private int nearest = -1;
+        private long nearestDistanceSquared = Long.MAX_VALUE;
+
+        Query(final long x, final long y, final long z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+    }
+
+}
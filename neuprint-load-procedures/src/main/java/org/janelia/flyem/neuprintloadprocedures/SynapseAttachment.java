@@ -0,0 +1,423 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.spatial.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_DISTANCES;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_PATH_OFFSETS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_SKELETON;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_SKEL_ROWS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_X;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_Y;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_Z;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONTAINS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LOCATION;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.MUTATION_UUID_ID;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKELETON_ID;
+
+/**
+ * The skeleton row nearest to each synapse of a body, stored as array properties on the body's :SynapseSet node
+ * (one entry per synapse). Entries are sorted by synapse location so that the attachment of a synapse is found by
+ * binary search. For each synapse the arrays hold:
+ * <ul>
+ * <li>the row number of the nearest skeleton row</li>
+ * <li>the path offset: length of the path along the skeleton from the root of the row's tree to the row</li>
+ * <li>the distance from the synapse to the row</li>
+ * </ul>
+ * The attachments record which skeleton they were computed for. They are out of date once the skeleton is replaced
+ * or the number of synapses in the set changes. Adding a synapse to a set removes them unless the caller attaches the
+ * synapse (see {@link #withSynapse} and {@link #withSynapses}); removing one drops its entry (see {@link #removeSynapseFrom}).
+ */
+public class SynapseAttachment {
+
+    private final String skeletonVersion;
+    private final int[] x;
+    private final int[] y;
+    private final int[] z;
+    private final int[] skelRows;
+    private final double[] pathOffsets;
+    private final double[] distances;
+
+    private SynapseAttachment(final String skeletonVersion, final int[] x, final int[] y, final int[] z, final int[] skelRows, final double[] pathOffsets, final double[] distances) {
+        this.skeletonVersion = skeletonVersion;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.skelRows = skelRows;
+        this.pathOffsets = pathOffsets;
+        this.distances = distances;
+    }
+
+    /**
+     * Attaches each synapse to the nearest row of a skeleton.
+     *
+     * @param skeleton        {@link CompactSkeleton}
+     * @param skeletonVersion version of the skeleton, as given by {@link #getSkeletonVersion(Node)}
+     * @param synapseX        x coordinate of each synapse
+     * @param synapseY        y coordinate of each synapse
+     * @param synapseZ        z coordinate of each synapse
+     * @return {@link SynapseAttachment}
+     * @throws IllegalArgumentException if the skeleton is empty or the coordinate arrays differ in length
+     */
+    public static SynapseAttachment compute(final CompactSkeleton skeleton, final String skeletonVersion, final int[] synapseX, final int[] synapseY, final int[] synapseZ) {
+        final int size = synapseX.length;
+        if (synapseY.length != size || synapseZ.length != size) {
+            throw new IllegalArgumentException("Synapse coordinate arrays must all have the same length.");
+        }
+        if (skeleton.size() == 0) {
+            throw new IllegalArgumentException("Cannot attach synapses to an empty skeleton.");
+        }
+
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(synapseX[a], synapseY[a], synapseZ[a], synapseX[b], synapseY[b], synapseZ[b]));
+
+        final SkeletonPointIndex pointIndex = new SkeletonPointIndex(skeleton);
+        final int[] x = new int[size];
+        final int[] y = new int[size];
+        final int[] z = new int[size];
+        final int[] skelRows = new int[size];
+        final double[] pathOffsets = new double[size];
+        final double[] distances = new double[size];
+        for (int i = 0; i < size; i++) {
+            final int synapse = order[i];
+            x[i] = synapseX[synapse];
+            y[i] = synapseY[synapse];
+            z[i] = synapseZ[synapse];
+            final int row = pointIndex.nearestIndex(x[i], y[i], z[i]);
+            skelRows[i] = skeleton.getRowNumber(row);
+            pathOffsets[i] = skeleton.getDistanceFromRoot(row);
+            final long dx = (long) skeleton.getX(row) - x[i];
+            final long dy = (long) skeleton.getY(row) - y[i];
+            final long dz = (long) skeleton.getZ(row) - z[i];
+            distances[i] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        return new SynapseAttachment(skeletonVersion, x, y, z, skelRows, pathOffsets, distances);
+    }
+
+    /**
+     * Attaches each synapse contained by a :SynapseSet node to the nearest row of a skeleton.
+     *
+     * @param skeleton     {@link CompactSkeleton} read from the skeleton node
+     * @param skeletonNode :Skeleton node
+     * @param synapseSet   :SynapseSet node of the same body
+     * @return {@link SynapseAttachment}
+     * @throws IllegalArgumentException if the skeleton is empty
+     */
+    public static SynapseAttachment compute(final CompactSkeleton skeleton, final Node skeletonNode, final Node synapseSet) {
+        final int size = synapseSet.getDegree(RelationshipType.withName(CONTAINS), Direction.OUTGOING);
+        final int[] synapseX = new int[size];
+        final int[] synapseY = new int[size];
+        final int[] synapseZ = new int[size];
+        int count = 0;
+        for (Relationship containsRelationship : synapseSet.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+            final List<Double> coordinates = ((Point) containsRelationship.getEndNode().getProperty(LOCATION)).getCoordinate().getCoordinate();
+            synapseX[count] = (int) Math.round(coordinates.get(0));
+            synapseY[count] = (int) Math.round(coordinates.get(1));
+            synapseZ[count] = (int) Math.round(coordinates.get(2));
+            count++;
+        }
+        return compute(skeleton, getSkeletonVersion(skeletonNode), synapseX, synapseY, synapseZ);
+    }
+
+    private static int compare(final int xA, final int yA, final int zA, final int xB, final int yB, final int zB) {
+        if (xA != xB) {
+            return Integer.compare(xA, xB);
+        }
+        if (yA != yB) {
+            return Integer.compare(yA, yB);
+        }
+        return Integer.compare(zA, zB);
+    }
+
+    /**
+     * @param skeletonNode :Skeleton node
+     * @return skeletonId of the skeleton, followed by its mutationUuidAndId if it has one
+     */
+    public static String getSkeletonVersion(final Node skeletonNode) {
+        final String skeletonId = (String) skeletonNode.getProperty(SKELETON_ID);
+        return skeletonNode.hasProperty(MUTATION_UUID_ID) ? skeletonId + ":" + skeletonNode.getProperty(MUTATION_UUID_ID) : skeletonId;
+    }
+
+    /**
+     * @param synapseSet   :SynapseSet node
+     * @param skeletonNode :Skeleton node of the same body
+     * @return true if the synapse set has attachments computed for this skeleton and for its current number of synapses
+     */
+    public static boolean isCurrent(final Node synapseSet, final Node skeletonNode) {
+        return synapseSet.hasProperty(ATTACHED_SKEL_ROWS)
+                && getSkeletonVersion(skeletonNode).equals(synapseSet.getProperty(ATTACHED_SKELETON))
+                && ((int[]) synapseSet.getProperty(ATTACHED_SKEL_ROWS)).length == synapseSet.getDegree(RelationshipType.withName(CONTAINS), Direction.OUTGOING);
+    }
+
+    /**
+     * Reads the attachment array properties of a :SynapseSet node.
+     *
+     * @param synapseSet :SynapseSet node with attachments
+     * @return {@link SynapseAttachment}
+     */
+    public static SynapseAttachment fromNode(final Node synapseSet) {
+        return new SynapseAttachment(
+                (String) synapseSet.getProperty(ATTACHED_SKELETON),
+                (int[]) synapseSet.getProperty(ATTACHED_X),
+                (int[]) synapseSet.getProperty(ATTACHED_Y),
+                (int[]) synapseSet.getProperty(ATTACHED_Z),
+                (int[]) synapseSet.getProperty(ATTACHED_SKEL_ROWS),
+                (double[]) synapseSet.getProperty(ATTACHED_PATH_OFFSETS),
+                (double[]) synapseSet.getProperty(ATTACHED_DISTANCES));
+    }
+
+    /**
+     * Sets the attachment array properties on a :SynapseSet node.
+     *
+     * @param synapseSet :SynapseSet node
+     */
+    public void writeTo(final Node synapseSet) {
+        synapseSet.setProperty(ATTACHED_SKELETON, skeletonVersion);
+        synapseSet.setProperty(ATTACHED_X, x);
+        synapseSet.setProperty(ATTACHED_Y, y);
+        synapseSet.setProperty(ATTACHED_Z, z);
+        synapseSet.setProperty(ATTACHED_SKEL_ROWS, skelRows);
+        synapseSet.setProperty(ATTACHED_PATH_OFFSETS, pathOffsets);
+        synapseSet.setProperty(ATTACHED_DISTANCES, distances);
+    }
+
+    /**
+     * Removes the attachment array properties from a :SynapseSet node, e.g. when its synapses or skeleton change.
+     *
+     * @param synapseSet :SynapseSet node
+     */
+    public static void removeFrom(final Node synapseSet) {
+        if (synapseSet.hasProperty(ATTACHED_SKEL_ROWS)) {
+            synapseSet.removeProperty(ATTACHED_SKELETON);
+            synapseSet.removeProperty(ATTACHED_X);
+            synapseSet.removeProperty(ATTACHED_Y);
+            synapseSet.removeProperty(ATTACHED_Z);
+            synapseSet.removeProperty(ATTACHED_SKEL_ROWS);
+            synapseSet.removeProperty(ATTACHED_PATH_OFFSETS);
+            synapseSet.removeProperty(ATTACHED_DISTANCES);
+        }
+    }
+
+    /**
+     * Drops the attachment of a synapse that is being removed from a :SynapseSet node. Attachments that do not include
+     * the synapse are out of date and are removed.
+     *
+     * @param synapseSet :SynapseSet node
+     * @param synapse    :Synapse node
+     */
+    public static void removeSynapseFrom(final Node synapseSet, final Node synapse) {
+        if (synapseSet.hasProperty(ATTACHED_SKEL_ROWS)) {
+            final List<Double> coordinates = ((Point) synapse.getProperty(LOCATION)).getCoordinate().getCoordinate();
+            final SynapseAttachment attachment = fromNode(synapseSet).withoutSynapse(
+                    (int) Math.round(coordinates.get(0)), (int) Math.round(coordinates.get(1)), (int) Math.round(coordinates.get(2)));
+            if (attachment == null) {
+                removeFrom(synapseSet);
+            } else {
+                attachment.writeTo(synapseSet);
+            }
+        }
+    }
+
+    /**
+     * Attaches one more synapse to the nearest row of the skeleton these attachments were computed for.
+     *
+     * @param skeleton {@link CompactSkeleton} the attachments were computed for
+     * @param synapseX x coordinate of synapse
+     * @param synapseY y coordinate of synapse
+     * @param synapseZ z coordinate of synapse
+     * @return {@link SynapseAttachment} including the synapse
+     * @throws IllegalArgumentException if the skeleton is empty
+     */
+    public SynapseAttachment withSynapse(final CompactSkeleton skeleton, final int synapseX, final int synapseY, final int synapseZ) {
+        if (skeleton.size() == 0) {
+            throw new IllegalArgumentException("Cannot attach synapses to an empty skeleton.");
+        }
+        final int search = search(synapseX, synapseY, synapseZ);
+        final int index = search < 0 ? -(search + 1) : search;
+        final int row = skeleton.nearestIndex(synapseX, synapseY, synapseZ);
+        final long dx = (long) skeleton.getX(row) - synapseX;
+        final long dy = (long) skeleton.getY(row) - synapseY;
+        final long dz = (long) skeleton.getZ(row) - synapseZ;
+        return new SynapseAttachment(skeletonVersion,
+                insert(x, index, synapseX),
+                insert(y, index, synapseY),
+                insert(z, index, synapseZ),
+                insert(skelRows, index, skeleton.getRowNumber(row)),
+                insert(pathOffsets, index, skeleton.getDistanceFromRoot(row)),
+                insert(distances, index, Math.sqrt(dx * dx + dy * dy + dz * dz)));
+    }
+
+    /**
+     * Attaches more synapses to the nearest rows of the skeleton these attachments were computed for, e.g. the synapses
+     * of a body merged into this one. Only the added synapses are attached; the existing entries are copied over.
+     *
+     * @param skeleton {@link CompactSkeleton} the attachments were computed for
+     * @param synapseX x coordinate of each added synapse
+     * @param synapseY y coordinate of each added synapse
+     * @param synapseZ z coordinate of each added synapse
+     * @return {@link SynapseAttachment} including the synapses
+     * @throws IllegalArgumentException if the skeleton is empty or the coordinate arrays differ in length
+     */
+    public SynapseAttachment withSynapses(final CompactSkeleton skeleton, final int[] synapseX, final int[] synapseY, final int[] synapseZ) {
+        final SynapseAttachment added = compute(skeleton, skeletonVersion, synapseX, synapseY, synapseZ);
+        final int size = x.length + added.x.length;
+        final int[] mergedX = new int[size];
+        final int[] mergedY = new int[size];
+        final int[] mergedZ = new int[size];
+        final int[] mergedSkelRows = new int[size];
+        final double[] mergedPathOffsets = new double[size];
+        final double[] mergedDistances = new double[size];
+        // merge the two location-sorted attachments
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            final SynapseAttachment source;
+            final int index;
+            if (j == added.x.length || (i < x.length && compare(x[i], y[i], z[i], added.x[j], added.y[j], added.z[j]) <= 0)) {
+                source = this;
+                index = i++;
+            } else {
+                source = added;
+                index = j++;
+            }
+            mergedX[k] = source.x[index];
+            mergedY[k] = source.y[index];
+            mergedZ[k] = source.z[index];
+            mergedSkelRows[k] = source.skelRows[index];
+            mergedPathOffsets[k] = source.pathOffsets[index];
+            mergedDistances[k] = source.distances[index];
+        }
+        return new SynapseAttachment(skeletonVersion, mergedX, mergedY, mergedZ, mergedSkelRows, mergedPathOffsets, mergedDistances);
+    }
+
+    /**
+     * @param synapseX x coordinate of synapse
+     * @param synapseY y coordinate of synapse
+     * @param synapseZ z coordinate of synapse
+     * @return {@link SynapseAttachment} without the synapse, or null if the synapse is not attached
+     */
+    public SynapseAttachment withoutSynapse(final int synapseX, final int synapseY, final int synapseZ) {
+        final int index = indexOf(synapseX, synapseY, synapseZ);
+        if (index < 0) {
+            return null;
+        }
+        return new SynapseAttachment(skeletonVersion, remove(x, index), remove(y, index), remove(z, index),
+                remove(skelRows, index), remove(pathOffsets, index), remove(distances, index));
+    }
+
+    private static int[] insert(final int[] values, final int index, final int value) {
+        final int[] inserted = new int[values.length + 1];
+        System.arraycopy(values, 0, inserted, 0, index);
+        inserted[index] = value;
+        System.arraycopy(values, index, inserted, index + 1, values.length - index);
+        return inserted;
+    }
+
+    private static double[] insert(final double[] values, final int index, final double value) {
+        final double[] inserted = new double[values.length + 1];
+        System.arraycopy(values, 0, inserted, 0, index);
+        inserted[index] = value;
+        System.arraycopy(values, index, inserted, index + 1, values.length - index);
+        return inserted;
+    }
+
+    private static int[] remove(final int[] values, final int index) {
+        final int[] removed = new int[values.length - 1];
+        System.arraycopy(values, 0, removed, 0, index);
+        System.arraycopy(values, index + 1, removed, index, values.length - index - 1);
+        return removed;
+    }
+
+    private static double[] remove(final double[] values, final int index) {
+        final double[] removed = new double[values.length - 1];
+        System.arraycopy(values, 0, removed, 0, index);
+        System.arraycopy(values, index + 1, removed, index, values.length - index - 1);
+        return removed;
+    }
+
+    /**
+     * @param synapseX x coordinate of synapse
+     * @param synapseY y coordinate of synapse
+     * @param synapseZ z coordinate of synapse
+     * @return index of the synapse's attachment, or -1 if the synapse is not attached
+     */
+    public int indexOf(final int synapseX, final int synapseY, final int synapseZ) {
+        final int index = search(synapseX, synapseY, synapseZ);
+        return index < 0 ? -1 : index;
+    }
+
+    // index of the synapse, or -(insertion point) - 1 if it is not attached, as for Arrays.binarySearch
+    private int search(final int synapseX, final int synapseY, final int synapseZ) {
+        int low = 0;
+        int high = x.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compare(x[middle], y[middle], z[middle], synapseX, synapseY, synapseZ);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return number of attached synapses
+     */
+    public int size() {
+        return skelRows.length;
+    }
+
+    public String getSkeletonVersion() {
+        return skeletonVersion;
+    }
+
+    public int getX(final int index) {
+        return x[index];
+    }
+
+    public int getY(final int index) {
+        return y[index];
+    }
+
+    public int getZ(final int index) {
+        return z[index];
+    }
+
+    /**
+     * @param index attachment index
+     * @return row number of the skeleton row the synapse is attached to
+     */
+    public int getSkelRowNumber(final int index) {
+        return skelRows[index];
+    }
+
+    /**
+     * @param index attachment index
+     * @return length of the path along the skeleton from the root of its tree to the attached row
+     */
+    public double getPathOffset(final int index) {
+        return pathOffsets[index];
+    }
+
+    /**
+     * @param index attachment index
+     * @return distance from the synapse to the attached row
+     */
+    public double getDistance(final int index) {
+        return distances[index];
+    }
+
+}
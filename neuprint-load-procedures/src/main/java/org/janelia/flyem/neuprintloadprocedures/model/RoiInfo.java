@@ -131,6 +131,18 @@ public class RoiInfo {
 
     }
 
+    /**
+     * Adds the synapse counts of the provided RoiInfo to this RoiInfo, ROI by ROI.
+     *
+     * @param roiInfo {@link RoiInfo} to add
+     */
+    public void add(RoiInfo roiInfo) {
+        for (Map.Entry<String, SynapseCounter> roiCounts : roiInfo.synapseCountsPerRoi.entrySet()) {
+            addRoi(roiCounts.getKey());
+            this.synapseCountsPerRoi.get(roiCounts.getKey()).add(roiCounts.getValue());
+        }
+    }
+
     /**
      * @return JSON of RoiInfo to be added as an roiInfo property
      * on a node
@@ -178,6 +178,21 @@ public class RoiInfoWithHighPrecisionCounts {
         }
     }
 
+    /**
+     * Adds the synapse counts of the provided org.janelia.flyem.neuprintloadprocedures.procedures.model.RoiInfoWithHighPrecisionCounts
+     * to this one, ROI by ROI.
+     *
+     * @param roiInfo {@link RoiInfoWithHighPrecisionCounts} to add
+     */
+    public void add(RoiInfoWithHighPrecisionCounts roiInfo) {
+        for (Map.Entry<String, SynapseCounterWithHighPrecisionCounts> roiCounts : roiInfo.synapseCountsPerRoi.entrySet()) {
+            if (!this.synapseCountsPerRoi.containsKey(roiCounts.getKey())) {
+                addSynapseCountsForRoi(roiCounts.getKey());
+            }
+            this.synapseCountsPerRoi.get(roiCounts.getKey()).add(roiCounts.getValue());
+        }
+    }
+
     /**
      * @return JSON of org.janelia.flyem.neuprintloadprocedures.procedures.model.RoiInfoWithHighPrecisionCounts to be added as an roiInfo property
      * on a node
@@ -74,6 +74,16 @@ public class SynapseCounter {
         }
     }
 
+    /**
+     * Adds the pre and post counts of the provided counter to this counter.
+     *
+     * @param synapseCounter {@link SynapseCounter} to add
+     */
+    public void add(SynapseCounter synapseCounter) {
+        this.pre += synapseCounter.getPre();
+        this.post += synapseCounter.getPost();
+    }
+
     @Override
     public String toString() {
         return "{pre: " + this.pre + ", post: " + this.post + "}";
@@ -78,6 +78,17 @@ public class SynapseCounterWithHighPrecisionCounts extends SynapseCounter {
         }
     }
 
+    /**
+     * Adds the pre, post, preHP, and postHP counts of the provided counter to this counter.
+     *
+     * @param synapseCounter {@link SynapseCounterWithHighPrecisionCounts} to add
+     */
+    public void add(SynapseCounterWithHighPrecisionCounts synapseCounter) {
+        super.add(synapseCounter);
+        this.preHP += synapseCounter.getPreHP();
+        this.postHP += synapseCounter.getPostHP();
+    }
+
     @Override
     public String toString() {
         return "{pre: " + this.getPre() + ", post: " + this.getPost() + ", preHP: " + this.preHP + ", postHP: " + this.postHP + "}";
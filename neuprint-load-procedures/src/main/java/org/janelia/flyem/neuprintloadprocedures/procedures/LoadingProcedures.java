@@ -3,6 +3,7 @@ package org.janelia.flyem.neuprintloadprocedures.procedures;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
+import org.janelia.flyem.neuprintloadprocedures.SynapseAttachment;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
@@ -28,6 +29,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_TO;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BODY_ID;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONFIDENCE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONNECTION_SET;
@@ -622,6 +624,9 @@ public class LoadingProcedures {
 
     public static void addSynapseToSynapseSet(final Node synapseSet, final Node synapse) {
         synapseSet.createRelationshipTo(synapse, RelationshipType.withName(CONTAINS));
+        // the synapse is not attached to the skeleton of its new body
+        SynapseAttachment.removeFrom(synapseSet);
+        synapse.getRelationships(RelationshipType.withName(ATTACHED_TO), Direction.OUTGOING).forEach(Relationship::delete);
     }
 
     public static Map<String, Double> getPreAndPostHPThresholdFromMetaNode(Node metaNode) {
@@ -0,0 +1,75 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link SkeletonMetrics} class.
+ */
+public class SkeletonMetricsTest {
+
+    @Test
+    public void shouldComputeMetricsOfBranchedTree() {
+
+        // 10 - 20 - 30
+        //       \
+        //        40 - 50
+        //          \
+        //           60
+        // and a separate single-row tree 70; rows are listed with children before their parents
+        CompactSkeleton skeleton = new CompactSkeleton(
+                new int[]{60, 50, 40, 30, 20, 10, 70},
+                new int[]{40, 40, 20, 20, 10, -1, -1},
+                new int[]{9, 6, 6, 3, 3, 0, 100},
+                new int[]{12, 8, 8, 4, 4, 0, 100},
+                new int[]{0, 2, 0, 10, 0, 0, 100},
+                new double[]{1, 1, 1, 1, 1, 1, 1},
+                new int[]{0, 0, 0, 0, 0, 0, 0});
+
+        SkeletonMetrics metrics = SkeletonMetrics.compute(skeleton);
+
+        Assert.assertEquals(27D, metrics.getCableLength(), 1e-9);
+        Assert.assertEquals(2, metrics.getBranchPointCount());
+        Assert.assertEquals(4, metrics.getTipCount());
+        Assert.assertEquals(15D, metrics.getMaxPathLength(), 1e-9);
+        Assert.assertEquals(2, metrics.getStrahlerOrder());
+
+    }
+
+    @Test
+    public void shouldIncreaseStrahlerOrderOnlyWhereEqualOrdersMeet() {
+
+        //       1
+        //     /   \
+        //    2     3
+        //   / \   / \
+        //  4   5 6   7
+        CompactSkeleton balanced = new CompactSkeleton(
+                new int[]{1, 2, 3, 4, 5, 6, 7},
+                new int[]{-1, 1, 1, 2, 2, 3, 3},
+                new int[]{0, 1, 2, 3, 4, 5, 6},
+                new int[]{0, 0, 0, 0, 0, 0, 0},
+                new int[]{0, 0, 0, 0, 0, 0, 0},
+                new double[7],
+                new int[7]);
+
+        Assert.assertEquals(3, SkeletonMetrics.compute(balanced).getStrahlerOrder());
+
+        // an unbranched skeleton has order 1 and a single tip
+        CompactSkeleton line = new CompactSkeleton(
+                new int[]{1, 2, 3},
+                new int[]{-1, 1, 2},
+                new int[]{0, 0, 0},
+                new int[]{0, 1, 2},
+                new int[]{0, 0, 0},
+                new double[3],
+                new int[3]);
+
+        SkeletonMetrics lineMetrics = SkeletonMetrics.compute(line);
+        Assert.assertEquals(1, lineMetrics.getStrahlerOrder());
+        Assert.assertEquals(1, lineMetrics.getTipCount());
+        Assert.assertEquals(0, lineMetrics.getBranchPointCount());
+        Assert.assertEquals(2D, lineMetrics.getMaxPathLength(), 1e-9);
+
+    }
+}
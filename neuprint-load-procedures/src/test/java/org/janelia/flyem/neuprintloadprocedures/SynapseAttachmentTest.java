@@ -0,0 +1,148 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Tests the {@link SkeletonPointIndex} and {@link SynapseAttachment} classes.
+ */
+public class SynapseAttachmentTest {
+
+    @Test
+    public void shouldFindSameNearestRowAsLinearScan() {
+
+        Random random = new Random(7);
+        int size = 1000;
+        int[] rowNumbers = new int[size];
+        int[] parents = new int[size];
+        int[] x = new int[size];
+        int[] y = new int[size];
+        int[] z = new int[size];
+        for (int i = 0; i < size; i++) {
+            rowNumbers[i] = i + 1;
+            parents[i] = i == 0 ? -1 : random.nextInt(i) + 1;
+            // a small range so that many rows share coordinates and distances tie
+            x[i] = random.nextInt(20);
+            y[i] = random.nextInt(20);
+            z[i] = random.nextInt(5);
+        }
+        CompactSkeleton skeleton = new CompactSkeleton(rowNumbers, parents, x, y, z, new double[size], new int[size]);
+        SkeletonPointIndex pointIndex = new SkeletonPointIndex(skeleton);
+
+        for (int i = 0; i < 2000; i++) {
+            long pointX = random.nextInt(30) - 5;
+            long pointY = random.nextInt(30) - 5;
+            long pointZ = random.nextInt(10) - 2;
+            Assert.assertEquals(skeleton.nearestIndex(pointX, pointY, pointZ), pointIndex.nearestIndex(pointX, pointY, pointZ));
+        }
+
+        CompactSkeleton empty = new CompactSkeleton(new int[0], new int[0], new int[0], new int[0], new int[0], new double[0], new int[0]);
+        Assert.assertEquals(-1, new SkeletonPointIndex(empty).nearestIndex(0, 0, 0));
+
+    }
+
+    @Test
+    public void shouldAttachSynapsesToNearestRows() {
+
+        // 1 - 2 - 3
+        //      \
+        //       4
+        CompactSkeleton skeleton = new CompactSkeleton(
+                new int[]{1, 2, 3, 4},
+                new int[]{-1, 1, 2, 2},
+                new int[]{0, 10, 20, 10},
+                new int[]{0, 0, 0, 10},
+                new int[]{0, 0, 0, 0},
+                new double[4],
+                new int[4]);
+
+        SynapseAttachment attachment = SynapseAttachment.compute(skeleton, "test:1",
+                new int[]{21, 9, 0},
+                new int[]{0, 12, 1},
+                new int[]{0, 0, 0});
+
+        Assert.assertEquals(3, attachment.size());
+        Assert.assertEquals("test:1", attachment.getSkeletonVersion());
+
+        // entries are sorted by location
+        Assert.assertEquals(0, attachment.getX(0));
+        Assert.assertEquals(9, attachment.getX(1));
+        Assert.assertEquals(21, attachment.getX(2));
+
+        int index = attachment.indexOf(9, 12, 0);
+        Assert.assertEquals(1, index);
+        Assert.assertEquals(4, attachment.getSkelRowNumber(index));
+        Assert.assertEquals(20D, attachment.getPathOffset(index), 1e-9);
+        Assert.assertEquals(Math.sqrt(5), attachment.getDistance(index), 1e-9);
+
+        index = attachment.indexOf(21, 0, 0);
+        Assert.assertEquals(3, attachment.getSkelRowNumber(index));
+        Assert.assertEquals(20D, attachment.getPathOffset(index), 1e-9);
+
+        Assert.assertEquals(1, attachment.getSkelRowNumber(attachment.indexOf(0, 1, 0)));
+        Assert.assertEquals(0D, attachment.getPathOffset(attachment.indexOf(0, 1, 0)), 1e-9);
+
+        Assert.assertEquals(-1, attachment.indexOf(1, 1, 1));
+
+    }
+
+    @Test
+    public void shouldAddAndRemoveSynapsesInPlace() {
+
+        CompactSkeleton skeleton = new CompactSkeleton(
+                new int[]{1, 2, 3, 4},
+                new int[]{-1, 1, 2, 2},
+                new int[]{0, 10, 20, 10},
+                new int[]{0, 0, 0, 10},
+                new int[]{0, 0, 0, 0},
+                new double[4],
+                new int[4]);
+
+        SynapseAttachment attachment = SynapseAttachment.compute(skeleton, "test:1",
+                new int[]{21, 9, 0},
+                new int[]{0, 12, 1},
+                new int[]{0, 0, 0});
+
+        // inserted in location order and attached to the nearest row
+        SynapseAttachment added = attachment.withSynapse(skeleton, 10, 9, 0);
+        Assert.assertEquals(4, added.size());
+        Assert.assertEquals("test:1", added.getSkeletonVersion());
+        Assert.assertEquals(2, added.indexOf(10, 9, 0));
+        Assert.assertEquals(4, added.getSkelRowNumber(2));
+        Assert.assertEquals(20D, added.getPathOffset(2), 1e-9);
+        Assert.assertEquals(1D, added.getDistance(2), 1e-9);
+        Assert.assertEquals(3, added.getSkelRowNumber(added.indexOf(21, 0, 0)));
+        Assert.assertEquals(3, attachment.size());
+
+        SynapseAttachment removed = added.withoutSynapse(9, 12, 0);
+        Assert.assertEquals(3, removed.size());
+        Assert.assertEquals(-1, removed.indexOf(9, 12, 0));
+        Assert.assertEquals(4, removed.getSkelRowNumber(removed.indexOf(10, 9, 0)));
+        Assert.assertEquals(1, removed.getSkelRowNumber(removed.indexOf(0, 1, 0)));
+        Assert.assertEquals(3, removed.getSkelRowNumber(removed.indexOf(21, 0, 0)));
+
+        Assert.assertNull(removed.withoutSynapse(1, 1, 1));
+
+        // several synapses at once keep the existing entries and location order
+        SynapseAttachment merged = removed.withSynapses(skeleton, new int[]{22, 9}, new int[]{0, 12}, new int[]{0, 0});
+        Assert.assertEquals(5, merged.size());
+        Assert.assertEquals("test:1", merged.getSkeletonVersion());
+        Assert.assertEquals(0, merged.indexOf(0, 1, 0));
+        Assert.assertEquals(1, merged.indexOf(9, 12, 0));
+        Assert.assertEquals(2, merged.indexOf(10, 9, 0));
+        Assert.assertEquals(3, merged.indexOf(21, 0, 0));
+        Assert.assertEquals(4, merged.indexOf(22, 0, 0));
+        for (int i = 0; i < removed.size(); i++) {
+            int index = merged.indexOf(removed.getX(i), removed.getY(i), removed.getZ(i));
+            Assert.assertEquals(removed.getSkelRowNumber(i), merged.getSkelRowNumber(index));
+            Assert.assertEquals(removed.getPathOffset(i), merged.getPathOffset(index), 1e-9);
+            Assert.assertEquals(removed.getDistance(i), merged.getDistance(index), 1e-9);
+        }
+        Assert.assertEquals(added.getSkelRowNumber(added.indexOf(9, 12, 0)), merged.getSkelRowNumber(1));
+        Assert.assertEquals(3, merged.getSkelRowNumber(4));
+
+    }
+
+}
@@ -77,4 +77,24 @@ public class RoiInfoTest {
 
     }
 
+    @Test
+    public void shouldAddCountsOfAnotherRoiInfo() {
+
+        RoiInfo roiInfo = new RoiInfo();
+        roiInfo.addSynapseCountsForRoi("roiA", 2, 3);
+
+        RoiInfo otherRoiInfo = new RoiInfo();
+        otherRoiInfo.addSynapseCountsForRoi("roiA", 1, 1);
+        otherRoiInfo.addSynapseCountsForRoi("roiB", 0, 4);
+
+        roiInfo.add(otherRoiInfo);
+
+        Assert.assertEquals(3, roiInfo.getSynapseCountsForRoi("roiA").getPre());
+        Assert.assertEquals(4, roiInfo.getSynapseCountsForRoi("roiA").getPost());
+        Assert.assertEquals(0, roiInfo.getSynapseCountsForRoi("roiB").getPre());
+        Assert.assertEquals(4, roiInfo.getSynapseCountsForRoi("roiB").getPost());
+        Assert.assertEquals(1, otherRoiInfo.getSynapseCountsForRoi("roiA").getPre());
+
+    }
+
 }
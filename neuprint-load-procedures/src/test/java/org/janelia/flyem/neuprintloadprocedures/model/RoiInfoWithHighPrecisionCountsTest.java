@@ -115,4 +115,20 @@ public class RoiInfoWithHighPrecisionCountsTest {
 
     }
 
+    @Test
+    public void shouldAddCountsOfAnotherRoiInfo() {
+
+        RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        roiInfo.addSynapseCountsForRoi("roiA", 2, 3, 1, 2);
+
+        RoiInfoWithHighPrecisionCounts otherRoiInfo = new RoiInfoWithHighPrecisionCounts();
+        otherRoiInfo.addSynapseCountsForRoi("roiA", 1, 1, 1, 0);
+        otherRoiInfo.addSynapseCountsForRoi("roiB", 0, 4, 0, 3);
+
+        roiInfo.add(otherRoiInfo);
+
+        Assert.assertEquals("{\"roiA\":{\"preHP\":2,\"postHP\":2,\"pre\":3,\"post\":4},\"roiB\":{\"preHP\":0,\"postHP\":3,\"pre\":0,\"post\":4}}", roiInfo.getAsJsonString());
+
+    }
+
 }
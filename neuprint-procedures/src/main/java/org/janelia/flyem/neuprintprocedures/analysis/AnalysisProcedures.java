@@ -10,20 +10,29 @@ import apoc.util.Util;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.janelia.flyem.neuprint.model.SkelNode;
+import org.janelia.flyem.neuprintloadprocedures.CompactSkeleton;
+import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
 import org.janelia.flyem.neuprintloadprocedures.Location;
+import org.janelia.flyem.neuprintloadprocedures.SkeletonMetrics;
+import org.janelia.flyem.neuprintloadprocedures.SynapseAttachment;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintprocedures.cache.ResultCache;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.PathExpanderBuilder;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.spatial.Point;
 import org.neo4j.helpers.collection.Pair;
 import org.neo4j.logging.Log;
@@ -34,23 +43,35 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.lang.Float.NaN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ATTACHED_TO;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BODY_ID;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONTAINS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DISTANCE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LOCATION;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_SYN;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_SYN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROW_NUMBER;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SEGMENT;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKELETON;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKELETON_ID;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_NODE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_NODE_ID;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSE;
@@ -106,6 +127,16 @@ public class AnalysisProcedures {
     public Stream<MapResult> getLineGraphForNeuron(@Name("bodyId") Long bodyId, @Name("datasetLabel") String datasetLabel, @Name(value = "vertexSynapseThreshold", defaultValue = "50") Long vertexSynapseThreshold, @Name(value = "cableDistance", defaultValue = "false") Boolean cableDistance) {
         //TODO: deal with null pointer exceptions when body doesn't exist etc.
         if (bodyId == null || datasetLabel == null) return Stream.empty();
+
+        Map<String, Object> jsonMap = ResultCache.getInstance().getOrCompute(dbService, "analysis.getLineGraphForNeuron", datasetLabel,
+                Arrays.asList(bodyId, vertexSynapseThreshold, cableDistance),
+                () -> computeLineGraphForNeuron(bodyId, datasetLabel, vertexSynapseThreshold, cableDistance));
+
+        return Stream.of(new MapResult(new HashMap<>(jsonMap)));
+
+    }
+
+    private Map<String, Object> computeLineGraphForNeuron(Long bodyId, String datasetLabel, Long vertexSynapseThreshold, Boolean cableDistance) {
         SynapticConnectionVertexMap synapticConnectionVertexMap = null;
 
         Set<Long> bodyIdSet = new HashSet<>();
@@ -132,7 +163,7 @@ public class AnalysisProcedures {
 
         //String graphJson = synapticConnectionVertexMapFromJson.getGraphJson(edgeJson,vertexJson);
 
-        return Stream.of(new MapResult(jsonMap));
+        return jsonMap;
 
     }
 
@@ -253,10 +284,19 @@ public class AnalysisProcedures {
 
         //get skeleton points
         Node neuron = acquireSegmentFromDatabase(bodyId, datasetLabel);
-        List<Node> nodeList = getSkelNodesForSkeleton(neuron);
-        List<SkelNode> skelNodeList = nodeList.stream()
-                .map((node) -> new SkelNode(bodyId, getNeo4jPointLocationAsLocationList((Point) node.getProperty("location")), (double) node.getProperty("radius"), (int) ((long) node.getProperty("rowNumber"))))
-                .collect(Collectors.toList());
+        Node skeletonNode = GraphTraversalTools.getSkeletonNodeForNeuron(neuron);
+        List<SkelNode> skelNodeList;
+        if (skeletonNode != null && CompactSkeleton.isCompact(skeletonNode)) {
+            CompactSkeleton skeleton = CompactSkeleton.fromNode(skeletonNode);
+            skelNodeList = IntStream.range(0, skeleton.size())
+                    .mapToObj((i) -> new SkelNode(bodyId, Arrays.asList(skeleton.getX(i), skeleton.getY(i), skeleton.getZ(i)), skeleton.getRadius(i), skeleton.getRowNumber(i)))
+                    .collect(Collectors.toList());
+        } else {
+            List<Node> nodeList = getSkelNodesForSkeleton(neuron);
+            skelNodeList = nodeList.stream()
+                    .map((node) -> new SkelNode(bodyId, getNeo4jPointLocationAsLocationList((Point) node.getProperty("location")), (double) node.getProperty("radius"), (int) ((long) node.getProperty("rowNumber"))))
+                    .collect(Collectors.toList());
+        }
         String skeletonJson = SkelNode.getSkelNodeListJson(skelNodeList);
 
         Map<String, Object> jsonMap = new HashMap<>();
@@ -302,6 +342,15 @@ public class AnalysisProcedures {
         if (datasetLabel == null || skelNodeA == null || skelNodeB == null) return Stream.empty();
         if (skelNodeA.equals(skelNodeB)) return Stream.of(new LongResult(0L));
 
+        // for a compact skeleton, follow the parent arrays instead of LinksTo relationships
+        Node skeletonNode = getSkeletonForSkelNode(skelNodeA);
+        if (skeletonNode != null && skeletonNode.equals(getSkeletonForSkelNode(skelNodeB)) && CompactSkeleton.isCompact(skeletonNode)) {
+            CompactSkeleton skeleton = CompactSkeleton.fromNode(skeletonNode);
+            int indexA = skeleton.indexOfRowNumber(((Number) skelNodeA.getProperty(ROW_NUMBER)).intValue());
+            int indexB = skeleton.indexOfRowNumber(((Number) skelNodeB.getProperty(ROW_NUMBER)).intValue());
+            return Stream.of(new LongResult(Math.round(skeleton.pathLength(indexA, indexB))));
+        }
+
         //find nodes along path between node a and node b, inclusive
         List<Node> pathNodeList = getNodesAlongPath(skelNodeA, skelNodeB, datasetLabel);
 
@@ -314,6 +363,11 @@ public class AnalysisProcedures {
 
     }
 
+    private static Node getSkeletonForSkelNode(Node skelNode) {
+        Relationship containedByRelationship = skelNode.getSingleRelationship(RelationshipType.withName(CONTAINS), Direction.INCOMING);
+        return containedByRelationship == null ? null : containedByRelationship.getStartNode();
+    }
+
     private List<Node> getNodesAlongPath(Node skelNodeA, Node skelNodeB, String datasetLabel) {
 
         Map<String, Object> pathQueryResult = null;
@@ -346,6 +400,20 @@ public class AnalysisProcedures {
         Location location = new Location(x, y, z);
         Node neuron = acquireSegmentFromDatabase(bodyId, datasetLabel);
 
+        // for a compact skeleton, search the coordinate arrays and return the :SkelNode for the nearest row
+        Node skeletonNode = GraphTraversalTools.getSkeletonNodeForNeuron(neuron);
+        if (skeletonNode != null && CompactSkeleton.isCompact(skeletonNode)) {
+            CompactSkeleton skeleton = CompactSkeleton.fromNode(skeletonNode);
+            int nearest = skeleton.nearestIndex(x, y, z);
+            if (nearest < 0) return Stream.empty();
+            Node skelNode = GraphTraversalTools.getSkelNode(dbService, skeleton.getSkelNodeId(datasetLabel, bodyId, nearest), datasetLabel);
+            if (skelNode == null) {
+                log.error(String.format("analysis.getNearestSkelNodeOnBodyToPoint: Skeleton for body ID %d is compact and has no :SkelNodes. Create them with proofreader.createSkelNodes.", bodyId));
+                throw new RuntimeException(String.format("analysis.getNearestSkelNodeOnBodyToPoint: Skeleton for body ID %d is compact and has no :SkelNodes. Create them with proofreader.createSkelNodes.", bodyId));
+            }
+            return Stream.of(new NodeResult(skelNode));
+        }
+
         //get all skelnodes for the skeleton and distances to point
         List<SkelNodeDistanceToPoint> skelNodeDistanceToPointList = getSkelNodesForSkeleton(neuron)
                 .stream()
@@ -578,6 +646,14 @@ public class AnalysisProcedures {
             throw new RuntimeException("Missing input arguments.");
         }
 
+        String featureVectorsJson = ResultCache.getInstance().getOrCompute(dbService, "analysis.getInputAndOutputFeatureVectorsForNeuronsInRoi", datasetLabel,
+                Arrays.asList(roi, roiSynapseThreshold, synapseThreshold),
+                () -> computeInputAndOutputFeatureVectorsForNeuronsInRoi(roi, roiSynapseThreshold, datasetLabel, synapseThreshold));
+
+        return Stream.of(new StringResult(featureVectorsJson));
+    }
+
+    private String computeInputAndOutputFeatureVectorsForNeuronsInRoi(String roi, Long roiSynapseThreshold, String datasetLabel, Long synapseThreshold) {
         //get all rois for dataset except for kc_alpha_roi and seven_column_roi
         List<String> roiList = getRoiListForDataset(datasetLabel).stream().sorted().collect(Collectors.toList());
         log.info("analysis.getInputAndOutputFeatureVectorsForNeuronsInRoi: " + roiList.size() + " rois in " + datasetLabel);
@@ -589,9 +665,7 @@ public class AnalysisProcedures {
 
         Set<ClusteringFeatureVector> clusteringFeatureVectors = getSetOfClusteringFeatureVectors(neuronSet, roiList);
 
-        String featureVectorsJson = ClusteringFeatureVector.getClusteringFeatureVectorSetJson(clusteringFeatureVectors);
-
-        return Stream.of(new StringResult(featureVectorsJson));
+        return ClusteringFeatureVector.getClusteringFeatureVectorSetJson(clusteringFeatureVectors);
     }
 
     private Set<ClusteringFeatureVector> getSetOfClusteringFeatureVectors(Set<NeuronWithRoiInfoMap> neuronSet, List<String> roiList) {
@@ -717,6 +791,629 @@ public class AnalysisProcedures {
         return builder.build();
     }
 
+    @Procedure(value = "analysis.pageRank", mode = Mode.READ)
+    @Description("analysis.pageRank(datasetLabel, label='Neuron', status='', roi='', minWeight=1, dampingFactor=0.85, maxIterations=20, tolerance=1e-7) : " +
+            "weighted PageRank over the ConnectsTo graph of the dataset. Nodes can be restricted to those with a given status and/or in a given roi. " +
+            "e.g. CALL analysis.pageRank('mb6') YIELD bodyId, score RETURN bodyId, score ORDER BY score DESC")
+    public Stream<CentralityResult> pageRank(@Name("datasetLabel") String datasetLabel,
+                                             @Name(value = "label", defaultValue = "Neuron") String label,
+                                             @Name(value = "status", defaultValue = "") String status,
+                                             @Name(value = "roi", defaultValue = "") String roi,
+                                             @Name(value = "minWeight", defaultValue = "1") Long minWeight,
+                                             @Name(value = "dampingFactor", defaultValue = "0.85") Double dampingFactor,
+                                             @Name(value = "maxIterations", defaultValue = "20") Long maxIterations,
+                                             @Name(value = "tolerance", defaultValue = "1e-7") Double tolerance) {
+        if (datasetLabel == null || label == null || minWeight == null || dampingFactor == null || maxIterations == null || tolerance == null) {
+            log.error("analysis.pageRank: Missing input arguments.");
+            throw new RuntimeException("analysis.pageRank: Missing input arguments.");
+        }
+
+        ConnectsToGraph graph = getConnectsToGraph("analysis.pageRank", datasetLabel, label, status, roi, minWeight);
+        double[] scores = GraphCentrality.pageRank(graph, dampingFactor, maxIterations.intValue(), tolerance);
+
+        return streamCentralityResults(graph, scores);
+    }
+
+    @Procedure(value = "analysis.connectionStrength", mode = Mode.READ)
+    @Description("analysis.connectionStrength(datasetLabel, label='Neuron', status='', roi='', minWeight=1) : " +
+            "sum of incoming and outgoing ConnectsTo weights for each node, counting only partners that pass the same filters. " +
+            "e.g. CALL analysis.connectionStrength('mb6') YIELD bodyId, inStrength, outStrength RETURN bodyId, inStrength, outStrength")
+    public Stream<ConnectionStrengthResult> connectionStrength(@Name("datasetLabel") String datasetLabel,
+                                                               @Name(value = "label", defaultValue = "Neuron") String label,
+                                                               @Name(value = "status", defaultValue = "") String status,
+                                                               @Name(value = "roi", defaultValue = "") String roi,
+                                                               @Name(value = "minWeight", defaultValue = "1") Long minWeight) {
+        if (datasetLabel == null || label == null || minWeight == null) {
+            log.error("analysis.connectionStrength: Missing input arguments.");
+            throw new RuntimeException("analysis.connectionStrength: Missing input arguments.");
+        }
+
+        ConnectsToGraph graph = getConnectsToGraph("analysis.connectionStrength", datasetLabel, label, status, roi, minWeight);
+        double[] inStrength = GraphCentrality.inStrength(graph);
+        double[] outStrength = GraphCentrality.outStrength(graph);
+
+        return IntStream.range(0, graph.getNodeCount())
+                .mapToObj(i -> new ConnectionStrengthResult(graph.getBodyId(i), inStrength[i], outStrength[i]));
+    }
+
+    @Procedure(value = "analysis.betweenness", mode = Mode.READ)
+    @Description("analysis.betweenness(datasetLabel, label='Neuron', status='', roi='', minWeight=1, sampleSize=1000, seed=0) : " +
+            "betweenness centrality over the ConnectsTo graph estimated from sampleSize randomly chosen source nodes (exact if sampleSize is at least the number of nodes). " +
+            "e.g. CALL analysis.betweenness('mb6') YIELD bodyId, score RETURN bodyId, score ORDER BY score DESC")
+    public Stream<CentralityResult> betweenness(@Name("datasetLabel") String datasetLabel,
+                                                @Name(value = "label", defaultValue = "Neuron") String label,
+                                                @Name(value = "status", defaultValue = "") String status,
+                                                @Name(value = "roi", defaultValue = "") String roi,
+                                                @Name(value = "minWeight", defaultValue = "1") Long minWeight,
+                                                @Name(value = "sampleSize", defaultValue = "1000") Long sampleSize,
+                                                @Name(value = "seed", defaultValue = "0") Long seed) {
+        if (datasetLabel == null || label == null || minWeight == null || sampleSize == null || seed == null) {
+            log.error("analysis.betweenness: Missing input arguments.");
+            throw new RuntimeException("analysis.betweenness: Missing input arguments.");
+        }
+
+        ConnectsToGraph graph = getConnectsToGraph("analysis.betweenness", datasetLabel, label, status, roi, minWeight);
+        double[] scores = GraphCentrality.sampledBetweenness(graph, sampleSize.intValue(), seed);
+
+        return streamCentralityResults(graph, scores);
+    }
+
+    @Procedure(value = "analysis.writeCentrality", mode = Mode.WRITE)
+    @Description("analysis.writeCentrality(algorithm, propertyName, datasetLabel, label='Neuron', status='', roi='', minWeight=1, batchSize=10000, " +
+            "dampingFactor=0.85, maxIterations=20, tolerance=1e-7, sampleSize=1000, seed=0) : " +
+            "computes pageRank, inStrength, outStrength, or betweenness and writes the score to propertyName on each node " +
+            "in batched transactions. dampingFactor, maxIterations and tolerance apply to pageRank and sampleSize and seed to betweenness, as for analysis.pageRank and analysis.betweenness. " +
+            "Returns the number of nodes written. e.g. CALL analysis.writeCentrality('pageRank', 'pageRank', 'mb6') YIELD value RETURN value")
+    public Stream<LongResult> writeCentrality(@Name("algorithm") String algorithm,
+                                              @Name("propertyName") String propertyName,
+                                              @Name("datasetLabel") String datasetLabel,
+                                              @Name(value = "label", defaultValue = "Neuron") String label,
+                                              @Name(value = "status", defaultValue = "") String status,
+                                              @Name(value = "roi", defaultValue = "") String roi,
+                                              @Name(value = "minWeight", defaultValue = "1") Long minWeight,
+                                              @Name(value = "batchSize", defaultValue = "10000") Long batchSize,
+                                              @Name(value = "dampingFactor", defaultValue = "0.85") Double dampingFactor,
+                                              @Name(value = "maxIterations", defaultValue = "20") Long maxIterations,
+                                              @Name(value = "tolerance", defaultValue = "1e-7") Double tolerance,
+                                              @Name(value = "sampleSize", defaultValue = "1000") Long sampleSize,
+                                              @Name(value = "seed", defaultValue = "0") Long seed) {
+        if (algorithm == null || propertyName == null || datasetLabel == null || label == null || minWeight == null || batchSize == null || batchSize < 1
+                || dampingFactor == null || maxIterations == null || tolerance == null || sampleSize == null || seed == null) {
+            log.error("analysis.writeCentrality: Missing input arguments.");
+            throw new RuntimeException("analysis.writeCentrality: Missing input arguments.");
+        }
+
+        ConnectsToGraph graph = getConnectsToGraph("analysis.writeCentrality", datasetLabel, label, status, roi, minWeight);
+
+        double[] scores;
+        switch (algorithm) {
+            case "pageRank":
+                scores = GraphCentrality.pageRank(graph, dampingFactor, maxIterations.intValue(), tolerance);
+                break;
+            case "inStrength":
+                scores = GraphCentrality.inStrength(graph);
+                break;
+            case "outStrength":
+                scores = GraphCentrality.outStrength(graph);
+                break;
+            case "betweenness":
+                scores = GraphCentrality.sampledBetweenness(graph, sampleSize.intValue(), seed);
+                break;
+            default:
+                log.error("analysis.writeCentrality: Unknown algorithm " + algorithm + ". Must be one of pageRank, inStrength, outStrength, or betweenness.");
+                throw new RuntimeException("analysis.writeCentrality: Unknown algorithm " + algorithm + ".");
+        }
+
+        long written = writeScoresInBatches(graph, scores, propertyName, batchSize.intValue());
+        log.info("analysis.writeCentrality: Wrote " + algorithm + " to property " + propertyName + " on " + written + " nodes.");
+
+        return Stream.of(new LongResult(written));
+    }
+
+    @Procedure(value = "analysis.writeSkeletonMetrics", mode = Mode.WRITE)
+    @Description("analysis.writeSkeletonMetrics(bodyIds, datasetLabel, batchSize=1000) : " +
+            "computes cable length, branch point count, tip count, maximum path length from a root and Strahler order from the skeleton of each of the given bodies, " +
+            "or of every body with a skeleton if bodyIds is empty. Skeletons are read in parallel and the metrics are written to the cableLength, branchPointCount, tipCount, " +
+            "maxPathLength and strahlerOrder properties of each Segment in batched transactions. Bodies without a skeleton are skipped. " +
+            "e.g. CALL analysis.writeSkeletonMetrics([], 'mb6') YIELD bodyId, cableLength RETURN bodyId, cableLength ORDER BY cableLength DESC")
+    public Stream<SkeletonMetricsResult> writeSkeletonMetrics(@Name("bodyIds") List<Long> bodyIds,
+                                                              @Name("datasetLabel") String datasetLabel,
+                                                              @Name(value = "batchSize", defaultValue = "1000") Long batchSize) {
+        if (bodyIds == null || datasetLabel == null || batchSize == null || batchSize < 1) {
+            log.error("analysis.writeSkeletonMetrics: Missing input arguments.");
+            throw new RuntimeException("analysis.writeSkeletonMetrics: Missing input arguments.");
+        }
+
+        List<Long> skeletonIds = getSkeletonIds("analysis.writeSkeletonMetrics", bodyIds, datasetLabel);
+
+        long startTime = System.currentTimeMillis();
+        List<SegmentSkeletonMetrics> computed = computeForSkeletonsAndWrite("analysis.writeSkeletonMetrics", skeletonIds, batchSize.intValue(),
+                (skeleton, segment) -> new SegmentSkeletonMetrics(segment.getId(), ((Number) segment.getProperty(BODY_ID)).longValue(), SkeletonMetrics.compute(readSkeleton(skeleton))),
+                segmentMetrics -> segmentMetrics.metrics.writeTo(dbService.getNodeById(segmentMetrics.segmentId)));
+        log.info("analysis.writeSkeletonMetrics: Wrote metrics for " + computed.size() + " skeletons in " + (System.currentTimeMillis() - startTime) + " ms.");
+
+        return computed.stream()
+                .map(segmentMetrics -> new SkeletonMetricsResult(segmentMetrics.bodyId, segmentMetrics.metrics.getCableLength(), segmentMetrics.metrics.getBranchPointCount(),
+                        segmentMetrics.metrics.getTipCount(), segmentMetrics.metrics.getMaxPathLength(), segmentMetrics.metrics.getStrahlerOrder()));
+    }
+
+    @Procedure(value = "analysis.writeSynapseAttachments", mode = Mode.WRITE)
+    @Description("analysis.writeSynapseAttachments(bodyIds, datasetLabel, createRelationships=false, batchSize=100) : " +
+            "attaches every synapse of each of the given bodies, or of every body with a skeleton if bodyIds is empty, to the nearest row of the body's skeleton. " +
+            "For each synapse the row number, the path length from the root of the skeleton to the row and the distance from the synapse to the row are stored in " +
+            "array properties on the body's SynapseSet, sorted by synapse location. If createRelationships is true and the skeleton has :SkelNodes, each synapse is also " +
+            "linked to its :SkelNode by an AttachedTo relationship with a distance property. Skeletons are read in parallel and the attachments are written in batched " +
+            "transactions. Bodies without a skeleton or synapses are skipped. " +
+            "e.g. CALL analysis.writeSynapseAttachments([], 'mb6') YIELD bodyId, synapseCount, meanDistance RETURN bodyId, synapseCount, meanDistance")
+    public Stream<SynapseAttachmentResult> writeSynapseAttachments(@Name("bodyIds") List<Long> bodyIds,
+                                                                   @Name("datasetLabel") String datasetLabel,
+                                                                   @Name(value = "createRelationships", defaultValue = "false") Boolean createRelationships,
+                                                                   @Name(value = "batchSize", defaultValue = "100") Long batchSize) {
+        if (bodyIds == null || datasetLabel == null || createRelationships == null || batchSize == null || batchSize < 1) {
+            log.error("analysis.writeSynapseAttachments: Missing input arguments.");
+            throw new RuntimeException("analysis.writeSynapseAttachments: Missing input arguments.");
+        }
+
+        List<Long> skeletonIds = getSkeletonIds("analysis.writeSynapseAttachments", bodyIds, datasetLabel);
+
+        long startTime = System.currentTimeMillis();
+        List<SegmentSynapseAttachment> computed = computeForSkeletonsAndWrite("analysis.writeSynapseAttachments", skeletonIds, batchSize.intValue(),
+                (skeleton, segment) -> computeSynapseAttachment(skeleton, segment, createRelationships),
+                this::writeSynapseAttachment);
+        log.info("analysis.writeSynapseAttachments: Attached synapses of " + computed.size() + " bodies in " + (System.currentTimeMillis() - startTime) + " ms.");
+
+        return computed.stream()
+                .map(segmentAttachment -> {
+                    double distanceSum = 0;
+                    for (int i = 0; i < segmentAttachment.attachment.size(); i++) {
+                        distanceSum += segmentAttachment.attachment.getDistance(i);
+                    }
+                    return new SynapseAttachmentResult(segmentAttachment.bodyId, (long) segmentAttachment.attachment.size(),
+                            distanceSum / segmentAttachment.attachment.size(), (long) segmentAttachment.synapseIds.length);
+                });
+    }
+
+    @Procedure(value = "analysis.calculateSynapseCableDistance", mode = Mode.READ)
+    @Description("analysis.calculateSynapseCableDistance(datasetLabel, synapseA, synapseB) : distance along the skeleton between the skeleton rows that two :Synapses " +
+            "of the same body are attached to. Uses the attachments written by analysis.writeSynapseAttachments if they are up to date, otherwise finds the nearest rows. " +
+            "e.g. MATCH (a:`mb6-Synapse`{location:point({x:1,y:2,z:3})}), (b:`mb6-Synapse`{location:point({x:4,y:5,z:6})}) " +
+            "CALL analysis.calculateSynapseCableDistance('mb6', a, b) YIELD value RETURN value")
+    public Stream<LongResult> calculateSynapseCableDistance(@Name("datasetLabel") String datasetLabel,
+                                                            @Name("synapseA") Node synapseA, @Name("synapseB") Node synapseB) {
+        if (datasetLabel == null || synapseA == null || synapseB == null) {
+            log.error("analysis.calculateSynapseCableDistance: Missing input arguments.");
+            throw new RuntimeException("analysis.calculateSynapseCableDistance: Missing input arguments.");
+        }
+
+        Node segment = GraphTraversalTools.getSegmentThatContainsSynapse(synapseA);
+        if (segment == null || !segment.equals(GraphTraversalTools.getSegmentThatContainsSynapse(synapseB))) {
+            log.error("analysis.calculateSynapseCableDistance: Synapses must belong to the same body.");
+            throw new RuntimeException("analysis.calculateSynapseCableDistance: Synapses must belong to the same body.");
+        }
+        Node skeletonNode = GraphTraversalTools.getSkeletonNodeForNeuron(segment);
+        if (skeletonNode == null) {
+            log.error("analysis.calculateSynapseCableDistance: No skeleton found for body id " + segment.getProperty(BODY_ID) + ".");
+            throw new RuntimeException("analysis.calculateSynapseCableDistance: No skeleton found for body id " + segment.getProperty(BODY_ID) + ".");
+        }
+
+        CompactSkeleton skeleton = readSkeleton(skeletonNode);
+        Node synapseSet = GraphTraversalTools.getSynapseSetForNeuron(segment);
+        SynapseAttachment attachment = SynapseAttachment.isCurrent(synapseSet, skeletonNode) ? SynapseAttachment.fromNode(synapseSet) : null;
+
+        try {
+            int indexA = getAttachedIndex(skeleton, attachment, synapseA);
+            int indexB = getAttachedIndex(skeleton, attachment, synapseB);
+            return Stream.of(new LongResult(Math.round(skeleton.pathLength(indexA, indexB))));
+        } catch (IllegalArgumentException e) {
+            log.error("analysis.calculateSynapseCableDistance: " + e.getMessage());
+            throw new RuntimeException("analysis.calculateSynapseCableDistance: " + e.getMessage());
+        }
+    }
+
+    private static int getAttachedIndex(CompactSkeleton skeleton, SynapseAttachment attachment, Node synapse) {
+        List<Integer> location = getNeo4jPointLocationAsLocationList((Point) synapse.getProperty(LOCATION));
+        if (attachment != null) {
+            int attachmentIndex = attachment.indexOf(location.get(0), location.get(1), location.get(2));
+            if (attachmentIndex != -1) {
+                return skeleton.indexOfRowNumber(attachment.getSkelRowNumber(attachmentIndex));
+            }
+        }
+        int index = skeleton.nearestIndex(location.get(0), location.get(1), location.get(2));
+        if (index == -1) {
+            throw new IllegalArgumentException("Skeleton is empty.");
+        }
+        return index;
+    }
+
+    @Procedure(value = "analysis.reachable", mode = Mode.READ)
+    @Description("analysis.reachable(bodyIds, direction, maxHops, minWeight, datasetLabel, label='Neuron') : " +
+            "all bodies within maxHops of the given bodies following ConnectsTo relationships with weight >= minWeight. " +
+            "direction is 'downstream', 'upstream', or 'both'. Returns the hop distance and the strongest path weight (largest minimum weight over the shortest paths) for each body reached. " +
+            "e.g. CALL analysis.reachable([8426959], 'downstream', 2, 3, 'mb6') YIELD bodyId, hops, weight RETURN bodyId, hops, weight")
+    public Stream<ReachableResult> reachable(@Name("bodyIds") List<Long> bodyIds,
+                                             @Name("direction") String direction,
+                                             @Name("maxHops") Long maxHops,
+                                             @Name("minWeight") Long minWeight,
+                                             @Name("datasetLabel") String datasetLabel,
+                                             @Name(value = "label", defaultValue = "Neuron") String label) {
+        if (bodyIds == null || direction == null || maxHops == null || minWeight == null || datasetLabel == null || label == null) {
+            log.error("analysis.reachable: Missing input arguments.");
+            throw new RuntimeException("analysis.reachable: Missing input arguments.");
+        }
+
+        int parsedDirection = Reachability.parseDirection(direction);
+        if (parsedDirection < 0) {
+            log.error("analysis.reachable: Unknown direction " + direction + ". Must be one of downstream, upstream, or both.");
+            throw new RuntimeException("analysis.reachable: Unknown direction " + direction + ".");
+        }
+
+        ConnectsToGraph graph = ConnectsToGraphCache.getGraph(dbService, datasetLabel, label);
+
+        int[] sources = bodyIds.stream()
+                .mapToInt(graph::indexOfBodyId)
+                .filter(i -> i >= 0)
+                .toArray();
+        if (sources.length < bodyIds.size()) {
+            log.warn("analysis.reachable: " + (bodyIds.size() - sources.length) + " of the provided bodies are not " + datasetLabel + "-" + label + " nodes and will be ignored.");
+        }
+
+        Reachability reachability = Reachability.fromSources(graph, sources, parsedDirection, maxHops.intValue(), minWeight);
+
+        return IntStream.range(0, graph.getNodeCount())
+                .filter(i -> reachability.getHops(i) > 0)
+                .mapToObj(i -> new ReachableResult(graph.getBodyId(i), (long) reachability.getHops(i), reachability.getStrength(i)));
+    }
+
+    @Procedure(value = "analysis.getShortestPathBidirectional", mode = Mode.READ)
+    @Description("analysis.getShortestPathBidirectional(startNode, endNode, datasetLabel, minWeight=1, costFunction='inverse', label='Segment') : " +
+            "lowest cost ConnectsTo path between two bodies using bidirectional Dijkstra over a cached in-memory copy of the ConnectsTo graph. " +
+            "costFunction is 'inverse' (1/weight per relationship) or 'hops'. Relationships with weight < minWeight are ignored. " +
+            "e.g. CALL analysis.getShortestPathBidirectional(n, m, 'mb6', 3) YIELD path, weight RETURN path, weight")
+    public Stream<WeightedPathResult> getShortestPathBidirectional(@Name("startNode") Node startNode,
+                                                                   @Name("endNode") Node endNode,
+                                                                   @Name("datasetLabel") String datasetLabel,
+                                                                   @Name(value = "minWeight", defaultValue = "1") Long minWeight,
+                                                                   @Name(value = "costFunction", defaultValue = "inverse") String costFunction,
+                                                                   @Name(value = "label", defaultValue = "Segment") String label) {
+        return getKShortestPaths(startNode, endNode, 1L, datasetLabel, minWeight, costFunction, label);
+    }
+
+    @Procedure(value = "analysis.getKShortestPaths", mode = Mode.READ)
+    @Description("analysis.getKShortestPaths(startNode, endNode, k, datasetLabel, minWeight=1, costFunction='inverse', label='Segment') : " +
+            "the k lowest cost loopless ConnectsTo paths between two bodies (Yen's algorithm) over a cached in-memory copy of the ConnectsTo graph. " +
+            "costFunction is 'inverse' (1/weight per relationship, so the strongest paths are returned first) or 'hops'. Relationships with weight < minWeight are ignored. " +
+            "e.g. CALL analysis.getKShortestPaths(n, m, 10, 'mb6', 3) YIELD path, weight RETURN path, weight")
+    public Stream<WeightedPathResult> getKShortestPaths(@Name("startNode") Node startNode,
+                                                        @Name("endNode") Node endNode,
+                                                        @Name("k") Long k,
+                                                        @Name("datasetLabel") String datasetLabel,
+                                                        @Name(value = "minWeight", defaultValue = "1") Long minWeight,
+                                                        @Name(value = "costFunction", defaultValue = "inverse") String costFunction,
+                                                        @Name(value = "label", defaultValue = "Segment") String label) {
+        if (startNode == null || endNode == null || k == null || datasetLabel == null || minWeight == null || costFunction == null || label == null) {
+            log.error("analysis.getKShortestPaths: Missing input arguments.");
+            throw new RuntimeException("analysis.getKShortestPaths: Missing input arguments.");
+        }
+
+        try {
+            return findKShortestPaths(ConnectsToGraphCache.getGraph(dbService, datasetLabel, label), startNode, endNode, k.intValue(), minWeight, costFunction).stream();
+        } catch (NotFoundException e) {
+            // the cached projection predates a deletion that has not changed the dataset version yet
+            log.warn("analysis.getKShortestPaths: Cached ConnectsTo graph for " + datasetLabel + "-" + label + " is out of date. Rebuilding.");
+            ConnectsToGraphCache.invalidate(datasetLabel, label);
+            return findKShortestPaths(ConnectsToGraphCache.getGraph(dbService, datasetLabel, label), startNode, endNode, k.intValue(), minWeight, costFunction).stream();
+        }
+    }
+
+    private List<WeightedPathResult> findKShortestPaths(ConnectsToGraph graph, Node startNode, Node endNode, int k, long minWeight, String costFunction) {
+        int source = graph.indexOfBodyId((long) startNode.getProperty(BODY_ID, -1L));
+        int target = graph.indexOfBodyId((long) endNode.getProperty(BODY_ID, -1L));
+        if (source < 0 || target < 0) {
+            log.warn("analysis.getKShortestPaths: Start or end node is not in the ConnectsTo graph.");
+            return new ArrayList<>();
+        }
+
+        WeightedPathSearch weightedPathSearch;
+        try {
+            weightedPathSearch = new WeightedPathSearch(graph, minWeight, costFunction);
+        } catch (IllegalArgumentException e) {
+            log.error("analysis.getKShortestPaths: " + e.getMessage());
+            throw new RuntimeException("analysis.getKShortestPaths: " + e.getMessage());
+        }
+
+        // paths are built here rather than lazily in the stream so that missing ids are found while they can be handled
+        List<WeightedPathResult> results = new ArrayList<>();
+        for (WeightedPathSearch.IndexPath indexPath : weightedPathSearch.kShortestPaths(source, target, k)) {
+            PathImpl.Builder builder = new PathImpl.Builder(dbService.getNodeById(graph.getNodeId(indexPath.getNodes()[0])));
+            for (int edge : indexPath.getEdges()) {
+                builder = builder.push(dbService.getRelationshipById(graph.getOutRelationshipIds()[edge]));
+            }
+            results.add(new WeightedPathResult(new WeightedPathImpl(indexPath.getCost(), builder.build())));
+        }
+        return results;
+    }
+
+    @Procedure(value = "analysis.similarNeurons", mode = Mode.READ)
+    @Description("analysis.similarNeurons(bodyId, k, metric='cosine', datasetLabel, includePartnerTypes=false) : " +
+            "the k Neurons most similar to the given neuron by their normalized input and output synapse counts per roi, and optionally by their " +
+            "normalized input and output connection weights per partner type. metric is 'cosine' (distance = 1 - cosine similarity) or 'euclidean'. " +
+            "e.g. CALL analysis.similarNeurons(8426959, 10, 'cosine', 'mb6') YIELD bodyId, distance RETURN bodyId, distance")
+    public Stream<SimilarNeuronResult> similarNeurons(@Name("bodyId") Long bodyId,
+                                                      @Name("k") Long k,
+                                                      @Name("metric") String metric,
+                                                      @Name("datasetLabel") String datasetLabel,
+                                                      @Name(value = "includePartnerTypes", defaultValue = "false") Boolean includePartnerTypes) {
+        if (bodyId == null || k == null || metric == null || datasetLabel == null || includePartnerTypes == null) {
+            log.error("analysis.similarNeurons: Missing input arguments.");
+            throw new RuntimeException("analysis.similarNeurons: Missing input arguments.");
+        }
+
+        NeuronSimilarityIndex index = NeuronSimilarityIndex.getIndex(dbService, datasetLabel, includePartnerTypes);
+        if (!index.contains(bodyId)) {
+            log.error("analysis.similarNeurons: Body " + bodyId + " is not a Neuron in " + datasetLabel + ".");
+            throw new RuntimeException("analysis.similarNeurons: Body " + bodyId + " is not a Neuron in " + datasetLabel + ".");
+        }
+
+        try {
+            return index.nearest(bodyId, k.intValue(), metric).stream();
+        } catch (IllegalArgumentException e) {
+            log.error("analysis.similarNeurons: " + e.getMessage());
+            throw new RuntimeException("analysis.similarNeurons: " + e.getMessage());
+        }
+    }
+
+    @Procedure(value = "analysis.motifCounts", mode = Mode.READ)
+    @Description("analysis.motifCounts(bodyIds, roi, minWeight, datasetLabel, maxExamples=0) : " +
+            "counts of reciprocal (mutual) and one-way (asymmetric) pairs and of each connected 3-node motif (triad census types 021D through 300) " +
+            "among the given bodies, or among the Neurons in the roi if bodyIds is empty, using ConnectsTo relationships with weight >= minWeight. " +
+            "Up to maxExamples instances of each motif are returned as lists of body ids. " +
+            "e.g. CALL analysis.motifCounts([], 'EB', 3, 'mb6') YIELD motif, count RETURN motif, count")
+    public Stream<MotifCountResult> motifCounts(@Name("bodyIds") List<Long> bodyIds,
+                                                @Name("roi") String roi,
+                                                @Name("minWeight") Long minWeight,
+                                                @Name("datasetLabel") String datasetLabel,
+                                                @Name(value = "maxExamples", defaultValue = "0") Long maxExamples) {
+        if (minWeight == null || datasetLabel == null || maxExamples == null || ((bodyIds == null || bodyIds.isEmpty()) && (roi == null || roi.isEmpty()))) {
+            log.error("analysis.motifCounts: Missing input arguments.");
+            throw new RuntimeException("analysis.motifCounts: Missing input arguments.");
+        }
+
+        ConnectsToGraph graph = ConnectsToGraphCache.getGraph(dbService, datasetLabel, SEGMENT);
+
+        List<Long> selectedBodyIds = bodyIds;
+        if (bodyIds == null || bodyIds.isEmpty()) {
+            selectedBodyIds = new ArrayList<>();
+            try (ResourceIterator<Node> neurons = dbService.findNodes(Label.label(datasetLabel + "-Neuron"), roi, true)) {
+                while (neurons.hasNext()) {
+                    selectedBodyIds.add((Long) neurons.next().getProperty(BODY_ID));
+                }
+            }
+        }
+        int[] nodes = selectedBodyIds.stream()
+                .mapToInt(graph::indexOfBodyId)
+                .filter(i -> i >= 0)
+                .toArray();
+
+        long startTime = System.currentTimeMillis();
+        MotifCounter motifCounter = new MotifCounter(graph, nodes, minWeight);
+        MotifCounter.Counts counts = motifCounter.count(maxExamples.intValue());
+        log.info("analysis.motifCounts: Counted motifs among " + motifCounter.getNodeCount() + " bodies in " + (System.currentTimeMillis() - startTime) + " ms.");
+
+        return MotifCounter.getMotifNames().stream()
+                .map(motif -> new MotifCountResult(motif, counts.getCount(motif), counts.getExamples(motif)));
+    }
+
+    private List<Long> getSkeletonIds(String procedureName, List<Long> bodyIds, String datasetLabel) {
+        List<Long> skeletonIds = new ArrayList<>();
+        if (bodyIds.isEmpty()) {
+            try (ResourceIterator<Node> skeletons = dbService.findNodes(Label.label(datasetLabel + "-" + SKELETON))) {
+                while (skeletons.hasNext()) {
+                    skeletonIds.add(skeletons.next().getId());
+                }
+            }
+        } else {
+            for (Long bodyId : bodyIds) {
+                Node skeleton = GraphTraversalTools.getSkeleton(dbService, bodyId, datasetLabel);
+                if (skeleton != null) {
+                    skeletonIds.add(skeleton.getId());
+                } else {
+                    log.warn(procedureName + ": No skeleton found for body id " + bodyId + ".");
+                }
+            }
+        }
+        return skeletonIds;
+    }
+
+    private static CompactSkeleton readSkeleton(Node skeletonNode) {
+        return CompactSkeleton.isCompact(skeletonNode) ? CompactSkeleton.fromNode(skeletonNode) : CompactSkeleton.fromSkelNodes(skeletonNode);
+    }
+
+    private <T> List<T> computeForSkeletonsAndWrite(String procedureName, List<Long> skeletonIds, int batchSize,
+                                                    BiFunction<Node, Node, T> compute, Consumer<T> write) {
+        // skeletons are read and computed on in parallel, each batch in its own read transaction; the results are then
+        // written batch by batch on a single thread, as writeCentrality does, so writers do not contend for locks
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), (skeletonIds.size() + batchSize - 1) / batchSize)));
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        List<T> results = new ArrayList<>(skeletonIds.size());
+        try {
+            List<Future<List<T>>> computedBatches = new ArrayList<>();
+            for (int start = 0; start < skeletonIds.size(); start += batchSize) {
+                List<Long> batch = skeletonIds.subList(start, Math.min(start + batchSize, skeletonIds.size()));
+                computedBatches.add(readers.submit(() -> computeForSkeletonBatch(procedureName, batch, compute)));
+            }
+            List<Future<?>> writtenBatches = new ArrayList<>();
+            for (Future<List<T>> computedBatch : computedBatches) {
+                List<T> batch = computedBatch.get();
+                writtenBatches.add(writer.submit(() -> {
+                    try (Transaction tx = dbService.beginTx()) {
+                        batch.forEach(write);
+                        tx.success();
+                    }
+                }));
+                results.addAll(batch);
+            }
+            for (Future<?> writtenBatch : writtenBatches) {
+                writtenBatch.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error running " + procedureName + ": " + e);
+            throw new RuntimeException("Error running " + procedureName + ": " + e);
+        } finally {
+            readers.shutdown();
+            writer.shutdown();
+        }
+        return results;
+    }
+
+    private <T> List<T> computeForSkeletonBatch(String procedureName, List<Long> skeletonIds, BiFunction<Node, Node, T> compute) {
+        List<T> batchResults = new ArrayList<>(skeletonIds.size());
+        try (Transaction tx = dbService.beginTx()) {
+            for (Long skeletonId : skeletonIds) {
+                Node skeleton = dbService.getNodeById(skeletonId);
+                Relationship containedByRelationship = skeleton.getSingleRelationship(RelationshipType.withName(CONTAINS), Direction.INCOMING);
+                if (containedByRelationship == null) {
+                    log.warn(procedureName + ": Skeleton " + skeleton.getProperty(SKELETON_ID, skeletonId) + " is not contained by a Segment. Skipping.");
+                    continue;
+                }
+                T result = compute.apply(skeleton, containedByRelationship.getStartNode());
+                if (result != null) {
+                    batchResults.add(result);
+                }
+            }
+            tx.success();
+        }
+        return batchResults;
+    }
+
+    private SegmentSynapseAttachment computeSynapseAttachment(Node skeletonNode, Node segment, boolean createRelationships) {
+        long bodyId = ((Number) segment.getProperty(BODY_ID)).longValue();
+        Node synapseSet = GraphTraversalTools.getSynapseSetForNeuron(segment);
+        CompactSkeleton skeleton = readSkeleton(skeletonNode);
+        if (synapseSet == null || !synapseSet.hasRelationship(RelationshipType.withName(CONTAINS), Direction.OUTGOING) || skeleton.size() == 0) {
+            log.warn("analysis.writeSynapseAttachments: Body id " + bodyId + " has no synapses or an empty skeleton. Skipping.");
+            return null;
+        }
+        SynapseAttachment attachment = SynapseAttachment.compute(skeleton, skeletonNode, synapseSet);
+
+        long[] synapseIds = new long[0];
+        long[] skelNodeIds = new long[0];
+        double[] distances = new double[0];
+        if (createRelationships) {
+            Map<Integer, Long> skelNodeIdsByRow = new HashMap<>();
+            for (Relationship containsRelationship : skeletonNode.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+                Node skelNode = containsRelationship.getEndNode();
+                skelNodeIdsByRow.put(((Number) skelNode.getProperty(ROW_NUMBER)).intValue(), skelNode.getId());
+            }
+            if (skelNodeIdsByRow.isEmpty()) {
+                log.warn("analysis.writeSynapseAttachments: Skeleton for body id " + bodyId + " has no :SkelNodes (see proofreader.createSkelNodes). No AttachedTo relationships created.");
+            } else {
+                synapseIds = new long[attachment.size()];
+                skelNodeIds = new long[attachment.size()];
+                distances = new double[attachment.size()];
+                int count = 0;
+                for (Relationship containsRelationship : synapseSet.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+                    Node synapse = containsRelationship.getEndNode();
+                    List<Integer> location = getNeo4jPointLocationAsLocationList((Point) synapse.getProperty(LOCATION));
+                    int index = attachment.indexOf(location.get(0), location.get(1), location.get(2));
+                    Long skelNodeId = skelNodeIdsByRow.get(attachment.getSkelRowNumber(index));
+                    if (skelNodeId != null) {
+                        synapseIds[count] = synapse.getId();
+                        skelNodeIds[count] = skelNodeId;
+                        distances[count] = attachment.getDistance(index);
+                        count++;
+                    }
+                }
+                synapseIds = Arrays.copyOf(synapseIds, count);
+                skelNodeIds = Arrays.copyOf(skelNodeIds, count);
+                distances = Arrays.copyOf(distances, count);
+            }
+        }
+        return new SegmentSynapseAttachment(synapseSet.getId(), bodyId, attachment, synapseIds, skelNodeIds, distances);
+    }
+
+    private void writeSynapseAttachment(SegmentSynapseAttachment segmentAttachment) {
+        segmentAttachment.attachment.writeTo(dbService.getNodeById(segmentAttachment.synapseSetId));
+        for (int i = 0; i < segmentAttachment.synapseIds.length; i++) {
+            Node synapse = dbService.getNodeById(segmentAttachment.synapseIds[i]);
+            synapse.getRelationships(RelationshipType.withName(ATTACHED_TO), Direction.OUTGOING).forEach(Relationship::delete);
+            Relationship attachedTo = synapse.createRelationshipTo(dbService.getNodeById(segmentAttachment.skelNodeIds[i]), RelationshipType.withName(ATTACHED_TO));
+            attachedTo.setProperty(DISTANCE, segmentAttachment.distances[i]);
+        }
+    }
+
+    private ConnectsToGraph getConnectsToGraph(String procedureName, String datasetLabel, String label, String status, String roi, long minWeight) {
+        long startTime = System.currentTimeMillis();
+        ConnectsToGraph graph = ConnectsToGraph.fromDatabase(dbService, datasetLabel, label, status, roi, minWeight);
+        log.info(procedureName + ": Loaded ConnectsTo graph with " + graph.getNodeCount() + " nodes and " + graph.getEdgeCount() + " edges in " +
+                (System.currentTimeMillis() - startTime) + " ms.");
+        return graph;
+    }
+
+    private Stream<CentralityResult> streamCentralityResults(ConnectsToGraph graph, double[] scores) {
+        return IntStream.range(0, graph.getNodeCount())
+                .mapToObj(i -> new CentralityResult(graph.getBodyId(i), scores[i]));
+    }
+
+    private long writeScoresInBatches(ConnectsToGraph graph, double[] scores, String propertyName, int batchSize) {
+        // each batch is committed in its own top-level transaction on a separate thread, so the
+        // procedure's transaction does not have to hold every change until the end
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        long written = 0;
+        try {
+            for (int start = 0; start < graph.getNodeCount(); start += batchSize) {
+                final int batchStart = start;
+                final int batchEnd = Math.min(start + batchSize, graph.getNodeCount());
+                Future<Integer> batch = executorService.submit(() -> {
+                    try (Transaction tx = dbService.beginTx()) {
+                        for (int i = batchStart; i < batchEnd; i++) {
+                            dbService.getNodeById(graph.getNodeId(i)).setProperty(propertyName, scores[i]);
+                        }
+                        tx.success();
+                    }
+                    return batchEnd - batchStart;
+                });
+                written += batch.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error writing " + propertyName + ": " + e);
+            throw new RuntimeException("Error writing " + propertyName + ": " + e);
+        } finally {
+            executorService.shutdown();
+        }
+        return written;
+    }
+
+}
+
+class SegmentSkeletonMetrics {
+    final long segmentId;
+    final long bodyId;
+    final SkeletonMetrics metrics;
+
+    SegmentSkeletonMetrics(long segmentId, long bodyId, SkeletonMetrics metrics) {
+        this.segmentId = segmentId;
+        this.bodyId = bodyId;
+        this.metrics = metrics;
+    }
+}
+
+class SegmentSynapseAttachment {
+    final long synapseSetId;
+    final long bodyId;
+    final SynapseAttachment attachment;
+    // AttachedTo relationships to create, one entry per synapse
+    final long[] synapseIds;
+    final long[] skelNodeIds;
+    final double[] distances;
+
+    SegmentSynapseAttachment(long synapseSetId, long bodyId, SynapseAttachment attachment, long[] synapseIds, long[] skelNodeIds, double[] distances) {
+        this.synapseSetId = synapseSetId;
+        this.bodyId = bodyId;
+        this.attachment = attachment;
+        this.synapseIds = synapseIds;
+        this.skelNodeIds = skelNodeIds;
+        this.distances = distances;
+    }
 }
 
 class DistanceHelper {
@@ -0,0 +1,13 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+public class CentralityResult {
+
+    public final Long bodyId;
+    public final Double score;
+
+    public CentralityResult(Long bodyId, Double score) {
+        this.bodyId = bodyId;
+        this.score = score;
+    }
+
+}
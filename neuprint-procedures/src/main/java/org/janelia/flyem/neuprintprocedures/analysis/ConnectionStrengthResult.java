@@ -0,0 +1,15 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+public class ConnectionStrengthResult {
+
+    public final Long bodyId;
+    public final Double inStrength;
+    public final Double outStrength;
+
+    public ConnectionStrengthResult(Long bodyId, Double inStrength, Double outStrength) {
+        this.bodyId = bodyId;
+        this.inStrength = inStrength;
+        this.outStrength = outStrength;
+    }
+
+}
@@ -0,0 +1,214 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BODY_ID;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONNECTS_TO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.STATUS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.WEIGHT;
+
+/**
+ * An in-memory projection of the ConnectsTo graph for a dataset. Neurons/segments are
+ * assigned dense indices and edges are stored in compressed sparse row form
+ * (one set of arrays for outgoing and one for incoming edges) so that whole-graph
+ * algorithms can run in parallel without touching the database.
+ */
+public class ConnectsToGraph {
+
+    private final long[] nodeIds;
+    private final long[] bodyIds;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final double[] outWeights;
+    private final long[] outRelationshipIds;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final double[] inWeights;
+    private final int[] inEdgeToOutEdge;
+    private final Map<Long, Integer> bodyIdToIndex;
+
+    private ConnectsToGraph(long[] nodeIds, long[] bodyIds, int[] outOffsets, int[] outTargets, double[] outWeights, long[] outRelationshipIds) {
+        this.nodeIds = nodeIds;
+        this.bodyIds = bodyIds;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        this.outRelationshipIds = outRelationshipIds;
+        this.bodyIdToIndex = new HashMap<>();
+        for (int i = 0; i < bodyIds.length; i++) {
+            this.bodyIdToIndex.put(bodyIds[i], i);
+        }
+
+        // transpose the outgoing arrays to get the incoming arrays
+        int nodeCount = nodeIds.length;
+        this.inOffsets = new int[nodeCount + 1];
+        for (int target : outTargets) {
+            this.inOffsets[target + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            this.inOffsets[i + 1] += this.inOffsets[i];
+        }
+        this.inSources = new int[outTargets.length];
+        this.inWeights = new double[outTargets.length];
+        this.inEdgeToOutEdge = new int[outTargets.length];
+        int[] insertPosition = Arrays.copyOf(this.inOffsets, nodeCount);
+        for (int source = 0; source < nodeCount; source++) {
+            for (int e = outOffsets[source]; e < outOffsets[source + 1]; e++) {
+                int position = insertPosition[outTargets[e]]++;
+                this.inSources[position] = source;
+                this.inWeights[position] = outWeights[e];
+                this.inEdgeToOutEdge[position] = e;
+            }
+        }
+    }
+
+    /**
+     * Builds a projection of the ConnectsTo graph for the given dataset. Only nodes with the label
+     * datasetLabel-nodeLabel are included, optionally restricted to those with the given status and/or
+     * with the given ROI property set to true. Only ConnectsTo relationships between included nodes
+     * with weight of at least minWeight are kept.
+     *
+     * @param dbService    database service (must be called within a transaction)
+     * @param datasetLabel dataset
+     * @param nodeLabel    label of nodes to include (e.g. Neuron or Segment)
+     * @param status       status to filter on (null or empty for no filter)
+     * @param roi          ROI to filter on (null or empty for no filter)
+     * @param minWeight    minimum ConnectsTo weight
+     * @return {@link ConnectsToGraph}
+     */
+    public static ConnectsToGraph fromDatabase(GraphDatabaseService dbService, String datasetLabel, String nodeLabel, String status, String roi, long minWeight) {
+
+        List<Node> nodeList = new ArrayList<>();
+        Map<Long, Integer> nodeIdToIndex = new HashMap<>();
+        try (ResourceIterator<Node> nodes = dbService.findNodes(Label.label(datasetLabel + "-" + nodeLabel))) {
+            while (nodes.hasNext()) {
+                Node node = nodes.next();
+                if (status != null && !status.isEmpty() && !status.equals(node.getProperty(STATUS, null))) {
+                    continue;
+                }
+                if (roi != null && !roi.isEmpty() && !node.hasProperty(roi)) {
+                    continue;
+                }
+                nodeIdToIndex.put(node.getId(), nodeList.size());
+                nodeList.add(node);
+            }
+        }
+
+        int nodeCount = nodeList.size();
+        long[] nodeIds = new long[nodeCount];
+        long[] bodyIds = new long[nodeCount];
+        int[] outOffsets = new int[nodeCount + 1];
+        int[] targets = new int[Math.max(16, nodeCount * 4)];
+        double[] weights = new double[targets.length];
+        long[] relationshipIds = new long[targets.length];
+        int edgeCount = 0;
+
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = nodeList.get(i);
+            nodeIds[i] = node.getId();
+            bodyIds[i] = ((Number) node.getProperty(BODY_ID)).longValue();
+            for (Relationship connectsTo : node.getRelationships(RelationshipType.withName(CONNECTS_TO), Direction.OUTGOING)) {
+                Integer target = nodeIdToIndex.get(connectsTo.getEndNodeId());
+                if (target == null) {
+                    continue;
+                }
+                long weight = ((Number) connectsTo.getProperty(WEIGHT, 0L)).longValue();
+                if (weight < minWeight) {
+                    continue;
+                }
+                if (edgeCount == targets.length) {
+                    targets = Arrays.copyOf(targets, edgeCount * 2);
+                    weights = Arrays.copyOf(weights, edgeCount * 2);
+                    relationshipIds = Arrays.copyOf(relationshipIds, edgeCount * 2);
+                }
+                targets[edgeCount] = target;
+                weights[edgeCount] = weight;
+                relationshipIds[edgeCount] = connectsTo.getId();
+                edgeCount++;
+            }
+            outOffsets[i + 1] = edgeCount;
+        }
+
+        return new ConnectsToGraph(nodeIds, bodyIds, outOffsets, Arrays.copyOf(targets, edgeCount), Arrays.copyOf(weights, edgeCount), Arrays.copyOf(relationshipIds, edgeCount));
+    }
+
+    public int getNodeCount() {
+        return nodeIds.length;
+    }
+
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * @return rough estimate of the heap used by the projection in bytes
+     */
+    public long estimateSize() {
+        long nodeCount = nodeIds.length;
+        long edgeCount = outTargets.length;
+        // node and body id arrays, both offset arrays, and about 64 bytes per entry of the body id map;
+        // per edge: target, weight and relationship id out, source, weight and edge index in
+        return 8 * nodeCount * 2 + 4 * (nodeCount + 1) * 2 + 64 * nodeCount + (4 + 8 + 8 + 4 + 8 + 4) * edgeCount;
+    }
+
+    public long getNodeId(int index) {
+        return nodeIds[index];
+    }
+
+    public long getBodyId(int index) {
+        return bodyIds[index];
+    }
+
+    /**
+     * @param bodyId body id
+     * @return the index for the body id, or -1 if the body is not in the projection
+     */
+    public int indexOfBodyId(long bodyId) {
+        return bodyIdToIndex.getOrDefault(bodyId, -1);
+    }
+
+    int[] getOutOffsets() {
+        return outOffsets;
+    }
+
+    int[] getOutTargets() {
+        return outTargets;
+    }
+
+    double[] getOutWeights() {
+        return outWeights;
+    }
+
+    long[] getOutRelationshipIds() {
+        return outRelationshipIds;
+    }
+
+    int[] getInOffsets() {
+        return inOffsets;
+    }
+
+    int[] getInSources() {
+        return inSources;
+    }
+
+    double[] getInWeights() {
+        return inWeights;
+    }
+
+    int[] getInEdgeToOutEdge() {
+        return inEdgeToOutEdge;
+    }
+
+}
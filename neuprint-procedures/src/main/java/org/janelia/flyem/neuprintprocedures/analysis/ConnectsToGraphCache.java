@@ -0,0 +1,117 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Caches unfiltered {@link ConnectsToGraph} projections (all ConnectsTo relationships with weight of at least 1)
+ * per dataset and node label. A cached projection is reused as long as the Meta node's lastDatabaseEdit
+ * property is unchanged; callers apply their own weight thresholds during traversal. Since lastDatabaseEdit only
+ * has a resolution of one second and is written after the edit commits, a projection may still refer to nodes or
+ * relationships that have just been deleted; callers that resolve ids from the projection should
+ * {@link #invalidate(String, String)} it and rebuild when that happens. Projections are evicted least recently
+ * used first once their estimated total size exceeds 1 GB.
+ */
+public class ConnectsToGraphCache {
+
+    private static final long MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final LinkedHashMap<String, CachedGraph> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytes;
+
+    /**
+     * Returns the cached projection for the dataset and label, building it if there is none or if the
+     * dataset has been edited since it was built. Must be called within a transaction.
+     *
+     * @param dbService    database service
+     * @param datasetLabel dataset
+     * @param nodeLabel    label of nodes to include (e.g. Neuron or Segment)
+     * @return {@link ConnectsToGraph}
+     */
+    public static ConnectsToGraph getGraph(GraphDatabaseService dbService, String datasetLabel, String nodeLabel) {
+        String key = getKey(datasetLabel, nodeLabel);
+        String version = DatasetVersion.get(dbService, datasetLabel);
+
+        synchronized (ConnectsToGraphCache.class) {
+            CachedGraph cachedGraph = CACHE.get(key);
+            if (version != null && cachedGraph != null && version.equals(cachedGraph.version)) {
+                return cachedGraph.graph;
+            }
+        }
+
+        ConnectsToGraph graph = ConnectsToGraph.fromDatabase(dbService, datasetLabel, nodeLabel, null, null, 1L);
+        if (version != null) {
+            long size = graph.estimateSize();
+            synchronized (ConnectsToGraphCache.class) {
+                remove(key);
+                if (size <= MAX_BYTES) {
+                    CACHE.put(key, new CachedGraph(version, graph, size));
+                    bytes += size;
+                    evictToLimit();
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Removes all cached projections for the dataset.
+     *
+     * @param datasetLabel dataset
+     */
+    public static synchronized void invalidate(String datasetLabel) {
+        Iterator<String> keys = CACHE.keySet().iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.startsWith(datasetLabel + ":")) {
+                bytes -= CACHE.get(key).size;
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the cached projection for the dataset and label, e.g. when it refers to a deleted node or relationship.
+     *
+     * @param datasetLabel dataset
+     * @param nodeLabel    label of nodes included in the projection
+     */
+    public static synchronized void invalidate(String datasetLabel, String nodeLabel) {
+        remove(getKey(datasetLabel, nodeLabel));
+    }
+
+    private static String getKey(String datasetLabel, String nodeLabel) {
+        return datasetLabel + ":" + nodeLabel;
+    }
+
+    private static void remove(String key) {
+        CachedGraph removed = CACHE.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+        }
+    }
+
+    private static void evictToLimit() {
+        Iterator<CachedGraph> iterator = CACHE.values().iterator();
+        while (bytes > MAX_BYTES && iterator.hasNext()) {
+            bytes -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    private static class CachedGraph {
+
+        private final String version;
+        private final ConnectsToGraph graph;
+        private final long size;
+
+        CachedGraph(String version, ConnectsToGraph graph, long size) {
+            this.version = version;
+            this.graph = graph;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getMetaNode;
+
+/**
+ * Version token for a dataset used to decide whether in-memory copies of dataset data are still current.
+ */
+public class DatasetVersion {
+
+    private static final String LAST_DATABASE_EDIT = "lastDatabaseEdit";
+
+    /**
+     * Returns a token built from the store id of the database and the Meta node's lastDatabaseEdit and
+     * roiInfo properties, or null if
+     * the dataset has no Meta node or no lastDatabaseEdit (in which case nothing should be cached).
+     * Must be called within a transaction.
+     *
+     * @param dbService    database service
+     * @param datasetLabel dataset
+     * @return version token or null
+     */
+    public static String get(GraphDatabaseService dbService, String datasetLabel) {
+        Node metaNode = getMetaNode(dbService, datasetLabel);
+        if (metaNode == null || !metaNode.hasProperty(LAST_DATABASE_EDIT)) {
+            return null;
+        }
+        // procedures receive a new service facade on each call, so the store id identifies the database
+        String storeId = dbService instanceof GraphDatabaseAPI ? ((GraphDatabaseAPI) dbService).storeId().toString() : "";
+        return storeId + ":" + metaNode.getProperty(LAST_DATABASE_EDIT).toString() + ":" + metaNode.getProperty(ROI_INFO, "").hashCode();
+    }
+
+}
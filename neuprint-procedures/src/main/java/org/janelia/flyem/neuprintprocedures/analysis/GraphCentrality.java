@@ -0,0 +1,221 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Whole-graph centrality measures computed in parallel over a {@link ConnectsToGraph}.
+ */
+public class GraphCentrality {
+
+    /**
+     * Weighted PageRank. Each node distributes its rank to its downstream partners in proportion to
+     * ConnectsTo weight; rank from nodes without outputs is spread evenly over all nodes.
+     *
+     * @param graph         {@link ConnectsToGraph}
+     * @param dampingFactor damping factor (typically 0.85)
+     * @param maxIterations maximum number of iterations
+     * @param tolerance     stop when the L1 change between iterations is below this value
+     * @return PageRank score per node index
+     */
+    public static double[] pageRank(ConnectsToGraph graph, double dampingFactor, int maxIterations, double tolerance) {
+        final int nodeCount = graph.getNodeCount();
+        if (nodeCount == 0) {
+            return new double[0];
+        }
+        final int[] inOffsets = graph.getInOffsets();
+        final int[] inSources = graph.getInSources();
+        final double[] inWeights = graph.getInWeights();
+        final double[] outStrength = outStrength(graph);
+
+        double[] rank = new double[nodeCount];
+        Arrays.fill(rank, 1.0D / nodeCount);
+        double[] nextRank = new double[nodeCount];
+        // contribution per unit of weight from each node, recomputed every iteration
+        final double[] contribution = new double[nodeCount];
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            final double[] currentRank = rank;
+            final double[] updatedRank = nextRank;
+
+            double danglingRank = IntStream.range(0, nodeCount).parallel()
+                    .mapToDouble(i -> {
+                        if (outStrength[i] > 0) {
+                            contribution[i] = currentRank[i] / outStrength[i];
+                            return 0.0D;
+                        } else {
+                            contribution[i] = 0.0D;
+                            return currentRank[i];
+                        }
+                    }).sum();
+
+            final double base = (1.0D - dampingFactor) / nodeCount + dampingFactor * danglingRank / nodeCount;
+
+            double change = IntStream.range(0, nodeCount).parallel()
+                    .mapToDouble(i -> {
+                        double sum = 0.0D;
+                        for (int e = inOffsets[i]; e < inOffsets[i + 1]; e++) {
+                            sum += contribution[inSources[e]] * inWeights[e];
+                        }
+                        updatedRank[i] = base + dampingFactor * sum;
+                        return Math.abs(updatedRank[i] - currentRank[i]);
+                    }).sum();
+
+            rank = updatedRank;
+            nextRank = currentRank;
+
+            if (change < tolerance) {
+                break;
+            }
+        }
+
+        return rank;
+    }
+
+    /**
+     * @param graph {@link ConnectsToGraph}
+     * @return sum of incoming ConnectsTo weights per node index
+     */
+    public static double[] inStrength(ConnectsToGraph graph) {
+        return strength(graph.getInOffsets(), graph.getInWeights(), graph.getNodeCount());
+    }
+
+    /**
+     * @param graph {@link ConnectsToGraph}
+     * @return sum of outgoing ConnectsTo weights per node index
+     */
+    public static double[] outStrength(ConnectsToGraph graph) {
+        return strength(graph.getOutOffsets(), graph.getOutWeights(), graph.getNodeCount());
+    }
+
+    private static double[] strength(int[] offsets, double[] weights, int nodeCount) {
+        double[] strength = new double[nodeCount];
+        IntStream.range(0, nodeCount).parallel().forEach(i -> {
+            double sum = 0.0D;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                sum += weights[e];
+            }
+            strength[i] = sum;
+        });
+        return strength;
+    }
+
+    /**
+     * Approximate betweenness centrality (Brandes' algorithm on unweighted directed paths) computed from a
+     * random sample of source nodes. Scores are scaled by nodeCount/sampleSize so that they estimate exact
+     * betweenness. If sampleSize is at least the number of nodes, all nodes are used as sources and the
+     * result is exact. Sources are processed in parallel, each worker accumulating into its own array.
+     *
+     * @param graph      {@link ConnectsToGraph}
+     * @param sampleSize number of source nodes to sample
+     * @param seed       random seed used to pick sources
+     * @return betweenness score per node index
+     */
+    public static double[] sampledBetweenness(ConnectsToGraph graph, int sampleSize, long seed) {
+        final int nodeCount = graph.getNodeCount();
+        final int[] sources = sampleSources(nodeCount, sampleSize, seed);
+        final int[] outOffsets = graph.getOutOffsets();
+        final int[] outTargets = graph.getOutTargets();
+
+        double[] betweenness = IntStream.of(sources).parallel()
+                .collect(() -> new BrandesWorkspace(nodeCount),
+                        (workspace, source) -> workspace.accumulate(source, outOffsets, outTargets),
+                        BrandesWorkspace::combine)
+                .centrality;
+
+        if (sources.length > 0 && sources.length < nodeCount) {
+            double scale = (double) nodeCount / sources.length;
+            for (int i = 0; i < nodeCount; i++) {
+                betweenness[i] *= scale;
+            }
+        }
+        return betweenness;
+    }
+
+    private static int[] sampleSources(int nodeCount, int sampleSize, long seed) {
+        int[] indices = IntStream.range(0, nodeCount).toArray();
+        if (sampleSize >= nodeCount) {
+            return indices;
+        }
+        // partial Fisher-Yates shuffle
+        Random random = new Random(seed);
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + random.nextInt(nodeCount - i);
+            int temp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = temp;
+        }
+        return Arrays.copyOf(indices, Math.max(sampleSize, 0));
+    }
+
+    private static class BrandesWorkspace {
+
+        private final double[] centrality;
+        private final int[] distance;
+        private final double[] pathCount;
+        private final double[] dependency;
+        private final int[] visitOrder;
+
+        BrandesWorkspace(int nodeCount) {
+            this.centrality = new double[nodeCount];
+            this.distance = new int[nodeCount];
+            this.pathCount = new double[nodeCount];
+            this.dependency = new double[nodeCount];
+            this.visitOrder = new int[nodeCount];
+            Arrays.fill(this.distance, -1);
+        }
+
+        void accumulate(int source, int[] outOffsets, int[] outTargets) {
+            // visitOrder doubles as the BFS queue
+            int head = 0;
+            int tail = 0;
+            visitOrder[tail++] = source;
+            distance[source] = 0;
+            pathCount[source] = 1.0D;
+
+            while (head < tail) {
+                int v = visitOrder[head++];
+                for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                    int w = outTargets[e];
+                    if (distance[w] < 0) {
+                        distance[w] = distance[v] + 1;
+                        visitOrder[tail++] = w;
+                    }
+                    if (distance[w] == distance[v] + 1) {
+                        pathCount[w] += pathCount[v];
+                    }
+                }
+            }
+
+            // walk back in reverse BFS order; predecessors are the upstream nodes one hop closer to the source
+            for (int i = tail - 1; i >= 0; i--) {
+                int w = visitOrder[i];
+                for (int e = outOffsets[w]; e < outOffsets[w + 1]; e++) {
+                    int x = outTargets[e];
+                    if (distance[x] == distance[w] + 1) {
+                        dependency[w] += pathCount[w] / pathCount[x] * (1.0D + dependency[x]);
+                    }
+                }
+                if (w != source) {
+                    centrality[w] += dependency[w];
+                }
+            }
+
+            // reset only the nodes that were touched
+            for (int i = 0; i < tail; i++) {
+                int v = visitOrder[i];
+                distance[v] = -1;
+                pathCount[v] = 0.0D;
+                dependency[v] = 0.0D;
+            }
+        }
+
+        void combine(BrandesWorkspace other) {
+            for (int i = 0; i < centrality.length; i++) {
+                centrality[i] += other.centrality[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import java.util.List;
+
+public class MotifCountResult {
+
+    public final String motif;
+    public final Long count;
+    public final List<List<Long>> examples;
+
+    public MotifCountResult(String motif, Long count, List<List<Long>> examples) {
+        this.motif = motif;
+        this.count = count;
+        this.examples = examples;
+    }
+
+}
@@ -0,0 +1,231 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Counts reciprocal pairs and connected 3-node motifs (the connected types of the directed triad census)
+ * among a set of nodes in a {@link ConnectsToGraph}. The subgraph induced by the node set is copied into
+ * sorted neighbour arrays; triangles are found by intersecting sorted neighbour lists and open triads by
+ * enumerating neighbour pairs around each center node. Centers are processed in parallel.
+ */
+public class MotifCounter {
+
+    public static final String MUTUAL = "mutual";
+    public static final String ASYMMETRIC = "asymmetric";
+
+    // triad census type names, indexed by TRIAD_TYPE_FOR_CODE - 1
+    static final String[] TRIAD_NAMES = {"003", "012", "102", "021D", "021U", "021C", "111D", "111U", "030T", "030C", "201", "120D", "120U", "120C", "210", "300"};
+
+    // maps a 6-bit code of the directed edges among (v, u, w) to a triad type:
+    // v->u 1, u->v 2, v->w 4, w->v 8, u->w 16, w->u 32
+    private static final int[] TRIAD_TYPE_FOR_CODE = {
+            1, 2, 2, 3, 2, 4, 6, 8, 2, 6, 5, 7, 3, 8, 7, 11, 2, 6, 4, 8, 5, 9, 9, 13, 6, 10, 9, 14, 7, 14, 12, 15,
+            2, 5, 6, 7, 6, 9, 10, 14, 4, 9, 9, 12, 8, 13, 14, 15, 3, 7, 8, 11, 7, 12, 14, 15, 8, 14, 13, 15, 11, 15, 15, 16};
+
+    // first connected triad type (021D)
+    private static final int FIRST_CONNECTED_TRIAD = 3;
+
+    private static final int MUTUAL_INDEX = 0;
+    private static final int ASYMMETRIC_INDEX = 1;
+
+    private final long[] bodyIds;
+    private final int[][] outNeighbors;
+    private final int[][] neighbors;
+
+    /**
+     * @param graph     {@link ConnectsToGraph}
+     * @param nodes     indices of the nodes to count motifs among
+     * @param minWeight minimum ConnectsTo weight for an edge to be included
+     */
+    public MotifCounter(ConnectsToGraph graph, int[] nodes, long minWeight) {
+        int[] subset = Arrays.stream(nodes).distinct().sorted().toArray();
+        int[] globalToLocal = new int[graph.getNodeCount()];
+        Arrays.fill(globalToLocal, -1);
+        for (int i = 0; i < subset.length; i++) {
+            globalToLocal[subset[i]] = i;
+        }
+
+        this.bodyIds = new long[subset.length];
+        this.outNeighbors = new int[subset.length][];
+        this.neighbors = new int[subset.length][];
+
+        int[] outOffsets = graph.getOutOffsets();
+        int[] outTargets = graph.getOutTargets();
+        double[] outWeights = graph.getOutWeights();
+        int[] inOffsets = graph.getInOffsets();
+        int[] inSources = graph.getInSources();
+        double[] inWeights = graph.getInWeights();
+
+        for (int i = 0; i < subset.length; i++) {
+            int v = subset[i];
+            bodyIds[i] = graph.getBodyId(v);
+            outNeighbors[i] = localNeighbors(v, i, outOffsets, outTargets, outWeights, globalToLocal, minWeight);
+            int[] in = localNeighbors(v, i, inOffsets, inSources, inWeights, globalToLocal, minWeight);
+            neighbors[i] = IntStream.concat(IntStream.of(outNeighbors[i]), IntStream.of(in)).distinct().sorted().toArray();
+        }
+    }
+
+    private static int[] localNeighbors(int v, int self, int[] offsets, int[] adjacent, double[] weights, int[] globalToLocal, long minWeight) {
+        return IntStream.range(offsets[v], offsets[v + 1])
+                .filter(e -> weights[e] >= minWeight)
+                .map(e -> globalToLocal[adjacent[e]])
+                .filter(local -> local >= 0 && local != self)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    private boolean hasEdge(int from, int to) {
+        return Arrays.binarySearch(outNeighbors[from], to) >= 0;
+    }
+
+    private boolean isAdjacent(int a, int b) {
+        return Arrays.binarySearch(neighbors[a], b) >= 0;
+    }
+
+    private int triadType(int v, int u, int w) {
+        int code = (hasEdge(v, u) ? 1 : 0)
+                | (hasEdge(u, v) ? 2 : 0)
+                | (hasEdge(v, w) ? 4 : 0)
+                | (hasEdge(w, v) ? 8 : 0)
+                | (hasEdge(u, w) ? 16 : 0)
+                | (hasEdge(w, u) ? 32 : 0);
+        return TRIAD_TYPE_FOR_CODE[code] - 1;
+    }
+
+    public int getNodeCount() {
+        return bodyIds.length;
+    }
+
+    /**
+     * @param maxExamples maximum number of example instances to keep per motif
+     * @return {@link Counts}
+     */
+    public Counts count(int maxExamples) {
+        return IntStream.range(0, bodyIds.length).parallel()
+                .collect(() -> new Counts(maxExamples), (counts, v) -> countAround(v, counts), Counts::combine);
+    }
+
+    private void countAround(int v, Counts counts) {
+        int[] vNeighbors = neighbors[v];
+
+        // dyads, counted from their lower endpoint
+        for (int u : vNeighbors) {
+            if (u > v) {
+                boolean forward = hasEdge(v, u);
+                boolean backward = hasEdge(u, v);
+                if (forward && backward) {
+                    counts.addDyad(MUTUAL_INDEX, bodyIds[v], bodyIds[u]);
+                } else if (forward) {
+                    counts.addDyad(ASYMMETRIC_INDEX, bodyIds[v], bodyIds[u]);
+                } else {
+                    counts.addDyad(ASYMMETRIC_INDEX, bodyIds[u], bodyIds[v]);
+                }
+            }
+        }
+
+        // triangles, counted once from their lowest node by intersecting sorted neighbour lists
+        for (int u : vNeighbors) {
+            if (u <= v) {
+                continue;
+            }
+            int[] uNeighbors = neighbors[u];
+            int i = 0;
+            int j = 0;
+            while (i < vNeighbors.length && j < uNeighbors.length) {
+                int a = vNeighbors[i];
+                int b = uNeighbors[j];
+                if (a < b) {
+                    i++;
+                } else if (b < a) {
+                    j++;
+                } else {
+                    if (a > u) {
+                        counts.addTriad(triadType(v, u, a), bodyIds[v], bodyIds[u], bodyIds[a]);
+                    }
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        // open triads, counted once from their center node
+        for (int i = 0; i < vNeighbors.length; i++) {
+            for (int j = i + 1; j < vNeighbors.length; j++) {
+                int u = vNeighbors[i];
+                int w = vNeighbors[j];
+                if (!isAdjacent(u, w)) {
+                    counts.addTriad(triadType(v, u, w), bodyIds[u], bodyIds[v], bodyIds[w]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return motif names in reporting order: dyads followed by the connected triad types
+     */
+    public static List<String> getMotifNames() {
+        List<String> names = new ArrayList<>();
+        names.add(MUTUAL);
+        names.add(ASYMMETRIC);
+        names.addAll(Arrays.asList(TRIAD_NAMES).subList(FIRST_CONNECTED_TRIAD, TRIAD_NAMES.length));
+        return names;
+    }
+
+    public static class Counts {
+
+        private final int maxExamples;
+        private final List<String> names = getMotifNames();
+        private final long[] counts;
+        private final List<List<List<Long>>> examples;
+
+        Counts(int maxExamples) {
+            this.maxExamples = maxExamples;
+            this.counts = new long[names.size()];
+            this.examples = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) {
+                this.examples.add(new ArrayList<>());
+            }
+        }
+
+        private void addDyad(int index, long a, long b) {
+            counts[index]++;
+            if (examples.get(index).size() < maxExamples) {
+                examples.get(index).add(Arrays.asList(a, b));
+            }
+        }
+
+        private void addTriad(int triadType, long a, long b, long c) {
+            int index = triadType - FIRST_CONNECTED_TRIAD + 2;
+            counts[index]++;
+            if (examples.get(index).size() < maxExamples) {
+                examples.get(index).add(Arrays.asList(a, b, c));
+            }
+        }
+
+        private void combine(Counts other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                List<List<Long>> motifExamples = examples.get(i);
+                for (List<Long> example : other.examples.get(i)) {
+                    if (motifExamples.size() >= maxExamples) {
+                        break;
+                    }
+                    motifExamples.add(example);
+                }
+            }
+        }
+
+        public long getCount(String motif) {
+            return counts[names.indexOf(motif)];
+        }
+
+        public List<List<Long>> getExamples(String motif) {
+            return examples.get(names.indexOf(motif));
+        }
+    }
+
+}
@@ -0,0 +1,336 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BODY_ID;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONNECTS_TO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.NEURON;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TYPE;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.WEIGHT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getMetaNode;
+
+/**
+ * Per-dataset index of neuron feature vectors for similarity search. Each Neuron is described by its
+ * input (post) and output (pre) synapse counts per ROI, each normalized to sum to 1, and optionally by
+ * its input and output ConnectsTo weight per partner type, hashed into a fixed number of buckets and
+ * normalized the same way. Queries scan the vectors in parallel blocks and keep a top-k per block.
+ * Indices are cached per dataset and rebuilt when the Meta node's lastDatabaseEdit or roiInfo changes, or after
+ * they are invalidated because a committed transaction touched the dataset.
+ */
+public class NeuronSimilarityIndex {
+
+    public static final String COSINE = "cosine";
+    public static final String EUCLIDEAN = "euclidean";
+
+    static final int PARTNER_TYPE_BUCKETS = 64;
+    private static final int BLOCK_SIZE = 1024;
+    private static final Type ROI_INFO_TYPE = new TypeToken<Map<String, SynapseCounter>>() {
+    }.getType();
+
+    private static final ConcurrentHashMap<String, CachedIndex> CACHE = new ConcurrentHashMap<>();
+
+    private final long[] bodyIds;
+    private final Map<Long, Integer> bodyIdToIndex;
+    private final int dimension;
+    private final float[] vectors;
+    private final float[] norms;
+
+    private NeuronSimilarityIndex(long[] bodyIds, int dimension, float[] vectors) {
+        this.bodyIds = bodyIds;
+        this.dimension = dimension;
+        this.vectors = vectors;
+        this.norms = new float[bodyIds.length];
+        this.bodyIdToIndex = new HashMap<>();
+        for (int i = 0; i < bodyIds.length; i++) {
+            this.bodyIdToIndex.put(bodyIds[i], i);
+            double sum = 0.0D;
+            for (int d = i * dimension; d < (i + 1) * dimension; d++) {
+                sum += vectors[d] * vectors[d];
+            }
+            this.norms[i] = (float) Math.sqrt(sum);
+        }
+    }
+
+    /**
+     * Returns the cached index for the dataset, building it if needed. Must be called within a transaction.
+     *
+     * @param dbService           database service
+     * @param datasetLabel        dataset
+     * @param includePartnerTypes whether to include partner type features
+     * @return {@link NeuronSimilarityIndex}
+     */
+    public static NeuronSimilarityIndex getIndex(GraphDatabaseService dbService, String datasetLabel, boolean includePartnerTypes) {
+        String key = datasetLabel + ":" + includePartnerTypes;
+        String version = DatasetVersion.get(dbService, datasetLabel);
+
+        CachedIndex cachedIndex = CACHE.get(key);
+        if (version != null && cachedIndex != null && version.equals(cachedIndex.version)) {
+            return cachedIndex.index;
+        }
+
+        NeuronSimilarityIndex index = fromDatabase(dbService, datasetLabel, includePartnerTypes);
+        if (version != null) {
+            CACHE.put(key, new CachedIndex(version, index));
+        }
+        return index;
+    }
+
+    /**
+     * Removes all cached indices for the dataset.
+     *
+     * @param datasetLabel dataset
+     */
+    public static void invalidate(String datasetLabel) {
+        CACHE.keySet().removeIf(key -> key.startsWith(datasetLabel + ":"));
+    }
+
+    static NeuronSimilarityIndex fromDatabase(GraphDatabaseService dbService, String datasetLabel, boolean includePartnerTypes) {
+
+        List<String> roiList = getRoiList(dbService, datasetLabel);
+        Map<String, Integer> roiToIndex = new HashMap<>();
+        for (int r = 0; r < roiList.size(); r++) {
+            roiToIndex.put(roiList.get(r), r);
+        }
+        int roiCount = roiList.size();
+        int dimension = 2 * roiCount + (includePartnerTypes ? 2 * PARTNER_TYPE_BUCKETS : 0);
+
+        Gson gson = new Gson();
+        List<Long> bodyIdList = new ArrayList<>();
+        float[] vectors = new float[Math.max(1, 1024 * dimension)];
+
+        try (ResourceIterator<Node> neurons = dbService.findNodes(Label.label(datasetLabel + "-" + NEURON))) {
+            while (neurons.hasNext()) {
+                Node neuron = neurons.next();
+                int offset = bodyIdList.size() * dimension;
+                if (offset + dimension > vectors.length) {
+                    vectors = Arrays.copyOf(vectors, Math.max(vectors.length * 2, offset + dimension));
+                }
+                bodyIdList.add(((Number) neuron.getProperty(BODY_ID)).longValue());
+
+                Map<String, SynapseCounter> roiInfo = gson.fromJson((String) neuron.getProperty(ROI_INFO, "{}"), ROI_INFO_TYPE);
+                if (roiInfo != null) {
+                    for (Map.Entry<String, SynapseCounter> entry : roiInfo.entrySet()) {
+                        Integer r = roiToIndex.get(entry.getKey());
+                        if (r != null) {
+                            vectors[offset + r] = entry.getValue().getPost();
+                            vectors[offset + roiCount + r] = entry.getValue().getPre();
+                        }
+                    }
+                }
+                normalize(vectors, offset, roiCount);
+                normalize(vectors, offset + roiCount, roiCount);
+
+                if (includePartnerTypes) {
+                    int inputOffset = offset + 2 * roiCount;
+                    int outputOffset = inputOffset + PARTNER_TYPE_BUCKETS;
+                    for (Relationship connectsTo : neuron.getRelationships(RelationshipType.withName(CONNECTS_TO), Direction.BOTH)) {
+                        Node partner = connectsTo.getOtherNode(neuron);
+                        Object type = partner.getProperty(TYPE, null);
+                        if (type == null || partner.equals(neuron)) {
+                            continue;
+                        }
+                        int bucket = Math.floorMod(type.hashCode(), PARTNER_TYPE_BUCKETS);
+                        float weight = ((Number) connectsTo.getProperty(WEIGHT, 0L)).floatValue();
+                        if (connectsTo.getEndNode().equals(neuron)) {
+                            vectors[inputOffset + bucket] += weight;
+                        } else {
+                            vectors[outputOffset + bucket] += weight;
+                        }
+                    }
+                    normalize(vectors, inputOffset, PARTNER_TYPE_BUCKETS);
+                    normalize(vectors, outputOffset, PARTNER_TYPE_BUCKETS);
+                }
+            }
+        }
+
+        long[] bodyIds = bodyIdList.stream().mapToLong(Long::longValue).toArray();
+        return new NeuronSimilarityIndex(bodyIds, dimension, Arrays.copyOf(vectors, bodyIds.length * dimension));
+    }
+
+    private static List<String> getRoiList(GraphDatabaseService dbService, String datasetLabel) {
+        Node metaNode = getMetaNode(dbService, datasetLabel);
+        if (metaNode == null || !metaNode.hasProperty(ROI_INFO)) {
+            return new ArrayList<>();
+        }
+        Map<String, SynapseCounter> roiInfoMap = new Gson().fromJson((String) metaNode.getProperty(ROI_INFO), ROI_INFO_TYPE);
+        return roiInfoMap.keySet().stream().sorted().collect(Collectors.toList());
+    }
+
+    private static void normalize(float[] vectors, int offset, int length) {
+        double sum = 0.0D;
+        for (int d = offset; d < offset + length; d++) {
+            sum += vectors[d];
+        }
+        if (sum > 0) {
+            for (int d = offset; d < offset + length; d++) {
+                vectors[d] /= sum;
+            }
+        }
+    }
+
+    public int size() {
+        return bodyIds.length;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public boolean contains(long bodyId) {
+        return bodyIdToIndex.containsKey(bodyId);
+    }
+
+    /**
+     * Finds the k neurons closest to the given neuron, excluding the neuron itself.
+     *
+     * @param bodyId body id of query neuron
+     * @param k      number of results
+     * @param metric "cosine" (1 - cosine similarity) or "euclidean"
+     * @return list of (bodyId, distance) in order of increasing distance
+     */
+    public List<SimilarNeuronResult> nearest(long bodyId, int k, String metric) {
+        final boolean cosine;
+        if (COSINE.equals(metric)) {
+            cosine = true;
+        } else if (EUCLIDEAN.equals(metric)) {
+            cosine = false;
+        } else {
+            throw new IllegalArgumentException("Unknown metric " + metric + ". Must be one of " + COSINE + " or " + EUCLIDEAN + ".");
+        }
+        final int query = bodyIdToIndex.getOrDefault(bodyId, -1);
+        if (query < 0 || k < 1) {
+            return new ArrayList<>();
+        }
+
+        int blockCount = (bodyIds.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        TopK topK = IntStream.range(0, blockCount).parallel()
+                .mapToObj(block -> {
+                    TopK blockTopK = new TopK(k);
+                    int end = Math.min((block + 1) * BLOCK_SIZE, bodyIds.length);
+                    for (int i = block * BLOCK_SIZE; i < end; i++) {
+                        if (i != query) {
+                            blockTopK.offer(i, cosine ? cosineDistance(query, i) : euclideanDistance(query, i));
+                        }
+                    }
+                    return blockTopK;
+                })
+                .reduce(new TopK(k), TopK::merge);
+
+        return topK.sorted().stream()
+                .map(entry -> new SimilarNeuronResult(bodyIds[entry.index], entry.distance))
+                .collect(Collectors.toList());
+    }
+
+    private double cosineDistance(int a, int b) {
+        if (norms[a] == 0 || norms[b] == 0) {
+            return 1.0D;
+        }
+        double dot = 0.0D;
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        for (int d = 0; d < dimension; d++) {
+            dot += vectors[offsetA + d] * vectors[offsetB + d];
+        }
+        return 1.0D - dot / (norms[a] * norms[b]);
+    }
+
+    private double euclideanDistance(int a, int b) {
+        double sum = 0.0D;
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        for (int d = 0; d < dimension; d++) {
+            double difference = vectors[offsetA + d] - vectors[offsetB + d];
+            sum += difference * difference;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static class TopK {
+
+        private final int k;
+        private final List<Entry> entries = new ArrayList<>();
+        private double worst = Double.POSITIVE_INFINITY;
+
+        TopK(int k) {
+            this.k = k;
+        }
+
+        void offer(int index, double distance) {
+            if (entries.size() < k) {
+                entries.add(new Entry(index, distance));
+                if (entries.size() == k) {
+                    worst = entries.stream().mapToDouble(e -> e.distance).max().orElse(Double.POSITIVE_INFINITY);
+                }
+            } else if (distance < worst) {
+                // replace the current worst entry
+                int worstPosition = 0;
+                for (int i = 1; i < entries.size(); i++) {
+                    if (entries.get(i).distance > entries.get(worstPosition).distance) {
+                        worstPosition = i;
+                    }
+                }
+                entries.set(worstPosition, new Entry(index, distance));
+                worst = entries.stream().mapToDouble(e -> e.distance).max().orElse(Double.POSITIVE_INFINITY);
+            }
+        }
+
+        TopK merge(TopK other) {
+            TopK merged = new TopK(k);
+            for (Entry entry : entries) {
+                merged.offer(entry.index, entry.distance);
+            }
+            for (Entry entry : other.entries) {
+                merged.offer(entry.index, entry.distance);
+            }
+            return merged;
+        }
+
+        List<Entry> sorted() {
+            entries.sort((a, b) -> Double.compare(a.distance, b.distance));
+            return entries;
+        }
+    }
+
+    private static class Entry {
+
+        private final int index;
+        private final double distance;
+
+        Entry(int index, double distance) {
+            this.index = index;
+            this.distance = distance;
+        }
+    }
+
+    private static class CachedIndex {
+
+        private final String version;
+        private final NeuronSimilarityIndex index;
+
+        CachedIndex(String version, NeuronSimilarityIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+
+}
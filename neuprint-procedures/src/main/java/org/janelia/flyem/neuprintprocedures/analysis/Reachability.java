@@ -0,0 +1,164 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Weighted reachability over a {@link ConnectsToGraph}. Runs a level-synchronous breadth-first search from a
+ * set of source nodes, expanding each frontier in parallel. For every node reached it records the hop distance
+ * and the strongest path weight, i.e. the largest bottleneck (minimum edge weight) over all shortest paths
+ * from any source.
+ */
+public class Reachability {
+
+    private static final int PARALLEL_FRONTIER_THRESHOLD = 1024;
+
+    public static final int DOWNSTREAM = 1;
+    public static final int UPSTREAM = 2;
+    public static final int BOTH = DOWNSTREAM | UPSTREAM;
+
+    private final int[] hops;
+    private final long[] strength;
+
+    private Reachability(int[] hops, long[] strength) {
+        this.hops = hops;
+        this.strength = strength;
+    }
+
+    /**
+     * @param direction "downstream", "upstream", or "both"
+     * @return DOWNSTREAM, UPSTREAM, BOTH, or -1 if the direction is not recognized
+     */
+    public static int parseDirection(String direction) {
+        if (direction == null) {
+            return -1;
+        }
+        switch (direction.toLowerCase()) {
+            case "downstream":
+            case "out":
+            case ">":
+                return DOWNSTREAM;
+            case "upstream":
+            case "in":
+            case "<":
+                return UPSTREAM;
+            case "both":
+            case "":
+                return BOTH;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @param graph     {@link ConnectsToGraph}
+     * @param sources   indices of source nodes
+     * @param direction DOWNSTREAM, UPSTREAM, or BOTH
+     * @param maxHops   maximum number of hops from a source
+     * @param minWeight minimum ConnectsTo weight for an edge to be traversed
+     * @return {@link Reachability}
+     */
+    public static Reachability fromSources(ConnectsToGraph graph, int[] sources, int direction, int maxHops, long minWeight) {
+
+        final int nodeCount = graph.getNodeCount();
+        final long[] visited = new long[(nodeCount + 63) >>> 6];
+        final int[] hops = new int[nodeCount];
+        final long[] strength = new long[nodeCount];
+        Arrays.fill(hops, -1);
+
+        int[] frontier = Arrays.stream(sources).distinct().toArray();
+        for (int source : frontier) {
+            visited[source >>> 6] |= 1L << source;
+            hops[source] = 0;
+            strength[source] = Long.MAX_VALUE;
+        }
+
+        for (int level = 1; level <= maxHops && frontier.length > 0; level++) {
+
+            final AtomicLongArray next = new AtomicLongArray(visited.length);
+            final AtomicLongArray nextStrength = new AtomicLongArray(nodeCount);
+
+            IntStream frontierStream = IntStream.of(frontier);
+            if (frontier.length >= PARALLEL_FRONTIER_THRESHOLD) {
+                frontierStream = frontierStream.parallel();
+            }
+            frontierStream.forEach(v -> {
+                if ((direction & DOWNSTREAM) != 0) {
+                    expand(v, strength[v], graph.getOutOffsets(), graph.getOutTargets(), graph.getOutWeights(), minWeight, visited, next, nextStrength);
+                }
+                if ((direction & UPSTREAM) != 0) {
+                    expand(v, strength[v], graph.getInOffsets(), graph.getInSources(), graph.getInWeights(), minWeight, visited, next, nextStrength);
+                }
+            });
+
+            // collect the next frontier from the bitset
+            int frontierSize = 0;
+            for (int word = 0; word < visited.length; word++) {
+                frontierSize += Long.bitCount(next.get(word));
+            }
+            int[] nextFrontier = new int[frontierSize];
+            int position = 0;
+            for (int word = 0; word < visited.length; word++) {
+                long bits = next.get(word);
+                visited[word] |= bits;
+                while (bits != 0) {
+                    int w = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    hops[w] = level;
+                    strength[w] = nextStrength.get(w);
+                    nextFrontier[position++] = w;
+                }
+            }
+            frontier = nextFrontier;
+        }
+
+        return new Reachability(hops, strength);
+    }
+
+    private static void expand(int v, long pathStrength, int[] offsets, int[] neighbors, double[] weights, long minWeight,
+                               long[] visited, AtomicLongArray next, AtomicLongArray nextStrength) {
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            long weight = (long) weights[e];
+            if (weight < minWeight) {
+                continue;
+            }
+            int w = neighbors[e];
+            if ((visited[w >>> 6] & (1L << w)) != 0) {
+                continue;
+            }
+            setBit(next, w);
+            long candidate = Math.min(pathStrength, weight);
+            long current = nextStrength.get(w);
+            while (candidate > current && !nextStrength.compareAndSet(w, current, candidate)) {
+                current = nextStrength.get(w);
+            }
+        }
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current = bits.get(word);
+        while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+            current = bits.get(word);
+        }
+    }
+
+    /**
+     * @param index node index
+     * @return hop distance from the nearest source, or -1 if the node was not reached
+     */
+    public int getHops(int index) {
+        return hops[index];
+    }
+
+    /**
+     * @param index node index
+     * @return strongest path weight from any source (Long.MAX_VALUE for sources)
+     */
+    public long getStrength(int index) {
+        return strength[index];
+    }
+
+}
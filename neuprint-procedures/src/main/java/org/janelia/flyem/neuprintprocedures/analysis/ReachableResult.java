@@ -0,0 +1,15 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+public class ReachableResult {
+
+    public final Long bodyId;
+    public final Long hops;
+    public final Long weight;
+
+    public ReachableResult(Long bodyId, Long hops, Long weight) {
+        this.bodyId = bodyId;
+        this.hops = hops;
+        this.weight = weight;
+    }
+
+}
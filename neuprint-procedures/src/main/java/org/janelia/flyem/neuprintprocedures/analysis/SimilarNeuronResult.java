@@ -0,0 +1,13 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+public class SimilarNeuronResult {
+
+    public final Long bodyId;
+    public final Double distance;
+
+    public SimilarNeuronResult(Long bodyId, Double distance) {
+        this.bodyId = bodyId;
+        this.distance = distance;
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+public class SkeletonMetricsResult {
+
+    public final Long bodyId;
+    public final Double cableLength;
+    public final Long branchPointCount;
+    public final Long tipCount;
+    public final Double maxPathLength;
+    public final Long strahlerOrder;
+
+    public SkeletonMetricsResult(Long bodyId, Double cableLength, Long branchPointCount, Long tipCount, Double maxPathLength, Long strahlerOrder) {
+        this.bodyId = bodyId;
+        this.cableLength = cableLength;
+        this.branchPointCount = branchPointCount;
+        this.tipCount = tipCount;
+        this.maxPathLength = maxPathLength;
+        this.strahlerOrder = strahlerOrder;
+    }
+
+}
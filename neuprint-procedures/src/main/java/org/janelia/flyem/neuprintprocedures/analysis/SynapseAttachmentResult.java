@@ -0,0 +1,17 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+public class SynapseAttachmentResult {
+
+    public final Long bodyId;
+    public final Long synapseCount;
+    public final Double meanDistance;
+    public final Long relationshipCount;
+
+    public SynapseAttachmentResult(Long bodyId, Long synapseCount, Double meanDistance, Long relationshipCount) {
+        this.bodyId = bodyId;
+        this.synapseCount = synapseCount;
+        this.meanDistance = meanDistance;
+        this.relationshipCount = relationshipCount;
+    }
+
+}
@@ -1,7 +1,10 @@
 package org.janelia.flyem.neuprintprocedures.analysis;
 
 import com.google.gson.annotations.SerializedName;
+import org.janelia.flyem.neuprintloadprocedures.CompactSkeleton;
+import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -53,6 +56,17 @@ public class SynapticConnectionEdge {
 
     private Long calculateCableDistance(final GraphDatabaseService dbService, final String datasetLabel, final Long bodyId) {
 
+        // compact skeletons are measured from their arrays without creating :SkelNodes
+        Node skeletonNode = GraphTraversalTools.getSkeleton(dbService, bodyId, datasetLabel);
+        if (skeletonNode != null && CompactSkeleton.isCompact(skeletonNode)) {
+            CompactSkeleton skeleton = CompactSkeleton.fromNode(skeletonNode);
+            Long[] startCentroid = this.source.getCentroidLocation();
+            Long[] endCentroid = this.target.getCentroidLocation();
+            int start = skeleton.nearestIndex(startCentroid[0], startCentroid[1], startCentroid[2]);
+            int end = skeleton.nearestIndex(endCentroid[0], endCentroid[1], endCentroid[2]);
+            return Math.round(skeleton.pathLength(start, end));
+        }
+
 
         Map<String, Object> parametersMap = new HashMap<>();
         parametersMap.put("x1", this.source.getCentroidLocation()[0]);
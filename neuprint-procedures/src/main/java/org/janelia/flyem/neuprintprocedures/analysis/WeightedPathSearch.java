@@ -0,0 +1,414 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Shortest path searches over the outgoing ConnectsTo edges of a {@link ConnectsToGraph}. Costs are derived
+ * from edge weights by a cost function (e.g. inverse weight so that strong connections are "short"), and
+ * edges below a minimum weight are ignored. Provides bidirectional Dijkstra and Yen's k-shortest loopless paths.
+ */
+public class WeightedPathSearch {
+
+    public static final String INVERSE_WEIGHT = "inverse";
+    public static final String HOPS = "hops";
+
+    private final ConnectsToGraph graph;
+    private final long minWeight;
+    private final boolean inverseWeight;
+
+    // search workspace, reused between searches
+    private final double[] forwardDistance;
+    private final double[] backwardDistance;
+    private final int[] forwardEdge;
+    private final int[] backwardEdge;
+    private final boolean[] forwardSettled;
+    private final boolean[] backwardSettled;
+    private final boolean[] removedNodes;
+    private final List<Integer> touched = new ArrayList<>();
+
+    /**
+     * @param graph        {@link ConnectsToGraph}
+     * @param minWeight    minimum ConnectsTo weight for an edge to be traversed
+     * @param costFunction "inverse" (cost of 1/weight) or "hops" (cost of 1 per edge)
+     */
+    public WeightedPathSearch(ConnectsToGraph graph, long minWeight, String costFunction) {
+        this.graph = graph;
+        this.minWeight = minWeight;
+        if (INVERSE_WEIGHT.equals(costFunction)) {
+            this.inverseWeight = true;
+        } else if (HOPS.equals(costFunction)) {
+            this.inverseWeight = false;
+        } else {
+            throw new IllegalArgumentException("Unknown cost function " + costFunction + ". Must be one of " + INVERSE_WEIGHT + " or " + HOPS + ".");
+        }
+        int nodeCount = graph.getNodeCount();
+        this.forwardDistance = new double[nodeCount];
+        this.backwardDistance = new double[nodeCount];
+        this.forwardEdge = new int[nodeCount];
+        this.backwardEdge = new int[nodeCount];
+        this.forwardSettled = new boolean[nodeCount];
+        this.backwardSettled = new boolean[nodeCount];
+        this.removedNodes = new boolean[nodeCount];
+        Arrays.fill(this.forwardDistance, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.backwardDistance, Double.POSITIVE_INFINITY);
+    }
+
+    private double cost(double weight) {
+        return inverseWeight ? 1.0D / weight : 1.0D;
+    }
+
+    /**
+     * @param source source node index
+     * @param target target node index
+     * @return the lowest cost path, or null if there is none
+     */
+    public IndexPath shortestPath(int source, int target) {
+        return bidirectionalDijkstra(source, target, Collections.emptySet());
+    }
+
+    /**
+     * Yen's algorithm for the k lowest cost loopless paths from source to target. Each spur path is found
+     * with bidirectional Dijkstra.
+     *
+     * @param source source node index
+     * @param target target node index
+     * @param k      number of paths
+     * @return up to k paths in order of increasing cost
+     */
+    public List<IndexPath> kShortestPaths(int source, int target, int k) {
+        List<IndexPath> paths = new ArrayList<>();
+        IndexPath shortest = shortestPath(source, target);
+        if (shortest == null || k < 1) {
+            return paths;
+        }
+        paths.add(shortest);
+
+        PriorityQueue<IndexPath> candidates = new PriorityQueue<>();
+        Set<List<Integer>> seen = new HashSet<>();
+        seen.add(shortest.edgeList());
+
+        while (paths.size() < k) {
+            IndexPath previous = paths.get(paths.size() - 1);
+
+            for (int spur = 0; spur < previous.nodes.length - 1; spur++) {
+                int spurNode = previous.nodes[spur];
+
+                // remove the next edge of every accepted path sharing this root
+                Set<Integer> removedEdges = new HashSet<>();
+                for (IndexPath path : paths) {
+                    if (path.nodes.length > spur + 1 && path.hasSameRoot(previous, spur)) {
+                        removedEdges.add(path.edges[spur]);
+                    }
+                }
+                // root nodes other than the spur node can't be revisited
+                for (int i = 0; i < spur; i++) {
+                    removedNodes[previous.nodes[i]] = true;
+                }
+
+                IndexPath spurPath = bidirectionalDijkstra(spurNode, target, removedEdges);
+
+                for (int i = 0; i < spur; i++) {
+                    removedNodes[previous.nodes[i]] = false;
+                }
+
+                if (spurPath != null) {
+                    IndexPath candidate = previous.root(spur, this).append(spurPath);
+                    if (seen.add(candidate.edgeList())) {
+                        candidates.add(candidate);
+                    }
+                }
+            }
+
+            if (candidates.isEmpty()) {
+                break;
+            }
+            paths.add(candidates.poll());
+        }
+
+        return paths;
+    }
+
+    private IndexPath bidirectionalDijkstra(int source, int target, Set<Integer> removedEdges) {
+        if (removedNodes[source] || removedNodes[target]) {
+            return null;
+        }
+        if (source == target) {
+            return new IndexPath(new int[]{source}, new int[0], 0.0D);
+        }
+
+        final int[] outOffsets = graph.getOutOffsets();
+        final int[] outTargets = graph.getOutTargets();
+        final double[] outWeights = graph.getOutWeights();
+        final int[] inOffsets = graph.getInOffsets();
+        final int[] inSources = graph.getInSources();
+        final double[] inWeights = graph.getInWeights();
+        final int[] inEdgeToOutEdge = graph.getInEdgeToOutEdge();
+
+        DoubleIntHeap forwardQueue = new DoubleIntHeap();
+        DoubleIntHeap backwardQueue = new DoubleIntHeap();
+        touch(source);
+        touch(target);
+        forwardDistance[source] = 0.0D;
+        forwardEdge[source] = -1;
+        backwardDistance[target] = 0.0D;
+        backwardEdge[target] = -1;
+        forwardQueue.push(0.0D, source);
+        backwardQueue.push(0.0D, target);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forwardQueue.peekKey() + backwardQueue.peekKey() >= best) {
+                break;
+            }
+
+            boolean forward = forwardQueue.size() <= backwardQueue.size();
+            DoubleIntHeap queue = forward ? forwardQueue : backwardQueue;
+            double distance = queue.peekKey();
+            int v = queue.pop();
+
+            double[] thisDistance = forward ? forwardDistance : backwardDistance;
+            double[] otherDistance = forward ? backwardDistance : forwardDistance;
+            boolean[] settled = forward ? forwardSettled : backwardSettled;
+            int[] predecessorEdge = forward ? forwardEdge : backwardEdge;
+
+            if (settled[v] || distance > thisDistance[v]) {
+                continue;
+            }
+            settled[v] = true;
+
+            int[] offsets = forward ? outOffsets : inOffsets;
+            int[] neighbors = forward ? outTargets : inSources;
+            double[] weights = forward ? outWeights : inWeights;
+
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (weights[e] < minWeight) {
+                    continue;
+                }
+                int edgeId = forward ? e : inEdgeToOutEdge[e];
+                int w = neighbors[e];
+                if (removedNodes[w] || removedEdges.contains(edgeId)) {
+                    continue;
+                }
+                double newDistance = distance + cost(weights[e]);
+                touch(w);
+                if (newDistance < thisDistance[w]) {
+                    thisDistance[w] = newDistance;
+                    predecessorEdge[w] = edgeId;
+                    queue.push(newDistance, w);
+                }
+                if (thisDistance[w] + otherDistance[w] < best) {
+                    best = thisDistance[w] + otherDistance[w];
+                    meetingNode = w;
+                }
+            }
+        }
+
+        IndexPath path = (meetingNode < 0) ? null : buildPath(source, target, meetingNode, best);
+        resetWorkspace();
+        return path;
+    }
+
+    private IndexPath buildPath(int source, int target, int meetingNode, double totalCost) {
+        List<Integer> nodes = new ArrayList<>();
+        List<Integer> edges = new ArrayList<>();
+        int v = meetingNode;
+        nodes.add(v);
+        while (v != source) {
+            int e = forwardEdge[v];
+            edges.add(e);
+            v = sourceOfEdge(e);
+            nodes.add(v);
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(edges);
+        v = meetingNode;
+        while (v != target) {
+            int e = backwardEdge[v];
+            edges.add(e);
+            v = graph.getOutTargets()[e];
+            nodes.add(v);
+        }
+        return new IndexPath(nodes.stream().mapToInt(Integer::intValue).toArray(), edges.stream().mapToInt(Integer::intValue).toArray(), totalCost);
+    }
+
+    private int sourceOfEdge(int edge) {
+        // binary search the outgoing offsets for the node owning this edge
+        int[] outOffsets = graph.getOutOffsets();
+        int low = 0;
+        int high = graph.getNodeCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (outOffsets[mid] <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void touch(int v) {
+        if (forwardDistance[v] == Double.POSITIVE_INFINITY && backwardDistance[v] == Double.POSITIVE_INFINITY) {
+            touched.add(v);
+        }
+    }
+
+    private void resetWorkspace() {
+        for (int v : touched) {
+            forwardDistance[v] = Double.POSITIVE_INFINITY;
+            backwardDistance[v] = Double.POSITIVE_INFINITY;
+            forwardSettled[v] = false;
+            backwardSettled[v] = false;
+        }
+        touched.clear();
+    }
+
+    ConnectsToGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * A path through a {@link ConnectsToGraph} as node indices and outgoing edge indices.
+     */
+    public static class IndexPath implements Comparable<IndexPath> {
+
+        private final int[] nodes;
+        private final int[] edges;
+        private final double cost;
+
+        IndexPath(int[] nodes, int[] edges, double cost) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.cost = cost;
+        }
+
+        public int[] getNodes() {
+            return nodes;
+        }
+
+        public int[] getEdges() {
+            return edges;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        private boolean hasSameRoot(IndexPath other, int spur) {
+            for (int i = 0; i <= spur; i++) {
+                if (other.nodes.length <= i || nodes[i] != other.nodes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private IndexPath root(int spur, WeightedPathSearch search) {
+            double rootCost = 0.0D;
+            double[] outWeights = search.getGraph().getOutWeights();
+            for (int i = 0; i < spur; i++) {
+                rootCost += search.cost(outWeights[edges[i]]);
+            }
+            return new IndexPath(Arrays.copyOf(nodes, spur + 1), Arrays.copyOf(edges, spur), rootCost);
+        }
+
+        private IndexPath append(IndexPath spurPath) {
+            int[] combinedNodes = Arrays.copyOf(nodes, nodes.length + spurPath.nodes.length - 1);
+            System.arraycopy(spurPath.nodes, 1, combinedNodes, nodes.length, spurPath.nodes.length - 1);
+            int[] combinedEdges = Arrays.copyOf(edges, edges.length + spurPath.edges.length);
+            System.arraycopy(spurPath.edges, 0, combinedEdges, edges.length, spurPath.edges.length);
+            return new IndexPath(combinedNodes, combinedEdges, cost + spurPath.cost);
+        }
+
+        private List<Integer> edgeList() {
+            List<Integer> edgeList = new ArrayList<>(edges.length);
+            for (int edge : edges) {
+                edgeList.add(edge);
+            }
+            return edgeList;
+        }
+
+        @Override
+        public int compareTo(IndexPath o) {
+            int compare = Double.compare(cost, o.cost);
+            return (compare != 0) ? compare : Integer.compare(edges.length, o.edges.length);
+        }
+    }
+
+    /**
+     * Binary min-heap of (double key, int value) pairs in primitive arrays. Stale entries are skipped by
+     * the caller rather than decreased in place.
+     */
+    private static class DoubleIntHeap {
+
+        private double[] keys = new double[64];
+        private int[] values = new int[64];
+        private int size = 0;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int top = values[0];
+            size--;
+            double key = keys[size];
+            int value = values[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return top;
+        }
+    }
+
+}
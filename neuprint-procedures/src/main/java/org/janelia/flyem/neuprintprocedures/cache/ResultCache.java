@@ -0,0 +1,207 @@
+package org.janelia.flyem.neuprintprocedures.cache;
+
+import org.janelia.flyem.neuprintprocedures.analysis.DatasetVersion;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded, least-recently-used cache for results of expensive read procedures and user functions.
+ * Entries are keyed by procedure name, dataset and arguments and are tagged with the dataset's version
+ * (see {@link DatasetVersion}); an entry is only returned while the version is unchanged. Entries for a
+ * dataset are also dropped when a committed transaction touches that dataset, which covers edits made within
+ * the same second as the last recorded lastDatabaseEdit; a result whose computation overlaps such an invalidation is
+ * returned but not cached. Result sizes are estimated on insertion and the
+ * least recently used entries are evicted once the estimated total exceeds the limit.
+ */
+public class ResultCache {
+
+    static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final ResultCache INSTANCE = new ResultCache(DEFAULT_MAX_BYTES);
+
+    private final LinkedHashMap<String, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // incremented by each invalidation of a dataset, so results computed across an invalidation are not cached
+    private final Map<String, Long> generations = new HashMap<>();
+    private long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached result for the procedure call if it is still current, otherwise computes, caches and
+     * returns it. Nothing is cached if the dataset has no version (no Meta node or no lastDatabaseEdit).
+     * Cached values are shared between callers and must not be modified. Must be called within a transaction.
+     *
+     * @param dbService    database service
+     * @param procedure    procedure or function name
+     * @param datasetLabel dataset
+     * @param arguments    remaining arguments of the call
+     * @param compute      computes the result on a miss
+     * @param <T>          result type
+     * @return result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrCompute(GraphDatabaseService dbService, String procedure, String datasetLabel, List<Object> arguments, Supplier<T> compute) {
+        String key = getKey(procedure, datasetLabel, arguments);
+        // read before the version, so that an invalidation after this point always prevents the insert below
+        long generation;
+        synchronized (this) {
+            generation = generations.getOrDefault(datasetLabel, 0L);
+        }
+        String version = DatasetVersion.get(dbService, datasetLabel);
+
+        if (version != null) {
+            synchronized (this) {
+                CachedResult cachedResult = entries.get(key);
+                if (cachedResult != null && version.equals(cachedResult.version)) {
+                    hits++;
+                    return (T) cachedResult.value;
+                }
+                if (cachedResult != null) {
+                    remove(key);
+                    invalidations++;
+                }
+            }
+        }
+
+        T value = compute.get();
+
+        synchronized (this) {
+            misses++;
+            if (version != null && value != null && generation == generations.getOrDefault(datasetLabel, 0L)) {
+                long size = estimateSize(key) + estimateSize(value);
+                if (size <= maxBytes) {
+                    CachedResult previous = entries.put(key, new CachedResult(datasetLabel, version, value, size));
+                    if (previous != null) {
+                        bytes -= previous.size;
+                    }
+                    bytes += size;
+                    evictToLimit();
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes all cached results for the dataset.
+     *
+     * @param datasetLabel dataset
+     */
+    public synchronized void invalidate(String datasetLabel) {
+        generations.merge(datasetLabel, 1L, Long::sum);
+        Iterator<CachedResult> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CachedResult cachedResult = iterator.next();
+            if (cachedResult.datasetLabel.equals(datasetLabel)) {
+                bytes -= cachedResult.size;
+                invalidations++;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        invalidations = 0;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evictToLimit();
+    }
+
+    public synchronized ResultCacheStatsResult getStats() {
+        return new ResultCacheStatsResult(hits, misses, evictions, invalidations, (long) entries.size(), bytes, maxBytes);
+    }
+
+    private void remove(String key) {
+        CachedResult removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+        }
+    }
+
+    private void evictToLimit() {
+        Iterator<CachedResult> iterator = entries.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().size;
+            evictions++;
+            iterator.remove();
+        }
+    }
+
+    static String getKey(String procedure, String datasetLabel, List<Object> arguments) {
+        return procedure + ":" + datasetLabel + ":" + arguments;
+    }
+
+    /**
+     * Rough estimate of the heap used by a result made of strings, numbers, booleans, arrays, collections and maps.
+     *
+     * @param value result
+     * @return estimated size in bytes
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 8;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        } else if (value instanceof long[]) {
+            return 16 + 8L * ((long[]) value).length;
+        } else if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            long size = 40;
+            for (Object element : (Collection<?>) value) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        } else {
+            return 64;
+        }
+    }
+
+    private static class CachedResult {
+
+        private final String datasetLabel;
+        private final String version;
+        private final Object value;
+        private final long size;
+
+        CachedResult(String datasetLabel, String version, Object value, long size) {
+            this.datasetLabel = datasetLabel;
+            this.version = version;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+}
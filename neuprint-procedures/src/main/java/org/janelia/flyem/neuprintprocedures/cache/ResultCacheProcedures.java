@@ -0,0 +1,37 @@
+package org.janelia.flyem.neuprintprocedures.cache;
+
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.stream.Stream;
+
+public class ResultCacheProcedures {
+
+    @Context
+    public Log log;
+
+    @Procedure(value = "neuprint.resultCacheStats", mode = Mode.READ)
+    @Description("neuprint.resultCacheStats() : hit, miss, eviction and invalidation counts for the analysis result cache along with its " +
+            "number of entries, estimated size in bytes and size limit. e.g. CALL neuprint.resultCacheStats() YIELD hits, misses RETURN hits, misses")
+    public Stream<ResultCacheStatsResult> resultCacheStats() {
+        return Stream.of(ResultCache.getInstance().getStats());
+    }
+
+    @Procedure(value = "neuprint.clearResultCache", mode = Mode.READ)
+    @Description("neuprint.clearResultCache(maxBytes=-1) : empties the analysis result cache and resets its counters. If maxBytes is positive, " +
+            "it becomes the new size limit. e.g. CALL neuprint.clearResultCache(536870912)")
+    public Stream<ResultCacheStatsResult> clearResultCache(@Name(value = "maxBytes", defaultValue = "-1") Long maxBytes) {
+        ResultCache resultCache = ResultCache.getInstance();
+        resultCache.clear();
+        if (maxBytes != null && maxBytes > 0) {
+            resultCache.setMaxBytes(maxBytes);
+            log.info("neuprint.clearResultCache: Set result cache limit to " + maxBytes + " bytes.");
+        }
+        return Stream.of(resultCache.getStats());
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.janelia.flyem.neuprintprocedures.cache;
+
+public class ResultCacheStatsResult {
+
+    public final Long hits;
+    public final Long misses;
+    public final Long evictions;
+    public final Long invalidations;
+    public final Long entries;
+    public final Long bytes;
+    public final Long maxBytes;
+
+    public ResultCacheStatsResult(Long hits, Long misses, Long evictions, Long invalidations, Long entries, Long bytes, Long maxBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+    }
+
+}
@@ -7,6 +7,7 @@ import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
 import org.janelia.flyem.neuprintloadprocedures.Location;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintprocedures.cache.ResultCache;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
@@ -21,6 +22,7 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.UserFunction;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
@@ -160,6 +162,13 @@ public class NeuPrintUserFunctions {
             throw new RuntimeException("Must provide body id and dataset");
         }
 
+        return ResultCache.getInstance().getOrCompute(dbService, "neuprint.getCategoriesOfConnections", dataset,
+                Collections.singletonList(bodyId),
+                () -> computeCategoriesOfConnections(bodyId, dataset));
+
+    }
+
+    private String computeCategoriesOfConnections(Long bodyId, String dataset) {
         Node neuron = getSegment(dbService, bodyId, dataset);
         if (neuron == null) {
             log.error("Body id does not exist in the dataset");
@@ -0,0 +1,299 @@
+package org.janelia.flyem.neuprintprocedures.meta;
+
+import com.google.gson.Gson;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_SYN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_SYN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_POST_COUNT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_PRE_COUNT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getMetaNode;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiInfoAsMap;
+
+/**
+ * Dataset-level synapse counts (totalPreCount, totalPostCount and roiInfo) of the Meta node. When the Meta node's
+ * deferMetaCounts property is true, writers record their changes as MetaDelta nodes instead of locking and rewriting
+ * the Meta node. Delta nodes are created and rolled back with the writing transaction and take no lock on the Meta
+ * node; they are folded into the Meta node periodically by the triggers extension or on demand with
+ * neuprint.foldMetaCounts. Exact totals are the stored values plus the pending deltas.
+ * <p>
+ * When the Meta node's triggerMetaCounts property is true, the transaction triggers also apply the synapse count
+ * changes of transactions that do not update the Meta node themselves (e.g. synapses created, deleted or moved between
+ * ROIs with plain Cypher). Such datasets should be loaded in bulk-load mode or have the property set after loading, since
+ * the loader's recounts would otherwise be added to the changes of its own batches. {@link #reconcile} recounts a
+ * dataset from scratch to correct any drift.
+ */
+public class MetaCounts {
+
+    public static final String META_DELTA = "MetaDelta";
+    public static final String DEFER_META_COUNTS = "deferMetaCounts";
+    public static final String TRIGGER_META_COUNTS = "triggerMetaCounts";
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * @param metaNode Meta node of a dataset
+     * @return true if changes to the dataset's synapse counts are recorded as MetaDelta nodes
+     */
+    public static boolean isDeferred(Node metaNode) {
+        return metaNode != null && Boolean.TRUE.equals(metaNode.getProperty(DEFER_META_COUNTS, false));
+    }
+
+    /**
+     * Records a change to the synapse counts of a dataset as a MetaDelta node in the current transaction.
+     *
+     * @param dbService           graph database service
+     * @param dataset             dataset name
+     * @param totalPreCountDelta  change in totalPreCount
+     * @param totalPostCountDelta change in totalPostCount
+     * @param roiInfoDelta        signed change in pre and post counts per ROI
+     */
+    public static void recordDelta(GraphDatabaseService dbService, String dataset, long totalPreCountDelta, long totalPostCountDelta, Map<String, SynapseCounter> roiInfoDelta) {
+        if (totalPreCountDelta == 0 && totalPostCountDelta == 0 && roiInfoDelta.isEmpty()) {
+            return;
+        }
+        Node deltaNode = dbService.createNode(Label.label(META_DELTA), Label.label(dataset + "-" + META_DELTA));
+        deltaNode.setProperty(DATASET, dataset);
+        deltaNode.setProperty(TOTAL_PRE_COUNT, totalPreCountDelta);
+        deltaNode.setProperty(TOTAL_POST_COUNT, totalPostCountDelta);
+        deltaNode.setProperty(ROI_INFO, GSON.toJson(roiInfoDelta));
+    }
+
+    /**
+     * Records a single synapse being added to (or removed from) an ROI as a MetaDelta node.
+     *
+     * @param dbService   graph database service
+     * @param dataset     dataset name
+     * @param roi         ROI name
+     * @param synapseType "pre" or "post"
+     * @param sign        1 for an addition, -1 for a removal
+     */
+    public static void recordRoiDelta(GraphDatabaseService dbService, String dataset, String roi, String synapseType, int sign) {
+        Map<String, SynapseCounter> roiInfoDelta = new HashMap<>();
+        roiInfoDelta.put(roi, synapseType.equals(PRE) ? new SynapseCounter(sign, 0) : new SynapseCounter(0, sign));
+        recordDelta(dbService, dataset, 0, 0, roiInfoDelta);
+    }
+
+    /**
+     * Folds all pending MetaDelta nodes of a dataset into its Meta node and deletes them. Takes a write lock on the
+     * Meta node for the rest of the current transaction.
+     *
+     * @param dbService graph database service
+     * @param dataset   dataset name
+     * @return number of MetaDelta nodes folded
+     */
+    public static long fold(GraphDatabaseService dbService, String dataset) {
+        Node metaNode = getMetaNode(dbService, dataset);
+        if (metaNode == null) {
+            return 0;
+        }
+        try (Transaction tx = dbService.beginTx()) {
+            tx.acquireWriteLock(metaNode);
+            tx.success();
+        }
+
+        PendingDeltas pending = new PendingDeltas();
+        try (ResourceIterator<Node> deltaNodes = dbService.findNodes(Label.label(dataset + "-" + META_DELTA))) {
+            while (deltaNodes.hasNext()) {
+                Node deltaNode = deltaNodes.next();
+                pending.add(deltaNode);
+                deltaNode.delete();
+            }
+        }
+
+        if (pending.count > 0) {
+            applyDelta(metaNode, pending.totalPreCount, pending.totalPostCount, pending.roiInfo);
+        }
+
+        return pending.count;
+    }
+
+    /**
+     * Adds a change in synapse counts to the values stored on a Meta node. The caller should hold a write lock on the
+     * Meta node.
+     *
+     * @param metaNode            Meta node of a dataset
+     * @param totalPreCountDelta  change in totalPreCount
+     * @param totalPostCountDelta change in totalPostCount
+     * @param roiInfoDelta        signed change in pre and post counts per ROI
+     */
+    public static void applyDelta(Node metaNode, long totalPreCountDelta, long totalPostCountDelta, Map<String, SynapseCounter> roiInfoDelta) {
+        if (totalPreCountDelta != 0 && metaNode.hasProperty(TOTAL_PRE_COUNT)) {
+            metaNode.setProperty(TOTAL_PRE_COUNT, ((Number) metaNode.getProperty(TOTAL_PRE_COUNT)).longValue() + totalPreCountDelta);
+        }
+        if (totalPostCountDelta != 0 && metaNode.hasProperty(TOTAL_POST_COUNT)) {
+            metaNode.setProperty(TOTAL_POST_COUNT, ((Number) metaNode.getProperty(TOTAL_POST_COUNT)).longValue() + totalPostCountDelta);
+        }
+        if (!roiInfoDelta.isEmpty() && metaNode.hasProperty(ROI_INFO)) {
+            metaNode.setProperty(ROI_INFO, applyRoiInfoDelta((String) metaNode.getProperty(ROI_INFO), roiInfoDelta));
+        }
+    }
+
+    /**
+     * Recounts the synapses of a dataset and overwrites the counts stored on its Meta node, deleting any pending
+     * MetaDelta nodes. The totals come from the label counts; the per-ROI counts of every ROI in the dataset's roiInfo
+     * (including ROIs only added by pending deltas) are counted in parallel, each in its own read transaction. A write
+     * lock is held on the Meta node from before the counts are taken, so proofreading procedures that update the Meta
+     * node wait for the reconcile; changes made meanwhile by other writers may be counted twice or not at all, so the
+     * reconcile is best run when the dataset is not being edited.
+     *
+     * @param dbService graph database service
+     * @param dataset   dataset name
+     * @param threads   number of counting threads
+     * @return reconciled {@link MetaCountsResult} or null if the dataset has no Meta node
+     */
+    public static MetaCountsResult reconcile(GraphDatabaseService dbService, String dataset, int threads) throws InterruptedException, ExecutionException {
+        Node metaNode = getMetaNode(dbService, dataset);
+        if (metaNode == null) {
+            return null;
+        }
+        try (Transaction tx = dbService.beginTx()) {
+            tx.acquireWriteLock(metaNode);
+            tx.success();
+        }
+
+        Set<String> rois = getRoiInfoAsMap(read(dbService, dataset).roiInfo).keySet();
+        String preSynLabel = dataset + "-" + PRE_SYN;
+        String postSynLabel = dataset + "-" + POST_SYN;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Map<String, SynapseCounter> roiInfo = new TreeMap<>();
+        long totalPreCount;
+        long totalPostCount;
+        try {
+            Future<Long> preCount = executor.submit(() -> countSynapses(dbService, preSynLabel, null));
+            Future<Long> postCount = executor.submit(() -> countSynapses(dbService, postSynLabel, null));
+            Map<String, Future<Long>> roiPreCounts = new HashMap<>();
+            Map<String, Future<Long>> roiPostCounts = new HashMap<>();
+            for (String roi : rois) {
+                roiPreCounts.put(roi, executor.submit(() -> countSynapses(dbService, preSynLabel, roi)));
+                roiPostCounts.put(roi, executor.submit(() -> countSynapses(dbService, postSynLabel, roi)));
+            }
+            totalPreCount = preCount.get();
+            totalPostCount = postCount.get();
+            for (String roi : rois) {
+                long roiPreCount = roiPreCounts.get(roi).get();
+                long roiPostCount = roiPostCounts.get(roi).get();
+                if (roiPreCount + roiPostCount > 0) {
+                    roiInfo.put(roi, new SynapseCounter(roiPreCount, roiPostCount));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ResourceIterator<Node> deltaNodes = dbService.findNodes(Label.label(dataset + "-" + META_DELTA))) {
+            while (deltaNodes.hasNext()) {
+                deltaNodes.next().delete();
+            }
+        }
+        metaNode.setProperty(TOTAL_PRE_COUNT, totalPreCount);
+        metaNode.setProperty(TOTAL_POST_COUNT, totalPostCount);
+        metaNode.setProperty(ROI_INFO, new RoiInfo(roiInfo).getAsJsonString());
+
+        return new MetaCountsResult(dataset, totalPreCount, totalPostCount, (String) metaNode.getProperty(ROI_INFO), 0L);
+    }
+
+    private static long countSynapses(GraphDatabaseService dbService, String synapseLabel, String roi) {
+        String query = roi == null ?
+                "MATCH (n:`" + synapseLabel + "`) RETURN count(n) AS count" :
+                "MATCH (n:`" + synapseLabel + "`) WHERE n.`" + roi + "` = true RETURN count(n) AS count";
+        try (Transaction tx = dbService.beginTx()) {
+            long count = (long) dbService.execute(query).next().get("count");
+            tx.success();
+            return count;
+        }
+    }
+
+    /**
+     * Reads the exact synapse counts of a dataset: the values stored on the Meta node combined with all pending
+     * MetaDelta nodes. Takes a read lock on the Meta node so that a concurrent fold is seen either entirely or not at all.
+     *
+     * @param dbService graph database service
+     * @param dataset   dataset name
+     * @return {@link MetaCountsResult} or null if the dataset has no Meta node
+     */
+    public static MetaCountsResult read(GraphDatabaseService dbService, String dataset) {
+        Node metaNode = getMetaNode(dbService, dataset);
+        if (metaNode == null) {
+            return null;
+        }
+        try (Transaction tx = dbService.beginTx()) {
+            tx.acquireReadLock(metaNode);
+            tx.success();
+        }
+
+        PendingDeltas pending = new PendingDeltas();
+        try (ResourceIterator<Node> deltaNodes = dbService.findNodes(Label.label(dataset + "-" + META_DELTA))) {
+            while (deltaNodes.hasNext()) {
+                pending.add(deltaNodes.next());
+            }
+        }
+
+        long totalPreCount = ((Number) metaNode.getProperty(TOTAL_PRE_COUNT, 0L)).longValue() + pending.totalPreCount;
+        long totalPostCount = ((Number) metaNode.getProperty(TOTAL_POST_COUNT, 0L)).longValue() + pending.totalPostCount;
+        String roiInfo = applyRoiInfoDelta((String) metaNode.getProperty(ROI_INFO, "{}"), pending.roiInfo);
+
+        return new MetaCountsResult(dataset, totalPreCount, totalPostCount, roiInfo, pending.count);
+    }
+
+    /**
+     * Applies signed per-ROI changes to an roiInfo. Counts do not drop below 0 and ROIs left with no synapses are removed,
+     * as when synapses are removed one at a time.
+     *
+     * @param roiInfoString roiInfo JSON
+     * @param roiInfoDelta  signed change in pre and post counts per ROI
+     * @return updated roiInfo JSON
+     */
+    static String applyRoiInfoDelta(String roiInfoString, Map<String, SynapseCounter> roiInfoDelta) {
+        Map<String, SynapseCounter> roiInfoMap = new TreeMap<>(getRoiInfoAsMap(roiInfoString));
+        for (Map.Entry<String, SynapseCounter> roiDelta : roiInfoDelta.entrySet()) {
+            SynapseCounter current = roiInfoMap.getOrDefault(roiDelta.getKey(), new SynapseCounter());
+            long pre = Math.max(0, current.getPre() + roiDelta.getValue().getPre());
+            long post = Math.max(0, current.getPost() + roiDelta.getValue().getPost());
+            if (pre + post == 0) {
+                roiInfoMap.remove(roiDelta.getKey());
+            } else {
+                roiInfoMap.put(roiDelta.getKey(), new SynapseCounter(pre, post));
+            }
+        }
+        return new RoiInfo(roiInfoMap).getAsJsonString();
+    }
+
+    private static class PendingDeltas {
+
+        private long count;
+        private long totalPreCount;
+        private long totalPostCount;
+        private final Map<String, SynapseCounter> roiInfo = new HashMap<>();
+
+        private void add(Node deltaNode) {
+            count++;
+            totalPreCount += ((Number) deltaNode.getProperty(TOTAL_PRE_COUNT, 0L)).longValue();
+            totalPostCount += ((Number) deltaNode.getProperty(TOTAL_POST_COUNT, 0L)).longValue();
+            Map<String, SynapseCounter> roiInfoDelta = getRoiInfoAsMap((String) deltaNode.getProperty(ROI_INFO, "{}"));
+            for (Map.Entry<String, SynapseCounter> roiDelta : roiInfoDelta.entrySet()) {
+                roiInfo.computeIfAbsent(roiDelta.getKey(), k -> new SynapseCounter()).add(roiDelta.getValue());
+            }
+        }
+    }
+
+}
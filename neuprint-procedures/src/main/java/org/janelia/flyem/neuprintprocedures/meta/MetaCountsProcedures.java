@@ -0,0 +1,76 @@
+package org.janelia.flyem.neuprintprocedures.meta;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.stream.Stream;
+
+public class MetaCountsProcedures {
+
+    @Context
+    public GraphDatabaseService dbService;
+
+    @Context
+    public Log log;
+
+    @Procedure(value = "neuprint.getMetaCounts", mode = Mode.READ)
+    @Description("neuprint.getMetaCounts(dataset) : exact totalPreCount, totalPostCount and roiInfo of a dataset, combining the values stored on the " +
+            "Meta node with changes recorded as MetaDelta nodes that have not been folded into it yet. " +
+            "e.g. CALL neuprint.getMetaCounts('mb6') YIELD totalPreCount, totalPostCount, roiInfo RETURN totalPreCount, totalPostCount, roiInfo")
+    public Stream<MetaCountsResult> getMetaCounts(@Name("dataset") final String dataset) {
+
+        if (dataset == null) {
+            log.error("neuprint.getMetaCounts: Missing input arguments.");
+            throw new RuntimeException("neuprint.getMetaCounts: Missing input arguments.");
+        }
+
+        MetaCountsResult metaCounts = MetaCounts.read(dbService, dataset);
+        if (metaCounts == null) {
+            log.error("Meta node not found for dataset: " + dataset);
+            throw new RuntimeException("Meta node not found for dataset: " + dataset);
+        }
+
+        return Stream.of(metaCounts);
+    }
+
+    @Procedure(value = "neuprint.foldMetaCounts", mode = Mode.WRITE)
+    @Description("neuprint.foldMetaCounts(dataset) : folds the pending MetaDelta nodes of a dataset into its Meta node and returns the resulting counts. " +
+            "Set deferMetaCounts to true on a Meta node to have proofreading procedures record synapse count changes as MetaDelta nodes instead of " +
+            "locking the Meta node; fold before setting it back to false. e.g. CALL neuprint.foldMetaCounts('mb6')")
+    public Stream<MetaCountsResult> foldMetaCounts(@Name("dataset") final String dataset) {
+
+        log.info("neuprint.foldMetaCounts: entry");
+
+        MetaCountsResult metaCounts;
+        try {
+
+            if (dataset == null) {
+                log.error("neuprint.foldMetaCounts: Missing input arguments.");
+                throw new RuntimeException("neuprint.foldMetaCounts: Missing input arguments.");
+            }
+
+            long folded = MetaCounts.fold(dbService, dataset);
+            log.info("neuprint.foldMetaCounts: Folded " + folded + " MetaDelta nodes into the Meta node for dataset " + dataset + ".");
+
+            metaCounts = MetaCounts.read(dbService, dataset);
+            if (metaCounts == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+
+        } catch (Exception e) {
+            log.error("Error running neuprint.foldMetaCounts: " + e);
+            throw new RuntimeException("Error running neuprint.foldMetaCounts: " + e);
+        }
+
+        log.info("neuprint.foldMetaCounts: exit");
+
+        return Stream.of(metaCounts);
+    }
+
+}
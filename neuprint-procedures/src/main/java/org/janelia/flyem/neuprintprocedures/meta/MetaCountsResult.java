@@ -0,0 +1,19 @@
+package org.janelia.flyem.neuprintprocedures.meta;
+
+public class MetaCountsResult {
+
+    public final String dataset;
+    public final Long totalPreCount;
+    public final Long totalPostCount;
+    public final String roiInfo;
+    public final Long pendingDeltas;
+
+    public MetaCountsResult(String dataset, Long totalPreCount, Long totalPostCount, String roiInfo, Long pendingDeltas) {
+        this.dataset = dataset;
+        this.totalPreCount = totalPreCount;
+        this.totalPostCount = totalPostCount;
+        this.roiInfo = roiInfo;
+        this.pendingDeltas = pendingDeltas;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
+import org.neo4j.graphdb.Node;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+
+/**
+ * Pending changes to a single ConnectionSet while synapses are moved between bodies: the ConnectionSet's roiInfo
+ * (updated synapse by synapse), the change in weight and weightHP of the corresponding ConnectsTo relationship, and
+ * the synapses that may no longer belong to the ConnectionSet once all moves have been made.
+ */
+class ConnectionSetChange {
+
+    private final Node connectionSet;
+    private final Node preSegment;
+    private final Node postSegment;
+    private final RoiInfoWithHighPrecisionCounts roiInfo;
+    private long weightDelta;
+    private long weightHPDelta;
+    private final Set<Node> removalCandidates = new LinkedHashSet<>();
+
+    ConnectionSetChange(Node connectionSet, Node preSegment, Node postSegment) {
+        this.connectionSet = connectionSet;
+        this.preSegment = preSegment;
+        this.postSegment = postSegment;
+        this.roiInfo = RoiInfoWithHighPrecisionCounts.getRoiInfoHPFromString((String) connectionSet.getProperty(ROI_INFO, "{}"));
+    }
+
+    Node getConnectionSet() {
+        return connectionSet;
+    }
+
+    Node getPreSegment() {
+        return preSegment;
+    }
+
+    Node getPostSegment() {
+        return postSegment;
+    }
+
+    RoiInfoWithHighPrecisionCounts getRoiInfo() {
+        return roiInfo;
+    }
+
+    void addToWeights(int[] postAndPostHP) {
+        weightDelta += postAndPostHP[0];
+        weightHPDelta += postAndPostHP[1];
+    }
+
+    void subtractFromWeights(int[] postAndPostHP) {
+        weightDelta -= postAndPostHP[0];
+        weightHPDelta -= postAndPostHP[1];
+    }
+
+    long getWeightDelta() {
+        return weightDelta;
+    }
+
+    long getWeightHPDelta() {
+        return weightHPDelta;
+    }
+
+    void addRemovalCandidate(Node synapse) {
+        removalCandidates.add(synapse);
+    }
+
+    Set<Node> getRemovalCandidates() {
+        return removalCandidates;
+    }
+}
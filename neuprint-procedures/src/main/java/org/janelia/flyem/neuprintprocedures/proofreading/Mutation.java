@@ -0,0 +1,103 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import com.google.gson.annotations.SerializedName;
+import org.janelia.flyem.neuprint.json.JsonUtils;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+
+/**
+ * A single entry of the mutation list passed to proofreader.applyMutations. The type names the
+ * proofreader procedure whose effect is applied; the remaining fields are the arguments for that type.
+ */
+public class Mutation {
+
+    static final String UPDATE_PROPERTIES = "updateProperties";
+    static final String ADD_NEURON = "addNeuron";
+    static final String DELETE_NEURON = "deleteNeuron";
+    static final String ADD_SYNAPSE = "addSynapse";
+    static final String ADD_CONNECTION_BETWEEN_SYNAPSE_NODES = "addConnectionBetweenSynapseNodes";
+    static final String ADD_SYNAPSE_TO_SEGMENT = "addSynapseToSegment";
+    static final String ORPHAN_SYNAPSE = "orphanSynapse";
+    static final String DELETE_SYNAPSE = "deleteSynapse";
+    static final String MOVE_SYNAPSE = "moveSynapse";
+
+    @SerializedName("type")
+    private String type;
+
+    @SerializedName("mutationUUID")
+    private String mutationUuid;
+
+    @SerializedName("mutationID")
+    private Long mutationId;
+
+    @SerializedName("bodyId")
+    private Long bodyId; // deleteNeuron, addSynapseToSegment, moveSynapse
+
+    @SerializedName("location")
+    private Location location; // synapse location for synapse mutations
+
+    @SerializedName("preLocation")
+    private Location preLocation; // addConnectionBetweenSynapseNodes
+
+    @SerializedName("postLocation")
+    private Location postLocation; // addConnectionBetweenSynapseNodes
+
+    @SerializedName("neuron")
+    private Neuron neuron; // updateProperties
+
+    @SerializedName("neuronAddition")
+    private NeuronAddition neuronAddition; // addNeuron
+
+    @SerializedName("synapse")
+    private Synapse synapse; // addSynapse
+
+    public String getType() {
+        return type;
+    }
+
+    public String getMutationUuid() {
+        return mutationUuid;
+    }
+
+    public Long getMutationId() {
+        return mutationId;
+    }
+
+    public Long getBodyId() {
+        return bodyId;
+    }
+
+    public Location getLocation() {
+        return location;
+    }
+
+    public Location getPreLocation() {
+        return preLocation;
+    }
+
+    public Location getPostLocation() {
+        return postLocation;
+    }
+
+    public Neuron getNeuron() {
+        return neuron;
+    }
+
+    public NeuronAddition getNeuronAddition() {
+        return neuronAddition;
+    }
+
+    public Synapse getSynapse() {
+        return synapse;
+    }
+
+    @Override
+    public String toString() {
+        return "Mutation{type=" + type + ", mutationUUID=" + mutationUuid + ", mutationID=" + mutationId + "}";
+    }
+
+    static Mutation fromJson(String mutationJson) {
+        return JsonUtils.GSON.fromJson(mutationJson, Mutation.class);
+    }
+}
@@ -0,0 +1,131 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE;
+
+/**
+ * Changes to the Meta node and to ConnectionSets that are collected while proofreading mutations are applied
+ * and written once at the end, so that a batch of mutations reads and writes the Meta node and recomputes
+ * each affected ConnectionSet only once.
+ */
+class MutationBatch {
+
+    private long totalPreCountDelta;
+    private long totalPostCountDelta;
+    // meta roiInfo changes in the order they were made; replayed on the stored roiInfo so that rois are dropped exactly as before
+    private final List<MetaRoiChange> metaRoiChanges = new ArrayList<>();
+    private final Set<Long> connectionSetIds = new LinkedHashSet<>();
+
+    void addSynapseToMetaCounts(String synapseType) {
+        if (synapseType.equals(PRE)) {
+            totalPreCountDelta++;
+        } else if (synapseType.equals(POST)) {
+            totalPostCountDelta++;
+        }
+    }
+
+    void removeSynapseFromMetaCounts(String synapseType) {
+        if (synapseType.equals(PRE)) {
+            totalPreCountDelta--;
+        } else if (synapseType.equals(POST)) {
+            totalPostCountDelta--;
+        }
+    }
+
+    void addSynapseToMetaRoiInfo(String roi, String synapseType) {
+        metaRoiChanges.add(new MetaRoiChange(roi, synapseType, true));
+    }
+
+    void removeSynapseFromMetaRoiInfo(String roi, String synapseType) {
+        metaRoiChanges.add(new MetaRoiChange(roi, synapseType, false));
+    }
+
+    void addConnectionSet(Node connectionSet) {
+        connectionSetIds.add(connectionSet.getId());
+    }
+
+    void addConnectionSets(Iterable<Node> connectionSets) {
+        for (Node connectionSet : connectionSets) {
+            addConnectionSet(connectionSet);
+        }
+    }
+
+    long getTotalPreCountDelta() {
+        return totalPreCountDelta;
+    }
+
+    long getTotalPostCountDelta() {
+        return totalPostCountDelta;
+    }
+
+    boolean hasMetaRoiInfoChanges() {
+        return !metaRoiChanges.isEmpty();
+    }
+
+    /**
+     * @param roiInfo roiInfo to which the collected Meta roiInfo changes are applied
+     */
+    void applyMetaRoiInfoChanges(RoiInfo roiInfo) {
+        for (MetaRoiChange change : metaRoiChanges) {
+            if (change.synapseType.equals(PRE)) {
+                if (change.isAddition) {
+                    roiInfo.incrementPreForRoi(change.roi);
+                } else {
+                    roiInfo.decrementPreForRoi(change.roi);
+                }
+            } else if (change.synapseType.equals(POST)) {
+                if (change.isAddition) {
+                    roiInfo.incrementPostForRoi(change.roi);
+                } else {
+                    roiInfo.decrementPostForRoi(change.roi);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return net signed change in pre and post counts per ROI, for recording as a MetaDelta node
+     */
+    Map<String, SynapseCounter> getMetaRoiInfoDelta() {
+        Map<String, SynapseCounter> roiInfoDelta = new HashMap<>();
+        for (MetaRoiChange change : metaRoiChanges) {
+            int sign = change.isAddition ? 1 : -1;
+            SynapseCounter counter = roiInfoDelta.computeIfAbsent(change.roi, k -> new SynapseCounter());
+            if (change.synapseType.equals(PRE)) {
+                counter.add(new SynapseCounter(sign, 0));
+            } else if (change.synapseType.equals(POST)) {
+                counter.add(new SynapseCounter(0, sign));
+            }
+        }
+        return roiInfoDelta;
+    }
+
+    Set<Long> getConnectionSetIds() {
+        return connectionSetIds;
+    }
+
+    private static class MetaRoiChange {
+
+        private final String roi;
+        private final String synapseType;
+        private final boolean isAddition;
+
+        MetaRoiChange(String roi, String synapseType, boolean isAddition) {
+            this.roi = roi;
+            this.synapseType = synapseType;
+            this.isAddition = isAddition;
+        }
+    }
+
+}
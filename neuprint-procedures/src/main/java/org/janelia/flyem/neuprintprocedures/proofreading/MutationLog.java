@@ -0,0 +1,83 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+
+/**
+ * The latest mutation id applied to a dataset for each DVID uuid, stored on one MutationLog node per dataset and uuid.
+ * Mutations that carry a uuid and id lock only the MutationLog node of their uuid, so they are serialized with each
+ * other without holding the Meta node. The Meta node is locked only to create the MutationLog node of a new uuid.
+ * Datasets written before MutationLog nodes existed recorded the latest mutation on the Meta node's uuid and
+ * latestMutationId properties, which are still honored when checking whether a mutation has been applied.
+ */
+public class MutationLog {
+
+    public static final String MUTATION_LOG = "MutationLog";
+    public static final String UUID = "uuid";
+    public static final String LATEST_MUTATION_ID = "latestMutationId";
+
+    /**
+     * Returns the MutationLog node of a uuid, creating it if needed, and takes a write lock on it for the rest of the
+     * current transaction.
+     *
+     * @param dbService graph database service
+     * @param metaNode  Meta node of the dataset
+     * @param dataset   dataset name
+     * @param uuid      DVID uuid
+     * @return locked MutationLog node
+     */
+    public static Node acquire(GraphDatabaseService dbService, Node metaNode, String dataset, String uuid) {
+        Node logNode = dbService.findNode(Label.label(dataset + "-" + MUTATION_LOG), UUID, uuid);
+        if (logNode == null) {
+            // creation is serialized on the Meta node so that concurrent writers of a new uuid share one node
+            acquireWriteLock(dbService, metaNode);
+            logNode = dbService.findNode(Label.label(dataset + "-" + MUTATION_LOG), UUID, uuid);
+            if (logNode == null) {
+                logNode = dbService.createNode(Label.label(MUTATION_LOG), Label.label(dataset + "-" + MUTATION_LOG));
+                logNode.setProperty(DATASET, dataset);
+                logNode.setProperty(UUID, uuid);
+            }
+        }
+        acquireWriteLock(dbService, logNode);
+        return logNode;
+    }
+
+    /**
+     * @param logNode    locked MutationLog node of the mutation's uuid
+     * @param metaNode   Meta node of the dataset
+     * @param mutationId mutation id
+     * @return true if a mutation with this id or a later one has already been applied for the uuid
+     */
+    public static boolean isApplied(Node logNode, Node metaNode, long mutationId) {
+        if (logNode.hasProperty(LATEST_MUTATION_ID) && mutationId <= ((Number) logNode.getProperty(LATEST_MUTATION_ID)).longValue()) {
+            return true;
+        }
+        return logNode.getProperty(UUID).equals(metaNode.getProperty(UUID, null))
+                && metaNode.hasProperty(LATEST_MUTATION_ID)
+                && mutationId <= ((Number) metaNode.getProperty(LATEST_MUTATION_ID)).longValue();
+    }
+
+    /**
+     * Records a mutation as applied.
+     *
+     * @param logNode    locked MutationLog node of the mutation's uuid
+     * @param mutationId mutation id
+     */
+    public static void record(Node logNode, long mutationId) {
+        if (!logNode.hasProperty(LATEST_MUTATION_ID) || mutationId > ((Number) logNode.getProperty(LATEST_MUTATION_ID)).longValue()) {
+            logNode.setProperty(LATEST_MUTATION_ID, mutationId);
+        }
+    }
+
+    private static void acquireWriteLock(GraphDatabaseService dbService, Node node) {
+        try (Transaction tx = dbService.beginTx()) {
+            tx.acquireWriteLock(node);
+            tx.success();
+        }
+    }
+
+}
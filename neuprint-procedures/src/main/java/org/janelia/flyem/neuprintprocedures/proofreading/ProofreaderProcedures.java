@@ -6,16 +6,23 @@ import org.janelia.flyem.neuprint.model.Neuron;
 import org.janelia.flyem.neuprint.model.SkelNode;
 import org.janelia.flyem.neuprint.model.Skeleton;
 import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprintloadprocedures.CompactSkeleton;
 import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
 import org.janelia.flyem.neuprintloadprocedures.Location;
+import org.janelia.flyem.neuprintloadprocedures.SkeletonMetrics;
+import org.janelia.flyem.neuprintloadprocedures.SynapseAttachment;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintprocedures.meta.MetaCounts;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.spatial.Point;
 import org.neo4j.logging.Log;
@@ -30,11 +37,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -87,92 +102,7 @@ public class ProofreaderProcedures {
             if (neuronNode == null) {
                 log.warn("Neuron with id " + neuron.getId() + " not found in database. Aborting update.");
             } else {
-
-                acquireWriteLockForNode(neuronNode);
-
-                boolean isNeuron = false;
-
-                if (neuron.getStatus() != null) {
-                    neuronNode.setProperty(STATUS, neuron.getStatus());
-                    // adding a status makes it a Neuron
-                    isNeuron = true;
-                    log.info("Updated status for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getName() != null) {
-                    neuronNode.setProperty(NAME, neuron.getName());
-                    // adding a name makes it a Neuron
-                    isNeuron = true;
-                    log.info("Updated name for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getInstance() != null) {
-                    neuronNode.setProperty(INSTANCE, neuron.getInstance());
-                    // adding an instance makes it a Neuron
-                    isNeuron = true;
-                    log.info("Updated instance for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getPrimaryNeurite() != null) {
-                    neuronNode.setProperty(PRIMARY_NEURITE, neuron.getPrimaryNeurite());
-                    isNeuron = true;
-                    log.info("Updated primaryNeurite for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getMajorInput() != null) {
-                    neuronNode.setProperty(MAJOR_INPUT, neuron.getMajorInput());
-                    isNeuron = true;
-                    log.info("Updated majorInput for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getMajorOutput() != null) {
-                    neuronNode.setProperty(MAJOR_OUTPUT, neuron.getMajorOutput());
-                    isNeuron = true;
-                    log.info("Updated majorOutput for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getClonalUnit() != null) {
-                    neuronNode.setProperty(CLONAL_UNIT, neuron.getClonalUnit());
-                    isNeuron = true;
-                    log.info("Updated clonalUnit for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getNeurotransmitter() != null) {
-                    neuronNode.setProperty(NEUROTRANSMITTER, neuron.getNeurotransmitter());
-                    isNeuron = true;
-                    log.info("Updated neurotransmitter for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getProperty() != null) {
-                    neuronNode.setProperty(PROPERTY, neuron.getProperty());
-                    isNeuron = true;
-                    log.info("Updated property for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getSize() != null) {
-                    neuronNode.setProperty(SIZE, neuron.getSize());
-                    log.info("Updated size for neuron " + neuron.getId() + ".");
-                }
-
-                if (neuron.getSoma() != null) {
-                    org.janelia.flyem.neuprint.model.Location somaLocation = neuron.getSoma().getLocation();
-                    Point somaLocationPoint = new Location(somaLocation.getX(), somaLocation.getY(), somaLocation.getZ());
-                    neuronNode.setProperty(SOMA_LOCATION, somaLocationPoint);
-                    neuronNode.setProperty(SOMA_RADIUS, neuron.getSoma().getRadius());
-                    log.info("Updated soma for neuron " + neuron.getId() + ".");
-
-                    //adding a soma makes it a Neuron
-                    isNeuron = true;
-                }
-
-                if (neuron.getType() != null) {
-                    neuronNode.setProperty(TYPE, neuron.getType());
-                    log.info("Updated type for neuron " + neuron.getId() + ".");
-                }
-
-                if (isNeuron) {
-                    convertSegmentToNeuron(neuronNode, datasetLabel, metaNode);
-                }
+                updateNeuronProperties(neuron, neuronNode, datasetLabel, metaNode);
             }
 
         } catch (Exception e) {
@@ -663,37 +593,6 @@ public class ProofreaderProcedures {
 
             NeuronAddition neuronAddition = JsonUtils.GSON.fromJson(neuronAdditionJson, NeuronAddition.class);
 
-            if (neuronAddition.getMutationUuid() == null || neuronAddition.getBodyId() == null) {
-                log.error("proofreader.addNeuron: body id and uuid are required fields in the neuron addition json.");
-                throw new RuntimeException("proofreader.addNeuron: body id and uuid are required fields in the neuron addition json.");
-            }
-
-            if (neuronAddition.getMutationId() == null) {
-                neuronAddition.setToInitialMutationId();
-            }
-
-            // check that this mutation hasn't been done before (in order to be unique, needs to include uuid+mutationid+bodyId)
-            String mutationKey = neuronAddition.getMutationUuid() + ":" + neuronAddition.getMutationId() + ":" + neuronAddition.getBodyId();
-            Node existingMutatedNode = dbService.findNode(Label.label(datasetLabel + "-" + SEGMENT), MUTATION_UUID_ID, mutationKey);
-            if (existingMutatedNode != null) {
-                log.error("Mutation already found in the database: " + neuronAddition.toString());
-                throw new RuntimeException("Mutation already found in the database: " + neuronAddition.toString());
-            }
-
-            log.info("Beginning addition: " + neuronAddition);
-            // create a new node and synapse set for that node
-            final long newNeuronBodyId = neuronAddition.getBodyId();
-            final Node newNeuron = dbService.createNode(Label.label(SEGMENT),
-                    Label.label(datasetLabel),
-                    Label.label(datasetLabel + "-" + SEGMENT));
-
-            try {
-                newNeuron.setProperty(BODY_ID, newNeuronBodyId);
-            } catch (org.neo4j.graphdb.ConstraintViolationException cve) {
-                log.error("Body id " + newNeuronBodyId + " already exists in database. Aborting addition for mutation with id : " + mutationKey);
-                throw new RuntimeException("Body id " + newNeuronBodyId + " already exists in database. Aborting addition for mutation with id : " + mutationKey);
-            }
-
             Node metaNode = GraphTraversalTools.getMetaNode(dbService, datasetLabel);
             if (metaNode == null) {
                 log.error("Meta node not found for dataset: " + datasetLabel);
@@ -702,184 +601,7 @@ public class ProofreaderProcedures {
             acquireWriteLockForNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
 
-            final Node newSynapseSet = createSynapseSetForSegment(newNeuron, datasetLabel);
-
-            // add appropriate synapses via synapse sets; add each synapse to the new body's synapseset
-            // completely add everything here so that there's nothing left on the synapse store
-            // add the new body id to the synapse sources
-
-            Set<Synapse> currentSynapses = neuronAddition.getCurrentSynapses();
-            long preCount = 0L;
-            long postCount = 0L;
-
-            if (currentSynapses != null) {
-                Set<Synapse> notFoundSynapses = new HashSet<>(currentSynapses);
-
-                // from synapses, derive connectsto, connection sets, rois/roiInfo, pre/post counts
-                final ConnectsToRelationshipMap connectsToRelationshipMap = new ConnectsToRelationshipMap();
-                final RoiInfo roiInfo = new RoiInfo();
-
-                for (Synapse synapse : currentSynapses) {
-
-                    // get the synapse by location
-                    org.janelia.flyem.neuprint.model.Location synapseLocation = synapse.getLocation();
-                    Point synapseLocationPoint = new Location(synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ());
-                    Node synapseNode = getSynapse(dbService, synapseLocationPoint, datasetLabel);
-
-                    if (synapseNode == null) {
-                        log.error("Synapse not found in database: " + synapse);
-                        throw new RuntimeException("Synapse not found in database: " + synapse);
-                    }
-
-                    if (synapseNode.hasRelationship(RelationshipType.withName(CONTAINS))) {
-                        Node bodyWithSynapse = getSegmentThatContainsSynapse(synapseNode);
-                        Long bodyWithSynapseId;
-                        try {
-                            bodyWithSynapseId = (Long) bodyWithSynapse.getProperty(BODY_ID);
-                        } catch (Exception e) {
-                            log.error("Error retrieving body ID from segment with Neo4j ID " + bodyWithSynapse.getId() + ": " + e);
-                            throw new RuntimeException("Error retrieving body ID from segment with Neo4j ID " + bodyWithSynapse.getId() + ": " + e);
-
-                        }
-                        log.error("Synapse is already assigned to another body. body id: " + bodyWithSynapseId + ", synapse: " + synapse);
-                        throw new RuntimeException("Synapse is already assigned to another body. body id: " + bodyWithSynapseId + ", synapse: " + synapse);
-                    }
-
-                    // add synapse to the new synapse set
-                    newSynapseSet.createRelationshipTo(synapseNode, RelationshipType.withName(CONTAINS));
-                    // remove this synapse from the not found set
-                    notFoundSynapses.remove(synapse);
-
-                    // get the synapse type
-                    String synapseType;
-                    if (synapseNode.hasProperty(TYPE)) {
-                        synapseType = (String) synapseNode.getProperty(TYPE);
-                    } else {
-                        log.error(String.format("Synapse at location [%d,%d,%d] does not have type property.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
-                        throw new RuntimeException(String.format("Synapse at location [%d,%d,%d] does not have type property.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
-                    }
-
-                    // get synapse rois for adding to the body and roiInfo
-                    final Set<String> synapseRois = getSynapseRois(synapseNode, metaNodeRoiSet);
-
-                    if (synapseType.equals(PRE)) {
-                        for (String roi : synapseRois) {
-                            roiInfo.incrementPreForRoi(roi);
-                        }
-                        preCount++;
-                    } else if (synapseType.equals(POST)) {
-                        for (String roi : synapseRois) {
-                            roiInfo.incrementPostForRoi(roi);
-                        }
-                        postCount++;
-                    } else {
-                        log.error(String.format("Synapse at location [%d,%d,%d] does not have type property equal to 'pre' or 'post'.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
-                        throw new RuntimeException(String.format("Synapse at location [%d,%d,%d] does not have type property equal to 'pre' or 'post'.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
-                    }
-
-                    if (synapseNode.hasRelationship(RelationshipType.withName(SYNAPSES_TO))) {
-                        for (Relationship synapticRelationship : synapseNode.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
-                            Node synapticPartner = synapticRelationship.getOtherNode(synapseNode);
-
-                            Node connectedSegment = getSegmentThatContainsSynapse(synapticPartner);
-
-                            if (connectedSegment != null) {
-                                if (synapseType.equals(PRE)) {
-                                    connectsToRelationshipMap.insertSynapsesIntoConnectsToRelationship(newNeuron, connectedSegment, synapseNode, synapticPartner);
-                                } else {
-                                    connectsToRelationshipMap.insertSynapsesIntoConnectsToRelationship(connectedSegment, newNeuron, synapticPartner, synapseNode);
-                                }
-                            }
-                        }
-                    }
-
-                }
-
-                if (!notFoundSynapses.isEmpty()) {
-                    log.error("Some synapses were not found for neuron addition. Mutation UUID: " + neuronAddition.getMutationUuid() + " Mutation ID: " + neuronAddition.getMutationId() + " Synapse(s): " + notFoundSynapses);
-                    throw new RuntimeException("Some synapses were not found for neuron addition. Mutation UUID: " + neuronAddition.getMutationUuid() + " Mutation ID: " + neuronAddition.getMutationId() + " Synapse(s): " + notFoundSynapses);
-                }
-
-                log.info("Found and added all synapses to synapse set for body id " + newNeuronBodyId);
-                log.info("Completed making map of ConnectsTo relationships.");
-
-                // add synapse and synaptic partners to connection set; set connectsto relationships
-                createConnectionSetsAndConnectsToRelationships(connectsToRelationshipMap, datasetLabel, metaNode, metaNodeRoiSet);
-                log.info("Completed creating ConnectionSets and ConnectsTo relationships.");
-
-                // add roi boolean properties and roi info
-                addRoiPropertiesToSegmentGivenSynapseCountsPerRoi(newNeuron, roiInfo);
-                newNeuron.setProperty(ROI_INFO, roiInfo.getAsJsonString());
-                log.info("Completed updating roi information.");
-
-            }
-            // set pre and post on body; other properties
-            newNeuron.setProperty(PRE, preCount);
-            newNeuron.setProperty(POST, postCount);
-            newNeuron.setProperty(SIZE, neuronAddition.getSize());
-            newNeuron.setProperty(MUTATION_UUID_ID, mutationKey);
-
-            // check for optional properties; add to neuron if present; decide if there should be a neuron label (has name, has soma, has pre+post>10)
-            boolean isNeuron = false;
-            if (neuronAddition.getStatus() != null) {
-                newNeuron.setProperty(STATUS, neuronAddition.getStatus());
-            }
-
-            if (neuronAddition.getName() != null) {
-                newNeuron.setProperty(NAME, neuronAddition.getName());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getInstance() != null) {
-                newNeuron.setProperty(INSTANCE, neuronAddition.getInstance());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getPrimaryNeurite() != null) {
-                newNeuron.setProperty(PRIMARY_NEURITE, neuronAddition.getPrimaryNeurite());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getMajorInput() != null) {
-                newNeuron.setProperty(MAJOR_INPUT, neuronAddition.getMajorInput());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getMajorOutput() != null) {
-                newNeuron.setProperty(MAJOR_OUTPUT, neuronAddition.getMajorOutput());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getClonalUnit() != null) {
-                newNeuron.setProperty(CLONAL_UNIT, neuronAddition.getClonalUnit());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getNeurotransmitter() != null) {
-                newNeuron.setProperty(NEUROTRANSMITTER, neuronAddition.getNeurotransmitter());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getProperty() != null) {
-                newNeuron.setProperty(PROPERTY, neuronAddition.getProperty());
-                isNeuron = true;
-            }
-
-            if (neuronAddition.getSoma() != null) {
-                newNeuron.setProperty(SOMA_RADIUS, neuronAddition.getSoma().getRadius());
-                org.janelia.flyem.neuprint.model.Location somaLocation = neuronAddition.getSoma().getLocation();
-                Point somaLocationPoint = new Location(somaLocation.getX(), somaLocation.getY(), somaLocation.getZ());
-                newNeuron.setProperty(SOMA_LOCATION, somaLocationPoint);
-                isNeuron = true;
-            }
-
-            if (preCount >= 2 || postCount >= 10) {
-                isNeuron = true;
-            }
-
-            if (isNeuron) {
-                convertSegmentToNeuron(newNeuron, datasetLabel, metaNode);
-            }
+            addNeuron(neuronAddition, datasetLabel, metaNode, metaNodeRoiSet);
 
             // update meta node
             metaNode.setProperty("latestMutationId", neuronAddition.getMutationId());
@@ -923,14 +645,16 @@ public class ProofreaderProcedures {
     }
 
     @Procedure(value = "proofreader.addSkeleton", mode = Mode.WRITE)
-    @Description("proofreader.addSkeleton(fileUrl,datasetLabel) : Load skeleton from provided URL and connect it to its associated Neuron/Segment. (Note: file URL must end with \"<bodyID>.swc\" or \"<bodyID>_swc\" where <bodyID> is the body ID of the Neuron/Segment) ")
-    public void addSkeleton(@Name("fileUrl") String fileUrlString, @Name("datasetLabel") String datasetLabel) {
+    @Description("proofreader.addSkeleton(fileUrl,datasetLabel,compact=false) : Load skeleton from provided URL and connect it to its associated Neuron/Segment. (Note: file URL must end with \"<bodyID>.swc\" or \"<bodyID>_swc\" where <bodyID> is the body ID of the Neuron/Segment) " +
+            "If compact is true, the skeleton is stored as array properties on the :Skeleton node and no :SkelNodes are created (see proofreader.createSkelNodes).")
+    public void addSkeleton(@Name("fileUrl") String fileUrlString, @Name("datasetLabel") String datasetLabel,
+                            @Name(value = "compact", defaultValue = "false") Boolean compact) {
 
         log.info("proofreader.addSkeleton: entry");
 
         try {
 
-            if (fileUrlString == null || datasetLabel == null) {
+            if (fileUrlString == null || datasetLabel == null || compact == null) {
                 log.error("proofreader.addSkeleton: Missing input arguments.");
                 throw new RuntimeException("proofreader.addSkeleton: Missing input arguments.");
             }
@@ -993,9 +717,20 @@ public class ProofreaderProcedures {
                     log.warn(String.format("proofreader.addSkeleton: Skeleton for body ID %d already exists in dataset %s. Aborting addSkeleton.", bodyId, datasetLabel));
                 } else {
 
-                    addSkeletonNodes(datasetLabel, skeleton, segment);
+                    CompactSkeleton compactSkeleton = toCompactSkeleton(skeleton);
+                    if (compact) {
+                        compactSkeleton.writeTo(createSkeletonNode(datasetLabel, skeleton, segment));
+                    } else {
+                        addSkeletonNodes(datasetLabel, skeleton, segment);
+                    }
+                    // keep the morphology metrics and synapse attachments of the segment in step with its skeleton
+                    SkeletonMetrics.compute(compactSkeleton).writeTo(segment);
+                    Node synapseSet = GraphTraversalTools.getSynapseSetForNeuron(segment);
+                    if (synapseSet != null && compactSkeleton.size() > 0) {
+                        SynapseAttachment.compute(compactSkeleton, GraphTraversalTools.getSkeleton(dbService, bodyId, datasetLabel), synapseSet).writeTo(synapseSet);
+                    }
 
-                    log.info("Successfully added Skeleton to body Id " + bodyId + ".");
+                    log.info("Successfully added " + (compact ? "compact " : "") + "Skeleton to body Id " + bodyId + ".");
                 }
                 log.info("Time to add skeleton:" + timer.stop());
                 timer.reset();
@@ -1032,13 +767,8 @@ public class ProofreaderProcedures {
 
                 acquireWriteLockForSegmentSubgraph(neuron);
 
-                Node skeleton = GraphTraversalTools.getSkeletonNodeForNeuron(neuron);
-
-                if (skeleton != null) {
-                    log.info("proofreader.deleteSkeleton: skeleton found for body id " + bodyId + ".");
-                    // delete neuron relationship to skeleton
-                    skeleton.getSingleRelationship(RelationshipType.withName(CONTAINS), Direction.INCOMING).delete();
-                    deleteSkeleton(skeleton);
+                if (deleteSkeletonOfSegment(neuron)) {
+                    log.info("proofreader.deleteSkeleton: deleted skeleton for body id " + bodyId + ".");
                 } else {
                     log.warn("proofreader.deleteSkeleton: no skeleton found for body id " + bodyId + ". Aborting deletion...");
                 }
@@ -1056,6 +786,125 @@ public class ProofreaderProcedures {
 
     }
 
+    @Procedure(value = "proofreader.createSkelNodes", mode = Mode.WRITE)
+    @Description("proofreader.createSkelNodes(bodyId,datasetLabel) : create the :SkelNodes and LinksTo relationships for the compact skeleton of the Neuron/Segment with provided body id. " +
+            "The array properties are kept on the :Skeleton node. SkelNodes that already exist are not duplicated.")
+    public void createSkelNodes(@Name("bodyId") Long bodyId, @Name("datasetLabel") String datasetLabel) {
+
+        log.info("proofreader.createSkelNodes: entry");
+
+        try {
+
+            if (bodyId == null || datasetLabel == null) {
+                log.error("proofreader.createSkelNodes: Missing input arguments.");
+                throw new RuntimeException("proofreader.createSkelNodes: Missing input arguments.");
+            }
+
+            Node neuron = GraphTraversalTools.getSegment(dbService, bodyId, datasetLabel);
+
+            if (neuron != null) {
+
+                acquireWriteLockForSegmentSubgraph(neuron);
+
+                Node skeleton = GraphTraversalTools.getSkeletonNodeForNeuron(neuron);
+
+                if (skeleton == null) {
+                    log.warn("proofreader.createSkelNodes: no skeleton found for body id " + bodyId + ".");
+                } else if (!CompactSkeleton.isCompact(skeleton)) {
+                    log.warn("proofreader.createSkelNodes: skeleton for body id " + bodyId + " is not compact and already has SkelNodes.");
+                } else {
+                    int created = createSkelNodesForCompactSkeleton(datasetLabel, bodyId, skeleton, CompactSkeleton.fromNode(skeleton));
+                    log.info("proofreader.createSkelNodes: created " + created + " SkelNodes for body id " + bodyId + ".");
+                }
+
+            } else {
+                log.warn("proofreader.createSkelNodes: body id " + bodyId + " not found.");
+            }
+
+        } catch (Exception e) {
+            log.error("Error running proofreader.createSkelNodes: " + e);
+            throw new RuntimeException("Error running proofreader.createSkelNodes: " + e);
+        }
+
+        log.info("proofreader.createSkelNodes: exit");
+
+    }
+
+    @Procedure(value = "proofreader.compactSkeletons", mode = Mode.WRITE)
+    @Description("proofreader.compactSkeletons(datasetLabel,batchSize=100) : convert every skeleton in the dataset that has :SkelNodes into array properties on its :Skeleton node and delete its :SkelNodes. " +
+            "Skeletons are converted in batches of batchSize, each committed in its own transaction.")
+    public void compactSkeletons(@Name("datasetLabel") String datasetLabel, @Name(value = "batchSize", defaultValue = "100") Long batchSize) {
+
+        log.info("proofreader.compactSkeletons: entry");
+
+        try {
+
+            if (datasetLabel == null || batchSize == null || batchSize < 1) {
+                log.error("proofreader.compactSkeletons: Missing input arguments.");
+                throw new RuntimeException("proofreader.compactSkeletons: Missing input arguments.");
+            }
+
+            List<List<Long>> batches = new ArrayList<>();
+            List<Long> batch = new ArrayList<>();
+            try (ResourceIterator<Node> skeletons = dbService.findNodes(Label.label(datasetLabel + "-" + SKELETON))) {
+                while (skeletons.hasNext()) {
+                    Node skeleton = skeletons.next();
+                    if (!CompactSkeleton.isCompact(skeleton)) {
+                        batch.add(skeleton.getId());
+                        if (batch.size() >= batchSize) {
+                            batches.add(batch);
+                            batch = new ArrayList<>();
+                        }
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+
+            long compacted = compactSkeletonBatches(batches);
+
+            log.info("proofreader.compactSkeletons: Compacted " + compacted + " skeletons in " + batches.size() + " batches.");
+
+        } catch (Exception e) {
+            log.error("Error running proofreader.compactSkeletons: " + e);
+            throw new RuntimeException("Error running proofreader.compactSkeletons: " + e);
+        }
+
+        log.info("proofreader.compactSkeletons: exit");
+
+    }
+
+    private long compactSkeletonBatches(List<List<Long>> batches) throws InterruptedException, ExecutionException {
+        // as for roi assignment, each batch is committed in its own top-level transaction
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        long compacted = 0;
+        try {
+            for (List<Long> batch : batches) {
+                Future<Integer> batchResult = executorService.submit(() -> {
+                    try (Transaction tx = dbService.beginTx()) {
+                        int batchCompacted = 0;
+                        for (Long skeletonId : batch) {
+                            Node skeleton = dbService.getNodeById(skeletonId);
+                            tx.acquireWriteLock(skeleton);
+                            if (!CompactSkeleton.isCompact(skeleton)) {
+                                CompactSkeleton.fromSkelNodes(skeleton).writeTo(skeleton);
+                                deleteSkelNodes(skeleton);
+                                batchCompacted++;
+                            }
+                        }
+                        tx.success();
+                        return batchCompacted;
+                    }
+                });
+                compacted += batchResult.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        return compacted;
+    }
+
     @Procedure(value = "proofreader.addRoiToSynapse", mode = Mode.WRITE)
     @Description("proofreader.addRoiToSynapse(x,y,z,roiName,dataset) : add an ROI to a synapse. ")
     public void addRoiToSynapse(@Name("x") final Double x, @Name("y") final Double y, @Name("z") final Double z, @Name("roiName") final String roiName, @Name("dataset") final String dataset) {
@@ -1077,7 +926,7 @@ public class ProofreaderProcedures {
             }
             Node metaNode = getMetaNode(dbService, dataset);
             if (metaNode != null) {
-                acquireWriteLockForNode(metaNode);
+                acquireWriteLockForMetaNodeCounts(metaNode);
             }
 
             if (synapse == null) {
@@ -1182,7 +1031,7 @@ public class ProofreaderProcedures {
             }
             Node metaNode = getMetaNode(dbService, dataset);
             if (metaNode != null) {
-                acquireWriteLockForNode(metaNode);
+                acquireWriteLockForMetaNodeCounts(metaNode);
             }
 
             if (synapse == null) {
@@ -1255,9 +1104,13 @@ public class ProofreaderProcedures {
                 }
 
                 // update meta node
-                String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO, "{}");
-                String roiInfoJsonString = removeSynapseFromRoiInfo(metaRoiInfoString, roiName, synapseType);
-                metaNode.setProperty(ROI_INFO, roiInfoJsonString);
+                if (MetaCounts.isDeferred(metaNode)) {
+                    MetaCounts.recordRoiDelta(dbService, dataset, roiName, synapseType, -1);
+                } else {
+                    String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO, "{}");
+                    String roiInfoJsonString = removeSynapseFromRoiInfo(metaRoiInfoString, roiName, synapseType);
+                    metaNode.setProperty(ROI_INFO, roiInfoJsonString);
+                }
 
             } else {
                 log.warn("proofreader.removeRoiFromSynapse: roi not present on synapse. Ignoring update request: " + synapse.getAllProperties());
@@ -1272,240 +1125,311 @@ public class ProofreaderProcedures {
 
     }
 
-    @Procedure(value = "proofreader.addSynapse", mode = Mode.WRITE)
-    @Description("proofreader.addSynapse(synapseJson, dataset) : Add a synapse node to the dataset specified by an input JSON (see https://github.com/connectome-neuprint/neuPrint/blob/master/graphupdateAPI.md). Will only add the Synapse node, not the connections to other Synapse nodes.")
-    public void addSynapse(@Name("synapseJson") final String synapseJson, @Name("dataset") final String dataset) {
+    @Procedure(value = "proofreader.setRoiForSynapses", mode = Mode.WRITE)
+    @Description("proofreader.setRoiForSynapses(roiName, locations, dataset, batchSize=10000, exclusive=false) : add an ROI to the synapses at the given [x,y,z] locations. " +
+            "The ROI is added to listed synapses that lack it. If exclusive is true, the listed synapses become exactly the synapses in the ROI: it is also removed from " +
+            "synapses in the dataset that have it but are not listed, which requires a scan of all synapses in the dataset. Changes are grouped by " +
+            "Neuron/Segment and committed in batches of about batchSize synapses; each batch updates the roiInfo of every affected Neuron/Segment and ConnectionSet " +
+            "and of the Meta node once. Locations with no synapse are logged and skipped. e.g. CALL proofreader.setRoiForSynapses('alpha1', [[4287,2277,1542],[4222,2402,1688]], 'mb6')")
+    public void setRoiForSynapses(@Name("roiName") final String roiName, @Name("locations") final List<List<Number>> locations, @Name("dataset") final String dataset,
+                                  @Name(value = "batchSize", defaultValue = "10000") final Long batchSize,
+                                  @Name(value = "exclusive", defaultValue = "false") final Boolean exclusive) {
 
-        log.info("proofreader.addSynapse: entry");
+        log.info("proofreader.setRoiForSynapses: entry");
 
         try {
 
-            if (synapseJson == null || dataset == null) {
-                log.error("proofreader.addSynapse: Missing input arguments.");
-                throw new RuntimeException("proofreader.addSynapse: Missing input arguments.");
+            if (roiName == null || locations == null || dataset == null || batchSize == null || batchSize < 1 || exclusive == null) {
+                log.error("proofreader.setRoiForSynapses: Missing input arguments.");
+                throw new RuntimeException("proofreader.setRoiForSynapses: Missing input arguments.");
             }
 
-            // get the meta node for updating
-            Node metaNode = getMetaNode(dbService, dataset);
-            if (metaNode != null) {
-                acquireWriteLockForNode(metaNode);
+            if (getMetaNode(dbService, dataset) == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
 
-            Synapse synapse = JsonUtils.GSON.fromJson(synapseJson, Synapse.class);
-
-            // add basic synapse labels
-            final Node newSynapseNode = dbService.createNode(
-                    Label.label(SYNAPSE),
-                    Label.label(dataset),
-                    Label.label(dataset + "-" + SYNAPSE));
+            // synapses that should be in the roi
+            Set<Long> listedSynapseIds = getSynapseIdsAtLocations(locations, dataset, "proofreader.setRoiForSynapses");
 
-            // add location
-            org.janelia.flyem.neuprint.model.Location synapseLocationList = synapse.getLocation();
-            Point synapseLocationPoint = new Location(synapseLocationList.getX(), synapseLocationList.getY(), synapseLocationList.getZ());
-
-            try {
-                newSynapseNode.setProperty(LOCATION, synapseLocationPoint);
-            } catch (org.neo4j.graphdb.ConstraintViolationException cve) {
-                log.error("Synapse with location " + synapseLocationList + " already exists in database. Aborting synapse addition.");
-                throw new RuntimeException("Synapse with location " + synapseLocationList + " already exists in database. Aborting synapse addition.");
-            }
-
-            // synapse must have type
-            if (synapse.getType() == null) {
-                log.error("Synapse with location " + synapseLocationList + " does not have a type specified. Aborting synapse addition.");
-                throw new RuntimeException("Synapse with location " + synapseLocationList + " does not have a type specified. Aborting synapse addition.");
-            }
-
-            // add PreSyn or PostSyn label and type property and increment counts on meta node
-            if (synapse.getType().equals(POST)) {
-                newSynapseNode.addLabel(Label.label(POST_SYN));
-                newSynapseNode.addLabel(Label.label(dataset + "-" + POST_SYN));
-                newSynapseNode.setProperty(TYPE, synapse.getType());
-                incrementMetaNodeTotalPostCount(metaNode);
-            } else if (synapse.getType().equals(PRE)) {
-                newSynapseNode.addLabel(Label.label(PRE_SYN));
-                newSynapseNode.addLabel(Label.label(dataset + "-" + PRE_SYN));
-                newSynapseNode.setProperty(TYPE, synapse.getType());
-                incrementMetaNodeTotalPreCount(metaNode);
-            } else {
-                log.error("Synapse type must be either 'pre' or 'post'. Was " + synapse.getType() + ". Aborting synapse addition.");
-                throw new RuntimeException("Synapse type must be either 'pre' or 'post'. Was " + synapse.getType() + ". Aborting synapse addition.");
+            // group the changes by containing segment so that each segment and its connection sets are touched by as few batches as possible
+            Map<Long, List<Long>> additionsBySegment = groupBySegment(listedSynapseIds, roiName, true);
+            Map<Long, List<Long>> removalsBySegment = new LinkedHashMap<>();
+            if (exclusive) {
+                dbService.findNodes(Label.label(dataset + "-" + SYNAPSE)).forEachRemaining(synapse -> {
+                    if (synapse.hasProperty(roiName) && !listedSynapseIds.contains(synapse.getId())) {
+                        removalsBySegment.computeIfAbsent(getContainingSegmentId(synapse), k -> new ArrayList<>()).add(synapse.getId());
+                    }
+                });
             }
 
-            // add confidence (default value will be 0.0)
-            newSynapseNode.setProperty(CONFIDENCE, synapse.getConfidence());
+            List<List<Long>> additionBatches = groupIntoBatches(additionsBySegment, batchSize.intValue());
+            List<List<Long>> removalBatches = groupIntoBatches(removalsBySegment, batchSize.intValue());
 
-            // add rois and update roiInfo on Meta node
-            for (String roi : synapse.getRois()) {
-                newSynapseNode.setProperty(roi, true);
-                addSynapseToMetaRoiInfo(metaNode, roi, synapse.getType());
-            }
+            long added = applyRoiAssignmentBatches(additionBatches, roiName, dataset, true);
+            long removed = applyRoiAssignmentBatches(removalBatches, roiName, dataset, false);
+
+            log.info("proofreader.setRoiForSynapses: Added " + roiName + " to " + added + " synapses and removed it from " + removed + " synapses in " +
+                    (additionBatches.size() + removalBatches.size()) + " batches. " + (locations.size() - listedSynapseIds.size()) + " locations had no synapse or were repeated.");
 
         } catch (Exception e) {
-            log.error("Error running proofreader.addSynapse: " + e);
-            throw new RuntimeException("Error running proofreader.addSynapse: " + e);
+            log.error("Error running proofreader.setRoiForSynapses: " + e);
+            throw new RuntimeException("Error running proofreader.setRoiForSynapses: " + e);
         }
 
-        log.info("proofreader.addSynapse: exit");
+        log.info("proofreader.setRoiForSynapses: exit");
 
     }
 
-    @Procedure(value = "proofreader.addConnectionBetweenSynapseNodes", mode = Mode.WRITE)
-    @Description("proofreader.addConnectionBetweenSynapseNodes(preX,preY,preZ,postX,postY,postZ,dataset) : Add a SynapsesTo relationship between two Synapse nodes. Both nodes must exist in the dataset, and neither can be currently owned by a Neuron/Segment.")
-    public void addConnectionBetweenSynapseNodes(@Name("preX") final Double preX, @Name("preY") final Double preY, @Name("preZ") final Double preZ, @Name("postX") final Double postX, @Name("postY") final Double postY, @Name("postZ") final Double postZ, @Name("dataset") final String dataset) {
+    @Procedure(value = "proofreader.removeRoiFromSynapses", mode = Mode.WRITE)
+    @Description("proofreader.removeRoiFromSynapses(roiName, locations, dataset, batchSize=10000) : remove an ROI from the synapses at the given [x,y,z] locations. Changes are grouped by " +
+            "Neuron/Segment and committed in batches of about batchSize synapses, as for proofreader.setRoiForSynapses. Locations with no synapse are logged and skipped. " +
+            "e.g. CALL proofreader.removeRoiFromSynapses('alpha1', [[4287,2277,1542],[4222,2402,1688]], 'mb6')")
+    public void removeRoiFromSynapses(@Name("roiName") final String roiName, @Name("locations") final List<List<Number>> locations, @Name("dataset") final String dataset,
+                                      @Name(value = "batchSize", defaultValue = "10000") final Long batchSize) {
 
-        log.info("proofreader.addConnectionBetweenSynapseNodes: entry");
+        log.info("proofreader.removeRoiFromSynapses: entry");
 
         try {
-            if (preX == null || preY == null || preZ == null || postX == null || postY == null || postZ == null || dataset == null) {
-                log.error("proofreader.addConnectionBetweenSynapseNodes: Missing input arguments.");
-                throw new RuntimeException("proofreader.addConnectionBetweenSynapseNodes: Missing input arguments.");
-            }
-
-            // acquire both synapse nodes
-            Node preSynapse = getSynapse(dbService, preX, preY, preZ, dataset);
-            Node postSynapse = getSynapse(dbService, postX, postY, postZ, dataset);
 
-            // error if synapses are not found
-            if (preSynapse == null) {
-                log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", preX, preY, preZ, dataset));
-                throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", preX, preY, preZ, dataset));
+            if (roiName == null || locations == null || dataset == null || batchSize == null || batchSize < 1) {
+                log.error("proofreader.removeRoiFromSynapses: Missing input arguments.");
+                throw new RuntimeException("proofreader.removeRoiFromSynapses: Missing input arguments.");
             }
-            if (postSynapse == null) {
-                log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", postX, postY, postZ, dataset));
-                throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", postX, postY, postZ, dataset));
-            }
-
-            acquireWriteLockForNode(preSynapse);
-            acquireWriteLockForNode(postSynapse);
 
-            // error if 1st location not pre or 2nd location not post
-            if (!preSynapse.hasLabel(Label.label(PRE_SYN))) {
-                log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a presynaptic density.", preX, preY, preZ));
-                throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a presynaptic density.", preX, preY, preZ));
-            }
-            if (!postSynapse.hasLabel(Label.label(POST_SYN))) {
-                log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a postsynaptic density.", postX, postY, postZ));
-                throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a postsynaptic density.", postX, postY, postZ));
+            if (getMetaNode(dbService, dataset) == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
 
-            // error if a synapse already belongs to a body
-            // TODO: may in the future add ability to connect to synapses that are already on a body
-            if (getSegmentThatContainsSynapse(preSynapse) != null) {
-                log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", preX, preY, preZ));
-                throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", preX, preY, preZ));
-            }
-            if (getSegmentThatContainsSynapse(postSynapse) != null) {
-                log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", postX, postY, postZ));
-                throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", postX, postY, postZ));
-            }
+            Set<Long> listedSynapseIds = getSynapseIdsAtLocations(locations, dataset, "proofreader.removeRoiFromSynapses");
+            List<List<Long>> removalBatches = groupIntoBatches(groupBySegment(listedSynapseIds, roiName, false), batchSize.intValue());
+            long removed = applyRoiAssignmentBatches(removalBatches, roiName, dataset, false);
 
-            // create connection between synapses
-            preSynapse.createRelationshipTo(postSynapse, RelationshipType.withName(SYNAPSES_TO));
+            log.info("proofreader.removeRoiFromSynapses: Removed " + roiName + " from " + removed + " synapses in " + removalBatches.size() + " batches. " +
+                    (locations.size() - listedSynapseIds.size()) + " locations had no synapse or were repeated.");
 
         } catch (Exception e) {
-            log.error("Error running proofreader.addConnectionBetweenSynapseNodes: " + e);
-            throw new RuntimeException("Error running proofreader.addConnectionBetweenSynapseNodes: " + e);
+            log.error("Error running proofreader.removeRoiFromSynapses: " + e);
+            throw new RuntimeException("Error running proofreader.removeRoiFromSynapses: " + e);
         }
 
-        log.info("proofreader.addConnectionBetweenSynapseNodes: exit");
+        log.info("proofreader.removeRoiFromSynapses: exit");
 
     }
 
-    @Procedure(value = "proofreader.addSynapseToSegment", mode = Mode.WRITE)
-    @Description("proofreader.addSynapseToSegment(x, y, z, bodyId, dataset) : Add an orphaned Synapse node to a Neuron/Segment. Synapse and Neuron/Segment must exist in the dataset.")
-    public void addSynapseToSegment(@Name("x") final Double x, @Name("y") final Double y, @Name("z") final Double z, @Name("bodyId") Long bodyId, @Name("dataset") final String dataset) {
-
-        log.info("proofreader.addSynapseToSegment: entry");
-
-        try {
-            if (x == null || y == null || z == null || bodyId == null || dataset == null) {
-                log.error("proofreader.addSynapseToSegment: Missing input arguments.");
-                throw new RuntimeException("proofreader.addSynapseToSegment: Missing input arguments.");
+    private Set<Long> getSynapseIdsAtLocations(List<List<Number>> locations, String dataset, String procedureName) {
+        Set<Long> synapseIds = new HashSet<>();
+        for (List<Number> location : locations) {
+            if (location == null || location.size() != 3) {
+                log.error(procedureName + ": Locations must be lists of 3 coordinates: " + location);
+                throw new RuntimeException(procedureName + ": Locations must be lists of 3 coordinates: " + location);
             }
-            // acquire the synapse node
-            Node synapse = getSynapse(dbService, x, y, z, dataset);
-
-            // error if synapse not found
+            Node synapse = getSynapse(dbService, new Location(location.get(0).longValue(), location.get(1).longValue(), location.get(2).longValue()), dataset);
             if (synapse == null) {
-                log.error(String.format("proofreader.addSynapseToSegment: No synapse with location [%f,%f,%f] in dataset %s.", x, y, z, dataset));
-                throw new RuntimeException(String.format("proofreader.addSynapseToSegment: No synapse with location [%f,%f,%f] in dataset %s.", x, y, z, dataset));
+                log.warn(procedureName + ": No synapse found at location: " + location);
+            } else {
+                synapseIds.add(synapse.getId());
             }
-            acquireWriteLockForNode(synapse);
+        }
+        return synapseIds;
+    }
 
-            String synapseType;
-            if (synapse.hasProperty(TYPE)) {
-                synapseType = (String) synapse.getProperty(TYPE);
-            } else {
-                log.error(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
-                throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
+    private Map<Long, List<Long>> groupBySegment(Set<Long> synapseIds, String roiName, boolean isAddition) {
+        // only synapses whose roi property changes
+        Map<Long, List<Long>> synapseIdsBySegment = new LinkedHashMap<>();
+        for (Long synapseId : synapseIds) {
+            Node synapse = dbService.getNodeById(synapseId);
+            if (synapse.hasProperty(roiName) != isAddition) {
+                synapseIdsBySegment.computeIfAbsent(getContainingSegmentId(synapse), k -> new ArrayList<>()).add(synapseId);
             }
-            if (!synapseType.equals(PRE) && !synapseType.equals(POST)) {
-                log.error(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
-                throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
+        }
+        return synapseIdsBySegment;
+    }
+
+    private static Long getContainingSegmentId(Node synapse) {
+        Node segment = GraphTraversalTools.getSegmentThatContainsSynapse(synapse);
+        return segment == null ? null : segment.getId();
+    }
+
+    private static List<List<Long>> groupIntoBatches(Map<Long, List<Long>> synapseIdsBySegment, int batchSize) {
+        List<List<Long>> batches = new ArrayList<>();
+        List<Long> batch = new ArrayList<>();
+        for (List<Long> segmentSynapseIds : synapseIdsBySegment.values()) {
+            for (Long synapseId : segmentSynapseIds) {
+                batch.add(synapseId);
+                if (batch.size() >= batchSize) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                }
             }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
 
-            Node segment = getSegment(dbService, bodyId, dataset);
-            //error if segment not found
-            if (segment == null) {
-                log.error(String.format("proofreader.addSynapseToSegment: No neuron/segment with body ID %d in dataset %s.", bodyId, dataset));
-                throw new RuntimeException(String.format("proofreader.addSynapseToSegment: No neuron/segment with body ID %d in dataset %s.", bodyId, dataset));
+    private long applyRoiAssignmentBatches(List<List<Long>> batches, String roiName, String dataset, boolean isAddition) throws InterruptedException, ExecutionException {
+        // each batch is committed in its own top-level transaction on a separate thread, so that a large reassignment
+        // neither holds every change in one transaction nor keeps segments and the Meta node locked until the end
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        long changed = 0;
+        try {
+            for (List<Long> batch : batches) {
+                Future<Integer> batchResult = executorService.submit(() -> {
+                    try (Transaction tx = dbService.beginTx()) {
+                        int batchChanged = applyRoiAssignmentBatch(tx, batch, roiName, dataset, isAddition);
+                        tx.success();
+                        return batchChanged;
+                    }
+                });
+                changed += batchResult.get();
             }
-            acquireWriteLockForSegmentSubgraph(segment);
+        } finally {
+            executorService.shutdown();
+        }
+        return changed;
+    }
 
-            // acquire meta node for updating
-            Node metaNode = getMetaNode(dbService, dataset);
-            if (metaNode == null) {
-                log.error("Meta node not found for dataset: " + dataset);
-                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+    private int applyRoiAssignmentBatch(Transaction tx, List<Long> synapseIds, String roiName, String dataset, boolean isAddition) {
+
+        Node metaNode = getMetaNode(dbService, dataset);
+        RoiAssignmentBatch roiAssignmentBatch = new RoiAssignmentBatch(roiName, getPreAndPostHPThresholdFromMetaNode(metaNode));
+        Set<Node> lockedSegments = new HashSet<>();
+        int changed = 0;
+
+        for (Long synapseId : synapseIds) {
+            Node synapse = dbService.getNodeById(synapseId);
+
+            // lock the segment before its synapses and connection sets, as the single synapse procedures do
+            Node segment = GraphTraversalTools.getSegmentThatContainsSynapse(synapse);
+            if (segment != null && lockedSegments.add(segment)) {
+                tx.acquireWriteLock(segment);
             }
-            acquireWriteLockForNode(metaNode);
-            Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
-            Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+            tx.acquireWriteLock(synapse);
 
-            // add synapse to synapse set
-            Node synapseSet = getSynapseSetForNeuron(segment);
-            if (synapseSet == null) {
-                // create synapse set if it doesn't exist
-                synapseSet = createSynapseSetForSegment(segment, dataset);
+            if (synapse.hasProperty(roiName) == isAddition) {
+                // changed since the batches were planned
+                continue;
             }
-            addSynapseToSynapseSet(synapseSet, synapse);
 
-            // for each synapse that the synapse SynapsesTo, create or add to a ConnectionSet and ConnectsTo
-            for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
-                Node otherSynapse = synapsesToRel.getOtherNode(synapse);
-                Node otherSegment = getSegmentThatContainsSynapse(otherSynapse);
-                Node connectionSet;
-                if (otherSegment == null) {
-                    log.warn("Synapse does not belong to segment: " + otherSynapse.getAllProperties());
-                } else {
-                    Long otherBodyId;
-                    if (otherSegment.hasProperty(BODY_ID)) {
-                        otherBodyId = (Long) otherSegment.getProperty(BODY_ID);
-                    } else {
-                        log.error("Segment node is missing a bodyId. Neo4j ID is: " + otherSegment.getId());
-                        throw new RuntimeException("Segment node is missing a bodyId. Neo4j ID is: " + otherSegment.getId());
-                    }
-                    if (synapseType.equals(PRE)) {
-                        // look for connection set from original segment to other segment (create ConnectsTo and ConnectionSet if doesn't exist)
-                        connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(bodyId, otherBodyId, segment, otherSegment, synapse, otherSynapse, dataset);
-                    } else {
-                        // look for connection set from other segment to original segment (create ConnectsTo and ConnectionSet if doesn't exist)
-                        connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(otherBodyId, bodyId, otherSegment, segment, otherSynapse, synapse, dataset);
-                    }
+            String synapseType = (String) synapse.getProperty(TYPE, null);
+            if (!PRE.equals(synapseType) && !POST.equals(synapseType)) {
+                log.warn("proofreader.setRoiForSynapses: Synapse does not have type property equal to 'pre' or 'post'. Skipping: " + synapse.getAllProperties());
+                continue;
+            }
+            Object confidence = synapse.getProperty(CONFIDENCE, 0D);
+            Double synapseConfidence = ((Number) confidence).doubleValue();
 
-                    Set<Node> synapseForConnectionSet = getSynapsesForConnectionSet(connectionSet);
-                    // recompute roiInfo on connection sets and set weight and weightHP
-                    setConnectionSetRoiInfoWeightAndWeightHP(synapseForConnectionSet, connectionSet, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD), metaNodeRoiSet);
+            List<Node> connectionSets = getConnectionSetsForSynapse(synapse);
+            for (Node connectionSet : connectionSets) {
+                if (!roiAssignmentBatch.hasConnectionSet(connectionSet)) {
+                    tx.acquireWriteLock(connectionSet);
                 }
             }
 
-            // update neuron pre/post, roiInfo, rois
-            // recompute information on containing segment
-            Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
-            recomputeSegmentPropertiesFollowingSynapseAddition(synapseRois, synapseType, segment, dataset, metaNode);
-
-        } catch (Exception e) {
+            if (isAddition) {
+                synapse.setProperty(roiName, true);
+            } else {
+                synapse.removeProperty(roiName);
+            }
+            roiAssignmentBatch.addSynapse(synapseType, synapseConfidence, segment, connectionSets, isAddition);
+            changed++;
+        }
+
+        roiAssignmentBatch.write();
+
+        acquireWriteLockForMetaNodeCounts(metaNode);
+        applyMetaNodeChanges(metaNode, roiAssignmentBatch.getMetaChanges());
+
+        return changed;
+    }
+
+    @Procedure(value = "proofreader.addSynapse", mode = Mode.WRITE)
+    @Description("proofreader.addSynapse(synapseJson, dataset) : Add a synapse node to the dataset specified by an input JSON (see https://github.com/connectome-neuprint/neuPrint/blob/master/graphupdateAPI.md). Will only add the Synapse node, not the connections to other Synapse nodes.")
+    public void addSynapse(@Name("synapseJson") final String synapseJson, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.addSynapse: entry");
+
+        try {
+
+            if (synapseJson == null || dataset == null) {
+                log.error("proofreader.addSynapse: Missing input arguments.");
+                throw new RuntimeException("proofreader.addSynapse: Missing input arguments.");
+            }
+
+            // get the meta node for updating
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode != null) {
+                acquireWriteLockForMetaNodeCounts(metaNode);
+            }
+
+            Synapse synapse = JsonUtils.GSON.fromJson(synapseJson, Synapse.class);
+
+            MutationBatch mutationBatch = new MutationBatch();
+            addSynapse(synapse, dataset, mutationBatch);
+            applyMetaNodeChanges(metaNode, mutationBatch);
+
+        } catch (Exception e) {
+            log.error("Error running proofreader.addSynapse: " + e);
+            throw new RuntimeException("Error running proofreader.addSynapse: " + e);
+        }
+
+        log.info("proofreader.addSynapse: exit");
+
+    }
+
+    @Procedure(value = "proofreader.addConnectionBetweenSynapseNodes", mode = Mode.WRITE)
+    @Description("proofreader.addConnectionBetweenSynapseNodes(preX,preY,preZ,postX,postY,postZ,dataset) : Add a SynapsesTo relationship between two Synapse nodes. Both nodes must exist in the dataset, and neither can be currently owned by a Neuron/Segment.")
+    public void addConnectionBetweenSynapseNodes(@Name("preX") final Double preX, @Name("preY") final Double preY, @Name("preZ") final Double preZ, @Name("postX") final Double postX, @Name("postY") final Double postY, @Name("postZ") final Double postZ, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.addConnectionBetweenSynapseNodes: entry");
+
+        try {
+            if (preX == null || preY == null || preZ == null || postX == null || postY == null || postZ == null || dataset == null) {
+                log.error("proofreader.addConnectionBetweenSynapseNodes: Missing input arguments.");
+                throw new RuntimeException("proofreader.addConnectionBetweenSynapseNodes: Missing input arguments.");
+            }
+
+            connectSynapses(preX, preY, preZ, postX, postY, postZ, dataset);
+
+        } catch (Exception e) {
+            log.error("Error running proofreader.addConnectionBetweenSynapseNodes: " + e);
+            throw new RuntimeException("Error running proofreader.addConnectionBetweenSynapseNodes: " + e);
+        }
+
+        log.info("proofreader.addConnectionBetweenSynapseNodes: exit");
+
+    }
+
+    @Procedure(value = "proofreader.addSynapseToSegment", mode = Mode.WRITE)
+    @Description("proofreader.addSynapseToSegment(x, y, z, bodyId, dataset) : Add an orphaned Synapse node to a Neuron/Segment. Synapse and Neuron/Segment must exist in the dataset.")
+    public void addSynapseToSegment(@Name("x") final Double x, @Name("y") final Double y, @Name("z") final Double z, @Name("bodyId") Long bodyId, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.addSynapseToSegment: entry");
+
+        try {
+            if (x == null || y == null || z == null || bodyId == null || dataset == null) {
+                log.error("proofreader.addSynapseToSegment: Missing input arguments.");
+                throw new RuntimeException("proofreader.addSynapseToSegment: Missing input arguments.");
+            }
+
+            // acquire meta node for updating
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForMetaNodeCounts(metaNode);
+            Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+
+            MutationBatch mutationBatch = new MutationBatch();
+            addSynapseToSegment(x, y, z, bodyId, dataset, metaNode, metaNodeRoiSet, mutationBatch);
+            applyConnectionSetChanges(mutationBatch, thresholdMap, metaNodeRoiSet);
+
+        } catch (Exception e) {
             log.error("Error running proofreader.addSynapseToSegment: " + e);
             throw new RuntimeException("Error running proofreader.addSynapseToSegment: " + e);
         }
@@ -1527,8 +1451,42 @@ public class ProofreaderProcedures {
                 throw new RuntimeException("proofreader.deleteSynapse: Missing input arguments.");
             }
 
-            // acquire the synapse node
-            Node synapse = getSynapse(dbService, x, y, z, dataset);
+            // acquire meta node for updating
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForMetaNodeCounts(metaNode);
+            Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+
+            MutationBatch mutationBatch = new MutationBatch();
+            deleteSynapse(x, y, z, dataset, metaNode, metaNodeRoiSet, mutationBatch);
+            applyConnectionSetChanges(mutationBatch, thresholdMap, metaNodeRoiSet);
+            applyMetaNodeChanges(metaNode, mutationBatch);
+
+        } catch (Exception e) {
+            log.error("proofreader.deleteSynapse: " + e);
+            throw new RuntimeException("proofreader.deleteSynapse: " + e);
+        }
+
+        log.info("proofreader.deleteSynapse: exit");
+
+    }
+
+    @Procedure(value = "proofreader.orphanSynapse", mode = Mode.WRITE)
+    @Description("proofreader.orphanSynapse(x, y, z, dataset) : Orphan (but do not delete) a synapse node specified by the 3D location provided.")
+    public void orphanSynapse(@Name("x") final Double x, @Name("y") final Double y, @Name("z") final Double z, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.orphanSynapse: entry");
+
+        try {
+
+            if (x == null || y == null || z == null || dataset == null) {
+                log.error("proofreader.orphanSynapse: Missing input arguments.");
+                throw new RuntimeException("proofreader.orphanSynapse: Missing input arguments.");
+            }
 
             // acquire meta node for updating
             Node metaNode = getMetaNode(dbService, dataset);
@@ -1536,142 +1494,1233 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + dataset);
                 throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNodeCounts(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
             Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
 
-            // warn if it doesn't exist
-            if (synapse == null) {
-                log.warn(String.format("proofreader.deleteSynapse: No synapse found at location [%f,%f,%f]. Aborting deletion. ", x, y, z));
-            } else {
+            MutationBatch mutationBatch = new MutationBatch();
+            orphanSynapse(x, y, z, dataset, metaNodeRoiSet, mutationBatch);
+            applyConnectionSetChanges(mutationBatch, thresholdMap, metaNodeRoiSet);
 
-                acquireWriteLockForNode(synapse);
+        } catch (Exception e) {
+            log.error("proofreader.orphanSynapse: " + e);
+            throw new RuntimeException("proofreader.orphanSynapse: " + e);
+        }
 
-                String synapseType;
-                if (synapse.hasProperty(TYPE)) {
-                    synapseType = (String) synapse.getProperty(TYPE);
-                } else {
-                    log.error(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
-                    throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
-                }
-                if (!synapseType.equals(PRE) && !synapseType.equals(POST)) {
-                    log.error(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
-                    throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
+        log.info("proofreader.orphanSynapse: exit");
+
+    }
+
+    @Procedure(value = "proofreader.applyMutations", mode = Mode.WRITE)
+    @Description("proofreader.applyMutations(mutationJsonList, dataset) : Apply an ordered list of mutations in a single transaction. Each mutation is a JSON object with " +
+            "\"type\" (one of updateProperties, addNeuron, deleteNeuron, addSynapse, addConnectionBetweenSynapseNodes, addSynapseToSegment, orphanSynapse, deleteSynapse, moveSynapse), " +
+            "\"mutationUUID\", \"mutationID\" and the arguments for that type: \"neuron\" (Neurons JSON object), \"neuronAddition\" (neuron addition JSON object), \"synapse\" (Synapses JSON object), " +
+            "\"bodyId\", \"location\", \"preLocation\" and \"postLocation\". Mutations with a mutationID no greater than the latest one applied for their mutationUUID " +
+            "have already been applied and are skipped. Meta node counts and ConnectionSets are updated once after all mutations have been applied. " +
+            "e.g. CALL proofreader.applyMutations(['{\"type\":\"moveSynapse\",\"mutationUUID\":\"ab12\",\"mutationID\":5,\"location\":[10,20,30],\"bodyId\":100}'], 'mb6')")
+    public void applyMutations(@Name("mutationJsonList") List<String> mutationJsonList, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.applyMutations: entry");
+
+        try {
+
+            if (mutationJsonList == null || dataset == null) {
+                log.error("proofreader.applyMutations: Missing input arguments.");
+                throw new RuntimeException("proofreader.applyMutations: Missing input arguments.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForMetaNodeCounts(metaNode);
+            Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+
+            List<Mutation> mutations = new ArrayList<>();
+            Map<String, Node> mutationLogs = new TreeMap<>();
+            for (String mutationJson : mutationJsonList) {
+                Mutation mutation = Mutation.fromJson(mutationJson);
+                if (mutation == null || mutation.getType() == null || mutation.getMutationUuid() == null || mutation.getMutationId() == null) {
+                    log.error("proofreader.applyMutations: type, mutationUUID and mutationID are required fields for each mutation: " + mutationJson);
+                    throw new RuntimeException("proofreader.applyMutations: type, mutationUUID and mutationID are required fields for each mutation: " + mutationJson);
                 }
+                mutations.add(mutation);
+                mutationLogs.put(mutation.getMutationUuid(), null);
+            }
+            // lock the mutation log of each uuid before any segment, in a fixed order
+            for (String mutationUuid : mutationLogs.keySet()) {
+                mutationLogs.put(mutationUuid, MutationLog.acquire(dbService, metaNode, dataset, mutationUuid));
+            }
+
+            MutationBatch mutationBatch = new MutationBatch();
+            int applied = 0;
+            int skipped = 0;
 
-                // if orphan continue, otherwise update synapse set, connection set info and relationships
-                Node containingSegment = getSegmentThatContainsSynapse(synapse);
+            for (Mutation mutation : mutations) {
 
-                if (containingSegment != null) {
-                    orphanSynapse(synapse, dataset, thresholdMap, metaNodeRoiSet);
+                Node mutationLog = mutationLogs.get(mutation.getMutationUuid());
+                if (MutationLog.isApplied(mutationLog, metaNode, mutation.getMutationId())) {
+                    log.warn("proofreader.applyMutations: Mutation already applied. Skipping: " + mutation);
+                    skipped++;
+                    continue;
                 }
 
-                // delete synapsesTo relationships (may be multiple)
-                for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
-                    synapsesToRel.delete();
+                applyMutation(mutation, dataset, metaNode, metaNodeRoiSet, mutationBatch);
+                MutationLog.record(mutationLog, mutation.getMutationId());
+                applied++;
+            }
+
+            applyConnectionSetChanges(mutationBatch, thresholdMap, metaNodeRoiSet);
+            applyMetaNodeChanges(metaNode, mutationBatch);
+
+            log.info("proofreader.applyMutations: Applied " + applied + " mutations and skipped " + skipped + " mutations that were already applied. Updated " + mutationBatch.getConnectionSetIds().size() + " ConnectionSets.");
+
+        } catch (Exception e) {
+            log.error("Error running proofreader.applyMutations: " + e);
+            throw new RuntimeException("Error running proofreader.applyMutations: " + e);
+        }
+
+        log.info("proofreader.applyMutations: exit");
+
+    }
+
+    private void applyMutation(Mutation mutation, String dataset, Node metaNode, Set<String> metaNodeRoiSet, MutationBatch mutationBatch) {
+
+        switch (mutation.getType()) {
+            case Mutation.UPDATE_PROPERTIES: {
+                Neuron neuron = mutation.getNeuron();
+                requireMutationArgument(mutation, neuron != null && neuron.getId() != null);
+                Node neuronNode = getSegment(dbService, neuron.getId(), dataset);
+                if (neuronNode == null) {
+                    log.warn("Neuron with id " + neuron.getId() + " not found in database. Skipping update for " + mutation);
+                } else {
+                    updateNeuronProperties(neuron, neuronNode, dataset, metaNode);
+                }
+                break;
+            }
+            case Mutation.ADD_NEURON:
+                requireMutationArgument(mutation, mutation.getNeuronAddition() != null);
+                addNeuron(mutation.getNeuronAddition(), dataset, metaNode, metaNodeRoiSet);
+                break;
+            case Mutation.DELETE_NEURON:
+                requireMutationArgument(mutation, mutation.getBodyId() != null);
+                deleteSegment(mutation.getBodyId(), dataset);
+                break;
+            case Mutation.ADD_SYNAPSE:
+                requireMutationArgument(mutation, mutation.getSynapse() != null);
+                addSynapse(mutation.getSynapse(), dataset, mutationBatch);
+                break;
+            case Mutation.ADD_CONNECTION_BETWEEN_SYNAPSE_NODES: {
+                org.janelia.flyem.neuprint.model.Location pre = mutation.getPreLocation();
+                org.janelia.flyem.neuprint.model.Location post = mutation.getPostLocation();
+                requireMutationArgument(mutation, pre != null && post != null);
+                connectSynapses((double) pre.getX(), (double) pre.getY(), (double) pre.getZ(), (double) post.getX(), (double) post.getY(), (double) post.getZ(), dataset);
+                break;
+            }
+            case Mutation.ADD_SYNAPSE_TO_SEGMENT: {
+                org.janelia.flyem.neuprint.model.Location location = mutation.getLocation();
+                requireMutationArgument(mutation, location != null && mutation.getBodyId() != null);
+                addSynapseToSegment((double) location.getX(), (double) location.getY(), (double) location.getZ(), mutation.getBodyId(), dataset, metaNode, metaNodeRoiSet, mutationBatch);
+                break;
+            }
+            case Mutation.ORPHAN_SYNAPSE: {
+                org.janelia.flyem.neuprint.model.Location location = mutation.getLocation();
+                requireMutationArgument(mutation, location != null);
+                orphanSynapse((double) location.getX(), (double) location.getY(), (double) location.getZ(), dataset, metaNodeRoiSet, mutationBatch);
+                break;
+            }
+            case Mutation.DELETE_SYNAPSE: {
+                org.janelia.flyem.neuprint.model.Location location = mutation.getLocation();
+                requireMutationArgument(mutation, location != null);
+                deleteSynapse((double) location.getX(), (double) location.getY(), (double) location.getZ(), dataset, metaNode, metaNodeRoiSet, mutationBatch);
+                break;
+            }
+            case Mutation.MOVE_SYNAPSE: {
+                // orphan the synapse from its current body (if any) and add it to the new body
+                org.janelia.flyem.neuprint.model.Location location = mutation.getLocation();
+                requireMutationArgument(mutation, location != null && mutation.getBodyId() != null);
+                Double x = (double) location.getX();
+                Double y = (double) location.getY();
+                Double z = (double) location.getZ();
+                Node synapse = getSynapse(dbService, x, y, z, dataset);
+                if (synapse != null && getSegmentThatContainsSynapse(synapse) != null) {
+                    orphanSynapse(x, y, z, dataset, metaNodeRoiSet, mutationBatch);
                 }
+                addSynapseToSegment(x, y, z, mutation.getBodyId(), dataset, metaNode, metaNodeRoiSet, mutationBatch);
+                break;
+            }
+            default:
+                log.error("proofreader.applyMutations: Unknown mutation type: " + mutation);
+                throw new RuntimeException("proofreader.applyMutations: Unknown mutation type: " + mutation);
+        }
 
-                // remove from meta node counts and roiInfo
-                Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+    }
+
+    private void requireMutationArgument(Mutation mutation, boolean isPresent) {
+        if (!isPresent) {
+            log.error("proofreader.applyMutations: Missing arguments for mutation: " + mutation);
+            throw new RuntimeException("proofreader.applyMutations: Missing arguments for mutation: " + mutation);
+        }
+    }
+
+    private void addSynapse(Synapse synapse, String dataset, MutationBatch mutationBatch) {
+
+        // add basic synapse labels
+        final Node newSynapseNode = dbService.createNode(
+                Label.label(SYNAPSE),
+                Label.label(dataset),
+                Label.label(dataset + "-" + SYNAPSE));
+
+        // add location
+        org.janelia.flyem.neuprint.model.Location synapseLocationList = synapse.getLocation();
+        Point synapseLocationPoint = new Location(synapseLocationList.getX(), synapseLocationList.getY(), synapseLocationList.getZ());
+
+        try {
+            newSynapseNode.setProperty(LOCATION, synapseLocationPoint);
+        } catch (org.neo4j.graphdb.ConstraintViolationException cve) {
+            log.error("Synapse with location " + synapseLocationList + " already exists in database. Aborting synapse addition.");
+            throw new RuntimeException("Synapse with location " + synapseLocationList + " already exists in database. Aborting synapse addition.");
+        }
+
+        // synapse must have type
+        if (synapse.getType() == null) {
+            log.error("Synapse with location " + synapseLocationList + " does not have a type specified. Aborting synapse addition.");
+            throw new RuntimeException("Synapse with location " + synapseLocationList + " does not have a type specified. Aborting synapse addition.");
+        }
+
+        // add PreSyn or PostSyn label and type property and increment counts on meta node
+        if (synapse.getType().equals(POST)) {
+            newSynapseNode.addLabel(Label.label(POST_SYN));
+            newSynapseNode.addLabel(Label.label(dataset + "-" + POST_SYN));
+            newSynapseNode.setProperty(TYPE, synapse.getType());
+        } else if (synapse.getType().equals(PRE)) {
+            newSynapseNode.addLabel(Label.label(PRE_SYN));
+            newSynapseNode.addLabel(Label.label(dataset + "-" + PRE_SYN));
+            newSynapseNode.setProperty(TYPE, synapse.getType());
+        } else {
+            log.error("Synapse type must be either 'pre' or 'post'. Was " + synapse.getType() + ". Aborting synapse addition.");
+            throw new RuntimeException("Synapse type must be either 'pre' or 'post'. Was " + synapse.getType() + ". Aborting synapse addition.");
+        }
+        mutationBatch.addSynapseToMetaCounts(synapse.getType());
+
+        // add confidence (default value will be 0.0)
+        newSynapseNode.setProperty(CONFIDENCE, synapse.getConfidence());
+
+        // add rois and update roiInfo on Meta node
+        for (String roi : synapse.getRois()) {
+            newSynapseNode.setProperty(roi, true);
+            mutationBatch.addSynapseToMetaRoiInfo(roi, synapse.getType());
+        }
+
+    }
+
+    private void connectSynapses(final Double preX, final Double preY, final Double preZ, final Double postX, final Double postY, final Double postZ, final String dataset) {
+
+        // acquire both synapse nodes
+        Node preSynapse = getSynapse(dbService, preX, preY, preZ, dataset);
+        Node postSynapse = getSynapse(dbService, postX, postY, postZ, dataset);
+
+        // error if synapses are not found
+        if (preSynapse == null) {
+            log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", preX, preY, preZ, dataset));
+            throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", preX, preY, preZ, dataset));
+        }
+        if (postSynapse == null) {
+            log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", postX, postY, postZ, dataset));
+            throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: No synapse with location [%f,%f,%f] in dataset %s.", postX, postY, postZ, dataset));
+        }
+
+        acquireWriteLockForNode(preSynapse);
+        acquireWriteLockForNode(postSynapse);
+
+        // error if 1st location not pre or 2nd location not post
+        if (!preSynapse.hasLabel(Label.label(PRE_SYN))) {
+            log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a presynaptic density.", preX, preY, preZ));
+            throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a presynaptic density.", preX, preY, preZ));
+        }
+        if (!postSynapse.hasLabel(Label.label(POST_SYN))) {
+            log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a postsynaptic density.", postX, postY, postZ));
+            throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is not a postsynaptic density.", postX, postY, postZ));
+        }
+
+        // error if a synapse already belongs to a body
+        // TODO: may in the future add ability to connect to synapses that are already on a body
+        if (getSegmentThatContainsSynapse(preSynapse) != null) {
+            log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", preX, preY, preZ));
+            throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", preX, preY, preZ));
+        }
+        if (getSegmentThatContainsSynapse(postSynapse) != null) {
+            log.error(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", postX, postY, postZ));
+            throw new RuntimeException(String.format("proofreader.addConnectionBetweenSynapseNodes: Synapse with location [%f,%f,%f] is currently owned by a body.", postX, postY, postZ));
+        }
+
+        // create connection between synapses
+        preSynapse.createRelationshipTo(postSynapse, RelationshipType.withName(SYNAPSES_TO));
+
+    }
+
+    private void addSynapseToSegment(final Double x, final Double y, final Double z, Long bodyId, final String dataset, Node metaNode, Set<String> metaNodeRoiSet, MutationBatch mutationBatch) {
+
+        // acquire the synapse node
+        Node synapse = getSynapse(dbService, x, y, z, dataset);
+
+        // error if synapse not found
+        if (synapse == null) {
+            log.error(String.format("proofreader.addSynapseToSegment: No synapse with location [%f,%f,%f] in dataset %s.", x, y, z, dataset));
+            throw new RuntimeException(String.format("proofreader.addSynapseToSegment: No synapse with location [%f,%f,%f] in dataset %s.", x, y, z, dataset));
+        }
+        acquireWriteLockForNode(synapse);
+
+        String synapseType = getSynapseType(synapse, x, y, z);
+
+        Node segment = getSegment(dbService, bodyId, dataset);
+        //error if segment not found
+        if (segment == null) {
+            log.error(String.format("proofreader.addSynapseToSegment: No neuron/segment with body ID %d in dataset %s.", bodyId, dataset));
+            throw new RuntimeException(String.format("proofreader.addSynapseToSegment: No neuron/segment with body ID %d in dataset %s.", bodyId, dataset));
+        }
+        acquireWriteLockForSegmentSubgraph(segment);
+
+        // add synapse to synapse set
+        Node synapseSet = getSynapseSetForNeuron(segment);
+        if (synapseSet == null) {
+            // create synapse set if it doesn't exist
+            synapseSet = createSynapseSetForSegment(segment, dataset);
+        }
+        Node skeletonNode = GraphTraversalTools.getSkeletonNodeForNeuron(segment);
+        SynapseAttachment attachment = skeletonNode != null && SynapseAttachment.isCurrent(synapseSet, skeletonNode) ? SynapseAttachment.fromNode(synapseSet) : null;
+        addSynapseToSynapseSet(synapseSet, synapse);
+        if (attachment != null) {
+            // attach only the added synapse instead of leaving the body without attachments
+            attachment.withSynapse(readSkeleton(skeletonNode), (int) Math.round(x), (int) Math.round(y), (int) Math.round(z)).writeTo(synapseSet);
+        }
+
+        // for each synapse that the synapse SynapsesTo, create or add to a ConnectionSet and ConnectsTo
+        for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+            Node otherSynapse = synapsesToRel.getOtherNode(synapse);
+            Node otherSegment = getSegmentThatContainsSynapse(otherSynapse);
+            Node connectionSet;
+            if (otherSegment == null) {
+                log.warn("Synapse does not belong to segment: " + otherSynapse.getAllProperties());
+            } else {
+                Long otherBodyId;
+                if (otherSegment.hasProperty(BODY_ID)) {
+                    otherBodyId = (Long) otherSegment.getProperty(BODY_ID);
+                } else {
+                    log.error("Segment node is missing a bodyId. Neo4j ID is: " + otherSegment.getId());
+                    throw new RuntimeException("Segment node is missing a bodyId. Neo4j ID is: " + otherSegment.getId());
+                }
                 if (synapseType.equals(PRE)) {
-                    decrementMetaNodeTotalPreCount(metaNode);
+                    // look for connection set from original segment to other segment (create ConnectsTo and ConnectionSet if doesn't exist)
+                    connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(bodyId, otherBodyId, segment, otherSegment, synapse, otherSynapse, dataset);
                 } else {
-                    decrementMetaNodeTotalPostCount(metaNode);
+                    // look for connection set from other segment to original segment (create ConnectsTo and ConnectionSet if doesn't exist)
+                    connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(otherBodyId, bodyId, otherSegment, segment, otherSynapse, synapse, dataset);
                 }
 
-                for (String roi : synapseRois) {
-                    removeSynapseFromMetaRoiInfo(metaNode, roi, synapseType);
-                }
+                // roiInfo, weight and weightHP are recomputed once all changes have been made
+                mutationBatch.addConnectionSet(connectionSet);
+            }
+        }
+
+        // update neuron pre/post, roiInfo, rois
+        // recompute information on containing segment
+        Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+        recomputeSegmentPropertiesFollowingSynapseAddition(synapseRois, synapseType, segment, dataset, metaNode);
+
+    }
+
+    private void deleteSynapse(final Double x, final Double y, final Double z, final String dataset, Node metaNode, Set<String> metaNodeRoiSet, MutationBatch mutationBatch) {
+
+        // acquire the synapse node
+        Node synapse = getSynapse(dbService, x, y, z, dataset);
+
+        // warn if it doesn't exist
+        if (synapse == null) {
+            log.warn(String.format("proofreader.deleteSynapse: No synapse found at location [%f,%f,%f]. Aborting deletion. ", x, y, z));
+        } else {
+
+            acquireWriteLockForNode(synapse);
+
+            String synapseType = getSynapseType(synapse, x, y, z);
+
+            // if orphan continue, otherwise update synapse set, connection set info and relationships
+            Node containingSegment = getSegmentThatContainsSynapse(synapse);
+
+            if (containingSegment != null) {
+                orphanSynapse(synapse, dataset, mutationBatch);
+            }
+
+            // delete synapsesTo relationships (may be multiple)
+            for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+                synapsesToRel.delete();
+            }
+
+            // remove from meta node counts and roiInfo
+            Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+            mutationBatch.removeSynapseFromMetaCounts(synapseType);
+            for (String roi : synapseRois) {
+                mutationBatch.removeSynapseFromMetaRoiInfo(roi, synapseType);
+            }
+
+            // delete synapse node
+            synapse.delete();
+
+            // recompute information on containing segment
+            if (containingSegment != null) {
+                recomputeSegmentPropertiesFollowingSynapseRemoval(synapseRois, synapseType, containingSegment, dataset, metaNodeRoiSet);
+            }
+
+        }
+
+    }
+
+    private void orphanSynapse(final Double x, final Double y, final Double z, final String dataset, Set<String> metaNodeRoiSet, MutationBatch mutationBatch) {
+
+        // acquire the synapse node
+        Node synapse = getSynapse(dbService, x, y, z, dataset);
+
+        // warn if it doesn't exist
+        if (synapse == null) {
+            log.warn(String.format("proofreader.orphanSynapse: No synapse found at location [%f,%f,%f]. Aborting orphan procedure. ", x, y, z));
+        } else {
+
+            acquireWriteLockForNode(synapse);
+
+            String synapseType = getSynapseType(synapse, x, y, z);
+
+            Node containingSegment = getSegmentThatContainsSynapse(synapse);
+
+            // if orphan already, do nothing
+            if (containingSegment == null) {
+                log.warn(String.format("proofreader.orphanSynapse: Synapse at location [%f,%f,%f] is already orphaned. Aborting orphan procedure. ", x, y, z));
+            } else {
+
+                orphanSynapse(synapse, dataset, mutationBatch);
 
-                // delete synapse node
-                synapse.delete();
+                Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
 
                 // recompute information on containing segment
-                if (containingSegment != null) {
-                    recomputeSegmentPropertiesFollowingSynapseRemoval(synapseRois, synapseType, containingSegment, dataset, metaNodeRoiSet);
+                recomputeSegmentPropertiesFollowingSynapseRemoval(synapseRois, synapseType, containingSegment, dataset, metaNodeRoiSet);
+
+            }
+
+        }
+
+    }
+
+    private String getSynapseType(Node synapse, Double x, Double y, Double z) {
+        String synapseType;
+        if (synapse.hasProperty(TYPE)) {
+            synapseType = (String) synapse.getProperty(TYPE);
+        } else {
+            log.error(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
+            throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
+        }
+        if (!synapseType.equals(PRE) && !synapseType.equals(POST)) {
+            log.error(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
+            throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
+        }
+        return synapseType;
+    }
+
+    private void applyConnectionSetChanges(MutationBatch mutationBatch, Map<String, Double> thresholdMap, Set<String> metaNodeRoiSet) {
+        for (Long connectionSetId : mutationBatch.getConnectionSetIds()) {
+            Node connectionSet;
+            try {
+                connectionSet = dbService.getNodeById(connectionSetId);
+            } catch (NotFoundException nfe) {
+                // deleted along with one of its segments
+                continue;
+            }
+            computeAndSetConnectionInformation(connectionSet, thresholdMap, metaNodeRoiSet);
+        }
+    }
+
+    private void applyMetaNodeChanges(Node metaNode, MutationBatch mutationBatch) {
+        if (metaNode == null) {
+            log.warn("No Meta node found. totalPreCount, totalPostCount and roiInfo will not be updated.");
+            return;
+        }
+
+        if (MetaCounts.isDeferred(metaNode)) {
+            MetaCounts.recordDelta(dbService, (String) metaNode.getProperty(DATASET), mutationBatch.getTotalPreCountDelta(), mutationBatch.getTotalPostCountDelta(), mutationBatch.getMetaRoiInfoDelta());
+            return;
+        }
+
+        addToMetaNodeCount(metaNode, TOTAL_PRE_COUNT, mutationBatch.getTotalPreCountDelta());
+        addToMetaNodeCount(metaNode, TOTAL_POST_COUNT, mutationBatch.getTotalPostCountDelta());
+
+        if (mutationBatch.hasMetaRoiInfoChanges()) {
+            if (metaNode.hasProperty(ROI_INFO)) {
+                RoiInfo roiInfo = new RoiInfo(getRoiInfoAsMap((String) metaNode.getProperty(ROI_INFO)));
+                mutationBatch.applyMetaRoiInfoChanges(roiInfo);
+                metaNode.setProperty(ROI_INFO, roiInfo.getAsJsonString());
+            } else {
+                log.warn("No roiInfo property found on Meta node. roiInfo will not be updated.");
+            }
+        }
+    }
+
+    private void addToMetaNodeCount(Node metaNode, String countProperty, long delta) {
+        if (delta != 0) {
+            if (metaNode.hasProperty(countProperty)) {
+                Long currentCount = (Long) metaNode.getProperty(countProperty);
+                metaNode.setProperty(countProperty, currentCount + delta);
+            } else {
+                log.warn("No " + countProperty + " property found on Meta node. This property will not be updated.");
+            }
+        }
+    }
+
+    @Procedure(value = "proofreader.mergeNeurons", mode = Mode.WRITE)
+    @Description("proofreader.mergeNeurons(mergeActionJson, dataset) : Merge bodies into a target body. Input JSON should be a merge action with \"TargetBodyID\" and \"BodiesMerged\" " +
+            "and optionally \"DVIDuuid\", \"MutationID\", \"TargetBodySize\", \"TargetBodyName\" and \"TargetBodyStatus\". Synapses, ConnectionSets, ConnectsTo weights, pre/post counts and roiInfo " +
+            "of the merged bodies are folded into the target body incrementally and the merged bodies are deleted. Merge actions with a MutationID " +
+            "no greater than the latest one applied for their DVIDuuid have already been applied and are skipped. " +
+            "e.g. CALL proofreader.mergeNeurons('{\"DVIDuuid\":\"ab12\",\"MutationID\":5,\"Action\":\"merge\",\"TargetBodyID\":100,\"BodiesMerged\":[101,102],\"TargetBodySize\":2000}', 'mb6')")
+    public void mergeNeurons(@Name("mergeActionJson") String mergeActionJson, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.mergeNeurons: entry");
+
+        try {
+
+            if (mergeActionJson == null || dataset == null) {
+                log.error("proofreader.mergeNeurons: Missing input arguments.");
+                throw new RuntimeException("proofreader.mergeNeurons: Missing input arguments.");
+            }
+
+            MergeAction mergeAction = JsonUtils.GSON.fromJson(mergeActionJson, MergeAction.class);
+
+            if (mergeAction == null || mergeAction.getTargetBodyId() == null || mergeAction.getBodiesMerged() == null) {
+                log.error("proofreader.mergeNeurons: TargetBodyID and BodiesMerged are required fields in the merge action json.");
+                throw new RuntimeException("proofreader.mergeNeurons: TargetBodyID and BodiesMerged are required fields in the merge action json.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+
+            Node mutationLog = acquireMutationLog(metaNode, dataset, mergeAction.getDvidUuid(), mergeAction.getMutationId());
+            if (mutationLog != null && MutationLog.isApplied(mutationLog, metaNode, mergeAction.getMutationId())) {
+                log.warn("proofreader.mergeNeurons: Merge action already applied. Skipping: " + mergeAction);
+            } else {
+
+                final long targetBodyId = mergeAction.getTargetBodyId();
+                Node targetNode = getSegment(dbService, targetBodyId, dataset);
+                if (targetNode == null) {
+                    log.error("proofreader.mergeNeurons: Target body " + targetBodyId + " not found in database.");
+                    throw new RuntimeException("proofreader.mergeNeurons: Target body " + targetBodyId + " not found in database.");
+                }
+
+                Map<Long, Node> mergedNodes = new HashMap<>();
+                for (Long mergedBodyId : mergeAction.getBodiesMerged()) {
+                    if (mergedBodyId == null || mergedBodyId == targetBodyId) {
+                        continue;
+                    }
+                    Node mergedNode = getSegment(dbService, mergedBodyId, dataset);
+                    if (mergedNode == null) {
+                        log.warn("proofreader.mergeNeurons: Merged body " + mergedBodyId + " not found in database. Skipping.");
+                    } else {
+                        mergedNodes.put(mergedBodyId, mergedNode);
+                    }
                 }
+                acquireWriteLockForMerge(targetNode, mergedNodes, dataset);
 
+                int foldedConnectionSets = mergeSegmentsIntoTarget(targetNode, mergedNodes, dataset, metaNodeRoiSet, thresholdMap);
+
+                for (Node mergedNode : mergedNodes.values()) {
+                    deleteMergedSegment(mergedNode);
+                }
+
+                if (mergeAction.getTargetBodySize() != null) {
+                    targetNode.setProperty(SIZE, mergeAction.getTargetBodySize());
+                }
+                if (mergeAction.getTargetBodyName() != null) {
+                    targetNode.setProperty(NAME, mergeAction.getTargetBodyName());
+                }
+                if (mergeAction.getTargetBodyStatus() != null) {
+                    targetNode.setProperty(STATUS, mergeAction.getTargetBodyStatus());
+                }
+                if (!shouldNotBeLabeledNeuron(targetNode)) {
+                    convertSegmentToNeuron(targetNode, dataset, metaNode);
+                }
+
+                if (mutationLog != null) {
+                    MutationLog.record(mutationLog, mergeAction.getMutationId());
+                }
+
+                log.info("proofreader.mergeNeurons: Merged " + mergedNodes.size() + " bodies into " + targetBodyId + ". Folded " + foldedConnectionSets + " ConnectionSets.");
             }
 
         } catch (Exception e) {
-            log.error("proofreader.deleteSynapse: " + e);
-            throw new RuntimeException("proofreader.deleteSynapse: " + e);
+            log.error("Error running proofreader.mergeNeurons: " + e);
+            throw new RuntimeException("Error running proofreader.mergeNeurons: " + e);
         }
 
-        log.info("proofreader.deleteSynapse: exit");
+        log.info("proofreader.mergeNeurons: exit");
 
     }
 
-    @Procedure(value = "proofreader.orphanSynapse", mode = Mode.WRITE)
-    @Description("proofreader.orphanSynapse(x, y, z, dataset) : Orphan (but do not delete) a synapse node specified by the 3D location provided.")
-    public void orphanSynapse(@Name("x") final Double x, @Name("y") final Double y, @Name("z") final Double z, @Name("dataset") final String dataset) {
+    private void acquireWriteLockForMerge(Node targetNode, Map<Long, Node> mergedNodes, String dataset) {
+        // only what the merge changes: the segments and their synapse sets, the merged bodies' ConnectionSets,
+        // the ConnectionSets they are folded into and the ConnectsTo relationships of both; locked in id order
+        Map<Long, Node> nodes = new TreeMap<>();
+        Map<Long, Relationship> relationships = new TreeMap<>();
 
-        log.info("proofreader.orphanSynapse: entry");
+        nodes.put(targetNode.getId(), targetNode);
+        Node targetSynapseSet = getSynapseSetForNeuron(targetNode);
+        if (targetSynapseSet != null) {
+            nodes.put(targetSynapseSet.getId(), targetSynapseSet);
+        }
+
+        for (Node mergedNode : mergedNodes.values()) {
+            nodes.put(mergedNode.getId(), mergedNode);
+            Node mergedSynapseSet = getSynapseSetForNeuron(mergedNode);
+            if (mergedSynapseSet != null) {
+                nodes.put(mergedSynapseSet.getId(), mergedSynapseSet);
+            }
+
+            for (Relationship connectionSetRel : mergedNode.getRelationships(Direction.INCOMING, RelationshipType.withName(FROM), RelationshipType.withName(TO))) {
+                Node connectionSet = connectionSetRel.getStartNode();
+                nodes.put(connectionSet.getId(), connectionSet);
+
+                Node preNode = connectionSet.getSingleRelationship(RelationshipType.withName(FROM), Direction.OUTGOING).getEndNode();
+                Node postNode = connectionSet.getSingleRelationship(RelationshipType.withName(TO), Direction.OUTGOING).getEndNode();
+                Relationship connectsToRel = getConnectsToRelationshipBetweenSegments(preNode, postNode, dataset);
+                if (connectsToRel != null) {
+                    relationships.put(connectsToRel.getId(), connectsToRel);
+                }
+
+                Node newPreNode = mergedNodes.containsKey((long) preNode.getProperty(BODY_ID)) ? targetNode : preNode;
+                Node newPostNode = mergedNodes.containsKey((long) postNode.getProperty(BODY_ID)) ? targetNode : postNode;
+                Node targetConnectionSet = getConnectionSetNode(dbService, (long) newPreNode.getProperty(BODY_ID), (long) newPostNode.getProperty(BODY_ID), dataset);
+                if (targetConnectionSet != null) {
+                    nodes.put(targetConnectionSet.getId(), targetConnectionSet);
+                }
+                Relationship targetConnectsToRel = getConnectsToRelationshipBetweenSegments(newPreNode, newPostNode, dataset);
+                if (targetConnectsToRel != null) {
+                    relationships.put(targetConnectsToRel.getId(), targetConnectsToRel);
+                }
+            }
+        }
+
+        nodes.values().forEach(this::acquireWriteLockForNode);
+        relationships.values().forEach(this::acquireWriteLockForRelationship);
+    }
+
+    private void deleteMergedSegment(Node mergedNode) {
+        // once folded into the target, a merged body only has its skeleton left to delete with it
+        for (Relationship containsRel : mergedNode.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+            Node containedNode = containsRel.getEndNode();
+            containsRel.delete();
+            if (containedNode.hasLabel(Label.label(SKELETON))) {
+                deleteSkeleton(containedNode);
+            }
+        }
+        removeAllRelationships(mergedNode);
+        log.info("Deleted segment with body Id: " + mergedNode.getProperty(BODY_ID));
+        mergedNode.delete();
+    }
+
+    private int mergeSegmentsIntoTarget(Node targetNode, Map<Long, Node> mergedNodes, String dataset, Set<String> metaNodeRoiSet, Map<String, Double> thresholdMap) {
+
+        final long targetBodyId = (long) targetNode.getProperty(BODY_ID);
+        Node targetSynapseSet = getSynapseSetForNeuron(targetNode);
+        // moved synapses are attached to the target's current attachments one merged body at a time; otherwise the
+        // attachments are dropped, to be regenerated by analysis.writeSynapseAttachments
+        Node targetSkeleton = GraphTraversalTools.getSkeletonNodeForNeuron(targetNode);
+        SynapseAttachment targetAttachment = targetSynapseSet != null && targetSkeleton != null && SynapseAttachment.isCurrent(targetSynapseSet, targetSkeleton) ? SynapseAttachment.fromNode(targetSynapseSet) : null;
+        CompactSkeleton skeleton = targetAttachment != null ? readSkeleton(targetSkeleton) : null;
+
+        long preDelta = 0;
+        long postDelta = 0;
+        RoiInfo roiInfoDelta = new RoiInfo();
+        Map<Long, Node> affectedConnectionSets = new LinkedHashMap<>();
+
+        for (Node mergedNode : mergedNodes.values()) {
+
+            // move synapse set membership; only the merged body's synapses are touched
+            Node mergedSynapseSet = getSynapseSetForNeuron(mergedNode);
+            if (mergedSynapseSet != null) {
+                if (targetSynapseSet == null) {
+                    // hand the whole synapse set over to the target
+                    mergedSynapseSet.getSingleRelationship(RelationshipType.withName(CONTAINS), Direction.INCOMING).delete();
+                    targetNode.createRelationshipTo(mergedSynapseSet, RelationshipType.withName(CONTAINS));
+                    mergedSynapseSet.setProperty(DATASET_BODY_ID, dataset + ":" + targetBodyId);
+                    SynapseAttachment.removeFrom(mergedSynapseSet);
+                    targetSynapseSet = mergedSynapseSet;
+                } else {
+                    int movedCount = mergedSynapseSet.getDegree(RelationshipType.withName(CONTAINS), Direction.OUTGOING);
+                    int[] movedX = new int[movedCount];
+                    int[] movedY = new int[movedCount];
+                    int[] movedZ = new int[movedCount];
+                    int moved = 0;
+                    for (Relationship containsRel : mergedSynapseSet.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+                        Node synapse = containsRel.getEndNode();
+                        if (targetAttachment != null) {
+                            List<Double> coordinates = ((Point) synapse.getProperty(LOCATION)).getCoordinate().getCoordinate();
+                            movedX[moved] = (int) Math.round(coordinates.get(0));
+                            movedY[moved] = (int) Math.round(coordinates.get(1));
+                            movedZ[moved] = (int) Math.round(coordinates.get(2));
+                            moved++;
+                        }
+                        addSynapseToSynapseSet(targetSynapseSet, synapse);
+                        containsRel.delete();
+                    }
+                    if (targetAttachment != null) {
+                        targetAttachment = targetAttachment.withSynapses(skeleton, movedX, movedY, movedZ);
+                    }
+                    removeAllRelationships(mergedSynapseSet);
+                    mergedSynapseSet.delete();
+                }
+            }
+
+            // pre, post and roiInfo of the target change by the merged body's values
+            preDelta += ((Number) mergedNode.getProperty(PRE, 0L)).longValue();
+            postDelta += ((Number) mergedNode.getProperty(POST, 0L)).longValue();
+            if (mergedNode.hasProperty(ROI_INFO)) {
+                roiInfoDelta.add(RoiInfo.getRoiInfoFromString((String) mergedNode.getProperty(ROI_INFO)));
+            }
+
+            for (Relationship connectionSetRel : mergedNode.getRelationships(Direction.INCOMING, RelationshipType.withName(FROM), RelationshipType.withName(TO))) {
+                Node connectionSet = connectionSetRel.getStartNode();
+                affectedConnectionSets.put(connectionSet.getId(), connectionSet);
+            }
+        }
+
+        for (Node connectionSet : affectedConnectionSets.values()) {
+            foldConnectionSetIntoTarget(connectionSet, targetNode, mergedNodes.keySet(), dataset, metaNodeRoiSet, thresholdMap);
+        }
+
+        if (preDelta > 0 || postDelta > 0 || targetNode.hasProperty(PRE) || targetNode.hasProperty(POST)) {
+            targetNode.setProperty(PRE, ((Number) targetNode.getProperty(PRE, 0L)).longValue() + preDelta);
+            targetNode.setProperty(POST, ((Number) targetNode.getProperty(POST, 0L)).longValue() + postDelta);
+        }
+
+        RoiInfo targetRoiInfo = RoiInfo.getRoiInfoFromString((String) targetNode.getProperty(ROI_INFO, "{}"));
+        targetRoiInfo.add(roiInfoDelta);
+        targetNode.setProperty(ROI_INFO, targetRoiInfo.getAsJsonString());
+        addRoiPropertiesToSegmentGivenSynapseCountsPerRoi(targetNode, roiInfoDelta);
+
+        if (targetAttachment != null) {
+            targetAttachment.writeTo(targetSynapseSet);
+        }
+
+        return affectedConnectionSets.size();
+    }
+
+    private void foldConnectionSetIntoTarget(Node connectionSet, Node targetNode, Set<Long> mergedBodyIds, String dataset, Set<String> metaNodeRoiSet, Map<String, Double> thresholdMap) {
+
+        Relationship fromRel = connectionSet.getSingleRelationship(RelationshipType.withName(FROM), Direction.OUTGOING);
+        Relationship toRel = connectionSet.getSingleRelationship(RelationshipType.withName(TO), Direction.OUTGOING);
+        Node preNode = fromRel.getEndNode();
+        Node postNode = toRel.getEndNode();
+        Relationship connectsToRel = getConnectsToRelationshipBetweenSegments(preNode, postNode, dataset);
+
+        Node newPreNode = mergedBodyIds.contains((long) preNode.getProperty(BODY_ID)) ? targetNode : preNode;
+        Node newPostNode = mergedBodyIds.contains((long) postNode.getProperty(BODY_ID)) ? targetNode : postNode;
+        long newPreBodyId = (long) newPreNode.getProperty(BODY_ID);
+        long newPostBodyId = (long) newPostNode.getProperty(BODY_ID);
+
+        Node targetConnectionSet = getConnectionSetNode(dbService, newPreBodyId, newPostBodyId, dataset);
+
+        if (targetConnectionSet == null) {
+            // no existing connection between the new partners: re-point the ConnectionSet and its ConnectsTo
+            if (newPreNode != preNode) {
+                fromRel.delete();
+                connectionSet.createRelationshipTo(newPreNode, RelationshipType.withName(FROM));
+            }
+            if (newPostNode != postNode) {
+                toRel.delete();
+                connectionSet.createRelationshipTo(newPostNode, RelationshipType.withName(TO));
+            }
+            connectionSet.setProperty(DATASET_BODY_IDs, dataset + ":" + newPreBodyId + ":" + newPostBodyId);
+
+            if (connectsToRel != null) {
+                Relationship newConnectsToRel = addConnectsToRelationship(newPreNode, newPostNode, ((Number) connectsToRel.getProperty(WEIGHT, 0L)).longValue());
+                if (connectsToRel.hasProperty(WEIGHT_HP)) {
+                    newConnectsToRel.setProperty(WEIGHT_HP, ((Number) connectsToRel.getProperty(WEIGHT_HP)).longValue());
+                }
+                connectsToRel.delete();
+            }
+
+        } else {
+            // move synapses not already in the target ConnectionSet and count what they add
+            RoiInfoWithHighPrecisionCounts roiInfoDelta = new RoiInfoWithHighPrecisionCounts();
+            long weightDelta = 0;
+            long weightHPDelta = 0;
+            long targetConnectionSetId = targetConnectionSet.getId();
+
+            for (Relationship containsRel : connectionSet.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
+                Node synapse = containsRel.getEndNode();
+                containsRel.delete();
+
+                boolean alreadyContained = false;
+                for (Relationship synapseContainsRel : synapse.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+                    if (synapseContainsRel.getStartNodeId() == targetConnectionSetId) {
+                        alreadyContained = true;
+                        break;
+                    }
+                }
+
+                if (!alreadyContained) {
+                    targetConnectionSet.createRelationshipTo(synapse, RelationshipType.withName(CONTAINS));
+                    int[] postAndPostHP = addSynapseToConnectionSetRoiInfo(roiInfoDelta, synapse, metaNodeRoiSet, thresholdMap);
+                    weightDelta += postAndPostHP[0];
+                    weightHPDelta += postAndPostHP[1];
+                }
+            }
+
+            RoiInfoWithHighPrecisionCounts targetRoiInfo = RoiInfoWithHighPrecisionCounts.getRoiInfoHPFromString((String) targetConnectionSet.getProperty(ROI_INFO, "{}"));
+            targetRoiInfo.add(roiInfoDelta);
+            targetConnectionSet.setProperty(ROI_INFO, targetRoiInfo.getAsJsonString());
+
+            Relationship targetConnectsToRel = getConnectsToRelationshipBetweenSegments(newPreNode, newPostNode, dataset);
+            if (targetConnectsToRel == null) {
+                targetConnectsToRel = addConnectsToRelationship(newPreNode, newPostNode, weightDelta);
+                targetConnectsToRel.setProperty(WEIGHT_HP, weightHPDelta);
+            } else {
+                targetConnectsToRel.setProperty(WEIGHT, ((Number) targetConnectsToRel.getProperty(WEIGHT, 0L)).longValue() + weightDelta);
+                targetConnectsToRel.setProperty(WEIGHT_HP, ((Number) targetConnectsToRel.getProperty(WEIGHT_HP, 0L)).longValue() + weightHPDelta);
+            }
+
+            removeAllRelationships(connectionSet);
+            connectionSet.delete();
+            if (connectsToRel != null) {
+                connectsToRel.delete();
+            }
+        }
+    }
+
+    @Procedure(value = "proofreader.cleaveNeuron", mode = Mode.WRITE)
+    @Description("proofreader.cleaveNeuron(cleaveActionJson, dataset) : Cleave or split synapses off a body into a new body. Input JSON should be a cleave/split action with \"OrigBodyId\", \"NewBodyId\" " +
+            "and \"NewBodySynapses\" (synapses given by \"type\" and \"location\") and optionally \"DVIDuuid\", \"MutationID\" and \"NewBodySize\". Only the listed synapses are moved; affected ConnectionSets, " +
+            "ConnectsTo weights, pre/post counts and roiInfo are updated by subtraction from the original body and addition to the new body. The original body's skeleton, " +
+            "skeleton metrics and synapse attachments no longer match the body and are deleted. Cleave actions " +
+            "with a MutationID no greater than the latest one applied for their DVIDuuid have already been applied and are skipped. " +
+            "e.g. CALL proofreader.cleaveNeuron('{\"DVIDuuid\":\"ab12\",\"MutationID\":6,\"Action\":\"cleave\",\"OrigBodyId\":100,\"NewBodyId\":103,\"NewBodySize\":500,\"NewBodySynapses\":[{\"type\":\"pre\",\"location\":[10,20,30]}]}', 'mb6')")
+    public void cleaveNeuron(@Name("cleaveActionJson") String cleaveActionJson, @Name("dataset") final String dataset) {
+
+        log.info("proofreader.cleaveNeuron: entry");
 
         try {
 
-            if (x == null || y == null || z == null || dataset == null) {
-                log.error("proofreader.orphanSynapse: Missing input arguments.");
-                throw new RuntimeException("proofreader.orphanSynapse: Missing input arguments.");
+            if (cleaveActionJson == null || dataset == null) {
+                log.error("proofreader.cleaveNeuron: Missing input arguments.");
+                throw new RuntimeException("proofreader.cleaveNeuron: Missing input arguments.");
             }
 
-            // acquire the synapse node
-            Node synapse = getSynapse(dbService, x, y, z, dataset);
+            CleaveOrSplitAction cleaveAction = JsonUtils.GSON.fromJson(cleaveActionJson, CleaveOrSplitAction.class);
+
+            if (cleaveAction == null || cleaveAction.getOriginalBodyId() == null || cleaveAction.getNewBodyId() == null || cleaveAction.getNewBodySynapses() == null) {
+                log.error("proofreader.cleaveNeuron: OrigBodyId, NewBodyId and NewBodySynapses are required fields in the cleave action json.");
+                throw new RuntimeException("proofreader.cleaveNeuron: OrigBodyId, NewBodyId and NewBodySynapses are required fields in the cleave action json.");
+            }
 
-            // acquire meta node for updating
             Node metaNode = getMetaNode(dbService, dataset);
             if (metaNode == null) {
                 log.error("Meta node not found for dataset: " + dataset);
                 throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
-            acquireWriteLockForNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
             Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
 
-            // warn if it doesn't exist
-            if (synapse == null) {
-                log.warn(String.format("proofreader.orphanSynapse: No synapse found at location [%f,%f,%f]. Aborting orphan procedure. ", x, y, z));
-            } else {
+            Node mutationLog = acquireMutationLog(metaNode, dataset, cleaveAction.getDvidUuid(), cleaveAction.getMutationId());
+            if (mutationLog != null && MutationLog.isApplied(mutationLog, metaNode, cleaveAction.getMutationId())) {
+                log.warn("proofreader.cleaveNeuron: Cleave action already applied. Skipping: " + cleaveAction);
+            } else {
+
+                final long origBodyId = cleaveAction.getOriginalBodyId();
+                final long newBodyId = cleaveAction.getNewBodyId();
+
+                Node origNode = getSegment(dbService, origBodyId, dataset);
+                if (origNode == null) {
+                    log.error("proofreader.cleaveNeuron: Original body " + origBodyId + " not found in database.");
+                    throw new RuntimeException("proofreader.cleaveNeuron: Original body " + origBodyId + " not found in database.");
+                }
+                if (getSegment(dbService, newBodyId, dataset) != null) {
+                    log.error("proofreader.cleaveNeuron: Body id " + newBodyId + " already exists in database.");
+                    throw new RuntimeException("proofreader.cleaveNeuron: Body id " + newBodyId + " already exists in database.");
+                }
+                acquireWriteLockForCleave(origNode, cleaveAction.getNewBodySynapses(), dataset);
+
+                final Node newNode = dbService.createNode(Label.label(SEGMENT), Label.label(dataset), Label.label(dataset + "-" + SEGMENT));
+                newNode.setProperty(BODY_ID, newBodyId);
+                if (cleaveAction.getDvidUuid() != null && cleaveAction.getMutationId() != null) {
+                    newNode.setProperty(MUTATION_UUID_ID, cleaveAction.getDvidUuid() + ":" + cleaveAction.getMutationId() + ":" + newBodyId);
+                }
+
+                List<Node> movedSynapses = moveSynapsesToNewSegment(origNode, newNode, cleaveAction.getNewBodySynapses(), dataset, metaNodeRoiSet);
+                int changedConnectionSets = splitConnectionSets(origNode, newNode, movedSynapses, dataset, metaNodeRoiSet, thresholdMap);
+
+                // the original body's skeleton still covers the cleaved-off part, so it is deleted with its metrics and attachments
+                if (!movedSynapses.isEmpty() && deleteSkeletonOfSegment(origNode)) {
+                    log.info("proofreader.cleaveNeuron: Deleted out-of-date skeleton of body " + origBodyId + ".");
+                }
+
+                if (cleaveAction.getNewBodySize() != null) {
+                    newNode.setProperty(SIZE, cleaveAction.getNewBodySize());
+                    if (origNode.hasProperty(SIZE)) {
+                        long origSize = ((Number) origNode.getProperty(SIZE)).longValue();
+                        origNode.setProperty(SIZE, Math.max(0L, origSize - cleaveAction.getNewBodySize()));
+                    }
+                }
+
+                if (shouldNotBeLabeledNeuron(origNode)) {
+                    removeNeuronDesignationFromNode(origNode, dataset);
+                }
+                if (!shouldNotBeLabeledNeuron(newNode)) {
+                    convertSegmentToNeuron(newNode, dataset, metaNode);
+                }
+
+                if (mutationLog != null) {
+                    MutationLog.record(mutationLog, cleaveAction.getMutationId());
+                }
+
+                log.info("proofreader.cleaveNeuron: Moved " + movedSynapses.size() + " synapses from " + origBodyId + " to " + newBodyId + ". Updated " + changedConnectionSets + " ConnectionSets.");
+            }
+
+        } catch (Exception e) {
+            log.error("Error running proofreader.cleaveNeuron: " + e);
+            throw new RuntimeException("Error running proofreader.cleaveNeuron: " + e);
+        }
+
+        log.info("proofreader.cleaveNeuron: exit");
+
+    }
+
+    private void acquireWriteLockForCleave(Node origNode, Set<Synapse> synapses, String dataset) {
+        // only what the cleave changes: the original segment and synapse set, the moved synapses, their partners,
+        // the ConnectionSets containing them and the ConnectsTo relationships of those ConnectionSets; locked in id order
+        Map<Long, Node> nodes = new TreeMap<>();
+        Map<Long, Relationship> relationships = new TreeMap<>();
+
+        nodes.put(origNode.getId(), origNode);
+        Node origSynapseSet = getSynapseSetForNeuron(origNode);
+        if (origSynapseSet != null) {
+            nodes.put(origSynapseSet.getId(), origSynapseSet);
+        }
+
+        for (Synapse synapse : synapses) {
+            org.janelia.flyem.neuprint.model.Location synapseLocation = synapse.getLocation();
+            Node synapseNode = getSynapse(dbService, new Location(synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()), dataset);
+            if (synapseNode == null) {
+                // reported when the synapses are moved
+                continue;
+            }
+            nodes.put(synapseNode.getId(), synapseNode);
+            for (Relationship synapsesToRel : synapseNode.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+                Node partner = synapsesToRel.getOtherNode(synapseNode);
+                nodes.put(partner.getId(), partner);
+            }
+            for (Relationship containsRel : synapseNode.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+                Node connectionSet = containsRel.getStartNode();
+                if (!connectionSet.hasLabel(Label.label(CONNECTION_SET))) {
+                    continue;
+                }
+                nodes.put(connectionSet.getId(), connectionSet);
+                Node preNode = connectionSet.getSingleRelationship(RelationshipType.withName(FROM), Direction.OUTGOING).getEndNode();
+                Node postNode = connectionSet.getSingleRelationship(RelationshipType.withName(TO), Direction.OUTGOING).getEndNode();
+                Relationship connectsToRel = getConnectsToRelationshipBetweenSegments(preNode, postNode, dataset);
+                if (connectsToRel != null) {
+                    relationships.put(connectsToRel.getId(), connectsToRel);
+                }
+            }
+        }
+
+        nodes.values().forEach(this::acquireWriteLockForNode);
+        relationships.values().forEach(this::acquireWriteLockForRelationship);
+    }
+
+    private List<Node> moveSynapsesToNewSegment(Node origNode, Node newNode, Set<Synapse> synapses, String dataset, Set<String> metaNodeRoiSet) {
+
+        final long origBodyId = (long) origNode.getProperty(BODY_ID);
+        Node origSynapseSet = getSynapseSetForNeuron(origNode);
+        Node newSynapseSet = createSynapseSetForSegment(newNode, dataset);
+
+        RoiInfo origRoiInfo = RoiInfo.getRoiInfoFromString((String) origNode.getProperty(ROI_INFO, "{}"));
+        RoiInfo newRoiInfo = new RoiInfo();
+        long preMoved = 0;
+        long postMoved = 0;
+        List<Node> movedSynapses = new ArrayList<>();
+
+        for (Synapse synapse : synapses) {
+
+            org.janelia.flyem.neuprint.model.Location synapseLocation = synapse.getLocation();
+            Node synapseNode = getSynapse(dbService, new Location(synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()), dataset);
+            if (synapseNode == null) {
+                log.error("Synapse not found in database: " + synapse);
+                throw new RuntimeException("Synapse not found in database: " + synapse);
+            }
+
+            Relationship synapseSetRel = null;
+            if (origSynapseSet != null) {
+                for (Relationship containsRel : synapseNode.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+                    if (containsRel.getStartNodeId() == origSynapseSet.getId()) {
+                        synapseSetRel = containsRel;
+                        break;
+                    }
+                }
+            }
+            if (synapseSetRel == null) {
+                if (newSynapseSet.equals(getSynapseSetOfSynapse(synapseNode))) {
+                    // listed twice
+                    continue;
+                }
+                log.error("Synapse does not belong to body " + origBodyId + ": " + synapse);
+                throw new RuntimeException("Synapse does not belong to body " + origBodyId + ": " + synapse);
+            }
+
+            synapseSetRel.delete();
+            addSynapseToSynapseSet(newSynapseSet, synapseNode);
+            movedSynapses.add(synapseNode);
+
+            String synapseType = getSynapseType(synapseNode, (double) synapseLocation.getX(), (double) synapseLocation.getY(), (double) synapseLocation.getZ());
+            Set<String> synapseRois = getSynapseRois(synapseNode, metaNodeRoiSet);
+            if (synapseType.equals(PRE)) {
+                preMoved++;
+                for (String roi : synapseRois) {
+                    origRoiInfo.decrementPreForRoi(roi);
+                    newRoiInfo.incrementPreForRoi(roi);
+                }
+            } else {
+                postMoved++;
+                for (String roi : synapseRois) {
+                    origRoiInfo.decrementPostForRoi(roi);
+                    newRoiInfo.incrementPostForRoi(roi);
+                }
+            }
+        }
+
+        // original body: subtract what was moved
+        origNode.setProperty(PRE, ((Number) origNode.getProperty(PRE, 0L)).longValue() - preMoved);
+        origNode.setProperty(POST, ((Number) origNode.getProperty(POST, 0L)).longValue() - postMoved);
+        origNode.setProperty(ROI_INFO, origRoiInfo.getAsJsonString());
+        Set<String> roisToRemove = getSegmentRois(origNode, metaNodeRoiSet);
+        roisToRemove.removeAll(origRoiInfo.getSetOfRois());
+        for (String roi : roisToRemove) {
+            origNode.removeProperty(roi);
+        }
+
+        // new body: exactly what was moved
+        newNode.setProperty(PRE, preMoved);
+        newNode.setProperty(POST, postMoved);
+        newNode.setProperty(ROI_INFO, newRoiInfo.getAsJsonString());
+        addRoiPropertiesToSegmentGivenSynapseCountsPerRoi(newNode, newRoiInfo);
+
+        return movedSynapses;
+    }
+
+    private Node getSynapseSetOfSynapse(Node synapse) {
+        for (Relationship containsRel : synapse.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+            if (containsRel.getStartNode().hasLabel(Label.label(SYNAPSE_SET))) {
+                return containsRel.getStartNode();
+            }
+        }
+        return null;
+    }
+
+    private int splitConnectionSets(Node origNode, Node newNode, List<Node> movedSynapses, String dataset, Set<String> metaNodeRoiSet, Map<String, Double> thresholdMap) {
 
-                acquireWriteLockForNode(synapse);
+        Set<Long> movedSynapseIds = new HashSet<>();
+        movedSynapses.forEach(s -> movedSynapseIds.add(s.getId()));
 
-                String synapseType;
-                if (synapse.hasProperty(TYPE)) {
-                    synapseType = (String) synapse.getProperty(TYPE);
-                } else {
-                    log.error(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
-                    throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property.", x, y, z));
+        Map<String, ConnectionSetChange> changes = new LinkedHashMap<>();
+        Set<Long> visitedSynapticRelationships = new HashSet<>();
+
+        // each synaptic connection with a moved endpoint leaves its old ConnectionSet and joins the one for the new pair of bodies
+        for (Node movedSynapse : movedSynapses) {
+            for (Relationship synapsesToRel : movedSynapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+                if (!visitedSynapticRelationships.add(synapsesToRel.getId())) {
+                    continue;
                 }
-                if (!synapseType.equals(PRE) && !synapseType.equals(POST)) {
-                    log.error(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
-                    throw new RuntimeException(String.format("Synapse at location [%f,%f,%f] does not have type property equal to 'pre' or 'post'.", x, y, z));
+                Node preSynapse = synapsesToRel.getStartNode();
+                Node postSynapse = synapsesToRel.getEndNode();
+                Node preSegment = GraphTraversalTools.getSegmentThatContainsSynapse(preSynapse);
+                Node postSegment = GraphTraversalTools.getSegmentThatContainsSynapse(postSynapse);
+                if (preSegment == null || postSegment == null) {
+                    continue;
                 }
+                Node origPreSegment = movedSynapseIds.contains(preSynapse.getId()) ? origNode : preSegment;
+                Node origPostSegment = movedSynapseIds.contains(postSynapse.getId()) ? origNode : postSegment;
 
-                Node containingSegment = getSegmentThatContainsSynapse(synapse);
+                ConnectionSetChange oldChange = getConnectionSetChange(changes, origPreSegment, origPostSegment, dataset, false);
+                if (oldChange != null) {
+                    oldChange.addRemovalCandidate(preSynapse);
+                    oldChange.addRemovalCandidate(postSynapse);
+                }
 
-                // if orphan already, do nothing
-                if (containingSegment == null) {
-                    log.warn(String.format("proofreader.orphanSynapse: Synapse at location [%f,%f,%f] is already orphaned. Aborting orphan procedure. ", x, y, z));
-                } else {
+                ConnectionSetChange newChange = getConnectionSetChange(changes, preSegment, postSegment, dataset, true);
+                addSynapseToConnectionSetChange(newChange, preSynapse, metaNodeRoiSet, thresholdMap);
+                addSynapseToConnectionSetChange(newChange, postSynapse, metaNodeRoiSet, thresholdMap);
+            }
+        }
 
-                    orphanSynapse(synapse, dataset, thresholdMap, metaNodeRoiSet);
+        // synapses stay in their old ConnectionSet only if they still have a partner across the same pair of bodies
+        for (ConnectionSetChange change : changes.values()) {
+            long connectionSetId = change.getConnectionSet().getId();
+            for (Node synapse : change.getRemovalCandidates()) {
+                if (hasSynapticPartnerBetweenSegments(synapse, change.getPreSegment(), change.getPostSegment())) {
+                    continue;
+                }
+                for (Relationship containsRel : synapse.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+                    if (containsRel.getStartNodeId() == connectionSetId) {
+                        containsRel.delete();
+                        change.subtractFromWeights(removeSynapseFromConnectionSetRoiInfo(change.getRoiInfo(), synapse, metaNodeRoiSet, thresholdMap));
+                        break;
+                    }
+                }
+            }
+        }
 
-                    Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+        for (ConnectionSetChange change : changes.values()) {
+            applyConnectionSetChange(change, dataset);
+        }
 
-                    // recompute information on containing segment
-                    recomputeSegmentPropertiesFollowingSynapseRemoval(synapseRois, synapseType, containingSegment, dataset, metaNodeRoiSet);
+        return changes.size();
+    }
 
+    private ConnectionSetChange getConnectionSetChange(Map<String, ConnectionSetChange> changes, Node preSegment, Node postSegment, String dataset, boolean createIfAbsent) {
+        long preBodyId = (long) preSegment.getProperty(BODY_ID);
+        long postBodyId = (long) postSegment.getProperty(BODY_ID);
+        String pairKey = preBodyId + ":" + postBodyId;
+
+        ConnectionSetChange change = changes.get(pairKey);
+        if (change == null) {
+            Node connectionSet = getConnectionSetNode(dbService, preBodyId, postBodyId, dataset);
+            if (connectionSet == null) {
+                if (!createIfAbsent) {
+                    log.warn("ConnectionSet " + dataset + ":" + pairKey + " not found in database.");
+                    return null;
                 }
+                connectionSet = createConnectionSetNode(dataset, preSegment, postSegment);
+            }
+            change = new ConnectionSetChange(connectionSet, preSegment, postSegment);
+            changes.put(pairKey, change);
+        }
+        return change;
+    }
 
+    private void addSynapseToConnectionSetChange(ConnectionSetChange change, Node synapse, Set<String> metaNodeRoiSet, Map<String, Double> thresholdMap) {
+        long connectionSetId = change.getConnectionSet().getId();
+        for (Relationship containsRel : synapse.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+            if (containsRel.getStartNodeId() == connectionSetId) {
+                return;
             }
+        }
+        change.getConnectionSet().createRelationshipTo(synapse, RelationshipType.withName(CONTAINS));
+        change.addToWeights(addSynapseToConnectionSetRoiInfo(change.getRoiInfo(), synapse, metaNodeRoiSet, thresholdMap));
+    }
 
-        } catch (Exception e) {
-            log.error("proofreader.orphanSynapse: " + e);
-            throw new RuntimeException("proofreader.orphanSynapse: " + e);
+    private boolean hasSynapticPartnerBetweenSegments(Node synapse, Node preSegment, Node postSegment) {
+        for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+            Node currentPreSegment = GraphTraversalTools.getSegmentThatContainsSynapse(synapsesToRel.getStartNode());
+            Node currentPostSegment = GraphTraversalTools.getSegmentThatContainsSynapse(synapsesToRel.getEndNode());
+            if (preSegment.equals(currentPreSegment) && postSegment.equals(currentPostSegment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void applyConnectionSetChange(ConnectionSetChange change, String dataset) {
+        Node connectionSet = change.getConnectionSet();
+        Relationship connectsToRel = getConnectsToRelationshipBetweenSegments(change.getPreSegment(), change.getPostSegment(), dataset);
+
+        long weight = change.getWeightDelta();
+        long weightHP = change.getWeightHPDelta();
+        if (connectsToRel != null) {
+            weight += ((Number) connectsToRel.getProperty(WEIGHT, 0L)).longValue();
+            weightHP += ((Number) connectsToRel.getProperty(WEIGHT_HP, 0L)).longValue();
         }
 
-        log.info("proofreader.orphanSynapse: exit");
+        if (weight > 0) {
+            connectionSet.setProperty(ROI_INFO, change.getRoiInfo().getAsJsonString());
+            if (connectsToRel == null) {
+                connectsToRel = addConnectsToRelationship(change.getPreSegment(), change.getPostSegment(), weight);
+            } else {
+                connectsToRel.setProperty(WEIGHT, weight);
+            }
+            connectsToRel.setProperty(WEIGHT_HP, weightHP);
+        } else {
+            // no connections left between the two bodies
+            if (connectsToRel != null) {
+                connectsToRel.delete();
+            }
+            removeAllRelationships(connectionSet);
+            connectionSet.delete();
+        }
+    }
+
+    private int[] addSynapseToConnectionSetRoiInfo(RoiInfoWithHighPrecisionCounts roiInfo, Node synapse, Set<String> metaNodeRoiSet, Map<String, Double> thresholdMap) {
+        // follows the counting rules used when ConnectionSet roiInfo is computed from scratch; returns {post, postHP}
+        String synapseType = (String) synapse.getProperty(TYPE, null);
+        Double confidence = synapse.hasProperty(CONFIDENCE) ? ((Number) synapse.getProperty(CONFIDENCE)).doubleValue() : null;
+        Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+
+        if (PRE.equals(synapseType)) {
+            boolean isHighPrecision = confidence != null && confidence > thresholdMap.get(PRE_HP_THRESHOLD);
+            for (String roi : synapseRois) {
+                roiInfo.incrementPreForRoi(roi);
+                if (isHighPrecision) {
+                    roiInfo.incrementPreHPForRoi(roi);
+                }
+            }
+            return new int[]{0, 0};
+        } else if (POST.equals(synapseType)) {
+            boolean isHighPrecision = confidence != null && confidence > thresholdMap.get(POST_HP_THRESHOLD);
+            for (String roi : synapseRois) {
+                roiInfo.incrementPostForRoi(roi);
+                if (isHighPrecision) {
+                    roiInfo.incrementPostHPForRoi(roi);
+                }
+            }
+            return new int[]{1, isHighPrecision ? 1 : 0};
+        }
+        return new int[]{0, 0};
+    }
+
+    private int[] removeSynapseFromConnectionSetRoiInfo(RoiInfoWithHighPrecisionCounts roiInfo, Node synapse, Set<String> metaNodeRoiSet, Map<String, Double> thresholdMap) {
+        // inverse of addSynapseToConnectionSetRoiInfo; returns {post, postHP} removed
+        String synapseType = (String) synapse.getProperty(TYPE, null);
+        Double confidence = synapse.hasProperty(CONFIDENCE) ? ((Number) synapse.getProperty(CONFIDENCE)).doubleValue() : null;
+        Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+
+        if (PRE.equals(synapseType)) {
+            boolean isHighPrecision = confidence != null && confidence > thresholdMap.get(PRE_HP_THRESHOLD);
+            for (String roi : synapseRois) {
+                if (isHighPrecision) {
+                    roiInfo.decrementPreHPForRoi(roi);
+                }
+                roiInfo.decrementPreForRoi(roi);
+            }
+            return new int[]{0, 0};
+        } else if (POST.equals(synapseType)) {
+            boolean isHighPrecision = confidence != null && confidence > thresholdMap.get(POST_HP_THRESHOLD);
+            for (String roi : synapseRois) {
+                if (isHighPrecision) {
+                    roiInfo.decrementPostHPForRoi(roi);
+                }
+                roiInfo.decrementPostForRoi(roi);
+            }
+            return new int[]{1, isHighPrecision ? 1 : 0};
+        }
+        return new int[]{0, 0};
+    }
 
+    private Node acquireMutationLog(Node metaNode, String dataset, String mutationUuid, Long mutationId) {
+        // actions without a uuid and mutation id are not tracked and take no lock
+        if (mutationUuid == null || mutationId == null) {
+            return null;
+        }
+        return MutationLog.acquire(dbService, metaNode, dataset, mutationUuid);
     }
 
     @Procedure(value = "proofreader.addGenericCollectionToSegment", mode = Mode.WRITE)
@@ -1778,6 +2827,309 @@ public class ProofreaderProcedures {
         log.info("temp.removeDuplicateContainsRelForConnectionSet: exit");
     }
 
+    private void updateNeuronProperties(Neuron neuron, Node neuronNode, String datasetLabel, Node metaNode) {
+        acquireWriteLockForNode(neuronNode);
+
+        boolean isNeuron = false;
+
+        if (neuron.getStatus() != null) {
+            neuronNode.setProperty(STATUS, neuron.getStatus());
+            // adding a status makes it a Neuron
+            isNeuron = true;
+            log.info("Updated status for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getName() != null) {
+            neuronNode.setProperty(NAME, neuron.getName());
+            // adding a name makes it a Neuron
+            isNeuron = true;
+            log.info("Updated name for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getInstance() != null) {
+            neuronNode.setProperty(INSTANCE, neuron.getInstance());
+            // adding an instance makes it a Neuron
+            isNeuron = true;
+            log.info("Updated instance for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getPrimaryNeurite() != null) {
+            neuronNode.setProperty(PRIMARY_NEURITE, neuron.getPrimaryNeurite());
+            isNeuron = true;
+            log.info("Updated primaryNeurite for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getMajorInput() != null) {
+            neuronNode.setProperty(MAJOR_INPUT, neuron.getMajorInput());
+            isNeuron = true;
+            log.info("Updated majorInput for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getMajorOutput() != null) {
+            neuronNode.setProperty(MAJOR_OUTPUT, neuron.getMajorOutput());
+            isNeuron = true;
+            log.info("Updated majorOutput for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getClonalUnit() != null) {
+            neuronNode.setProperty(CLONAL_UNIT, neuron.getClonalUnit());
+            isNeuron = true;
+            log.info("Updated clonalUnit for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getNeurotransmitter() != null) {
+            neuronNode.setProperty(NEUROTRANSMITTER, neuron.getNeurotransmitter());
+            isNeuron = true;
+            log.info("Updated neurotransmitter for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getProperty() != null) {
+            neuronNode.setProperty(PROPERTY, neuron.getProperty());
+            isNeuron = true;
+            log.info("Updated property for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getSize() != null) {
+            neuronNode.setProperty(SIZE, neuron.getSize());
+            log.info("Updated size for neuron " + neuron.getId() + ".");
+        }
+
+        if (neuron.getSoma() != null) {
+            org.janelia.flyem.neuprint.model.Location somaLocation = neuron.getSoma().getLocation();
+            Point somaLocationPoint = new Location(somaLocation.getX(), somaLocation.getY(), somaLocation.getZ());
+            neuronNode.setProperty(SOMA_LOCATION, somaLocationPoint);
+            neuronNode.setProperty(SOMA_RADIUS, neuron.getSoma().getRadius());
+            log.info("Updated soma for neuron " + neuron.getId() + ".");
+
+            //adding a soma makes it a Neuron
+            isNeuron = true;
+        }
+
+        if (neuron.getType() != null) {
+            neuronNode.setProperty(TYPE, neuron.getType());
+            log.info("Updated type for neuron " + neuron.getId() + ".");
+        }
+
+        if (isNeuron) {
+            convertSegmentToNeuron(neuronNode, datasetLabel, metaNode);
+        }
+
+    }
+
+    private void addNeuron(NeuronAddition neuronAddition, String datasetLabel, Node metaNode, Set<String> metaNodeRoiSet) {
+
+        if (neuronAddition.getMutationUuid() == null || neuronAddition.getBodyId() == null) {
+            log.error("proofreader.addNeuron: body id and uuid are required fields in the neuron addition json.");
+            throw new RuntimeException("proofreader.addNeuron: body id and uuid are required fields in the neuron addition json.");
+        }
+
+        if (neuronAddition.getMutationId() == null) {
+            neuronAddition.setToInitialMutationId();
+        }
+
+        // check that this mutation hasn't been done before (in order to be unique, needs to include uuid+mutationid+bodyId)
+        String mutationKey = neuronAddition.getMutationUuid() + ":" + neuronAddition.getMutationId() + ":" + neuronAddition.getBodyId();
+        Node existingMutatedNode = dbService.findNode(Label.label(datasetLabel + "-" + SEGMENT), MUTATION_UUID_ID, mutationKey);
+        if (existingMutatedNode != null) {
+            log.error("Mutation already found in the database: " + neuronAddition.toString());
+            throw new RuntimeException("Mutation already found in the database: " + neuronAddition.toString());
+        }
+
+        log.info("Beginning addition: " + neuronAddition);
+        // create a new node and synapse set for that node
+        final long newNeuronBodyId = neuronAddition.getBodyId();
+        final Node newNeuron = dbService.createNode(Label.label(SEGMENT),
+                Label.label(datasetLabel),
+                Label.label(datasetLabel + "-" + SEGMENT));
+
+        try {
+            newNeuron.setProperty(BODY_ID, newNeuronBodyId);
+        } catch (org.neo4j.graphdb.ConstraintViolationException cve) {
+            log.error("Body id " + newNeuronBodyId + " already exists in database. Aborting addition for mutation with id : " + mutationKey);
+            throw new RuntimeException("Body id " + newNeuronBodyId + " already exists in database. Aborting addition for mutation with id : " + mutationKey);
+        }
+
+        final Node newSynapseSet = createSynapseSetForSegment(newNeuron, datasetLabel);
+
+        // add appropriate synapses via synapse sets; add each synapse to the new body's synapseset
+        // completely add everything here so that there's nothing left on the synapse store
+        // add the new body id to the synapse sources
+
+        Set<Synapse> currentSynapses = neuronAddition.getCurrentSynapses();
+        long preCount = 0L;
+        long postCount = 0L;
+
+        if (currentSynapses != null) {
+            Set<Synapse> notFoundSynapses = new HashSet<>(currentSynapses);
+
+            // from synapses, derive connectsto, connection sets, rois/roiInfo, pre/post counts
+            final ConnectsToRelationshipMap connectsToRelationshipMap = new ConnectsToRelationshipMap();
+            final RoiInfo roiInfo = new RoiInfo();
+
+            for (Synapse synapse : currentSynapses) {
+
+                // get the synapse by location
+                org.janelia.flyem.neuprint.model.Location synapseLocation = synapse.getLocation();
+                Point synapseLocationPoint = new Location(synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ());
+                Node synapseNode = getSynapse(dbService, synapseLocationPoint, datasetLabel);
+
+                if (synapseNode == null) {
+                    log.error("Synapse not found in database: " + synapse);
+                    throw new RuntimeException("Synapse not found in database: " + synapse);
+                }
+
+                if (synapseNode.hasRelationship(RelationshipType.withName(CONTAINS))) {
+                    Node bodyWithSynapse = getSegmentThatContainsSynapse(synapseNode);
+                    Long bodyWithSynapseId;
+                    try {
+                        bodyWithSynapseId = (Long) bodyWithSynapse.getProperty(BODY_ID);
+                    } catch (Exception e) {
+                        log.error("Error retrieving body ID from segment with Neo4j ID " + bodyWithSynapse.getId() + ": " + e);
+                        throw new RuntimeException("Error retrieving body ID from segment with Neo4j ID " + bodyWithSynapse.getId() + ": " + e);
+
+                    }
+                    log.error("Synapse is already assigned to another body. body id: " + bodyWithSynapseId + ", synapse: " + synapse);
+                    throw new RuntimeException("Synapse is already assigned to another body. body id: " + bodyWithSynapseId + ", synapse: " + synapse);
+                }
+
+                // add synapse to the new synapse set
+                newSynapseSet.createRelationshipTo(synapseNode, RelationshipType.withName(CONTAINS));
+                // remove this synapse from the not found set
+                notFoundSynapses.remove(synapse);
+
+                // get the synapse type
+                String synapseType;
+                if (synapseNode.hasProperty(TYPE)) {
+                    synapseType = (String) synapseNode.getProperty(TYPE);
+                } else {
+                    log.error(String.format("Synapse at location [%d,%d,%d] does not have type property.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
+                    throw new RuntimeException(String.format("Synapse at location [%d,%d,%d] does not have type property.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
+                }
+
+                // get synapse rois for adding to the body and roiInfo
+                final Set<String> synapseRois = getSynapseRois(synapseNode, metaNodeRoiSet);
+
+                if (synapseType.equals(PRE)) {
+                    for (String roi : synapseRois) {
+                        roiInfo.incrementPreForRoi(roi);
+                    }
+                    preCount++;
+                } else if (synapseType.equals(POST)) {
+                    for (String roi : synapseRois) {
+                        roiInfo.incrementPostForRoi(roi);
+                    }
+                    postCount++;
+                } else {
+                    log.error(String.format("Synapse at location [%d,%d,%d] does not have type property equal to 'pre' or 'post'.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
+                    throw new RuntimeException(String.format("Synapse at location [%d,%d,%d] does not have type property equal to 'pre' or 'post'.", synapseLocation.getX(), synapseLocation.getY(), synapseLocation.getZ()));
+                }
+
+                if (synapseNode.hasRelationship(RelationshipType.withName(SYNAPSES_TO))) {
+                    for (Relationship synapticRelationship : synapseNode.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+                        Node synapticPartner = synapticRelationship.getOtherNode(synapseNode);
+
+                        Node connectedSegment = getSegmentThatContainsSynapse(synapticPartner);
+
+                        if (connectedSegment != null) {
+                            if (synapseType.equals(PRE)) {
+                                connectsToRelationshipMap.insertSynapsesIntoConnectsToRelationship(newNeuron, connectedSegment, synapseNode, synapticPartner);
+                            } else {
+                                connectsToRelationshipMap.insertSynapsesIntoConnectsToRelationship(connectedSegment, newNeuron, synapticPartner, synapseNode);
+                            }
+                        }
+                    }
+                }
+
+            }
+
+            if (!notFoundSynapses.isEmpty()) {
+                log.error("Some synapses were not found for neuron addition. Mutation UUID: " + neuronAddition.getMutationUuid() + " Mutation ID: " + neuronAddition.getMutationId() + " Synapse(s): " + notFoundSynapses);
+                throw new RuntimeException("Some synapses were not found for neuron addition. Mutation UUID: " + neuronAddition.getMutationUuid() + " Mutation ID: " + neuronAddition.getMutationId() + " Synapse(s): " + notFoundSynapses);
+            }
+
+            log.info("Found and added all synapses to synapse set for body id " + newNeuronBodyId);
+            log.info("Completed making map of ConnectsTo relationships.");
+
+            // add synapse and synaptic partners to connection set; set connectsto relationships
+            createConnectionSetsAndConnectsToRelationships(connectsToRelationshipMap, datasetLabel, metaNode, metaNodeRoiSet);
+            log.info("Completed creating ConnectionSets and ConnectsTo relationships.");
+
+            // add roi boolean properties and roi info
+            addRoiPropertiesToSegmentGivenSynapseCountsPerRoi(newNeuron, roiInfo);
+            newNeuron.setProperty(ROI_INFO, roiInfo.getAsJsonString());
+            log.info("Completed updating roi information.");
+
+        }
+        // set pre and post on body; other properties
+        newNeuron.setProperty(PRE, preCount);
+        newNeuron.setProperty(POST, postCount);
+        newNeuron.setProperty(SIZE, neuronAddition.getSize());
+        newNeuron.setProperty(MUTATION_UUID_ID, mutationKey);
+
+        // check for optional properties; add to neuron if present; decide if there should be a neuron label (has name, has soma, has pre+post>10)
+        boolean isNeuron = false;
+        if (neuronAddition.getStatus() != null) {
+            newNeuron.setProperty(STATUS, neuronAddition.getStatus());
+        }
+
+        if (neuronAddition.getName() != null) {
+            newNeuron.setProperty(NAME, neuronAddition.getName());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getInstance() != null) {
+            newNeuron.setProperty(INSTANCE, neuronAddition.getInstance());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getPrimaryNeurite() != null) {
+            newNeuron.setProperty(PRIMARY_NEURITE, neuronAddition.getPrimaryNeurite());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getMajorInput() != null) {
+            newNeuron.setProperty(MAJOR_INPUT, neuronAddition.getMajorInput());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getMajorOutput() != null) {
+            newNeuron.setProperty(MAJOR_OUTPUT, neuronAddition.getMajorOutput());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getClonalUnit() != null) {
+            newNeuron.setProperty(CLONAL_UNIT, neuronAddition.getClonalUnit());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getNeurotransmitter() != null) {
+            newNeuron.setProperty(NEUROTRANSMITTER, neuronAddition.getNeurotransmitter());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getProperty() != null) {
+            newNeuron.setProperty(PROPERTY, neuronAddition.getProperty());
+            isNeuron = true;
+        }
+
+        if (neuronAddition.getSoma() != null) {
+            newNeuron.setProperty(SOMA_RADIUS, neuronAddition.getSoma().getRadius());
+            org.janelia.flyem.neuprint.model.Location somaLocation = neuronAddition.getSoma().getLocation();
+            Point somaLocationPoint = new Location(somaLocation.getX(), somaLocation.getY(), somaLocation.getZ());
+            newNeuron.setProperty(SOMA_LOCATION, somaLocationPoint);
+            isNeuron = true;
+        }
+
+        if (preCount >= 2 || postCount >= 10) {
+            isNeuron = true;
+        }
+
+        if (isNeuron) {
+            convertSegmentToNeuron(newNeuron, datasetLabel, metaNode);
+        }
+
+    }
+
     private void recomputeSegmentPropertiesFollowingSynapseRemoval(Set<String> synapseRois, String synapseType, Node containingSegment, String dataset, Set<String> metaNodeRoiSet) {
         // set pre and post count
         if (synapseType.equals(PRE)) {
@@ -1844,19 +3196,21 @@ public class ProofreaderProcedures {
 
     }
 
-    private void orphanSynapse(Node synapse, String dataset, Map<String, Double> thresholdMap, Set<String> metaNodeRoiSet) {
+    private void orphanSynapse(Node synapse, String dataset, MutationBatch mutationBatch) {
         // get list of affected connection sets
         Set<Node> affectedConnectionSets = getConnectionSetsAffectedBySynapse(synapse, dataset);
 
         // delete relationships to synapse set and connection set
         for (Relationship containsRel : synapse.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+            if (containsRel.getStartNode().hasLabel(Label.label(SYNAPSE_SET))) {
+                SynapseAttachment.removeSynapseFrom(containsRel.getStartNode(), synapse);
+            }
             containsRel.delete();
         }
+        synapse.getRelationships(RelationshipType.withName(ATTACHED_TO), Direction.OUTGOING).forEach(Relationship::delete);
 
-        // recompute connection set and ConnectsTo information
-        for (Node connectionSet : affectedConnectionSets) {
-            computeAndSetConnectionInformation(connectionSet, thresholdMap, metaNodeRoiSet);
-        }
+        // connection set and ConnectsTo information is recomputed once all changes have been made
+        mutationBatch.addConnectionSets(affectedConnectionSets);
     }
 
     private Node getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(Long preBodyId, Long postBodyId, Node preBody, Node postBody, Node preSynapse, Node postSynapse, String dataset) {
@@ -1981,32 +3335,6 @@ public class ProofreaderProcedures {
 
     }
 
-    private void incrementMetaNodeTotalPreCount(Node metaNode) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(TOTAL_PRE_COUNT)) {
-                Long currentTotalPreCount = (Long) metaNode.getProperty(TOTAL_PRE_COUNT);
-                metaNode.setProperty(TOTAL_PRE_COUNT, ++currentTotalPreCount);
-            } else {
-                log.warn("No totalPreCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPreCount will not be updated.");
-        }
-    }
-
-    private void decrementMetaNodeTotalPreCount(Node metaNode) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(TOTAL_PRE_COUNT)) {
-                Long currentTotalPreCount = (Long) metaNode.getProperty(TOTAL_PRE_COUNT);
-                metaNode.setProperty(TOTAL_PRE_COUNT, --currentTotalPreCount);
-            } else {
-                log.warn("No totalPreCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPreCount will not be updated.");
-        }
-    }
-
     private void decrementConnectsToWeight(Relationship connectsToRel) {
         Long currentWeight;
         if (connectsToRel.hasProperty(WEIGHT)) {
@@ -2029,34 +3357,6 @@ public class ProofreaderProcedures {
         connectsToRel.setProperty(WEIGHT_HP, --currentWeightHP);
     }
 
-    private void incrementMetaNodeTotalPostCount(Node metaNode) {
-        if (metaNode != null) {
-            Long currentTotalPostCount;
-            if (metaNode.hasProperty(TOTAL_POST_COUNT)) {
-                currentTotalPostCount = (Long) metaNode.getProperty(TOTAL_POST_COUNT);
-                metaNode.setProperty(TOTAL_POST_COUNT, ++currentTotalPostCount);
-            } else {
-                log.warn("No totalPostCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPostCount will not be updated.");
-        }
-    }
-
-    private void decrementMetaNodeTotalPostCount(Node metaNode) {
-        if (metaNode != null) {
-            Long currentTotalPostCount;
-            if (metaNode.hasProperty(TOTAL_POST_COUNT)) {
-                currentTotalPostCount = (Long) metaNode.getProperty(TOTAL_POST_COUNT);
-                metaNode.setProperty(TOTAL_POST_COUNT, --currentTotalPostCount);
-            } else {
-                log.warn("No totalPostCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPostCount will not be updated.");
-        }
-    }
-
     private void decrementSegmentPreCount(Node segment) {
         if (segment.hasProperty(PRE)) {
             Long currentTotalPreCount = (Long) segment.getProperty(PRE);
@@ -2079,7 +3379,9 @@ public class ProofreaderProcedures {
 
     private void addSynapseToMetaRoiInfo(Node metaNode, String roiName, String synapseType) {
         if (metaNode != null) {
-            if (metaNode.hasProperty(ROI_INFO)) {
+            if (MetaCounts.isDeferred(metaNode)) {
+                MetaCounts.recordRoiDelta(dbService, (String) metaNode.getProperty(DATASET), roiName, synapseType, 1);
+            } else if (metaNode.hasProperty(ROI_INFO)) {
                 String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO);
                 String roiInfoJsonString = addSynapseToRoiInfo(metaRoiInfoString, roiName, synapseType);
                 metaNode.setProperty(ROI_INFO, roiInfoJsonString);
@@ -2105,20 +3407,6 @@ public class ProofreaderProcedures {
 
     }
 
-    private void removeSynapseFromMetaRoiInfo(Node metaNode, String roiName, String synapseType) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(ROI_INFO)) {
-                String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO);
-                String roiInfoJsonString = removeSynapseFromRoiInfo(metaRoiInfoString, roiName, synapseType);
-                metaNode.setProperty(ROI_INFO, roiInfoJsonString);
-            } else {
-                log.warn("No roiInfo property found on Meta node. roiInfo will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. roiInfo will not be updated.");
-        }
-    }
-
     private boolean roiInfoContainsRoi(String roiInfoString, String queriedRoi) {
         Map<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter> roiInfoMap = getRoiInfoAsMap(roiInfoString);
         return roiInfoMap.containsKey(queriedRoi);
@@ -2207,13 +3495,43 @@ public class ProofreaderProcedures {
         }
     }
 
+    private boolean deleteSkeletonOfSegment(final Node neuron) {
+        Node skeleton = GraphTraversalTools.getSkeletonNodeForNeuron(neuron);
+        if (skeleton == null) {
+            return false;
+        }
+        // delete neuron relationship to skeleton
+        skeleton.getSingleRelationship(RelationshipType.withName(CONTAINS), Direction.INCOMING).delete();
+        deleteSkeleton(skeleton);
+        // metrics and synapse attachments describe the deleted skeleton
+        SkeletonMetrics.removeFrom(neuron);
+        Node synapseSet = GraphTraversalTools.getSynapseSetForNeuron(neuron);
+        if (synapseSet != null) {
+            SynapseAttachment.removeFrom(synapseSet);
+        }
+        return true;
+    }
+
+    private static CompactSkeleton readSkeleton(final Node skeletonNode) {
+        return CompactSkeleton.isCompact(skeletonNode) ? CompactSkeleton.fromNode(skeletonNode) : CompactSkeleton.fromSkelNodes(skeletonNode);
+    }
+
     private void deleteSkeleton(final Node skeletonNode) {
 
+        deleteSkelNodes(skeletonNode);
+
+        //delete Skeleton
+        skeletonNode.delete();
+        log.info("Successfully deleted skeleton.");
+    }
+
+    private void deleteSkelNodes(final Node skeletonNode) {
+
         Set<Node> skelNodesToDelete = new HashSet<>();
         for (Relationship skeletonRelationship : skeletonNode.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
             Node skelNode = skeletonRelationship.getEndNode();
-            //delete LinksTo relationships and
-            skelNode.getRelationships(RelationshipType.withName(LINKS_TO)).forEach(Relationship::delete);
+            //delete LinksTo and AttachedTo relationships and
+            skelNode.getRelationships(RelationshipType.withName(LINKS_TO), RelationshipType.withName(ATTACHED_TO)).forEach(Relationship::delete);
             //delete SkelNode Contains relationship to Skeleton
             skeletonRelationship.delete();
             skelNodesToDelete.add(skelNode);
@@ -2221,10 +3539,6 @@ public class ProofreaderProcedures {
 
         //delete SkelNodes at end to avoid missing node errors
         skelNodesToDelete.forEach(Node::delete);
-
-        //delete Skeleton
-        skeletonNode.delete();
-        log.info("Successfully deleted skeleton.");
     }
 
     private Node createSynapseSetForSegment(final Node segment, final String datasetLabel) {
@@ -2312,13 +3626,75 @@ public class ProofreaderProcedures {
         }
     }
 
-    private Node addSkeletonNodes(final String dataset, final Skeleton skeleton, final Node segmentNode) {
-
+    private Node createSkeletonNode(final String dataset, final Skeleton skeleton, final Node segmentNode) {
         // create a skeleton node and connect it to the body
         Node skeletonNode = dbService.createNode(Label.label(SKELETON), Label.label(dataset + "-" + SKELETON), Label.label(dataset));
         skeletonNode.setProperty(SKELETON_ID, dataset + ":" + skeleton.getAssociatedBodyId());
         skeletonNode.setProperty(MUTATION_UUID_ID, skeleton.getMutationUuid().orElse("none") + ":" + skeleton.getMutationId().orElse(0L));
         segmentNode.createRelationshipTo(skeletonNode, RelationshipType.withName(CONTAINS));
+        return skeletonNode;
+    }
+
+    private static CompactSkeleton toCompactSkeleton(final Skeleton skeleton) {
+
+        List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
+        int size = skelNodeList.size();
+        int[] rowNumbers = new int[size];
+        int[] parentRowNumbers = new int[size];
+        int[] x = new int[size];
+        int[] y = new int[size];
+        int[] z = new int[size];
+        double[] radii = new double[size];
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            SkelNode skelNode = skelNodeList.get(i);
+            rowNumbers[i] = skelNode.getRowNumber();
+            parentRowNumbers[i] = skelNode.getParent() == null ? -1 : skelNode.getParent().getRowNumber();
+            x[i] = skelNode.getX();
+            y[i] = skelNode.getY();
+            z[i] = skelNode.getZ();
+            radii[i] = skelNode.getRadius();
+            types[i] = skelNode.getType();
+        }
+        return new CompactSkeleton(rowNumbers, parentRowNumbers, x, y, z, radii, types);
+    }
+
+    private int createSkelNodesForCompactSkeleton(final String dataset, final long bodyId, final Node skeletonNode, final CompactSkeleton skeleton) {
+
+        Node[] skelNodeNodes = new Node[skeleton.size()];
+        boolean[] created = new boolean[skeleton.size()];
+        int createdCount = 0;
+        for (int i = 0; i < skeleton.size(); i++) {
+            String skelNodeId = skeleton.getSkelNodeId(dataset, bodyId, i);
+            skelNodeNodes[i] = GraphTraversalTools.getSkelNode(dbService, skelNodeId, dataset);
+            if (skelNodeNodes[i] == null) {
+                Node skelNodeNode = dbService.createNode(Label.label(SKEL_NODE), Label.label(dataset + "-" + SKEL_NODE), Label.label(dataset));
+                skelNodeNode.setProperty(SKEL_NODE_ID, skelNodeId);
+                skelNodeNode.setProperty(LOCATION, skeleton.getLocation(i));
+                skelNodeNode.setProperty(RADIUS, skeleton.getRadius(i));
+                skelNodeNode.setProperty(ROW_NUMBER, skeleton.getRowNumber(i));
+                skelNodeNode.setProperty(TYPE, skeleton.getType(i));
+                skeletonNode.createRelationshipTo(skelNodeNode, RelationshipType.withName(CONTAINS));
+                skelNodeNodes[i] = skelNodeNode;
+                created[i] = true;
+                createdCount++;
+            }
+        }
+
+        // existing SkelNodes are already linked to their parents
+        for (int i = 0; i < skeleton.size(); i++) {
+            int parentIndex = skeleton.getParentIndex(i);
+            if (created[i] && parentIndex != -1) {
+                skelNodeNodes[parentIndex].createRelationshipTo(skelNodeNodes[i], RelationshipType.withName(LINKS_TO));
+            }
+        }
+
+        return createdCount;
+    }
+
+    private Node addSkeletonNodes(final String dataset, final Skeleton skeleton, final Node segmentNode) {
+
+        Node skeletonNode = createSkeletonNode(dataset, skeleton, segmentNode);
 
         //add root nodes / other nodes to skeleton node
         List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
@@ -2444,6 +3820,13 @@ public class ProofreaderProcedures {
         }
     }
 
+    private void acquireWriteLockForMetaNodeCounts(Node metaNode) {
+        // synapse count changes to a deferred Meta node are recorded as MetaDelta nodes, which need no lock
+        if (!MetaCounts.isDeferred(metaNode)) {
+            acquireWriteLockForNode(metaNode);
+        }
+    }
+
     private void acquireWriteLockForNode(Node node) {
         if (node != null) {
             try (Transaction tx = dbService.beginTx()) {
@@ -0,0 +1,127 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
+import org.neo4j.graphdb.Node;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_HP_THRESHOLD;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_HP_THRESHOLD;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiInfoAsMap;
+
+/**
+ * Changes to the roiInfo of Neuron/Segment and ConnectionSet nodes that are collected while an ROI is added to or
+ * removed from a batch of synapses. Each roiInfo is parsed when first touched and written once by {@link #write()},
+ * and the Meta node changes are collected in a {@link MutationBatch}.
+ */
+class RoiAssignmentBatch {
+
+    private final String roi;
+    private final double preHPThreshold;
+    private final double postHPThreshold;
+    private final Map<Node, RoiInfo> segmentRoiInfos = new LinkedHashMap<>();
+    private final Map<Node, RoiInfoWithHighPrecisionCounts> connectionSetRoiInfos = new LinkedHashMap<>();
+    private final MutationBatch metaChanges = new MutationBatch();
+
+    RoiAssignmentBatch(String roi, Map<String, Double> thresholdMap) {
+        this.roi = roi;
+        this.preHPThreshold = thresholdMap.get(PRE_HP_THRESHOLD);
+        this.postHPThreshold = thresholdMap.get(POST_HP_THRESHOLD);
+    }
+
+    boolean hasConnectionSet(Node connectionSet) {
+        return connectionSetRoiInfos.containsKey(connectionSet);
+    }
+
+    /**
+     * @param synapseType       "pre" or "post"
+     * @param synapseConfidence confidence of the synapse
+     * @param segment           Neuron/Segment containing the synapse, or null for an orphaned synapse
+     * @param connectionSets    ConnectionSets containing the synapse
+     * @param isAddition        true if the ROI is added to the synapse, false if it is removed
+     */
+    void addSynapse(String synapseType, Double synapseConfidence, Node segment, Iterable<Node> connectionSets, boolean isAddition) {
+
+        if (segment != null) {
+            RoiInfo segmentRoiInfo = segmentRoiInfos.computeIfAbsent(segment, s -> new RoiInfo(getRoiInfoAsMap((String) s.getProperty(ROI_INFO, "{}"))));
+            if (synapseType.equals(PRE)) {
+                if (isAddition) {
+                    segmentRoiInfo.incrementPreForRoi(roi);
+                } else {
+                    segmentRoiInfo.decrementPreForRoi(roi);
+                }
+            } else {
+                if (isAddition) {
+                    segmentRoiInfo.incrementPostForRoi(roi);
+                } else {
+                    segmentRoiInfo.decrementPostForRoi(roi);
+                }
+            }
+        }
+
+        boolean isHighPrecision = synapseConfidence != null && synapseConfidence > (synapseType.equals(PRE) ? preHPThreshold : postHPThreshold);
+        for (Node connectionSet : connectionSets) {
+            RoiInfoWithHighPrecisionCounts connectionSetRoiInfo = connectionSetRoiInfos.computeIfAbsent(connectionSet, c -> RoiInfoWithHighPrecisionCounts.getRoiInfoHPFromString((String) c.getProperty(ROI_INFO, "{}")));
+            if (synapseType.equals(PRE)) {
+                if (isAddition) {
+                    connectionSetRoiInfo.incrementPreForRoi(roi);
+                    if (isHighPrecision) {
+                        connectionSetRoiInfo.incrementPreHPForRoi(roi);
+                    }
+                } else {
+                    connectionSetRoiInfo.decrementPreForRoi(roi);
+                    if (isHighPrecision) {
+                        connectionSetRoiInfo.decrementPreHPForRoi(roi);
+                    }
+                }
+            } else if (synapseType.equals(POST)) {
+                if (isAddition) {
+                    connectionSetRoiInfo.incrementPostForRoi(roi);
+                    if (isHighPrecision) {
+                        connectionSetRoiInfo.incrementPostHPForRoi(roi);
+                    }
+                } else {
+                    connectionSetRoiInfo.decrementPostForRoi(roi);
+                    if (isHighPrecision) {
+                        connectionSetRoiInfo.decrementPostHPForRoi(roi);
+                    }
+                }
+            }
+        }
+
+        if (isAddition) {
+            metaChanges.addSynapseToMetaRoiInfo(roi, synapseType);
+        } else {
+            metaChanges.removeSynapseFromMetaRoiInfo(roi, synapseType);
+        }
+    }
+
+    /**
+     * Writes the roiInfo of each touched Neuron/Segment and ConnectionSet, and sets or removes the ROI property on each
+     * Neuron/Segment depending on whether it still has synapses in the ROI.
+     */
+    void write() {
+        for (Map.Entry<Node, RoiInfo> segmentRoiInfo : segmentRoiInfos.entrySet()) {
+            Node segment = segmentRoiInfo.getKey();
+            segment.setProperty(ROI_INFO, segmentRoiInfo.getValue().getAsJsonString());
+            if (segmentRoiInfo.getValue().getSetOfRois().contains(roi)) {
+                segment.setProperty(roi, true);
+            } else {
+                segment.removeProperty(roi);
+            }
+        }
+        for (Map.Entry<Node, RoiInfoWithHighPrecisionCounts> connectionSetRoiInfo : connectionSetRoiInfos.entrySet()) {
+            connectionSetRoiInfo.getKey().setProperty(ROI_INFO, connectionSetRoiInfo.getValue().getAsJsonString());
+        }
+    }
+
+    MutationBatch getMetaChanges() {
+        return metaChanges;
+    }
+
+}
@@ -0,0 +1,228 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only log of {@link ChangeRecord}s for consumers (caches, search indexes) that follow changes to the database
+ * instead of polling lastDatabaseEdit. Each record gets the next sequence number when it is appended after its
+ * transaction commits. The log is split into segment files named after the sequence number of their first record; the
+ * active segment is memory-mapped and written by the committing threads, and the oldest segments are deleted once
+ * there are more than maxSegments. Each record is stored as its length followed by the encoded record, and the length
+ * is written last so that a partially written record reads as the end of the log.
+ * <p>
+ * Records are appended after their transaction commits, not as part of it, so the log is not an exact record of the
+ * database: the records of a transaction are lost if the process dies between the commit and the append, or if the
+ * append fails (which is logged), and no gap in the sequence numbers shows it. Segments are forced to disk only when
+ * they are full and when the database shuts down, so records appended shortly before an operating system crash may
+ * also be lost. Consumers should reload in full after the database restarts without a clean shutdown.
+ * <p>
+ * Settings (neo4j.conf): neuprint.changelog.enabled, neuprint.changelog.segment_size_bytes and
+ * neuprint.changelog.max_segments.
+ */
+class ChangeLog {
+
+    static final String ENABLED_SETTING = "neuprint.changelog.enabled";
+    static final String SEGMENT_SIZE_SETTING = "neuprint.changelog.segment_size_bytes";
+    static final String MAX_SEGMENTS_SETTING = "neuprint.changelog.max_segments";
+    static final long DEFAULT_SEGMENT_SIZE_BYTES = 64 * 1024 * 1024;
+    static final long DEFAULT_MAX_SEGMENTS = 16;
+    static final String DIRECTORY_NAME = "neuprint-changelog";
+
+    private static final String SEGMENT_PREFIX = "changes-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int LENGTH_BYTES = 4;
+
+    // change logs by database so that procedures can find the log of the database they run in
+    private static final Map<File, ChangeLog> CHANGE_LOGS = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    // guarded by this
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private MappedByteBuffer activeSegment;
+    private long nextSeq = 1;
+
+    private ChangeLog(File directory, long segmentSize, long maxSegments) {
+        this.directory = directory;
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, segmentSize);
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSegments);
+    }
+
+    /**
+     * Opens the change log in a directory, creating it if needed. Appending continues after the last record of the
+     * newest segment.
+     *
+     * @param directory   log directory
+     * @param segmentSize size of each segment file in bytes
+     * @param maxSegments number of segment files kept
+     * @return {@link ChangeLog}
+     */
+    static ChangeLog open(File directory, long segmentSize, long maxSegments) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create change log directory " + directory);
+        }
+        ChangeLog changeLog = new ChangeLog(directory, segmentSize, maxSegments);
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                changeLog.segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        if (!changeLog.segments.isEmpty()) {
+            Map.Entry<Long, File> lastSegment = changeLog.segments.lastEntry();
+            changeLog.activeSegment = map(lastSegment.getValue(), lastSegment.getValue().length(), FileChannel.MapMode.READ_WRITE);
+            changeLog.nextSeq = lastSegment.getKey();
+            // skip to the end of the records already written
+            ByteBuffer records = changeLog.activeSegment;
+            while (hasRecord(records)) {
+                int length = records.getInt();
+                changeLog.nextSeq = ChangeRecord.peekSeq(records) + 1;
+                records.position(records.position() + length);
+            }
+        }
+        return changeLog;
+    }
+
+    static ChangeLog getChangeLog(GraphDatabaseService dbService) {
+        return CHANGE_LOGS.get(CoalescingTriggerWriter.getDatabaseDirectory(dbService));
+    }
+
+    void register(GraphDatabaseService dbService) {
+        CHANGE_LOGS.put(CoalescingTriggerWriter.getDatabaseDirectory(dbService), this);
+    }
+
+    void unregister(GraphDatabaseService dbService) {
+        CHANGE_LOGS.remove(CoalescingTriggerWriter.getDatabaseDirectory(dbService), this);
+    }
+
+    /**
+     * Appends records with consecutive sequence numbers.
+     *
+     * @param records records to append
+     * @return sequence number of the last record appended
+     */
+    synchronized long append(List<ChangeRecord> records) throws IOException {
+        long timeMillis = System.currentTimeMillis();
+        for (ChangeRecord record : records) {
+            byte[] encoded = record.encode(nextSeq, timeMillis);
+            // room for the length of the next record, which stays 0 until it is written
+            int required = LENGTH_BYTES + encoded.length + LENGTH_BYTES;
+            if (activeSegment == null || activeSegment.remaining() < required) {
+                startSegment(Math.max(segmentSize, required));
+            }
+            int position = activeSegment.position();
+            activeSegment.position(position + LENGTH_BYTES);
+            activeSegment.put(encoded);
+            activeSegment.putInt(position, encoded.length);
+            nextSeq++;
+        }
+        return nextSeq - 1;
+    }
+
+    private void startSegment(int size) throws IOException {
+        if (activeSegment != null) {
+            activeSegment.force();
+        }
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, nextSeq, SEGMENT_SUFFIX));
+        activeSegment = map(file, size, FileChannel.MapMode.READ_WRITE);
+        segments.put(nextSeq, file);
+        while (segments.size() > maxSegments) {
+            File oldest = segments.pollFirstEntry().getValue();
+            if (!oldest.delete()) {
+                throw new IOException("Could not delete change log segment " + oldest);
+            }
+        }
+    }
+
+    /**
+     * @return sequence number of the last record appended, or 0 if none has been
+     */
+    synchronized long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * @return sequence number of the oldest record still in the log
+     */
+    synchronized long getFirstSeq() {
+        return segments.isEmpty() ? nextSeq : segments.firstKey();
+    }
+
+    /**
+     * Reads the records appended after a sequence number.
+     *
+     * @param seq   sequence number of the last record already seen (0 for all)
+     * @param limit maximum number of records to return
+     * @return records with sequence numbers greater than seq, in order
+     * @throws IllegalStateException if records after seq have been dropped from the log, including for seq 0
+     */
+    synchronized List<ChangeRecordResult> readSince(long seq, int limit) throws IOException {
+        List<ChangeRecordResult> records = new ArrayList<>();
+        if (seq >= nextSeq - 1) {
+            return records;
+        }
+        if (seq + 1 < getFirstSeq()) {
+            throw new IllegalStateException("Changes after sequence number " + seq + " are no longer in the change log; the oldest available is " + getFirstSeq() + ".");
+        }
+
+        Long firstSegment = segments.floorKey(seq + 1);
+        for (Map.Entry<Long, File> segment : segments.tailMap(firstSegment == null ? segments.firstKey() : firstSegment, true).entrySet()) {
+            ByteBuffer buffer;
+            if (segment.getKey().equals(segments.lastKey())) {
+                buffer = activeSegment.duplicate();
+                buffer.flip();
+            } else {
+                buffer = map(segment.getValue(), segment.getValue().length(), FileChannel.MapMode.READ_ONLY);
+            }
+            while (hasRecord(buffer)) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                if (ChangeRecord.peekSeq(buffer) > seq) {
+                    records.add(ChangeRecord.decode(buffer));
+                    if (records.size() == limit) {
+                        return records;
+                    }
+                }
+                buffer.position(end);
+            }
+        }
+        return records;
+    }
+
+    synchronized void close() {
+        if (activeSegment != null) {
+            activeSegment.force();
+            activeSegment = null;
+        }
+    }
+
+    private static boolean hasRecord(ByteBuffer buffer) {
+        return buffer.remaining() >= LENGTH_BYTES && buffer.getInt(buffer.position()) > 0;
+    }
+
+    private static MappedByteBuffer map(File file, long size, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+            if (mode == FileChannel.MapMode.READ_WRITE && randomAccessFile.length() < size) {
+                randomAccessFile.setLength(size);
+            }
+            // the mapping stays valid after the file is closed
+            return randomAccessFile.getChannel().map(mode, 0, size);
+        }
+    }
+
+}
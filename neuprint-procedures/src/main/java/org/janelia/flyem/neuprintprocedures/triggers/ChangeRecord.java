@@ -0,0 +1,151 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.Values;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * What one committed transaction changed in one dataset: the bodyIds of touched Neuron/Segment nodes, the locations
+ * of touched synapses and the datasetBodyIds of touched ConnectionSets. A fullReload record tells consumers that the
+ * whole dataset changed (e.g. at the end of a bulk load) and carries no ids. Records are collected before commit and
+ * encoded into the {@link ChangeLog} once committed.
+ */
+class ChangeRecord {
+
+    private static final byte FULL_RELOAD = 1;
+
+    private final String dataset;
+    private final boolean fullReload;
+    private final LongHashSet bodyIds = new LongHashSet();
+    private final Set<Point> synapseLocations = new LinkedHashSet<>();
+    private final Set<String> connectionSets = new TreeSet<>();
+
+    ChangeRecord(String dataset) {
+        this(dataset, false);
+    }
+
+    private ChangeRecord(String dataset, boolean fullReload) {
+        this.dataset = dataset;
+        this.fullReload = fullReload;
+    }
+
+    static ChangeRecord fullReload(String dataset) {
+        return new ChangeRecord(dataset, true);
+    }
+
+    void addBodyId(long bodyId) {
+        bodyIds.add(bodyId);
+    }
+
+    void addSynapseLocation(Point location) {
+        synapseLocations.add(location);
+    }
+
+    void addConnectionSet(String datasetBodyIds) {
+        connectionSets.add(datasetBodyIds);
+    }
+
+    boolean isEmpty() {
+        return !fullReload && bodyIds.isEmpty() && synapseLocations.isEmpty() && connectionSets.isEmpty();
+    }
+
+    /**
+     * Layout: seq, timeMillis, flags, dataset, bodyId count and bodyIds, location count and locations (dimension
+     * count followed by coordinates), ConnectionSet count and datasetBodyIds. Strings are length-prefixed UTF-8.
+     */
+    byte[] encode(long seq, long timeMillis) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 8 * bodyIds.size() + 25 * synapseLocations.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(seq);
+            out.writeLong(timeMillis);
+            out.writeByte(fullReload ? FULL_RELOAD : 0);
+            writeString(out, dataset);
+            long[] sortedBodyIds = bodyIds.toArray();
+            Arrays.sort(sortedBodyIds);
+            out.writeInt(sortedBodyIds.length);
+            for (long bodyId : sortedBodyIds) {
+                out.writeLong(bodyId);
+            }
+            out.writeInt(synapseLocations.size());
+            for (Point location : synapseLocations) {
+                List<Double> coordinate = location.getCoordinate().getCoordinate();
+                out.writeByte(coordinate.size());
+                for (Double value : coordinate) {
+                    out.writeDouble(value);
+                }
+            }
+            out.writeInt(connectionSets.size());
+            for (String connectionSet : connectionSets) {
+                writeString(out, connectionSet);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param buffer buffer positioned at the start of an encoded record
+     * @return decoded record
+     */
+    static ChangeRecordResult decode(ByteBuffer buffer) {
+        long seq = buffer.getLong();
+        LocalDateTime timeStamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault());
+        boolean fullReload = buffer.get() == FULL_RELOAD;
+        String dataset = readString(buffer);
+        int bodyIdCount = buffer.getInt();
+        List<Long> bodyIds = new ArrayList<>(bodyIdCount);
+        for (int i = 0; i < bodyIdCount; i++) {
+            bodyIds.add(buffer.getLong());
+        }
+        int locationCount = buffer.getInt();
+        List<Point> synapseLocations = new ArrayList<>(locationCount);
+        for (int i = 0; i < locationCount; i++) {
+            double[] coordinate = new double[buffer.get()];
+            for (int j = 0; j < coordinate.length; j++) {
+                coordinate[j] = buffer.getDouble();
+            }
+            synapseLocations.add(Values.pointValue(coordinate.length == 3 ? CoordinateReferenceSystem.Cartesian_3D : CoordinateReferenceSystem.Cartesian, coordinate));
+        }
+        int connectionSetCount = buffer.getInt();
+        List<String> connectionSets = new ArrayList<>(connectionSetCount);
+        for (int i = 0; i < connectionSetCount; i++) {
+            connectionSets.add(readString(buffer));
+        }
+        return new ChangeRecordResult(seq, timeStamp, dataset, fullReload, bodyIds, synapseLocations, connectionSets);
+    }
+
+    /**
+     * @param buffer buffer positioned at the start of an encoded record
+     * @return sequence number of the record, without moving the buffer
+     */
+    static long peekSeq(ByteBuffer buffer) {
+        return buffer.getLong(buffer.position());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
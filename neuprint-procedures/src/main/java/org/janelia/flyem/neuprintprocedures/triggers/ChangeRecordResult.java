@@ -0,0 +1,28 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.neo4j.graphdb.spatial.Point;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ChangeRecordResult {
+
+    public final Long seq;
+    public final LocalDateTime timeStamp;
+    public final String dataset;
+    public final Boolean fullReload;
+    public final List<Long> bodyIds;
+    public final List<Point> synapseLocations;
+    public final List<String> connectionSets;
+
+    public ChangeRecordResult(Long seq, LocalDateTime timeStamp, String dataset, Boolean fullReload, List<Long> bodyIds, List<Point> synapseLocations, List<String> connectionSets) {
+        this.seq = seq;
+        this.timeStamp = timeStamp;
+        this.dataset = dataset;
+        this.fullReload = fullReload;
+        this.bodyIds = bodyIds;
+        this.synapseLocations = synapseLocations;
+        this.connectionSets = connectionSets;
+    }
+
+}
@@ -0,0 +1,643 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.janelia.flyem.neuprintprocedures.analysis.ConnectsToGraphCache;
+import org.janelia.flyem.neuprintprocedures.analysis.NeuronSimilarityIndex;
+import org.janelia.flyem.neuprintprocedures.cache.ResultCache;
+import org.janelia.flyem.neuprintprocedures.meta.MetaCounts;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.META;
+
+/**
+ * Time-stamps the nodes touched by committed transactions and updates the lastDatabaseEdit of the affected datasets'
+ * Meta nodes. Instead of one task and one transaction per commit, the ids of touched nodes are collected in the
+ * committing thread and merged into a single deduplicated set, which is written every coalescing window in
+ * transactions of up to batchSize nodes. Each flush invalidates the caches and updates the Meta node of each changed
+ * dataset once. When the set reaches maxPendingNodes a flush is started immediately, and until it takes the set, the
+ * ids of further touched nodes are appended to a temporary {@link NodeIdSpillFile} that the flush reads back in batches,
+ * so the memory held by the writer stays bounded by maxPendingNodes. Committing threads are not blocked: they hold the
+ * locks of the nodes they touched, which the flush may need. A time stamp set explicitly on a node whose id has
+ * already been spilled is overwritten by the flush.
+ * <p>
+ * Nodes whose timeStamp was set by the committing transaction itself are still pending, but only to resolve the datasets
+ * they belong to: the flush marks those datasets as changed without overwriting the node's time stamp.
+ * <p>
+ * While a bulk load of a dataset is in progress, flushes skip the dataset's nodes and Meta node; the whole dataset is
+ * time-stamped once when the load ends (see {@link #timeStampDataset(String)}).
+ * <p>
+ * For datasets whose Meta node has triggerMetaCounts set, the synapse count changes of each transaction are collected
+ * before it commits and summed per dataset; each flush adds them to the Meta node's totalPreCount, totalPostCount and
+ * roiInfo, so the counts are kept up to date in time proportional to the changes rather than to the dataset.
+ * <p>
+ * Settings (neo4j.conf): neuprint.triggers.coalesce_window_ms, neuprint.triggers.max_pending_nodes and
+ * neuprint.triggers.batch_size.
+ */
+class CoalescingTriggerWriter implements Runnable {
+
+    static final String COALESCE_WINDOW_SETTING = "neuprint.triggers.coalesce_window_ms";
+    static final String MAX_PENDING_NODES_SETTING = "neuprint.triggers.max_pending_nodes";
+    static final String BATCH_SIZE_SETTING = "neuprint.triggers.batch_size";
+    static final long DEFAULT_COALESCE_WINDOW_MILLIS = 1000;
+    static final long DEFAULT_MAX_PENDING_NODES = 1000000;
+    static final long DEFAULT_BATCH_SIZE = 50000;
+
+    private static final String TIME_STAMP = "timeStamp";
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    // writers by database so that procedures can find the writer of the database they run in
+    private static final Map<File, CoalescingTriggerWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private final GraphDatabaseService dbService;
+    private final Log log;
+    private final long coalesceWindowMillis;
+    private final long maxPendingNodes;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean capacityFlushQueued = new AtomicBoolean();
+    private volatile Thread writerThread;
+    // number of bulk loads in progress by dataset
+    private final Map<String, Integer> bulkLoads = new ConcurrentHashMap<>();
+    // datasets whose Meta node has triggerMetaCounts set; null until read
+    private volatile Set<String> countedDatasets;
+
+    // guarded by this; ids of nodes time-stamped by their own transaction are held as ~id (see isExplicitlyTimeStamped)
+    private LongHashSet pendingNodeIds = new LongHashSet();
+    // ids that did not fit in pendingNodeIds; null until needed
+    private NodeIdSpillFile pendingSpillFile;
+    private boolean isSpillingDisabled;
+    private Map<String, SynapseCountChanges.Delta> pendingSynapseCountDeltas = new HashMap<>();
+    private long commits;
+    private long nodeIdsReceived;
+    private long peakPendingNodes;
+    private long spilledNodes;
+    private long flushes;
+    private long capacityFlushes;
+    private long nodesTimeStamped;
+    private long nodesNotFound;
+    private long nodesSkippedForBulkLoad;
+    private long failedBatches;
+    private long metaCountUpdates;
+    private long lastFlushMillis;
+    private long totalFlushMillis;
+    private long handledTransactions;
+    private long lastHandlerMicros;
+    private long totalHandlerMicros;
+    private long maxHandlerMicros;
+
+    CoalescingTriggerWriter(GraphDatabaseService dbService, Log log, long coalesceWindowMillis, long maxPendingNodes, long batchSize) {
+        this.dbService = dbService;
+        this.log = log;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.maxPendingNodes = maxPendingNodes;
+        this.batchSize = (int) batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "neuprint-trigger-writer");
+            thread.setDaemon(true);
+            writerThread = thread;
+            return thread;
+        });
+    }
+
+    static CoalescingTriggerWriter getWriter(GraphDatabaseService dbService) {
+        return WRITERS.get(getDatabaseDirectory(dbService));
+    }
+
+    static File getDatabaseDirectory(GraphDatabaseService dbService) {
+        // procedures and kernel extensions are not handed the same GraphDatabaseService instance
+        return ((GraphDatabaseAPI) dbService).databaseLayout().databaseDirectory();
+    }
+
+    void start() {
+        WRITERS.put(getDatabaseDirectory(dbService), this);
+        executor.scheduleWithFixedDelay(this, coalesceWindowMillis, coalesceWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        WRITERS.remove(getDatabaseDirectory(dbService), this);
+        // write what is still pending before the writer thread goes away
+        try {
+            flushAndWait();
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("Error time stamping pending nodes at shutdown: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Collects the changes a transaction makes to the synapse counts of datasets with triggerMetaCounts set. Called
+     * in the committing thread before the transaction commits, while labels can still be read.
+     *
+     * @param transactionData data of the committing transaction
+     * @return {@link SynapseCountChanges} to pass to {@link #addCommittedTransaction} once committed, or null
+     */
+    SynapseCountChanges collectSynapseCountChanges(TransactionData transactionData) {
+
+        if (Thread.currentThread() == writerThread) {
+            return null;
+        }
+
+        Set<String> datasets = countedDatasets;
+        if (datasets == null) {
+            datasets = readCountedDatasets();
+            countedDatasets = datasets;
+        }
+        if (!datasets.isEmpty() && !bulkLoads.isEmpty()) {
+            // the loader writes the Meta node counts of a bulk-loaded dataset itself
+            datasets = new HashSet<>(datasets);
+            datasets.removeAll(bulkLoads.keySet());
+        }
+
+        SynapseCountChanges synapseCountChanges = new SynapseCountChanges();
+        new TransactionDataHandler(transactionData).collectSynapseCountChanges(datasets, synapseCountChanges);
+        return synapseCountChanges;
+    }
+
+    private Set<String> readCountedDatasets() {
+        Set<String> datasets = new HashSet<>();
+        try (Transaction tx = dbService.beginTx()) {
+            try (ResourceIterator<Node> metaNodeIterator = dbService.findNodes(Label.label(META))) {
+                while (metaNodeIterator.hasNext()) {
+                    Node metaNode = metaNodeIterator.next();
+                    if (Boolean.TRUE.equals(metaNode.getProperty(MetaCounts.TRIGGER_META_COUNTS, false))) {
+                        datasets.add((String) metaNode.getProperty(DATASET));
+                    }
+                }
+            }
+            tx.success();
+        }
+        return datasets;
+    }
+
+    /**
+     * Adds the nodes touched by a committed transaction to the pending set, along with its synapse count changes.
+     * Ids that do not fit in the pending set are spilled to a temporary file. Called in the committing thread.
+     *
+     * @param transactionData     data of the committed transaction
+     * @param synapseCountChanges changes collected by {@link #collectSynapseCountChanges} before the commit, or null
+     */
+    void addCommittedTransaction(TransactionData transactionData, SynapseCountChanges synapseCountChanges) {
+
+        // the writer's own time stamps and Meta node updates are not time-stamped again
+        if (Thread.currentThread() == writerThread) {
+            return;
+        }
+
+        TransactionDataHandler transactionDataHandler = new TransactionDataHandler(transactionData);
+        LongHashSet nodeIds = new LongHashSet();
+        LongHashSet explicitlyTimeStampedNodeIds = new LongHashSet();
+        int nodeIdsSeen = transactionDataHandler.collectNodeIdsForTimeStamping(nodeIds, explicitlyTimeStampedNodeIds);
+
+        boolean shouldFlush;
+        synchronized (this) {
+            commits++;
+            nodeIdsReceived += nodeIdsSeen;
+            // a time stamp set by a later transaction replaces the pending one, but the node's datasets still changed
+            explicitlyTimeStampedNodeIds.forEach(nodeId -> {
+                pendingNodeIds.remove(nodeId);
+                addPendingNodeId(~nodeId);
+            });
+            if (pendingNodeIds.size() + nodeIds.size() <= maxPendingNodes) {
+                pendingNodeIds.addAll(nodeIds);
+            } else {
+                nodeIds.forEach(this::addPendingNodeId);
+            }
+            if (synapseCountChanges != null) {
+                addSynapseCountDeltas(synapseCountChanges.getDeltas());
+                if (synapseCountChanges.haveCountedDatasetsChanged()) {
+                    countedDatasets = null;
+                }
+            }
+            peakPendingNodes = Math.max(peakPendingNodes, pendingNodeIds.size() + (pendingSpillFile == null ? 0 : pendingSpillFile.size()));
+            shouldFlush = pendingNodeIds.size() >= maxPendingNodes;
+        }
+
+        if (shouldFlush && capacityFlushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                synchronized (this) {
+                    capacityFlushes++;
+                }
+                run();
+            });
+        }
+    }
+
+    // node ids are never negative, so a negative pending id is the complement of an explicitly time-stamped node's id
+    private static boolean isExplicitlyTimeStamped(long pendingId) {
+        return pendingId < 0;
+    }
+
+    // guarded by this
+    private void addPendingNodeId(long nodeId) {
+        if (pendingNodeIds.size() < maxPendingNodes || isSpillingDisabled || pendingNodeIds.contains(nodeId)) {
+            pendingNodeIds.add(nodeId);
+            return;
+        }
+        try {
+            if (pendingSpillFile == null) {
+                pendingSpillFile = NodeIdSpillFile.create();
+            }
+            pendingSpillFile.add(nodeId);
+            spilledNodes++;
+        } catch (IOException e) {
+            // ids already in the spill file are still read by the next flush
+            log.error("Could not spill pending node ids to a temporary file, keeping them in memory: " + e);
+            isSpillingDisabled = true;
+            pendingNodeIds.add(nodeId);
+        }
+    }
+
+    /**
+     * Records the time the transaction event handler spent on one transaction, before and after commit, in the
+     * committing thread.
+     *
+     * @param handlerNanos handler time in nanoseconds
+     */
+    void recordHandlerLatency(long handlerNanos) {
+        long handlerMicros = TimeUnit.NANOSECONDS.toMicros(handlerNanos);
+        synchronized (this) {
+            handledTransactions++;
+            lastHandlerMicros = handlerMicros;
+            totalHandlerMicros += handlerMicros;
+            maxHandlerMicros = Math.max(maxHandlerMicros, handlerMicros);
+        }
+    }
+
+    /**
+     * Writes all pending time stamps on the writer thread and waits for them to be committed.
+     */
+    void flushAndWait() throws ExecutionException, InterruptedException {
+        executor.submit(this).get();
+    }
+
+    @Override
+    public void run() {
+
+        LongHashSet nodeIds;
+        NodeIdSpillFile spillFile;
+        Map<String, SynapseCountChanges.Delta> synapseCountDeltas;
+        synchronized (this) {
+            capacityFlushQueued.set(false);
+            if (pendingNodeIds.isEmpty() && pendingSpillFile == null && pendingSynapseCountDeltas.isEmpty()) {
+                return;
+            }
+            nodeIds = pendingNodeIds;
+            spillFile = pendingSpillFile;
+            synapseCountDeltas = pendingSynapseCountDeltas;
+            pendingNodeIds = new LongHashSet();
+            pendingSpillFile = null;
+            isSpillingDisabled = false;
+            pendingSynapseCountDeltas = new HashMap<>();
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            flush(nodeIds, spillFile, synapseCountDeltas);
+        } catch (Exception e) {
+            // keep the scheduled task alive; flush only throws before writing anything, so all changes are retried
+            log.error("Error time stamping nodes and updating Meta node, deferred to the next flush: " + e);
+            synchronized (this) {
+                nodeIds.forEach(this::addPendingNodeId);
+                addSpilledNodeIds(spillFile);
+                addSynapseCountDeltas(synapseCountDeltas);
+                failedBatches++;
+            }
+        } finally {
+            if (spillFile != null) {
+                spillFile.delete();
+            }
+        }
+        long flushMillis = System.currentTimeMillis() - startTime;
+
+        synchronized (this) {
+            flushes++;
+            lastFlushMillis = flushMillis;
+            totalFlushMillis += flushMillis;
+        }
+    }
+
+    private void flush(LongHashSet nodeIds, NodeIdSpillFile spillFile, Map<String, SynapseCountChanges.Delta> synapseCountDeltas) {
+
+        Map<String, Long> datasetToMetaNodeId = getDatasetToMetaNodeId();
+
+        // sorted ids give the batches better store locality
+        long[] ids = nodeIds.toArray();
+        Arrays.sort(ids);
+
+        LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Set<String> datasetsChanged = new LinkedHashSet<>();
+        long stamped = 0;
+
+        for (int start = 0; start < ids.length; start += batchSize) {
+            stamped += writeTimeStampBatchOrDefer(ids, start, Math.min(ids.length, start + batchSize), timeStamp, datasetToMetaNodeId.keySet(), datasetsChanged);
+        }
+
+        if (spillFile != null) {
+            long[] spilledIds = new long[batchSize];
+            try {
+                int count;
+                while ((count = spillFile.read(spilledIds)) > 0) {
+                    Arrays.sort(spilledIds, 0, count);
+                    stamped += writeTimeStampBatchOrDefer(spilledIds, 0, count, timeStamp, datasetToMetaNodeId.keySet(), datasetsChanged);
+                }
+            } catch (IOException e) {
+                log.error("Could not read spilled node ids; some touched nodes were not time-stamped: " + e);
+            }
+        }
+
+        for (String dataset : synapseCountDeltas.keySet()) {
+            if (datasetToMetaNodeId.containsKey(dataset)) {
+                datasetsChanged.add(dataset);
+            }
+        }
+
+        try {
+            updateChangedDatasets(datasetsChanged, datasetToMetaNodeId, synapseCountDeltas);
+        } catch (RuntimeException e) {
+            log.warn("Meta node update for datasets " + datasetsChanged + " deferred to the next flush: " + e);
+            synchronized (this) {
+                addSynapseCountDeltas(synapseCountDeltas);
+                failedBatches++;
+            }
+        }
+
+        if (stamped > 0) {
+            log.info("Completed time stamping " + stamped + " nodes and updating Meta node for datasets " + datasetsChanged + ".");
+        }
+    }
+
+    private long writeTimeStampBatchOrDefer(long[] ids, int start, int end, LocalDateTime timeStamp, Set<String> existingDatasets, Set<String> datasetsChanged) {
+        try {
+            TimeStampBatch batch = writeTimeStampBatch(ids, start, end, timeStamp, existingDatasets);
+            datasetsChanged.addAll(batch.datasets);
+            return batch.stamped;
+        } catch (RuntimeException e) {
+            // e.g. a deadlock with a concurrent writer; retry the batch in the next flush
+            log.warn("Time stamping of " + (end - start) + " nodes deferred to the next flush: " + e);
+            synchronized (this) {
+                for (int i = start; i < end; i++) {
+                    addPendingNodeId(ids[i]);
+                }
+                failedBatches++;
+            }
+            return 0;
+        }
+    }
+
+    // guarded by this
+    private void addSpilledNodeIds(NodeIdSpillFile spillFile) {
+        if (spillFile == null) {
+            return;
+        }
+        long[] spilledIds = new long[batchSize];
+        try {
+            int count;
+            while ((count = spillFile.read(spilledIds)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    addPendingNodeId(spilledIds[i]);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Could not read spilled node ids; some touched nodes will not be time-stamped: " + e);
+        }
+    }
+
+    boolean isWriterThread() {
+        return Thread.currentThread() == writerThread;
+    }
+
+    /**
+     * @return datasets with a bulk load in progress (a live view)
+     */
+    Set<String> getBulkLoadDatasets() {
+        return bulkLoads.keySet();
+    }
+
+    /**
+     * Marks a bulk load of the dataset as in progress. Until {@link #endBulkLoad(String)} is called as many times as
+     * this method, nodes with the dataset's label are not time-stamped and its Meta node is not updated by flushes.
+     *
+     * @param dataset dataset name
+     */
+    void startBulkLoad(String dataset) {
+        bulkLoads.merge(dataset, 1, Integer::sum);
+    }
+
+    /**
+     * @param dataset dataset name
+     * @return true if no other bulk load of the dataset is still in progress
+     */
+    boolean endBulkLoad(String dataset) {
+        return bulkLoads.computeIfPresent(dataset, (d, count) -> count > 1 ? count - 1 : null) == null;
+    }
+
+    /**
+     * Time-stamps every node of a dataset in batches on the writer thread, then invalidates the dataset's cached
+     * results and updates its Meta node. Node ids are read by the calling thread, which must be in a transaction.
+     *
+     * @param dataset dataset name
+     * @return number of nodes time-stamped
+     */
+    long timeStampDataset(String dataset) throws ExecutionException, InterruptedException {
+
+        Map<String, Long> datasetToMetaNodeId = getDatasetToMetaNodeId();
+        LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Set<String> datasetsChanged = new LinkedHashSet<>();
+        long stamped = 0;
+
+        // the next batch of ids is read while the previous one is written
+        Future<TimeStampBatch> previousBatch = null;
+        long[] ids = new long[batchSize];
+        int count = 0;
+        try (ResourceIterator<Node> nodes = dbService.findNodes(Label.label(dataset))) {
+            while (nodes.hasNext()) {
+                ids[count++] = nodes.next().getId();
+                if (count == batchSize) {
+                    stamped += getStampedCount(previousBatch);
+                    long[] batchIds = Arrays.copyOf(ids, count);
+                    previousBatch = executor.submit(() -> writeTimeStampBatchWithRetries(batchIds, timeStamp, datasetToMetaNodeId.keySet(), datasetsChanged));
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0) {
+            stamped += getStampedCount(previousBatch);
+            long[] batchIds = Arrays.copyOf(ids, count);
+            previousBatch = executor.submit(() -> writeTimeStampBatchWithRetries(batchIds, timeStamp, datasetToMetaNodeId.keySet(), datasetsChanged));
+        }
+        stamped += getStampedCount(previousBatch);
+
+        executor.submit(() -> updateChangedDatasets(datasetsChanged, datasetToMetaNodeId, Collections.emptyMap())).get();
+
+        log.info("Completed time stamping " + stamped + " nodes and updating Meta node for dataset " + dataset + ".");
+        return stamped;
+    }
+
+    private static long getStampedCount(Future<TimeStampBatch> batch) throws ExecutionException, InterruptedException {
+        return batch == null ? 0 : batch.get().stamped;
+    }
+
+    private TimeStampBatch writeTimeStampBatchWithRetries(long[] ids, LocalDateTime timeStamp, Set<String> existingDatasets, Set<String> datasetsChanged) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                TimeStampBatch batch = writeTimeStampBatch(ids, 0, ids.length, timeStamp, existingDatasets);
+                datasetsChanged.addAll(batch.datasets);
+                return batch;
+            } catch (TransientFailureException e) {
+                synchronized (this) {
+                    failedBatches++;
+                }
+                if (attempt == MAX_BATCH_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Retrying time stamping of " + ids.length + " nodes: " + e);
+            }
+        }
+    }
+
+    /**
+     * Time-stamps the nodes with ids[start] to ids[end - 1] in one transaction. Meta and MetaDelta nodes, nodes
+     * deleted since they were touched, and nodes of datasets with a bulk load in progress are skipped. Nodes
+     * time-stamped by their own transaction (complemented ids) only add their datasets to the batch.
+     */
+    private TimeStampBatch writeTimeStampBatch(long[] ids, int start, int end, LocalDateTime timeStamp, Set<String> existingDatasets) {
+        TimeStampBatch batch = new TimeStampBatch();
+        List<String> nodeDatasets = new ArrayList<>(2);
+        try (Transaction tx = dbService.beginTx()) {
+            nodes:
+            for (int i = start; i < end; i++) {
+                try {
+                    boolean isExplicitlyTimeStamped = isExplicitlyTimeStamped(ids[i]);
+                    Node node = dbService.getNodeById(isExplicitlyTimeStamped ? ~ids[i] : ids[i]);
+                    // one pass over the labels, each looked up in the dataset and bulk-load hash sets
+                    nodeDatasets.clear();
+                    boolean isInBulkLoad = false;
+                    for (Label label : node.getLabels()) {
+                        String labelName = label.name();
+                        if (labelName.equals(META) || labelName.equals(MetaCounts.META_DELTA)) {
+                            continue nodes;
+                        }
+                        if (existingDatasets.contains(labelName)) {
+                            nodeDatasets.add(labelName);
+                        }
+                        isInBulkLoad |= !bulkLoads.isEmpty() && bulkLoads.containsKey(labelName);
+                    }
+                    if (isInBulkLoad) {
+                        batch.skippedForBulkLoad++;
+                        continue;
+                    }
+                    batch.datasets.addAll(nodeDatasets);
+                    if (!isExplicitlyTimeStamped) {
+                        node.setProperty(TIME_STAMP, timeStamp);
+                        batch.stamped++;
+                    }
+                } catch (NotFoundException nfe) {
+                    // deleted after the transaction that touched it
+                    batch.notFound++;
+                }
+            }
+            tx.success();
+        }
+        synchronized (this) {
+            nodesTimeStamped += batch.stamped;
+            nodesNotFound += batch.notFound;
+            nodesSkippedForBulkLoad += batch.skippedForBulkLoad;
+        }
+        return batch;
+    }
+
+    private Map<String, Long> getDatasetToMetaNodeId() {
+        Map<String, Long> datasetToMetaNodeId = new HashMap<>();
+        try (Transaction tx = dbService.beginTx()) {
+            try (ResourceIterator<Node> metaNodeIterator = dbService.findNodes(Label.label(META))) {
+                while (metaNodeIterator.hasNext()) {
+                    Node metaNode = metaNodeIterator.next();
+                    datasetToMetaNodeId.put((String) metaNode.getProperty(DATASET), metaNode.getId());
+                }
+            }
+            tx.success();
+        }
+        return datasetToMetaNodeId;
+    }
+
+    // guarded by this
+    private void addSynapseCountDeltas(Map<String, SynapseCountChanges.Delta> synapseCountDeltas) {
+        for (Map.Entry<String, SynapseCountChanges.Delta> delta : synapseCountDeltas.entrySet()) {
+            pendingSynapseCountDeltas.computeIfAbsent(delta.getKey(), d -> new SynapseCountChanges.Delta()).add(delta.getValue());
+        }
+    }
+
+    private Void updateChangedDatasets(Set<String> datasetsChanged, Map<String, Long> datasetToMetaNodeId, Map<String, SynapseCountChanges.Delta> synapseCountDeltas) {
+
+        // drop cached analysis results for edited datasets; lastDatabaseEdit only has a resolution of seconds
+        for (String dataset : datasetsChanged) {
+            ResultCache.getInstance().invalidate(dataset);
+            ConnectsToGraphCache.invalidate(dataset);
+            NeuronSimilarityIndex.invalidate(dataset);
+        }
+
+        if (!datasetsChanged.isEmpty()) {
+            try (Transaction tx = dbService.beginTx()) {
+                for (String dataset : datasetsChanged) {
+                    MetaNodeUpdater.updateMetaNode(datasetToMetaNodeId.get(dataset), dbService, dataset, synapseCountDeltas.get(dataset), log);
+                }
+                tx.success();
+            }
+            long updated = datasetsChanged.stream().filter(synapseCountDeltas::containsKey).count();
+            synchronized (this) {
+                metaCountUpdates += updated;
+            }
+        }
+        return null;
+    }
+
+    synchronized TriggerStatsResult getStats() {
+        long pendingNodes = pendingNodeIds.size() + (pendingSpillFile == null ? 0 : pendingSpillFile.size());
+        return new TriggerStatsResult(commits, nodeIdsReceived, pendingNodes, peakPendingNodes, spilledNodes, flushes, capacityFlushes,
+                nodesTimeStamped, nodesNotFound, nodesSkippedForBulkLoad, failedBatches, metaCountUpdates, lastFlushMillis, totalFlushMillis,
+                handledTransactions, lastHandlerMicros, totalHandlerMicros, maxHandlerMicros,
+                new ArrayList<>(new TreeSet<>(bulkLoads.keySet())), coalesceWindowMillis, maxPendingNodes, (long) batchSize);
+    }
+
+    private static class TimeStampBatch {
+
+        private long stamped;
+        private long notFound;
+        private long skippedForBulkLoad;
+        private final Set<String> datasets = new LinkedHashSet<>();
+    }
+
+}
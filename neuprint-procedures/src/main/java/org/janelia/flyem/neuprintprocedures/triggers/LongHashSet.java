@@ -0,0 +1,200 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing hash set of primitive longs (linear probing, no boxing). Used to deduplicate node ids touched
+ * by committed transactions. Not thread-safe.
+ */
+class LongHashSet {
+
+    private static final long EMPTY = 0L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private boolean hasEmptyKey;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    LongHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @param key value to add
+     * @return true if the value was not already in the set
+     */
+    boolean add(long key) {
+        if (key == EMPTY) {
+            if (hasEmptyKey) {
+                return false;
+            }
+            hasEmptyKey = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * @param other set whose values are added to this set
+     * @return number of values that were not already in this set
+     */
+    int addAll(LongHashSet other) {
+        int added = 0;
+        if (other.hasEmptyKey && add(EMPTY)) {
+            added++;
+        }
+        for (long key : other.keys) {
+            if (key != EMPTY && add(key)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @param key value to remove
+     * @return true if the value was in the set
+     */
+    boolean remove(long key) {
+        if (key == EMPTY) {
+            if (!hasEmptyKey) {
+                return false;
+            }
+            hasEmptyKey = false;
+            size--;
+            return true;
+        }
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // shift following entries of the probe sequence back so that lookups do not stop at the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    boolean contains(long key) {
+        if (key == EMPTY) {
+            return hasEmptyKey;
+        }
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(LongConsumer consumer) {
+        if (hasEmptyKey) {
+            consumer.accept(EMPTY);
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                consumer.accept(key);
+            }
+        }
+    }
+
+    long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (hasEmptyKey) {
+            values[i++] = EMPTY;
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                values[i++] = key;
+            }
+        }
+        return values;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        hasEmptyKey = false;
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // murmur3 finalizer; node ids are sequential so the low bits alone would cluster
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        allocate(newCapacity);
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * 0.75);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long capacity = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / 0.75));
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Too many values for LongHashSet: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.janelia.flyem.neuprintprocedures.meta.MetaCounts;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.META;
+
+/**
+ * Periodically folds pending MetaDelta nodes into the Meta node of each dataset that has any.
+ * Each dataset is folded in its own transaction so that the Meta node lock is held only briefly.
+ */
+class MetaCountsFolder implements Runnable {
+
+    private final GraphDatabaseService dbService;
+    private final Log log;
+
+    MetaCountsFolder(GraphDatabaseService dbService, Log log) {
+        this.dbService = dbService;
+        this.log = log;
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            List<String> datasetsWithDeltas = new ArrayList<>();
+            try (Transaction tx = dbService.beginTx()) {
+                try (ResourceIterator<Node> metaNodeIterator = dbService.findNodes(Label.label(META))) {
+                    while (metaNodeIterator.hasNext()) {
+                        String dataset = (String) metaNodeIterator.next().getProperty(DATASET);
+                        // only lock Meta nodes that have something to fold
+                        try (ResourceIterator<Node> deltaNodes = dbService.findNodes(Label.label(dataset + "-" + MetaCounts.META_DELTA))) {
+                            if (deltaNodes.hasNext()) {
+                                datasetsWithDeltas.add(dataset);
+                            }
+                        }
+                    }
+                }
+                tx.success();
+            }
+
+            for (String dataset : datasetsWithDeltas) {
+                try (Transaction tx = dbService.beginTx()) {
+                    long folded = MetaCounts.fold(dbService, dataset);
+                    tx.success();
+                    if (folded > 0) {
+                        log.info("Folded " + folded + " MetaDelta nodes into the Meta node for dataset " + dataset + ".");
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // keep the scheduled task alive; pending deltas are folded on the next run
+            log.error("Error folding MetaDelta nodes: " + e);
+        }
+
+    }
+}
@@ -1,9 +1,10 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
+import org.janelia.flyem.neuprintprocedures.meta.MetaCounts;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransientFailureException;
 import org.neo4j.logging.Log;
 
 import java.time.LocalDateTime;
@@ -11,49 +12,35 @@ import java.time.temporal.ChronoUnit;
 
 class MetaNodeUpdater {
 
-    static void updateMetaNode(Long metaNodeId, GraphDatabaseService dbService, String dataset, boolean shouldMetaNodeSynapseCountsBeUpdated, Log log) {
+    /**
+     * Updates the lastDatabaseEdit of a dataset's Meta node and applies the synapse count changes collected from
+     * committed transactions, if any. Counts are updated from the changes alone rather than by recounting the dataset;
+     * for Meta nodes with deferMetaCounts set, the changes are recorded as a MetaDelta node instead.
+     */
+    static void updateMetaNode(Long metaNodeId, GraphDatabaseService dbService, String dataset, SynapseCountChanges.Delta synapseCountDelta, Log log) {
 
         try {
             Node metaNode = dbService.getNodeById(metaNodeId);
             getWriteLockForNode(metaNode, dbService);
             metaNode.setProperty("lastDatabaseEdit", LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
 
-            if (shouldMetaNodeSynapseCountsBeUpdated) {
-                long preCount = getTotalPreCount(dbService, dataset);
-                long postCount = getTotalPostCount(dbService, dataset);
-
-                // roiInfo not updated
-
-                metaNode.setProperty("totalPreCount", preCount);
-                metaNode.setProperty("totalPostCount", postCount);
+            if (synapseCountDelta != null && !synapseCountDelta.isEmpty()) {
+                if (MetaCounts.isDeferred(metaNode)) {
+                    MetaCounts.recordDelta(dbService, dataset, synapseCountDelta.getTotalPreCount(), synapseCountDelta.getTotalPostCount(), synapseCountDelta.getRoiInfo());
+                } else {
+                    MetaCounts.applyDelta(metaNode, synapseCountDelta.getTotalPreCount(), synapseCountDelta.getTotalPostCount(), synapseCountDelta.getRoiInfo());
+                }
             }
 
+        } catch (TransientFailureException e) {
+            // retried by the trigger writer so that the synapse count changes are not lost
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
         }
 
     }
 
-    private static long getTotalPreCount(GraphDatabaseService dbService, final String dataset) {
-        Result preCountQuery = dbService.execute("MATCH (n:`" + dataset + "-PreSyn`) RETURN count(n)");
-        return (long) preCountQuery.next().get("count(n)");
-    }
-
-    private static long getTotalPostCount(GraphDatabaseService dbService, final String dataset) {
-        Result postCountQuery = dbService.execute("MATCH (n:`" + dataset + "-PostSyn`) RETURN count(n)");
-        return (long) postCountQuery.next().get("count(n)");
-    }
-
-    private static long getRoiPreCount(GraphDatabaseService dbService, final String dataset, final String roi) {
-        Result roiPreCountQuery = dbService.execute("MATCH (n:`" + dataset + "-PreSyn`{`" + roi + "`:true}) RETURN count(n)");
-        return (long) roiPreCountQuery.next().get("count(n)");
-    }
-
-    private static long getRoiPostCount(GraphDatabaseService dbService, final String dataset, final String roi) {
-        Result roiPostCountQuery = dbService.execute("MATCH (n:`" + dataset + "-PostSyn`{`" + roi + "`:true}) RETURN count(n)");
-        return (long) roiPostCountQuery.next().get("count(n)");
-    }
-
     private static void getWriteLockForNode(Node node, GraphDatabaseService dbService) {
         try (Transaction tx = dbService.beginTx()) {
             tx.acquireWriteLock(node);
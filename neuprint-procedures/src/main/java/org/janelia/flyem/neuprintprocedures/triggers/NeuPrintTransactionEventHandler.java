@@ -1,38 +1,74 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
-import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.graphdb.event.TransactionEventHandler;
 import org.neo4j.logging.Log;
 
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
-public class NeuPrintTransactionEventHandler implements TransactionEventHandler {
+public class NeuPrintTransactionEventHandler implements TransactionEventHandler<NeuPrintTransactionEventHandler.CommitState> {
 
-    private static GraphDatabaseService dbService;
-    private static ExecutorService executorService;
-    private static Log log;
+    private final CoalescingTriggerWriter triggerWriter;
+    private final ChangeLog changeLog;
+    private final Log log;
 
-    NeuPrintTransactionEventHandler(GraphDatabaseService graphDatabaseService, ExecutorService executorService, Log log) {
-        dbService = graphDatabaseService;
-        NeuPrintTransactionEventHandler.executorService = executorService;
-        NeuPrintTransactionEventHandler.log = log;
+    NeuPrintTransactionEventHandler(CoalescingTriggerWriter triggerWriter, ChangeLog changeLog, Log log) {
+        this.triggerWriter = triggerWriter;
+        this.changeLog = changeLog;
+        this.log = log;
     }
 
     @Override
-    public Object beforeCommit(TransactionData transactionData) {
-        return null;
+    public CommitState beforeCommit(TransactionData transactionData) {
+        if (triggerWriter.isWriterThread()) {
+            return null;
+        }
+        long startTime = System.nanoTime();
+        Collection<ChangeRecord> changeRecords = null;
+        if (changeLog != null) {
+            changeRecords = new TransactionDataHandler(transactionData).collectChangeRecords(triggerWriter.getBulkLoadDatasets()).values();
+        }
+        SynapseCountChanges synapseCountChanges = triggerWriter.collectSynapseCountChanges(transactionData);
+        return new CommitState(synapseCountChanges, changeRecords, System.nanoTime() - startTime);
     }
 
     @Override
-    public void afterCommit(TransactionData transactionData, Object o) {
-        TriggersRunnable triggersRunnable = new TriggersRunnable(transactionData, dbService, log);
-        executorService.submit(triggersRunnable);
+    public void afterCommit(TransactionData transactionData, CommitState commitState) {
+        // the trigger writer's own transactions
+        if (commitState == null) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        triggerWriter.addCommittedTransaction(transactionData, commitState.synapseCountChanges);
+        if (commitState.changeRecords != null && !commitState.changeRecords.isEmpty()) {
+            // the transaction has already committed, so records that fail to be appended are lost
+            try {
+                changeLog.append(commitState.changeRecords);
+            } catch (Exception e) {
+                log.error("Error appending to the change log: " + e);
+            }
+        }
+        triggerWriter.recordHandlerLatency(commitState.beforeCommitNanos + System.nanoTime() - startTime);
     }
 
     @Override
-    public void afterRollback(TransactionData transactionData, Object o) {
+    public void afterRollback(TransactionData transactionData, CommitState commitState) {
 
     }
 
+    static class CommitState {
+
+        private final SynapseCountChanges synapseCountChanges;
+        private final List<ChangeRecord> changeRecords;
+        private final long beforeCommitNanos;
+
+        private CommitState(SynapseCountChanges synapseCountChanges, Collection<ChangeRecord> changeRecords, long beforeCommitNanos) {
+            this.synapseCountChanges = synapseCountChanges;
+            this.changeRecords = changeRecords == null ? null : new ArrayList<>(changeRecords);
+            this.beforeCommitNanos = beforeCommitNanos;
+        }
+    }
+
 }
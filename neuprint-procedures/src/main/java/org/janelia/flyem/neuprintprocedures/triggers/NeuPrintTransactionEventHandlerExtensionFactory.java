@@ -1,6 +1,7 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.extension.ExtensionType;
 import org.neo4j.kernel.extension.KernelExtensionFactory;
 import org.neo4j.logging.internal.LogService;
@@ -9,40 +10,86 @@ import org.neo4j.kernel.lifecycle.Lifecycle;
 import org.neo4j.kernel.lifecycle.LifecycleAdapter;
 import org.neo4j.logging.Log;
 
-import java.util.concurrent.ExecutorService;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class NeuPrintTransactionEventHandlerExtensionFactory extends KernelExtensionFactory<NeuPrintTransactionEventHandlerExtensionFactory.Dependencies> {
 
+    private static final long META_COUNTS_FOLD_INTERVAL_SECONDS = 10;
+
     @Override
     public Lifecycle newInstance(KernelContext kernelContext, final Dependencies dependencies) {
         return new LifecycleAdapter() {
 
             private NeuPrintTransactionEventHandler handler;
-            private ExecutorService executor;
+            private CoalescingTriggerWriter triggerWriter;
+            private ChangeLog changeLog;
+            private ScheduledExecutorService metaCountsFolder;
             private Log userLog;
 
             @Override
             public void start() {
-                executor = Executors.newFixedThreadPool(1);
                 userLog = dependencies.log().getUserLog(NeuPrintTransactionEventHandlerExtensionFactory.class);
-                handler = new NeuPrintTransactionEventHandler(dependencies.getGraphDatabaseService(), executor, userLog);
+                Config config = dependencies.config();
+                triggerWriter = new CoalescingTriggerWriter(dependencies.getGraphDatabaseService(), userLog,
+                        getLongSetting(config, CoalescingTriggerWriter.COALESCE_WINDOW_SETTING, CoalescingTriggerWriter.DEFAULT_COALESCE_WINDOW_MILLIS),
+                        getLongSetting(config, CoalescingTriggerWriter.MAX_PENDING_NODES_SETTING, CoalescingTriggerWriter.DEFAULT_MAX_PENDING_NODES),
+                        getLongSetting(config, CoalescingTriggerWriter.BATCH_SIZE_SETTING, CoalescingTriggerWriter.DEFAULT_BATCH_SIZE));
+                triggerWriter.start();
+                changeLog = openChangeLog(config);
+                handler = new NeuPrintTransactionEventHandler(triggerWriter, changeLog, userLog);
                 dependencies.getGraphDatabaseService().registerTransactionEventHandler(handler);
+                metaCountsFolder = Executors.newSingleThreadScheduledExecutor();
+                metaCountsFolder.scheduleWithFixedDelay(new MetaCountsFolder(dependencies.getGraphDatabaseService(), userLog),
+                        META_COUNTS_FOLD_INTERVAL_SECONDS, META_COUNTS_FOLD_INTERVAL_SECONDS, TimeUnit.SECONDS);
             }
 
             @Override
             public void shutdown() {
-                executor.shutdown();
                 dependencies.getGraphDatabaseService().unregisterTransactionEventHandler(handler);
+                triggerWriter.shutdown();
+                metaCountsFolder.shutdown();
+                if (changeLog != null) {
+                    changeLog.unregister(dependencies.getGraphDatabaseService());
+                    changeLog.close();
+                }
+            }
+
+            private ChangeLog openChangeLog(Config config) {
+                if (!config.getRaw(ChangeLog.ENABLED_SETTING).map(Boolean::parseBoolean).orElse(true)) {
+                    return null;
+                }
+                File directory = new File(CoalescingTriggerWriter.getDatabaseDirectory(dependencies.getGraphDatabaseService()), ChangeLog.DIRECTORY_NAME);
+                try {
+                    ChangeLog changeLog = ChangeLog.open(directory,
+                            getLongSetting(config, ChangeLog.SEGMENT_SIZE_SETTING, ChangeLog.DEFAULT_SEGMENT_SIZE_BYTES),
+                            getLongSetting(config, ChangeLog.MAX_SEGMENTS_SETTING, ChangeLog.DEFAULT_MAX_SEGMENTS));
+                    changeLog.register(dependencies.getGraphDatabaseService());
+                    return changeLog;
+                } catch (IOException e) {
+                    // triggers still run without the change log
+                    userLog.error("Could not open change log in " + directory + ": " + e);
+                    return null;
+                }
             }
         };
     }
 
-
+    private static long getLongSetting(Config config, String setting, long defaultValue) {
+        long value = config.getRaw(setting).map(Long::parseLong).orElse(defaultValue);
+        if (value <= 0) {
+            throw new IllegalArgumentException(setting + " must be positive: " + value);
+        }
+        return value;
+    }
 
     interface Dependencies {
         GraphDatabaseService getGraphDatabaseService();
         LogService log();
+        Config config();
     }
 
     public NeuPrintTransactionEventHandlerExtensionFactory() {
@@ -0,0 +1,91 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Temporary file of node ids that did not fit in the pending set of a {@link CoalescingTriggerWriter}. Ids are
+ * appended without deduplication, read back in batches by the next flush, and the file is deleted once read. Not
+ * thread-safe.
+ */
+class NodeIdSpillFile {
+
+    private final File file;
+    private DataOutputStream output;
+    private DataInputStream input;
+    private long size;
+
+    private NodeIdSpillFile(File file) throws IOException {
+        this.file = file;
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    static NodeIdSpillFile create() throws IOException {
+        File file = File.createTempFile("neuprint-trigger-spill", ".ids");
+        file.deleteOnExit();
+        return new NodeIdSpillFile(file);
+    }
+
+    /**
+     * @param nodeId node id to append
+     */
+    void add(long nodeId) throws IOException {
+        output.writeLong(nodeId);
+        size++;
+    }
+
+    /**
+     * @return number of ids written to the file
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Reads the next ids from the file. The first call ends writing.
+     *
+     * @param buffer array filled with ids from its start
+     * @return number of ids read, or 0 once all ids have been read
+     */
+    int read(long[] buffer) throws IOException {
+        if (input == null) {
+            output.close();
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        int count = 0;
+        try {
+            while (count < buffer.length) {
+                buffer[count] = input.readLong();
+                count++;
+            }
+        } catch (EOFException e) {
+            // all ids read
+        }
+        return count;
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    void delete() {
+        try {
+            if (input != null) {
+                input.close();
+            } else {
+                output.close();
+            }
+        } catch (IOException e) {
+            // the file is deleted regardless
+        }
+        // otherwise deleted on exit
+        file.delete();
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Changes to the dataset-level synapse counts (totalPreCount, totalPostCount and roiInfo) made by a transaction,
+ * collected before it commits and applied to the Meta nodes by the trigger writer.
+ */
+class SynapseCountChanges {
+
+    private final Map<String, Delta> deltas = new HashMap<>();
+    private boolean countedDatasetsChanged;
+
+    Delta getDelta(String dataset) {
+        return deltas.computeIfAbsent(dataset, d -> new Delta());
+    }
+
+    Map<String, Delta> getDeltas() {
+        return deltas;
+    }
+
+    /**
+     * @return true if the transaction set or removed the triggerMetaCounts property of a Meta node
+     */
+    boolean haveCountedDatasetsChanged() {
+        return countedDatasetsChanged;
+    }
+
+    void setCountedDatasetsChanged() {
+        this.countedDatasetsChanged = true;
+    }
+
+    /**
+     * Signed change in the synapse counts of one dataset.
+     */
+    static class Delta {
+
+        private long totalPreCount;
+        private long totalPostCount;
+        private final Map<String, SynapseCounter> roiInfo = new HashMap<>();
+
+        void addSynapse(boolean isPre, int sign) {
+            if (isPre) {
+                totalPreCount += sign;
+            } else {
+                totalPostCount += sign;
+            }
+        }
+
+        void addSynapseToRoi(String roi, boolean isPre, int sign) {
+            roiInfo.computeIfAbsent(roi, r -> new SynapseCounter()).add(isPre ? new SynapseCounter(sign, 0) : new SynapseCounter(0, sign));
+        }
+
+        void add(Delta delta) {
+            totalPreCount += delta.totalPreCount;
+            totalPostCount += delta.totalPostCount;
+            for (Map.Entry<String, SynapseCounter> roiDelta : delta.roiInfo.entrySet()) {
+                roiInfo.computeIfAbsent(roiDelta.getKey(), r -> new SynapseCounter()).add(roiDelta.getValue());
+            }
+        }
+
+        boolean isEmpty() {
+            return totalPreCount == 0 && totalPostCount == 0 && roiInfo.values().stream().allMatch(c -> c.getPre() == 0 && c.getPost() == 0);
+        }
+
+        long getTotalPreCount() {
+            return totalPreCount;
+        }
+
+        long getTotalPostCount() {
+            return totalPostCount;
+        }
+
+        Map<String, SynapseCounter> getRoiInfo() {
+            return roiInfo;
+        }
+    }
+
+}
@@ -1,15 +1,33 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
+import org.janelia.flyem.neuprintprocedures.meta.MetaCounts;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.event.LabelEntry;
 import org.neo4j.graphdb.event.PropertyEntry;
 import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.spatial.Point;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BODY_ID;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONNECTION_SET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET_BODY_IDs;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LOCATION;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_SYN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_SYN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SEGMENT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_POST_COUNT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_PRE_COUNT;
+
 class TransactionDataHandler {
 
     // nodes with unique ids
@@ -23,112 +41,348 @@ class TransactionDataHandler {
     // properties
     private static final String TIME_STAMP = "timeStamp";
 
+    private static final String PRE_SYN_SUFFIX = "-" + PRE_SYN;
+    private static final String POST_SYN_SUFFIX = "-" + POST_SYN;
+    private static final String META_DELTA_SUFFIX = "-" + MetaCounts.META_DELTA;
+    private static final String SEGMENT_SUFFIX = "-" + SEGMENT;
+    private static final String NEURON_SUFFIX = "-" + NEURON;
+    private static final String SYNAPSE_SUFFIX = "-" + SYNAPSE;
+    private static final String CONNECTION_SET_SUFFIX = "-" + CONNECTION_SET;
+    private static final Set<String> CHANGE_RECORD_PROPERTIES = new HashSet<>(Arrays.asList(BODY_ID, LOCATION, DATASET_BODY_IDs));
+    private static final Set<String> META_COUNT_PROPERTIES = new HashSet<>(Arrays.asList(TOTAL_PRE_COUNT, TOTAL_POST_COUNT, ROI_INFO));
+
     private TransactionData transactionData;
-    private Set<Node> nodesForTimeStamping = new HashSet<>();
-    private Set<String> datasetsChanged = new HashSet<>();
-    private boolean shouldMetaNodeSynapseCountsBeUpdated;
 
     TransactionDataHandler(TransactionData transactionData) {
         this.transactionData = transactionData;
     }
 
-    Set<Node> getNodesForTimeStamping(Set<String> existingDatasets) {
+    /**
+     * Adds the ids of nodes that should be time-stamped to nodeIds. Only ids are read so that this can run in the
+     * committing thread; labels (Meta nodes, datasets) are resolved when the time stamps are written. Nodes whose
+     * timeStamp was set by the transaction itself are added to explicitlyTimeStampedNodeIds instead, since that
+     * time stamp should not be overwritten by a later trigger write.
+     *
+     * @param nodeIds                      set of node ids to add to
+     * @param explicitlyTimeStampedNodeIds set of ids of nodes time-stamped by the transaction
+     * @return number of node ids seen, including duplicates
+     */
+    int collectNodeIdsForTimeStamping(LongHashSet nodeIds, LongHashSet explicitlyTimeStampedNodeIds) {
 
-        shouldMetaNodeSynapseCountsBeUpdated = false;
+        int nodeIdsSeen = 0;
 
         for (Node node : transactionData.createdNodes()) {
-            addNodeForTimeStamping(node, existingDatasets);
-            // synapse counts updated if new synapses are created
-            checkIfShouldUpdateMetaNodeSynapseCounts(node);
+            nodeIdsSeen += addNodeForTimeStamping(node, nodeIds);
         }
 
         for (LabelEntry labelEntry : transactionData.assignedLabels()) {
-            addNodeForTimeStamping(labelEntry.node(), existingDatasets);
+            nodeIdsSeen += addNodeForTimeStamping(labelEntry.node(), nodeIds);
         }
 
         for (LabelEntry labelEntry : transactionData.removedLabels()) {
-            addNodeForTimeStamping(labelEntry.node(), existingDatasets);
+            nodeIdsSeen += addNodeForTimeStamping(labelEntry.node(), nodeIds);
         }
 
         for (PropertyEntry<Node> propertyEntry : transactionData.assignedNodeProperties()) {
             if (!propertyEntry.key().equals(TIME_STAMP)) {
-                addNodeForTimeStamping(propertyEntry.entity(), existingDatasets);
+                nodeIdsSeen += addNodeForTimeStamping(propertyEntry.entity(), nodeIds);
+            } else {
+                explicitlyTimeStampedNodeIds.add(propertyEntry.entity().getId());
             }
-            // synapse counts updated if new properties are added to a synapse (indicating an roi has been added; should we anticipate other changes?)
-            checkIfShouldUpdateMetaNodeSynapseCounts(propertyEntry.entity());
         }
 
         for (PropertyEntry<Node> propertyEntry : transactionData.removedNodeProperties()) {
             if (!propertyEntry.key().equals(TIME_STAMP)) {
-                addNodeForTimeStamping(propertyEntry.entity(), existingDatasets);
+                nodeIdsSeen += addNodeForTimeStamping(propertyEntry.entity(), nodeIds);
             }
-            // synapse counts updated if new properties are removed from a synapse (indicating an roi has been removed; should we anticipate other changes?)
-            checkIfShouldUpdateMetaNodeSynapseCounts(propertyEntry.entity());
         }
 
         for (PropertyEntry<Relationship> propertyEntry : transactionData.assignedRelationshipProperties()) {
-            Relationship relationship = propertyEntry.entity();
-            Node[] nodes = relationship.getNodes();
-            for (Node node : nodes) {
-                addNodeForTimeStamping(node, existingDatasets);
-            }
+            nodeIdsSeen += addRelationshipNodesForTimeStamping(propertyEntry.entity(), nodeIds);
         }
 
         for (PropertyEntry<Relationship> propertyEntry : transactionData.removedRelationshipProperties()) {
-            Relationship relationship = propertyEntry.entity();
-            Node[] nodes = relationship.getNodes();
-            for (Node node : nodes) {
-                addNodeForTimeStamping(node, existingDatasets);
-            }
+            nodeIdsSeen += addRelationshipNodesForTimeStamping(propertyEntry.entity(), nodeIds);
         }
 
         for (Relationship relationship : transactionData.createdRelationships()) {
-            Node[] nodes = relationship.getNodes();
-            for (Node node : nodes) {
-                addNodeForTimeStamping(node, existingDatasets);
-            }
+            nodeIdsSeen += addRelationshipNodesForTimeStamping(relationship, nodeIds);
         }
 
         for (Relationship relationship : transactionData.deletedRelationships()) {
-            Node[] nodes = relationship.getNodes();
-            for (Node node : nodes) {
-                addNodeForTimeStamping(node, existingDatasets);
+            nodeIdsSeen += addRelationshipNodesForTimeStamping(relationship, nodeIds);
+        }
+
+        explicitlyTimeStampedNodeIds.forEach(nodeIds::remove);
+
+        return nodeIdsSeen;
+
+    }
+
+    /**
+     * Adds the transaction's changes to the synapse counts of the datasets in countedDatasets: synapses created or
+     * deleted (dataset-PreSyn and dataset-PostSyn labels assigned or removed) and ROI properties set to true on or
+     * removed from synapses. Datasets whose Meta node counts are written by the transaction itself (proofreading
+     * procedures, the loader, MetaDelta nodes) are left out so that their changes are not counted twice. Labels are
+     * read, so this must be called before the transaction commits.
+     *
+     * @param countedDatasets datasets whose Meta node counts are maintained by the triggers
+     * @param changes         changes to add to
+     */
+    void collectSynapseCountChanges(Set<String> countedDatasets, SynapseCountChanges changes) {
+
+        for (PropertyEntry<Node> propertyEntry : transactionData.removedNodeProperties()) {
+            if (propertyEntry.key().equals(MetaCounts.TRIGGER_META_COUNTS)) {
+                changes.setCountedDatasetsChanged();
+            }
+        }
+        for (PropertyEntry<Node> propertyEntry : transactionData.assignedNodeProperties()) {
+            if (propertyEntry.key().equals(MetaCounts.TRIGGER_META_COUNTS)) {
+                changes.setCountedDatasetsChanged();
             }
         }
 
-        return nodesForTimeStamping;
+        if (countedDatasets.isEmpty()) {
+            return;
+        }
+
+        Map<String, SynapseCountChanges.Delta> deltas = new HashMap<>();
+        Set<String> datasetsCountedByTransaction = new HashSet<>();
+        // synapse label of each deleted synapse, whose labels can no longer be read
+        Map<Long, String> deletedSynapseLabels = new HashMap<>();
+        Map<Long, String> synapseLabels = new HashMap<>();
 
+        for (LabelEntry labelEntry : transactionData.assignedLabels()) {
+            String labelName = labelEntry.label().name();
+            if (labelName.endsWith(META_DELTA_SUFFIX)) {
+                datasetsCountedByTransaction.add(labelName.substring(0, labelName.length() - META_DELTA_SUFFIX.length()));
+            } else {
+                addSynapse(labelName, countedDatasets, deltas, 1);
+            }
+        }
+
+        for (LabelEntry labelEntry : transactionData.removedLabels()) {
+            String labelName = labelEntry.label().name();
+            if (addSynapse(labelName, countedDatasets, deltas, -1) && transactionData.isDeleted(labelEntry.node())) {
+                deletedSynapseLabels.put(labelEntry.node().getId(), labelName);
+            }
+        }
+
+        for (PropertyEntry<Node> propertyEntry : transactionData.assignedNodeProperties()) {
+            if (META_COUNT_PROPERTIES.contains(propertyEntry.key())) {
+                Node node = propertyEntry.entity();
+                if (node.hasLabel(Label.label(META))) {
+                    datasetsCountedByTransaction.add((String) node.getProperty(DATASET, ""));
+                }
+            } else if (propertyEntry.value() instanceof Boolean) {
+                boolean isInRoi = Boolean.TRUE.equals(propertyEntry.value());
+                boolean wasInRoi = Boolean.TRUE.equals(propertyEntry.previouslyCommitedValue());
+                if (isInRoi != wasInRoi) {
+                    String synapseLabel = synapseLabels.computeIfAbsent(propertyEntry.entity().getId(), id -> getSynapseLabel(propertyEntry.entity(), countedDatasets));
+                    addSynapseToRoi(synapseLabel, propertyEntry.key(), deltas, isInRoi ? 1 : -1);
+                }
+            }
+        }
+
+        for (PropertyEntry<Node> propertyEntry : transactionData.removedNodeProperties()) {
+            if (Boolean.TRUE.equals(propertyEntry.previouslyCommitedValue())) {
+                Node node = propertyEntry.entity();
+                String synapseLabel = transactionData.isDeleted(node) ?
+                        deletedSynapseLabels.get(node.getId()) :
+                        synapseLabels.computeIfAbsent(node.getId(), id -> getSynapseLabel(node, countedDatasets));
+                addSynapseToRoi(synapseLabel, propertyEntry.key(), deltas, -1);
+            }
+        }
+
+        for (Map.Entry<String, SynapseCountChanges.Delta> delta : deltas.entrySet()) {
+            if (!datasetsCountedByTransaction.contains(delta.getKey())) {
+                changes.getDelta(delta.getKey()).add(delta.getValue());
+            }
+        }
+
+    }
+
+    /**
+     * @return true if labelName is the synapse label of a counted dataset
+     */
+    private static boolean addSynapse(String labelName, Set<String> countedDatasets, Map<String, SynapseCountChanges.Delta> deltas, int sign) {
+        String dataset = getSynapseDataset(labelName, countedDatasets);
+        if (dataset != null) {
+            deltas.computeIfAbsent(dataset, d -> new SynapseCountChanges.Delta()).addSynapse(labelName.endsWith(PRE_SYN_SUFFIX), sign);
+            return true;
+        }
+        return false;
     }
 
-    public Set<String> getDatasetsChanged() {
-        return this.datasetsChanged;
+    private static void addSynapseToRoi(String synapseLabel, String roi, Map<String, SynapseCountChanges.Delta> deltas, int sign) {
+        if (synapseLabel != null) {
+            boolean isPre = synapseLabel.endsWith(PRE_SYN_SUFFIX);
+            String dataset = synapseLabel.substring(0, synapseLabel.length() - (isPre ? PRE_SYN_SUFFIX : POST_SYN_SUFFIX).length());
+            deltas.computeIfAbsent(dataset, d -> new SynapseCountChanges.Delta()).addSynapseToRoi(roi, isPre, sign);
+        }
+    }
+
+    private static String getSynapseLabel(Node node, Set<String> countedDatasets) {
+        for (Label label : node.getLabels()) {
+            if (getSynapseDataset(label.name(), countedDatasets) != null) {
+                return label.name();
+            }
+        }
+        return null;
     }
 
-    private void addNodeForTimeStamping(Node node, Set<String> existingDatasets) {
-        if (!node.hasLabel(Label.label(META)) && !transactionData.isDeleted(node)) {
-            this.nodesForTimeStamping.add(node);
-            for (String dataset : existingDatasets) {
-                if (node.hasLabel(Label.label(dataset))) {
-                    this.datasetsChanged.add(dataset);
+    private static String getSynapseDataset(String labelName, Set<String> countedDatasets) {
+        String dataset = null;
+        if (labelName.endsWith(PRE_SYN_SUFFIX)) {
+            dataset = labelName.substring(0, labelName.length() - PRE_SYN_SUFFIX.length());
+        } else if (labelName.endsWith(POST_SYN_SUFFIX)) {
+            dataset = labelName.substring(0, labelName.length() - POST_SYN_SUFFIX.length());
+        }
+        return dataset != null && countedDatasets.contains(dataset) ? dataset : null;
+    }
+
+    /**
+     * Builds a {@link ChangeRecord} for each dataset touched by the transaction from the Neuron/Segment, Synapse and
+     * ConnectionSet nodes that were created, deleted or changed, including the endpoints of changed relationships.
+     * Labels and properties are read, so this must be called before the transaction commits; those of deleted nodes
+     * come from the transaction data.
+     *
+     * @param skippedDatasets datasets for which no records are built
+     * @return records by dataset
+     */
+    Map<String, ChangeRecord> collectChangeRecords(Set<String> skippedDatasets) {
+
+        Map<String, ChangeRecord> records = new HashMap<>();
+
+        // identifying properties of deleted nodes, which can no longer be read from the nodes
+        Map<Long, Map<String, Object>> deletedNodeIdentifiers = new HashMap<>();
+        for (PropertyEntry<Node> propertyEntry : transactionData.removedNodeProperties()) {
+            if (CHANGE_RECORD_PROPERTIES.contains(propertyEntry.key()) && transactionData.isDeleted(propertyEntry.entity())) {
+                deletedNodeIdentifiers.computeIfAbsent(propertyEntry.entity().getId(), id -> new HashMap<>()).put(propertyEntry.key(), propertyEntry.previouslyCommitedValue());
+            }
+        }
+        for (LabelEntry labelEntry : transactionData.removedLabels()) {
+            Map<String, Object> identifiers = deletedNodeIdentifiers.get(labelEntry.node().getId());
+            String key = getChangeRecordProperty(labelEntry.label().name());
+            if (identifiers != null && key != null) {
+                addToChangeRecord(labelEntry.label().name(), identifiers.get(key), skippedDatasets, records);
+            }
+        }
+
+        // each live node is read once, the first time its id is seen
+        LongHashSet seenNodeIds = new LongHashSet();
+        for (Node node : transactionData.createdNodes()) {
+            addTouchedNode(node, seenNodeIds, skippedDatasets, records);
+        }
+        for (LabelEntry labelEntry : transactionData.assignedLabels()) {
+            addTouchedNode(labelEntry.node(), seenNodeIds, skippedDatasets, records);
+        }
+        for (LabelEntry labelEntry : transactionData.removedLabels()) {
+            addTouchedNode(labelEntry.node(), seenNodeIds, skippedDatasets, records);
+        }
+        for (PropertyEntry<Node> propertyEntry : transactionData.assignedNodeProperties()) {
+            addTouchedNode(propertyEntry.entity(), seenNodeIds, skippedDatasets, records);
+        }
+        for (PropertyEntry<Node> propertyEntry : transactionData.removedNodeProperties()) {
+            addTouchedNode(propertyEntry.entity(), seenNodeIds, skippedDatasets, records);
+        }
+        for (PropertyEntry<Relationship> propertyEntry : transactionData.assignedRelationshipProperties()) {
+            addTouchedRelationshipNodes(propertyEntry.entity(), seenNodeIds, skippedDatasets, records);
+        }
+        for (PropertyEntry<Relationship> propertyEntry : transactionData.removedRelationshipProperties()) {
+            addTouchedRelationshipNodes(propertyEntry.entity(), seenNodeIds, skippedDatasets, records);
+        }
+        for (Relationship relationship : transactionData.createdRelationships()) {
+            addTouchedRelationshipNodes(relationship, seenNodeIds, skippedDatasets, records);
+        }
+        for (Relationship relationship : transactionData.deletedRelationships()) {
+            addTouchedRelationshipNodes(relationship, seenNodeIds, skippedDatasets, records);
+        }
+
+        return records;
+    }
+
+    private void addTouchedNode(Node node, LongHashSet seenNodeIds, Set<String> skippedDatasets, Map<String, ChangeRecord> records) {
+        if (seenNodeIds.add(node.getId()) && !transactionData.isDeleted(node)) {
+            // one pass over the labels; a Neuron's -Segment and -Neuron labels share the bodyId read
+            String lastKey = null;
+            Object lastIdentifier = null;
+            for (Label label : node.getLabels()) {
+                String labelName = label.name();
+                String key = getChangeRecordProperty(labelName);
+                if (key != null) {
+                    if (!key.equals(lastKey)) {
+                        lastKey = key;
+                        lastIdentifier = node.getProperty(key, null);
+                    }
+                    addToChangeRecord(labelName, lastIdentifier, skippedDatasets, records);
                 }
             }
         }
     }
 
-    private void checkIfShouldUpdateMetaNodeSynapseCounts(Node node) {
-        // disabled for now; will manually update meta info
-//        if (node.hasLabel(Label.label(SYNAPSE)) && !transactionData.isDeleted(node)) {
-//            shouldMetaNodeSynapseCountsBeUpdated = true;
-//        }
+    private void addTouchedRelationshipNodes(Relationship relationship, LongHashSet seenNodeIds, Set<String> skippedDatasets, Map<String, ChangeRecord> records) {
+        addTouchedNode(relationship.getStartNodeId(), relationship, seenNodeIds, skippedDatasets, records);
+        addTouchedNode(relationship.getEndNodeId(), relationship, seenNodeIds, skippedDatasets, records);
     }
 
-    boolean shouldTimeStampAndUpdateMetaNodeTimeStamp() {
-        //if time stamping, means a significant change happened during transaction that wasn't the addition of a time stamp or alteration of the meta node itself
-        return (this.nodesForTimeStamping.size() > 0);
+    private void addTouchedNode(long nodeId, Relationship relationship, LongHashSet seenNodeIds, Set<String> skippedDatasets, Map<String, ChangeRecord> records) {
+        if (!seenNodeIds.contains(nodeId)) {
+            try {
+                addTouchedNode(relationship.getGraphDatabase().getNodeById(nodeId), seenNodeIds, skippedDatasets, records);
+            } catch (NotFoundException nfe) {
+                // deleted by the transaction; recorded from its removed labels
+                seenNodeIds.add(nodeId);
+            }
+        }
+    }
+
+    /**
+     * @return the identifying property of nodes with this label if it is a dataset-specific Neuron/Segment, Synapse or ConnectionSet label
+     */
+    private static String getChangeRecordProperty(String labelName) {
+        if (labelName.endsWith(SEGMENT_SUFFIX) || labelName.endsWith(NEURON_SUFFIX)) {
+            return BODY_ID;
+        } else if (labelName.endsWith(SYNAPSE_SUFFIX)) {
+            return LOCATION;
+        } else if (labelName.endsWith(CONNECTION_SET_SUFFIX)) {
+            return DATASET_BODY_IDs;
+        }
+        return null;
+    }
+
+    private static void addToChangeRecord(String labelName, Object identifier, Set<String> skippedDatasets, Map<String, ChangeRecord> records) {
+        String key = getChangeRecordProperty(labelName);
+        if (key == null || identifier == null) {
+            return;
+        }
+        String dataset = labelName.substring(0, labelName.lastIndexOf('-'));
+        if (skippedDatasets.contains(dataset)) {
+            return;
+        }
+        ChangeRecord record = records.computeIfAbsent(dataset, ChangeRecord::new);
+        if (key.equals(BODY_ID) && identifier instanceof Number) {
+            record.addBodyId(((Number) identifier).longValue());
+        } else if (key.equals(LOCATION) && identifier instanceof Point) {
+            record.addSynapseLocation((Point) identifier);
+        } else if (key.equals(DATASET_BODY_IDs)) {
+            record.addConnectionSet(identifier.toString());
+        }
+    }
+
+    private int addNodeForTimeStamping(Node node, LongHashSet nodeIds) {
+        if (!transactionData.isDeleted(node)) {
+            nodeIds.add(node.getId());
+            return 1;
+        }
+        return 0;
     }
 
-    boolean getShouldMetaNodeSynapseCountsBeUpdated() {
-        return this.shouldMetaNodeSynapseCountsBeUpdated;
+    private int addRelationshipNodesForTimeStamping(Relationship relationship, LongHashSet nodeIds) {
+        // deleted endpoints are dropped when the time stamps are written
+        nodeIds.add(relationship.getStartNodeId());
+        nodeIds.add(relationship.getEndNodeId());
+        return 2;
     }
 
 }
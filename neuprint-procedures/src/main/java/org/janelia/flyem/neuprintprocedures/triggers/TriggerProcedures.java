@@ -0,0 +1,185 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import apoc.result.LongResult;
+import org.janelia.flyem.neuprintprocedures.meta.MetaCounts;
+import org.janelia.flyem.neuprintprocedures.meta.MetaCountsResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.Context;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TriggerProcedures {
+
+    @Context
+    public GraphDatabaseService dbService;
+
+    @Context
+    public Log log;
+
+    @Procedure(value = "neuprint.triggerStats", mode = Mode.READ)
+    @Description("neuprint.triggerStats() : commit, flush and time stamp counts for the coalescing trigger writer along with the number of " +
+            "node ids waiting to be time-stamped and the writer's settings. e.g. CALL neuprint.triggerStats() YIELD commits, flushes RETURN commits, flushes")
+    public Stream<TriggerStatsResult> triggerStats() {
+        CoalescingTriggerWriter writer = CoalescingTriggerWriter.getWriter(dbService);
+        return writer == null ? Stream.empty() : Stream.of(writer.getStats());
+    }
+
+    @Procedure(value = "neuprint.flushTriggers", mode = Mode.READ)
+    @Description("neuprint.flushTriggers() : time-stamps all pending nodes and updates the Meta nodes of changed datasets without waiting for the " +
+            "coalescing window, then returns the trigger writer's counts. e.g. CALL neuprint.flushTriggers()")
+    public Stream<TriggerStatsResult> flushTriggers() {
+        log.info("neuprint.flushTriggers: entry");
+        CoalescingTriggerWriter writer = CoalescingTriggerWriter.getWriter(dbService);
+        if (writer == null) {
+            log.info("neuprint.flushTriggers: exit");
+            return Stream.empty();
+        }
+        try {
+            writer.flushAndWait();
+        } catch (Exception e) {
+            log.error("Error running neuprint.flushTriggers: " + e);
+            throw new RuntimeException("Error running neuprint.flushTriggers: " + e);
+        }
+        log.info("neuprint.flushTriggers: exit");
+        return Stream.of(writer.getStats());
+    }
+
+    @Procedure(value = "neuprint.startBulkLoad", mode = Mode.READ)
+    @Description("neuprint.startBulkLoad(dataset) : marks a bulk load of the dataset as in progress. Until neuprint.endBulkLoad is called, " +
+            "transaction triggers do not time-stamp the dataset's nodes or update its Meta node. e.g. CALL neuprint.startBulkLoad('mb6')")
+    public void startBulkLoad(@Name("dataset") String dataset) {
+        log.info("neuprint.startBulkLoad: entry");
+        try {
+            if (dataset == null) {
+                log.error("neuprint.startBulkLoad: Missing input arguments.");
+                throw new RuntimeException("neuprint.startBulkLoad: Missing input arguments.");
+            }
+            getWriterOrFail("neuprint.startBulkLoad").startBulkLoad(dataset);
+            log.info("neuprint.startBulkLoad: Bulk load of dataset " + dataset + " started.");
+        } catch (Exception e) {
+            log.error("Error running neuprint.startBulkLoad: " + e);
+            throw new RuntimeException("Error running neuprint.startBulkLoad: " + e);
+        }
+        log.info("neuprint.startBulkLoad: exit");
+    }
+
+    @Procedure(value = "neuprint.endBulkLoad", mode = Mode.WRITE)
+    @Description("neuprint.endBulkLoad(dataset) : ends a bulk load started with neuprint.startBulkLoad. Once no other bulk load of the dataset " +
+            "is in progress, every node of the dataset is time-stamped in batched transactions and the Meta node's lastDatabaseEdit is updated. " +
+            "Returns the number of nodes time-stamped. e.g. CALL neuprint.endBulkLoad('mb6') YIELD value RETURN value")
+    public Stream<LongResult> endBulkLoad(@Name("dataset") String dataset) {
+        log.info("neuprint.endBulkLoad: entry");
+        long stamped = 0;
+        try {
+            if (dataset == null) {
+                log.error("neuprint.endBulkLoad: Missing input arguments.");
+                throw new RuntimeException("neuprint.endBulkLoad: Missing input arguments.");
+            }
+            CoalescingTriggerWriter writer = getWriterOrFail("neuprint.endBulkLoad");
+            if (writer.endBulkLoad(dataset)) {
+                stamped = writer.timeStampDataset(dataset);
+                ChangeLog changeLog = ChangeLog.getChangeLog(dbService);
+                if (changeLog != null) {
+                    // changes made during the load were not recorded
+                    changeLog.append(Collections.singletonList(ChangeRecord.fullReload(dataset)));
+                }
+                log.info("neuprint.endBulkLoad: Bulk load of dataset " + dataset + " ended. Time-stamped " + stamped + " nodes.");
+            } else {
+                log.info("neuprint.endBulkLoad: Another bulk load of dataset " + dataset + " is still in progress.");
+            }
+        } catch (Exception e) {
+            log.error("Error running neuprint.endBulkLoad: " + e);
+            throw new RuntimeException("Error running neuprint.endBulkLoad: " + e);
+        }
+        log.info("neuprint.endBulkLoad: exit");
+        return Stream.of(new LongResult(stamped));
+    }
+
+    @Procedure(value = "neuprint.reconcileMetaCounts", mode = Mode.WRITE)
+    @Description("neuprint.reconcileMetaCounts(dataset, threads) : applies pending trigger changes, then recounts the synapses of a dataset and " +
+            "overwrites the totalPreCount, totalPostCount and roiInfo of its Meta node, folding away any MetaDelta nodes. Per-ROI counts are taken " +
+            "in parallel on the given number of threads (default 4). Corrects drift in counts maintained by the triggers (triggerMetaCounts) and " +
+            "can be scheduled, e.g. with apoc.periodic.repeat. e.g. CALL neuprint.reconcileMetaCounts('mb6', 8)")
+    public Stream<MetaCountsResult> reconcileMetaCounts(@Name("dataset") String dataset, @Name(value = "threads", defaultValue = "4") Long threads) {
+        log.info("neuprint.reconcileMetaCounts: entry");
+        MetaCountsResult metaCounts;
+        try {
+            if (dataset == null || threads == null || threads < 1) {
+                log.error("neuprint.reconcileMetaCounts: Missing input arguments.");
+                throw new RuntimeException("neuprint.reconcileMetaCounts: Missing input arguments.");
+            }
+            CoalescingTriggerWriter writer = CoalescingTriggerWriter.getWriter(dbService);
+            if (writer != null) {
+                writer.flushAndWait();
+            }
+            long startTime = System.currentTimeMillis();
+            metaCounts = MetaCounts.reconcile(dbService, dataset, threads.intValue());
+            if (metaCounts == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            log.info("neuprint.reconcileMetaCounts: Recounted synapses of dataset " + dataset + " in " + (System.currentTimeMillis() - startTime) + " ms.");
+        } catch (Exception e) {
+            log.error("Error running neuprint.reconcileMetaCounts: " + e);
+            throw new RuntimeException("Error running neuprint.reconcileMetaCounts: " + e);
+        }
+        log.info("neuprint.reconcileMetaCounts: exit");
+        return Stream.of(metaCounts);
+    }
+
+    @Procedure(value = "neuprint.changesSince", mode = Mode.READ)
+    @Description("neuprint.changesSince(seq, limit) : change records appended to the change log after sequence number seq (0 for all), in order " +
+            "and at most limit of them (default 1000). Each committed transaction adds a record per dataset it touched with the bodyIds, synapse " +
+            "locations and ConnectionSets (datasetBodyIds) it created, deleted or changed; fullReload records mark datasets that changed entirely, " +
+            "e.g. at the end of a bulk load. Fails if records after seq have been dropped from the log, including for seq 0. " +
+            "e.g. CALL neuprint.changesSince(1200, 500) YIELD seq, dataset, bodyIds RETURN seq, dataset, bodyIds")
+    public Stream<ChangeRecordResult> changesSince(@Name("seq") Long seq, @Name(value = "limit", defaultValue = "1000") Long limit) {
+        log.info("neuprint.changesSince: entry");
+        List<ChangeRecordResult> records;
+        try {
+            if (seq == null || limit == null || limit < 1) {
+                log.error("neuprint.changesSince: Missing input arguments.");
+                throw new RuntimeException("neuprint.changesSince: Missing input arguments.");
+            }
+            records = getChangeLogOrFail("neuprint.changesSince").readSince(seq, (int) Math.min(Integer.MAX_VALUE, limit));
+        } catch (Exception e) {
+            log.error("Error running neuprint.changesSince: " + e);
+            throw new RuntimeException("Error running neuprint.changesSince: " + e);
+        }
+        log.info("neuprint.changesSince: exit");
+        return records.stream();
+    }
+
+    @Procedure(value = "neuprint.lastChangeSeq", mode = Mode.READ)
+    @Description("neuprint.lastChangeSeq() : sequence number of the last record in the change log, to pass to neuprint.changesSince after a " +
+            "full reload. e.g. CALL neuprint.lastChangeSeq() YIELD value RETURN value")
+    public Stream<LongResult> lastChangeSeq() {
+        return Stream.of(new LongResult(getChangeLogOrFail("neuprint.lastChangeSeq").getLastSeq()));
+    }
+
+    private ChangeLog getChangeLogOrFail(String procedure) {
+        ChangeLog changeLog = ChangeLog.getChangeLog(dbService);
+        if (changeLog == null) {
+            log.error(procedure + ": The change log is not enabled for this database.");
+            throw new RuntimeException(procedure + ": The change log is not enabled for this database.");
+        }
+        return changeLog;
+    }
+
+    private CoalescingTriggerWriter getWriterOrFail(String procedure) {
+        CoalescingTriggerWriter writer = CoalescingTriggerWriter.getWriter(dbService);
+        if (writer == null) {
+            log.error(procedure + ": Transaction triggers are not registered for this database.");
+            throw new RuntimeException(procedure + ": Transaction triggers are not registered for this database.");
+        }
+        return writer;
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import java.util.List;
+
+public class TriggerStatsResult {
+
+    public final Long commits;
+    public final Long nodeIdsReceived;
+    public final Long pendingNodes;
+    public final Long peakPendingNodes;
+    public final Long spilledNodes;
+    public final Long flushes;
+    public final Long capacityFlushes;
+    public final Long nodesTimeStamped;
+    public final Long nodesNotFound;
+    public final Long nodesSkippedForBulkLoad;
+    public final Long failedBatches;
+    public final Long metaCountUpdates;
+    public final Long lastFlushMillis;
+    public final Long totalFlushMillis;
+    public final Long handledTransactions;
+    public final Long lastHandlerMicros;
+    public final Long totalHandlerMicros;
+    public final Long maxHandlerMicros;
+    public final List<String> bulkLoadDatasets;
+    public final Long coalesceWindowMillis;
+    public final Long maxPendingNodes;
+    public final Long batchSize;
+
+    public TriggerStatsResult(Long commits, Long nodeIdsReceived, Long pendingNodes, Long peakPendingNodes, Long spilledNodes, Long flushes, Long capacityFlushes,
+                              Long nodesTimeStamped, Long nodesNotFound, Long nodesSkippedForBulkLoad, Long failedBatches, Long metaCountUpdates,
+                              Long lastFlushMillis, Long totalFlushMillis, Long handledTransactions, Long lastHandlerMicros,
+                              Long totalHandlerMicros, Long maxHandlerMicros, List<String> bulkLoadDatasets, Long coalesceWindowMillis, Long maxPendingNodes, Long batchSize) {
+        this.commits = commits;
+        this.nodeIdsReceived = nodeIdsReceived;
+        this.pendingNodes = pendingNodes;
+        this.peakPendingNodes = peakPendingNodes;
+        this.spilledNodes = spilledNodes;
+        this.flushes = flushes;
+        this.capacityFlushes = capacityFlushes;
+        this.nodesTimeStamped = nodesTimeStamped;
+        this.nodesNotFound = nodesNotFound;
+        this.nodesSkippedForBulkLoad = nodesSkippedForBulkLoad;
+        this.failedBatches = failedBatches;
+        this.metaCountUpdates = metaCountUpdates;
+        this.lastFlushMillis = lastFlushMillis;
+        this.totalFlushMillis = totalFlushMillis;
+        this.handledTransactions = handledTransactions;
+        this.lastHandlerMicros = lastHandlerMicros;
+        this.totalHandlerMicros = totalHandlerMicros;
+        this.maxHandlerMicros = maxHandlerMicros;
+        this.bulkLoadDatasets = bulkLoadDatasets;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.maxPendingNodes = maxPendingNodes;
+        this.batchSize = batchSize;
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CentralityTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withProcedure(AnalysisProcedures.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(GraphRefactoring.class)
+                .withFunction(Json.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @Test
+    public void shouldComputeConnectionStrengthMatchingConnectsToWeights() {
+
+        Session session = driver.session();
+
+        List<Record> expected = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`) " +
+                "OPTIONAL MATCH (n)-[o:ConnectsTo]->(:`test-Segment`) WITH n, sum(o.weight) AS outStrength " +
+                "OPTIONAL MATCH (n)<-[i:ConnectsTo]-(:`test-Segment`) RETURN n.bodyId AS bodyId, outStrength, sum(i.weight) AS inStrength")).list();
+
+        List<Record> records = session.readTransaction(tx -> tx.run("CALL analysis.connectionStrength('test', 'Segment') YIELD bodyId, inStrength, outStrength RETURN bodyId, inStrength, outStrength")).list();
+
+        Assert.assertEquals(expected.size(), records.size());
+
+        Map<Long, Record> expectedMap = new HashMap<>();
+        for (Record record : expected) {
+            expectedMap.put(record.get("bodyId").asLong(), record);
+        }
+
+        for (Record record : records) {
+            Record expectedRecord = expectedMap.get(record.get("bodyId").asLong());
+            Assert.assertEquals(expectedRecord.get("inStrength").asDouble(), record.get("inStrength").asDouble(), 0.0001D);
+            Assert.assertEquals(expectedRecord.get("outStrength").asDouble(), record.get("outStrength").asDouble(), 0.0001D);
+        }
+
+        // with minWeight 2, 8426959 connects to 1 and 2 and receives input from 26311
+        Record body8426959 = session.readTransaction(tx -> tx.run("CALL analysis.connectionStrength('test', 'Segment', '', '', 2) YIELD bodyId, inStrength, outStrength WHERE bodyId=8426959 RETURN inStrength, outStrength")).single();
+        Assert.assertEquals(2.0D, body8426959.get("inStrength").asDouble(), 0.0001D);
+        Assert.assertEquals(4.0D, body8426959.get("outStrength").asDouble(), 0.0001D);
+
+    }
+
+    @Test
+    public void shouldComputePageRankThatSumsToOne() {
+
+        Session session = driver.session();
+
+        List<Record> records = session.readTransaction(tx -> tx.run("CALL analysis.pageRank('test', 'Segment', '', '', 1, 0.85, 100, 1e-10) YIELD bodyId, score RETURN bodyId, score")).list();
+
+        double sum = 0.0D;
+        Map<Long, Double> scores = new HashMap<>();
+        for (Record record : records) {
+            sum += record.get("score").asDouble();
+            scores.put(record.get("bodyId").asLong(), record.get("score").asDouble());
+        }
+
+        Assert.assertEquals(1.0D, sum, 0.0001D);
+        // 100523 has no connections, so it should only receive the random jump and dangling contributions
+        Assert.assertTrue(scores.get(26311L) > scores.get(100523L));
+        Assert.assertTrue(scores.get(8426959L) > scores.get(100523L));
+
+        // status filter
+        List<Record> finalRecords = session.readTransaction(tx -> tx.run("CALL analysis.pageRank('test', 'Segment', 'final') YIELD bodyId, score RETURN bodyId, score")).list();
+        Assert.assertEquals(5, finalRecords.size());
+
+    }
+
+    @Test
+    public void shouldComputeExactBetweennessWhenSampleCoversAllNodes() {
+
+        Session session = driver.session();
+
+        List<Record> records = session.readTransaction(tx -> tx.run("CALL analysis.betweenness('test', 'Segment', '', '', 2, 1000) YIELD bodyId, score RETURN bodyId, score")).list();
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (Record record : records) {
+            scores.put(record.get("bodyId").asLong(), record.get("score").asDouble());
+        }
+
+        // with weight >= 2 the graph is the cycle 8426959 -> (1, 2) -> 26311 -> 8426959
+        Assert.assertEquals(4.0D, scores.get(8426959L), 0.0001D);
+        Assert.assertEquals(4.0D, scores.get(26311L), 0.0001D);
+        Assert.assertEquals(0.5D, scores.get(1L), 0.0001D);
+        Assert.assertEquals(0.5D, scores.get(2L), 0.0001D);
+        Assert.assertEquals(0.0D, scores.get(100523L), 0.0001D);
+
+    }
+
+    @Test
+    public void shouldWriteCentralityInBatches() {
+
+        Session session = driver.session();
+
+        long written = session.writeTransaction(tx -> tx.run("CALL analysis.writeCentrality('outStrength', 'outStrength', 'test', 'Segment', '', '', 1, 3) YIELD value RETURN value")).single().get(0).asLong();
+
+        long segmentCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`) RETURN count(n)")).single().get(0).asLong();
+        Assert.assertEquals(segmentCount, written);
+
+        double outStrength = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.outStrength")).single().get(0).asDouble();
+        double expected = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`) RETURN sum(r.weight)")).single().get(0).asDouble();
+        Assert.assertEquals(expected, outStrength, 0.0001D);
+
+    }
+
+    @Test
+    public void shouldWriteSamePageRankAsReadProcedure() {
+
+        Session session = driver.session();
+
+        session.writeTransaction(tx -> tx.run("CALL analysis.writeCentrality('pageRank', 'pageRank', 'test', 'Segment', '', '', 1, 10000, 0.5, 50, 1e-9) YIELD value RETURN value"));
+
+        double expected = session.readTransaction(tx -> tx.run("CALL analysis.pageRank('test', 'Segment', '', '', 1, 0.5, 50, 1e-9) YIELD bodyId, score WHERE bodyId = 8426959 RETURN score")).single().get(0).asDouble();
+        double defaultScore = session.readTransaction(tx -> tx.run("CALL analysis.pageRank('test', 'Segment') YIELD bodyId, score WHERE bodyId = 8426959 RETURN score")).single().get(0).asDouble();
+        double written = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.pageRank")).single().get(0).asDouble();
+        Assert.assertEquals(expected, written, 0D);
+        Assert.assertNotEquals(defaultScore, written, 1e-9);
+
+    }
+
+}
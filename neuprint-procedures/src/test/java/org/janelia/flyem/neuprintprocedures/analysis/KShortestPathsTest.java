@@ -0,0 +1,141 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.driver.v1.types.Path;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class KShortestPathsTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(AnalysisProcedures.class)
+            .withProcedure(LoadingProcedures.class)
+            .withProcedure(GraphRefactoring.class)
+            .withFunction(Json.class)
+            .withProcedure(Create.class);
+
+    @Test
+    public void shouldGetKShortestPathsAndBidirectionalShortestPath() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+            final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+            List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+            List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+            List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+            // paths from 8426959 to 26311: direct (weight 1), through 1 or 2 (weights 2, 2), through 831744 (weights 1, 1)
+            List<Record> allPaths = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}), (m:`test-Segment`{bodyId:26311}) " +
+                    "CALL analysis.getKShortestPaths(n, m, $k, 'test') YIELD path, weight RETURN path, weight", parameters("k", 10)).list());
+
+            Assert.assertEquals(4, allPaths.size());
+            Assert.assertEquals(1.0D, allPaths.get(0).get("weight").asDouble(), 0.0001D);
+            Assert.assertEquals(1.0D, allPaths.get(1).get("weight").asDouble(), 0.0001D);
+            Assert.assertEquals(1.0D, allPaths.get(2).get("weight").asDouble(), 0.0001D);
+            Assert.assertEquals(2.0D, allPaths.get(3).get("weight").asDouble(), 0.0001D);
+
+            Set<Long> middleNodes = new HashSet<>();
+            for (Record record : allPaths) {
+                Path path = record.get("path").asPath();
+                Assert.assertEquals(8426959L, path.start().get("bodyId").asLong());
+                Assert.assertEquals(26311L, path.end().get("bodyId").asLong());
+                for (Node node : path.nodes()) {
+                    middleNodes.add(node.get("bodyId").asLong());
+                }
+            }
+            Assert.assertTrue(middleNodes.contains(1L) && middleNodes.contains(2L) && middleNodes.contains(831744L));
+
+            // with min weight 2 only the paths through 1 and 2 remain
+            List<Record> strongPaths = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}), (m:`test-Segment`{bodyId:26311}) " +
+                    "CALL analysis.getKShortestPaths(n, m, 10, 'test', 2) YIELD path, weight RETURN path, weight").list());
+
+            Assert.assertEquals(2, strongPaths.size());
+            for (Record record : strongPaths) {
+                Path path = record.get("path").asPath();
+                Assert.assertEquals(2, path.length());
+                path.relationships().forEach(r -> Assert.assertEquals(2L, r.get("weight").asLong()));
+            }
+
+            // bidirectional with hop cost finds the direct connection
+            Record shortest = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}), (m:`test-Segment`{bodyId:26311}) " +
+                    "CALL analysis.getShortestPathBidirectional(n, m, 'test', 1, 'hops') YIELD path, weight RETURN path, weight").single());
+
+            Assert.assertEquals(1, shortest.get("path").asPath().length());
+            Assert.assertEquals(1.0D, shortest.get("weight").asDouble(), 0.0001D);
+
+            // no relationships have weight >= 3
+            List<Record> noPath = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}), (m:`test-Segment`{bodyId:26311}) " +
+                    "CALL analysis.getShortestPathBidirectional(n, m, 'test', 3) YIELD path, weight RETURN path, weight").list());
+
+            Assert.assertEquals(0, noPath.size());
+
+        }
+
+    }
+
+    @Test
+    public void shouldRebuildCachedGraphWhenRelationshipWasDeleted() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+            final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+            List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+            List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+            List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+            // a fixed version, as when an edit lands within the same second as the last recorded edit
+            session.writeTransaction(tx -> tx.run("MERGE (m:Meta{dataset:'test'}) SET m.lastDatabaseEdit = $timeStamp", parameters("timeStamp", timeStamp)));
+
+            Record direct = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}), (m:`test-Segment`{bodyId:26311}) " +
+                    "CALL analysis.getShortestPathBidirectional(n, m, 'test', 1, 'hops') YIELD path, weight RETURN path, weight").single());
+            Assert.assertEquals(1, direct.get("path").asPath().length());
+
+            session.writeTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:26311}) DELETE r"));
+
+            Record rebuilt = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}), (m:`test-Segment`{bodyId:26311}) " +
+                    "CALL analysis.getShortestPathBidirectional(n, m, 'test', 1, 'hops') YIELD path, weight RETURN path, weight").single());
+            Assert.assertEquals(2, rebuilt.get("path").asPath().length());
+
+        }
+
+    }
+
+}
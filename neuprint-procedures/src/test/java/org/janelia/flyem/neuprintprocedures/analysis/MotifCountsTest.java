@@ -0,0 +1,88 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MotifCountsTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(AnalysisProcedures.class)
+            .withProcedure(LoadingProcedures.class)
+            .withProcedure(GraphRefactoring.class)
+            .withFunction(Json.class)
+            .withProcedure(Create.class);
+
+    @Test
+    public void shouldCountReciprocalPairsAndTriads() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+            final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+            List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+            List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+            List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+            // with min weight 2: 8426959->1, 8426959->2, 1->26311, 2->26311, 26311->8426959
+            List<Record> records = session.readTransaction(tx -> tx.run("CALL analysis.motifCounts([8426959, 1, 2, 26311], '', 2, 'test', 1) YIELD motif, count, examples RETURN motif, count, examples").list());
+
+            Map<String, Long> counts = new HashMap<>();
+            Map<String, List<Object>> examples = new HashMap<>();
+            for (Record record : records) {
+                counts.put(record.get("motif").asString(), record.get("count").asLong());
+                examples.put(record.get("motif").asString(), record.get("examples").asList());
+            }
+
+            Assert.assertEquals(MotifCounter.getMotifNames().size(), records.size());
+            Assert.assertEquals(Long.valueOf(0L), counts.get("mutual"));
+            Assert.assertEquals(Long.valueOf(5L), counts.get("asymmetric"));
+            Assert.assertEquals(Long.valueOf(1L), counts.get("021D"));
+            Assert.assertEquals(Long.valueOf(1L), counts.get("021U"));
+            Assert.assertEquals(Long.valueOf(0L), counts.get("021C"));
+            Assert.assertEquals(Long.valueOf(2L), counts.get("030C"));
+            Assert.assertEquals(Long.valueOf(0L), counts.get("030T"));
+            Assert.assertEquals(Long.valueOf(0L), counts.get("300"));
+
+            Assert.assertEquals(1, examples.get("030C").size());
+            Assert.assertEquals(3, ((List) examples.get("030C").get(0)).size());
+            Assert.assertEquals(0, examples.get("mutual").size());
+
+            // with min weight 1, 8426959 and 26311 connect to each other
+            Record mutual = session.readTransaction(tx -> tx.run("CALL analysis.motifCounts([8426959, 26311], '', 1, 'test') YIELD motif, count WHERE motif = 'mutual' RETURN count").single());
+
+            Assert.assertEquals(1L, mutual.get("count").asLong());
+
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class ReachableTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(AnalysisProcedures.class)
+            .withProcedure(LoadingProcedures.class)
+            .withProcedure(GraphRefactoring.class)
+            .withFunction(Json.class)
+            .withProcedure(Create.class);
+
+    @Test
+    public void shouldGetReachableBodiesWithHopsAndStrongestPathWeight() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+            final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+            List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+            List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+            List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+            // downstream of 8426959 at any weight: 1, 2, 2589725, 26311, 831744 in one hop
+            Map<Long, Record> downstream = getReachable(session, 8426959L, "downstream", 3, 1);
+            Assert.assertEquals(5, downstream.size());
+            Assert.assertEquals(1L, downstream.get(26311L).get("hops").asLong());
+            Assert.assertEquals(1L, downstream.get(26311L).get("weight").asLong());
+            Assert.assertEquals(2L, downstream.get(1L).get("weight").asLong());
+            Assert.assertFalse(downstream.containsKey(8426959L));
+
+            // at weight >= 2, 26311 is only reachable through 1 or 2
+            Map<Long, Record> strongDownstream = getReachable(session, 8426959L, "downstream", 3, 2);
+            Assert.assertEquals(3, strongDownstream.size());
+            Assert.assertEquals(2L, strongDownstream.get(26311L).get("hops").asLong());
+            Assert.assertEquals(2L, strongDownstream.get(26311L).get("weight").asLong());
+
+            // hop limit
+            Map<Long, Record> oneHop = getReachable(session, 8426959L, "downstream", 1, 2);
+            Assert.assertEquals(2, oneHop.size());
+            Assert.assertFalse(oneHop.containsKey(26311L));
+
+            // upstream of 26311 at weight >= 2: 1 and 2 in one hop, 8426959 in two
+            Map<Long, Record> upstream = getReachable(session, 26311L, "upstream", 5, 2);
+            Assert.assertEquals(3, upstream.size());
+            Assert.assertEquals(2L, upstream.get(8426959L).get("hops").asLong());
+
+            // both directions
+            Map<Long, Record> both = getReachable(session, 1L, "both", 1, 2);
+            Assert.assertEquals(2, both.size());
+            Assert.assertTrue(both.containsKey(8426959L) && both.containsKey(26311L));
+
+        }
+
+    }
+
+    private Map<Long, Record> getReachable(Session session, long bodyId, String direction, long maxHops, long minWeight) {
+        List<Record> records = session.readTransaction(tx -> tx.run("CALL analysis.reachable([$bodyId], $direction, $maxHops, $minWeight, 'test', 'Segment') " +
+                "YIELD bodyId, hops, weight RETURN bodyId, hops, weight", parameters(
+                "bodyId", bodyId,
+                "direction", direction,
+                "maxHops", maxHops,
+                "minWeight", minWeight
+        )).list());
+        Map<Long, Record> recordMap = new HashMap<>();
+        for (Record record : records) {
+            recordMap.put(record.get("bodyId").asLong(), record);
+        }
+        return recordMap;
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.List;
+
+public class SimilarNeuronsTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(AnalysisProcedures.class);
+
+    @Test
+    public void shouldFindSimilarNeuronsAndRefreshWhenRoiInfoChanges() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            session.writeTransaction(tx -> tx.run("CREATE (:Meta:test{dataset:'test', lastDatabaseEdit:'2018-01-01T00:00', roiInfo:'{\"a\":{\"pre\":35,\"post\":35},\"b\":{\"pre\":15,\"post\":15},\"c\":{\"pre\":0,\"post\":0}}'}), " +
+                    "(:Neuron:`test-Neuron`:test{bodyId:1, roiInfo:'{\"a\":{\"pre\":10,\"post\":10}}'}), " +
+                    "(:Neuron:`test-Neuron`:test{bodyId:2, roiInfo:'{\"a\":{\"pre\":20,\"post\":20}}'}), " +
+                    "(:Neuron:`test-Neuron`:test{bodyId:3, roiInfo:'{\"b\":{\"pre\":10,\"post\":10}}'}), " +
+                    "(:Neuron:`test-Neuron`:test{bodyId:4, roiInfo:'{\"a\":{\"pre\":5,\"post\":5},\"b\":{\"pre\":5,\"post\":5}}'})"));
+
+            List<Record> cosine = session.readTransaction(tx -> tx.run("CALL analysis.similarNeurons(1, 2, 'cosine', 'test') YIELD bodyId, distance RETURN bodyId, distance")).list();
+
+            Assert.assertEquals(2, cosine.size());
+            Assert.assertEquals(2L, cosine.get(0).get("bodyId").asLong());
+            Assert.assertEquals(0.0D, cosine.get(0).get("distance").asDouble(), 0.0001D);
+            Assert.assertEquals(4L, cosine.get(1).get("bodyId").asLong());
+            Assert.assertEquals(1.0D - 1.0D / Math.sqrt(2.0D), cosine.get(1).get("distance").asDouble(), 0.0001D);
+
+            List<Record> euclidean = session.readTransaction(tx -> tx.run("CALL analysis.similarNeurons(1, 10, 'euclidean', 'test') YIELD bodyId, distance RETURN bodyId, distance")).list();
+
+            Assert.assertEquals(3, euclidean.size());
+            Assert.assertEquals(2L, euclidean.get(0).get("bodyId").asLong());
+            Assert.assertEquals(4L, euclidean.get(1).get("bodyId").asLong());
+            Assert.assertEquals(1.0D, euclidean.get(1).get("distance").asDouble(), 0.0001D);
+            Assert.assertEquals(3L, euclidean.get(2).get("bodyId").asLong());
+            Assert.assertEquals(2.0D, euclidean.get(2).get("distance").asDouble(), 0.0001D);
+
+            // move body 3's synapses into roi a; the Meta roiInfo changes with it, so the index should be rebuilt
+            session.writeTransaction(tx -> tx.run("MATCH (n:`test-Neuron`{bodyId:3}), (m:Meta{dataset:'test'}) " +
+                    "SET n.roiInfo='{\"a\":{\"pre\":10,\"post\":10}}', " +
+                    "m.roiInfo='{\"a\":{\"pre\":45,\"post\":45},\"b\":{\"pre\":5,\"post\":5},\"c\":{\"pre\":0,\"post\":0}}'"));
+
+            List<Record> refreshed = session.readTransaction(tx -> tx.run("CALL analysis.similarNeurons(1, 2, 'euclidean', 'test') YIELD bodyId, distance RETURN bodyId, distance")).list();
+
+            Assert.assertEquals(0.0D, refreshed.get(0).get("distance").asDouble(), 0.0001D);
+            Assert.assertEquals(0.0D, refreshed.get(1).get("distance").asDouble(), 0.0001D);
+
+            // an edit that leaves the Meta node unchanged is only picked up once the dataset's index is invalidated,
+            // as the trigger writer does for every committed transaction that touches the dataset
+            session.writeTransaction(tx -> tx.run("MATCH (n:`test-Neuron`{bodyId:4}) SET n.roiInfo='{\"b\":{\"pre\":10,\"post\":10}}'"));
+
+            List<Record> stale = session.readTransaction(tx -> tx.run("CALL analysis.similarNeurons(1, 3, 'euclidean', 'test') YIELD bodyId, distance RETURN bodyId, distance")).list();
+            Assert.assertEquals(0.0D, stale.get(1).get("distance").asDouble(), 0.0001D);
+            Assert.assertEquals(4L, stale.get(2).get("bodyId").asLong());
+
+            NeuronSimilarityIndex.invalidate("test");
+
+            List<Record> invalidated = session.readTransaction(tx -> tx.run("CALL analysis.similarNeurons(1, 3, 'euclidean', 'test') YIELD bodyId, distance RETURN bodyId, distance")).list();
+            Assert.assertEquals(2.0D, invalidated.get(2).get("distance").asDouble(), 0.0001D);
+
+        }
+
+    }
+
+}
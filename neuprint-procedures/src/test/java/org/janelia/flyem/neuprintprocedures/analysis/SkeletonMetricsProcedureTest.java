@@ -0,0 +1,121 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.janelia.flyem.neuprintprocedures.proofreading.ProofreaderProcedures;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class SkeletonMetricsProcedureTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(AnalysisProcedures.class)
+            .withProcedure(ProofreaderProcedures.class)
+            .withFunction(NeuPrintUserFunctions.class)
+            .withProcedure(GraphRefactoring.class)
+            .withProcedure(Create.class);
+
+    @Test
+    public void shouldWriteMetricsForSkelNodeAndCompactSkeletons() {
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(new File[]{swcFile1, swcFile2});
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            neo4jImporter.addSkeletonNodes("test", skeletonList, timeStamp);
+
+            // expected values from the SkelNode graph
+            Map<String, Object> expected = session.readTransaction(tx -> tx.run("MATCH (:Skeleton{skeletonId:\"test:101\"})-[:Contains]->(s:SkelNode) " +
+                    "OPTIONAL MATCH (s)-[:LinksTo]->(c) WITH s, count(c) AS children, sum(distance(s.location, c.location)) AS length " +
+                    "RETURN sum(length) AS cableLength, sum(CASE WHEN children > 1 THEN 1 ELSE 0 END) AS branchPointCount, sum(CASE WHEN children = 0 THEN 1 ELSE 0 END) AS tipCount")).single().asMap();
+
+            List<Record> results = session.writeTransaction(tx -> tx.run("CALL analysis.writeSkeletonMetrics([101], \"test\") YIELD bodyId, cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder " +
+                    "RETURN bodyId, cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder").list());
+
+            Assert.assertEquals(1, results.size());
+            Record result101 = results.get(0);
+            Assert.assertEquals(101L, result101.get("bodyId").asLong());
+            Assert.assertEquals((double) expected.get("cableLength"), result101.get("cableLength").asDouble(), 1e-6);
+            Assert.assertEquals(expected.get("branchPointCount"), result101.get("branchPointCount").asLong());
+            Assert.assertEquals(expected.get("tipCount"), result101.get("tipCount").asLong());
+            Assert.assertTrue(result101.get("maxPathLength").asDouble() > 0 && result101.get("maxPathLength").asDouble() <= result101.get("cableLength").asDouble());
+            Assert.assertTrue(result101.get("strahlerOrder").asLong() >= 1);
+
+            Map<String, Object> segment101 = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:101}) RETURN n")).single().get(0).asNode().asMap();
+            Assert.assertEquals(result101.get("cableLength").asDouble(), (double) segment101.get("cableLength"), 0);
+            Assert.assertEquals(result101.get("strahlerOrder").asLong(), segment101.get("strahlerOrder"));
+            Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:102}) RETURN exists(n.cableLength)")).single().get(0).asBoolean());
+
+            // compact skeletons give the same metrics, and an empty list selects every skeleton in batches
+            session.writeTransaction(tx -> tx.run("CALL proofreader.compactSkeletons(\"test\")"));
+
+            List<Record> allResults = session.writeTransaction(tx -> tx.run("CALL analysis.writeSkeletonMetrics([], \"test\", 1) YIELD bodyId, cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder " +
+                    "RETURN bodyId, cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder ORDER BY bodyId").list());
+
+            Assert.assertEquals(2, allResults.size());
+            Assert.assertEquals(result101.asMap(), allResults.get(0).asMap());
+            Assert.assertEquals(102L, allResults.get(1).get("bodyId").asLong());
+
+            long segmentsWithMetrics = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`) WHERE exists(n.cableLength) AND exists(n.tipCount) RETURN count(n)")).single().get(0).asLong();
+            Assert.assertEquals(2L, segmentsWithMetrics);
+        }
+
+    }
+
+    @Test
+    public void shouldRecomputeMetricsWhenSkeletonIsAddedAndDeleted() {
+
+        String fileCall_101 = "file:./../neuprint-procedures/src/test/resources/101.swc";
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            session.writeTransaction(tx -> tx.run("CREATE (n:`test-Segment`{bodyId:101}) SET n:Segment, n:test"));
+
+            session.writeTransaction(tx -> tx.run("CALL proofreader.addSkeleton($fileUrl,$datasetLabel)", parameters("fileUrl", fileCall_101, "datasetLabel", "test")));
+
+            Map<String, Object> segment = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:101}) RETURN n")).single().get(0).asNode().asMap();
+            Map<String, Object> computed = session.writeTransaction(tx -> tx.run("CALL analysis.writeSkeletonMetrics([101], \"test\") YIELD cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder " +
+                    "RETURN cableLength, branchPointCount, tipCount, maxPathLength, strahlerOrder")).single().asMap();
+            for (Map.Entry<String, Object> metric : computed.entrySet()) {
+                Assert.assertEquals(metric.getKey(), metric.getValue(), segment.get(metric.getKey()));
+            }
+            // 101 has four roots
+            Assert.assertTrue((long) segment.get("tipCount") >= 4);
+
+            session.writeTransaction(tx -> tx.run("CALL proofreader.deleteSkeleton(101,\"test\")"));
+
+            Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:101}) RETURN exists(n.cableLength) OR exists(n.strahlerOrder)")).single().get(0).asBoolean());
+        }
+
+    }
+}
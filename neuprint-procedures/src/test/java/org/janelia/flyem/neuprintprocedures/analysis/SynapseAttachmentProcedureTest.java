@@ -0,0 +1,109 @@
+package org.janelia.flyem.neuprintprocedures.analysis;
+
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.janelia.flyem.neuprintprocedures.proofreading.ProofreaderProcedures;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class SynapseAttachmentProcedureTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(AnalysisProcedures.class)
+            .withProcedure(ProofreaderProcedures.class)
+            .withFunction(NeuPrintUserFunctions.class)
+            .withProcedure(GraphRefactoring.class)
+            .withProcedure(Create.class);
+
+    private static final String SYNAPSE_DISTANCE_QUERY = "MATCH (a:`test-Synapse`{location:point({x:5465,y:9385,z:1248})}), (b:`test-Synapse`{location:point({x:5329,y:9385,z:1368})}) " +
+            "CALL analysis.calculateSynapseCableDistance(\"test\",a,b) YIELD value RETURN value";
+
+    @Test
+    public void shouldAttachSynapsesToSkeletonAndKeepAttachmentsCurrent() {
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(new File[]{swcFile1});
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            neo4jImporter.addSkeletonNodes("test", skeletonList, timeStamp);
+
+            // synapses next to rows 1 and 5 of the skeleton
+            session.writeTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:101}) " +
+                    "CREATE (n)-[:Contains]->(s:SynapseSet:test:`test-SynapseSet`{datasetBodyId:\"test:101\"}), " +
+                    "(s)-[:Contains]->(:Synapse:test:`test-Synapse`{type:\"pre\", location:point({x:5465,y:9385,z:1248})}), " +
+                    "(s)-[:Contains]->(:Synapse:test:`test-Synapse`{type:\"post\", location:point({x:5329,y:9385,z:1368})})"));
+
+            // without attachments the nearest rows are found on the fly
+            Long distanceWithoutAttachments = session.readTransaction(tx -> tx.run(SYNAPSE_DISTANCE_QUERY)).single().get(0).asLong();
+            Assert.assertEquals(new Long(207), distanceWithoutAttachments);
+
+            List<Record> results = session.writeTransaction(tx -> tx.run("CALL analysis.writeSynapseAttachments([101], \"test\", true) " +
+                    "YIELD bodyId, synapseCount, meanDistance, relationshipCount RETURN bodyId, synapseCount, meanDistance, relationshipCount").list());
+            Assert.assertEquals(1, results.size());
+            Assert.assertEquals(101L, results.get(0).get("bodyId").asLong());
+            Assert.assertEquals(2L, results.get(0).get("synapseCount").asLong());
+            Assert.assertEquals(1D, results.get(0).get("meanDistance").asDouble(), 1e-9);
+            Assert.assertEquals(2L, results.get(0).get("relationshipCount").asLong());
+
+            // sorted by location, so the synapse at x=5329 comes first
+            List<Object> skelRows = session.readTransaction(tx -> tx.run("MATCH (n:`test-SynapseSet`{datasetBodyId:\"test:101\"}) RETURN n.attachedSkelRows")).single().get(0).asList();
+            Assert.assertEquals(5L, skelRows.get(0));
+            Assert.assertEquals(1L, skelRows.get(1));
+
+            String attachedSkelNodeId = session.readTransaction(tx -> tx.run("MATCH (:`test-Synapse`{location:point({x:5329,y:9385,z:1368})})-[r:AttachedTo]->(s:SkelNode) " +
+                    "WHERE r.distance = 1.0 RETURN s.skelNodeId")).single().get(0).asString();
+            Assert.assertEquals("test:101:5328:9385:1368:5", attachedSkelNodeId);
+
+            Long distanceWithAttachments = session.readTransaction(tx -> tx.run(SYNAPSE_DISTANCE_QUERY)).single().get(0).asLong();
+            Assert.assertEquals(new Long(207), distanceWithAttachments);
+
+            // deleting the skeleton removes the attachments and AttachedTo relationships
+            session.writeTransaction(tx -> tx.run("CALL proofreader.deleteSkeleton(101,\"test\")"));
+            Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (n:`test-SynapseSet`{datasetBodyId:\"test:101\"}) RETURN exists(n.attachedSkelRows)")).single().get(0).asBoolean());
+            Assert.assertEquals(0, session.readTransaction(tx -> tx.run("MATCH ()-[r:AttachedTo]->() RETURN count(r)")).single().get(0).asInt());
+
+            // adding a skeleton recomputes them
+            String fileCall_101 = "file:./../neuprint-procedures/src/test/resources/101.swc";
+            session.writeTransaction(tx -> tx.run("CALL proofreader.addSkeleton($fileUrl,$datasetLabel)", parameters("fileUrl", fileCall_101, "datasetLabel", "test")));
+            List<Object> recomputedSkelRows = session.readTransaction(tx -> tx.run("MATCH (n:`test-SynapseSet`{datasetBodyId:\"test:101\"}) RETURN n.attachedSkelRows")).single().get(0).asList();
+            Assert.assertEquals(skelRows, recomputedSkelRows);
+
+            // a synapse added to the set makes the attachments out of date
+            session.writeTransaction(tx -> tx.run("MATCH (s:`test-SynapseSet`{datasetBodyId:\"test:101\"}) " +
+                    "CREATE (s)-[:Contains]->(:Synapse:test:`test-Synapse`{type:\"pre\", location:point({x:5112,y:9265,z:1601})})"));
+            Long distanceAfterChange = session.readTransaction(tx -> tx.run("MATCH (a:`test-Synapse`{location:point({x:5465,y:9385,z:1248})}), (b:`test-Synapse`{location:point({x:5112,y:9265,z:1601})}) " +
+                    "CALL analysis.calculateSynapseCableDistance(\"test\",a,b) YIELD value RETURN value")).single().get(0).asLong();
+            Long expectedDistance = session.readTransaction(tx -> tx.run("MATCH (n:SkelNode{skelNodeId:\"test:101:5464:9385:1248:1\"}), (m:SkelNode{skelNodeId:\"test:101:5112:9265:1600:12\"}) " +
+                    "WITH n,m CALL analysis.calculateSkeletonDistance(\"test\",n,m) YIELD value RETURN value")).single().get(0).asLong();
+            Assert.assertEquals(expectedDistance, distanceAfterChange);
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.janelia.flyem.neuprintprocedures.cache;
+
+import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class ResultCacheTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(ResultCacheProcedures.class)
+            .withFunction(NeuPrintUserFunctions.class);
+
+    @Test
+    public void shouldCacheResultsUntilDatasetChanges() throws InterruptedException {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            session.writeTransaction(tx -> tx.run("CREATE (:Meta:test{dataset:'test', lastDatabaseEdit:'2018-01-01T00:00', roiInfo:'{}'}), " +
+                    "(:Segment:`test-Segment`:test{bodyId:1})"));
+
+            // let the triggers finish updating the Meta node
+            TimeUnit.SECONDS.sleep(5);
+
+            session.writeTransaction(tx -> tx.run("CALL neuprint.clearResultCache()"));
+
+            String first = session.readTransaction(tx -> tx.run("RETURN neuprint.getCategoriesOfConnections(1, 'test')")).single().get(0).asString();
+            String second = session.readTransaction(tx -> tx.run("RETURN neuprint.getCategoriesOfConnections(1, 'test')")).single().get(0).asString();
+
+            Assert.assertEquals(first, second);
+
+            Record stats = session.readTransaction(tx -> tx.run("CALL neuprint.resultCacheStats() YIELD hits, misses, entries, bytes RETURN hits, misses, entries, bytes")).single();
+
+            Assert.assertEquals(1L, stats.get("hits").asLong());
+            Assert.assertEquals(1L, stats.get("misses").asLong());
+            Assert.assertEquals(1L, stats.get("entries").asLong());
+            Assert.assertTrue(stats.get("bytes").asLong() > 0);
+
+            // a new lastDatabaseEdit makes the entry stale
+            session.writeTransaction(tx -> tx.run("MATCH (m:Meta{dataset:'test'}) SET m.lastDatabaseEdit='2018-01-02T00:00'"));
+            session.readTransaction(tx -> tx.run("RETURN neuprint.getCategoriesOfConnections(1, 'test')")).consume();
+
+            stats = session.readTransaction(tx -> tx.run("CALL neuprint.resultCacheStats() YIELD hits, misses, invalidations RETURN hits, misses, invalidations")).single();
+
+            Assert.assertEquals(1L, stats.get("hits").asLong());
+            Assert.assertEquals(2L, stats.get("misses").asLong());
+            Assert.assertEquals(1L, stats.get("invalidations").asLong());
+
+            // committing a change to the dataset drops its entries
+            session.writeTransaction(tx -> tx.run("CREATE (:Segment:`test-Segment`:test{bodyId:2})"));
+            TimeUnit.SECONDS.sleep(5);
+
+            stats = session.readTransaction(tx -> tx.run("CALL neuprint.resultCacheStats() YIELD entries, invalidations RETURN entries, invalidations")).single();
+
+            Assert.assertEquals(0L, stats.get("entries").asLong());
+            Assert.assertEquals(2L, stats.get("invalidations").asLong());
+
+        }
+
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedResultsWhenOverLimit() {
+
+        GraphDatabaseService dbService = neo4j.getGraphDatabaseService();
+
+        try (Transaction tx = dbService.beginTx()) {
+            dbService.execute("CREATE (:Meta:test{dataset:'test', lastDatabaseEdit:'2018-01-01T00:00', roiInfo:'{}'})");
+            tx.success();
+        }
+
+        String value = new String(new char[100]);
+        long entrySize = ResultCache.estimateSize(ResultCache.getKey("p", "test", Collections.singletonList(0))) + ResultCache.estimateSize(value);
+        ResultCache resultCache = new ResultCache(2 * entrySize);
+
+        try (Transaction tx = dbService.beginTx()) {
+            resultCache.getOrCompute(dbService, "p", "test", Collections.singletonList(0), () -> value);
+            resultCache.getOrCompute(dbService, "p", "test", Collections.singletonList(1), () -> value);
+            // touch 0 so that 1 is the least recently used
+            resultCache.getOrCompute(dbService, "p", "test", Collections.singletonList(0), () -> value);
+            resultCache.getOrCompute(dbService, "p", "test", Collections.singletonList(2), () -> value);
+
+            ResultCacheStatsResult stats = resultCache.getStats();
+            Assert.assertEquals(Long.valueOf(2L), stats.entries);
+            Assert.assertEquals(Long.valueOf(1L), stats.evictions);
+            Assert.assertEquals(Long.valueOf(2L * entrySize), stats.bytes);
+
+            resultCache.getOrCompute(dbService, "p", "test", Collections.singletonList(0), () -> value);
+            Assert.assertEquals(Long.valueOf(2L), resultCache.getStats().hits);
+
+            resultCache.getOrCompute(dbService, "p", "test", Collections.singletonList(1), () -> value);
+            Assert.assertEquals(Long.valueOf(4L), resultCache.getStats().misses);
+            tx.success();
+        }
+
+    }
+
+    @Test
+    public void shouldNotCacheResultComputedAcrossInvalidation() {
+
+        GraphDatabaseService dbService = neo4j.getGraphDatabaseService();
+
+        try (Transaction tx = dbService.beginTx()) {
+            dbService.execute("CREATE (:Meta:test{dataset:'test', lastDatabaseEdit:'2018-01-01T00:00', roiInfo:'{}'})");
+            tx.success();
+        }
+
+        ResultCache resultCache = new ResultCache(ResultCache.DEFAULT_MAX_BYTES);
+
+        try (Transaction tx = dbService.beginTx()) {
+            // the dataset is edited and invalidated while the result is computed, within the same lastDatabaseEdit second
+            String stale = resultCache.getOrCompute(dbService, "p", "test", Collections.emptyList(), () -> {
+                resultCache.invalidate("test");
+                return "stale";
+            });
+            Assert.assertEquals("stale", stale);
+            Assert.assertEquals(Long.valueOf(0L), resultCache.getStats().entries);
+
+            String fresh = resultCache.getOrCompute(dbService, "p", "test", Collections.emptyList(), () -> "fresh");
+            Assert.assertEquals("fresh", fresh);
+            Assert.assertEquals("fresh", resultCache.getOrCompute(dbService, "p", "test", Collections.emptyList(), () -> "recomputed"));
+            tx.success();
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.janelia.flyem.neuprintprocedures.meta;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.janelia.flyem.neuprintprocedures.proofreading.ProofreaderProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class MetaCountsTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(Create.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(ProofreaderProcedures.class)
+                .withProcedure(MetaCountsProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldRecordDeferredMetaCountsAsDeltasAndFoldThemIntoMetaNode() {
+
+        Session session = driver.session();
+        Gson gson = new Gson();
+
+        Map<String, SynapseCounter> origRoiInfo = gson.fromJson(session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.roiInfo")).single().get(0).asString(), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+
+        session.writeTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) SET n.deferMetaCounts = true"));
+
+        String postSynapseJson = "{ \"type\": \"post\", \"location\": [ 1,1,1 ], \"confidence\": .88, \"rois\": [ \"roiA\", \"test1\" ] }";
+        String preSynapseJson = "{ \"type\": \"pre\", \"location\": [ 2,22,222 ], \"confidence\": .88, \"rois\": [ \"roiA\" ] }";
+        session.writeTransaction(tx -> tx.run("CALL proofreader.addSynapse($synapseJson,'test')", parameters("synapseJson", postSynapseJson)));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.addSynapse($synapseJson,'test')", parameters("synapseJson", preSynapseJson)));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.deleteSynapse(2,22,222,'test')"));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.addRoiToSynapse(4287,2277,1542,'roiX','test')"));
+
+        // deltas are rolled back along with a failed write
+        try {
+            session.writeTransaction(tx -> tx.run("CALL proofreader.addSynapse($synapseJson,'test')", parameters("synapseJson", "{ \"type\": \"neither\", \"location\": [ 3,3,3 ], \"rois\": [ \"roiA\" ] }")).consume());
+            Assert.fail("Synapse with an invalid type should not be added.");
+        } catch (ClientException e) {
+            // expected
+        }
+
+        long preSynapseCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-PreSyn`) RETURN count(n)")).single().get(0).asLong();
+        long postSynapseCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-PostSyn`) RETURN count(n)")).single().get(0).asLong();
+
+        // exact counts combine the Meta node with pending deltas
+        Record exact = session.readTransaction(tx -> tx.run("CALL neuprint.getMetaCounts('test') YIELD totalPreCount, totalPostCount, roiInfo RETURN totalPreCount, totalPostCount, roiInfo")).single();
+        Assert.assertEquals(preSynapseCount, exact.get("totalPreCount").asLong());
+        Assert.assertEquals(postSynapseCount, exact.get("totalPostCount").asLong());
+
+        Map<String, SynapseCounter> exactRoiInfo = gson.fromJson(exact.get("roiInfo").asString(), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+        Assert.assertEquals(origRoiInfo.get("roiA").getPre(), exactRoiInfo.get("roiA").getPre());
+        Assert.assertEquals(origRoiInfo.get("roiA").getPost() + 1, exactRoiInfo.get("roiA").getPost());
+        Assert.assertEquals(0L, exactRoiInfo.get("test1").getPre());
+        Assert.assertEquals(1L, exactRoiInfo.get("test1").getPost());
+        Assert.assertEquals(1L, exactRoiInfo.get("roiX").getPre());
+        Assert.assertEquals(0L, exactRoiInfo.get("roiX").getPost());
+
+        // folding writes the exact counts to the Meta node and removes the deltas
+        Record folded = session.writeTransaction(tx -> tx.run("CALL neuprint.foldMetaCounts('test') YIELD totalPreCount, totalPostCount, roiInfo, pendingDeltas RETURN totalPreCount, totalPostCount, roiInfo, pendingDeltas").single());
+        Assert.assertEquals(0L, folded.get("pendingDeltas").asLong());
+        Assert.assertEquals(exact.get("roiInfo").asString(), folded.get("roiInfo").asString());
+
+        Record meta = session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo")).single();
+        Assert.assertEquals(preSynapseCount, meta.get("pre").asLong());
+        Assert.assertEquals(postSynapseCount, meta.get("post").asLong());
+        Assert.assertEquals(exact.get("roiInfo").asString(), meta.get("roiInfo").asString());
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n:MetaDelta) RETURN count(n)")).single().get(0).asLong());
+
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class ApplyMutationsTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(Create.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(ProofreaderProcedures.class)
+                .withFunction(NeuPrintUserFunctions.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldApplyMutationsOnceAndUpdateMetaNodeAndConnections() {
+
+        Session session = driver.session();
+
+        Map<String, Object> origMeta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo")).single().asMap();
+        long origPre8426959 = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.pre")).single().get(0).asLong();
+
+        List<String> mutations = Arrays.asList(
+                "{\"type\":\"addSynapse\",\"mutationUUID\":\"abc\",\"mutationID\":1,\"synapse\":{\"type\":\"pre\",\"location\":[5000,1,1],\"confidence\":0.9,\"rois\":[\"roiA\"]}}",
+                "{\"type\":\"addSynapse\",\"mutationUUID\":\"abc\",\"mutationID\":2,\"synapse\":{\"type\":\"post\",\"location\":[5000,1,2],\"confidence\":0.9,\"rois\":[\"roiA\"]}}",
+                "{\"type\":\"addConnectionBetweenSynapseNodes\",\"mutationUUID\":\"abc\",\"mutationID\":3,\"preLocation\":[5000,1,1],\"postLocation\":[5000,1,2]}",
+                "{\"type\":\"addSynapseToSegment\",\"mutationUUID\":\"abc\",\"mutationID\":4,\"location\":[5000,1,1],\"bodyId\":8426959}",
+                "{\"type\":\"addSynapseToSegment\",\"mutationUUID\":\"abc\",\"mutationID\":5,\"location\":[5000,1,2],\"bodyId\":26311}",
+                "{\"type\":\"moveSynapse\",\"mutationUUID\":\"abc\",\"mutationID\":6,\"location\":[5000,1,2],\"bodyId\":1}",
+                "{\"type\":\"updateProperties\",\"mutationUUID\":\"abc\",\"mutationID\":7,\"neuron\":{\"id\":1,\"name\":\"batchName\"}}"
+        );
+
+        session.writeTransaction(tx -> tx.run("CALL proofreader.applyMutations($mutations, 'test')", parameters("mutations", mutations)));
+
+        // the moved post synapse strengthens 8426959 -> 1; 8426959 -> 26311 is unchanged
+        long weightTo1 = session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:1}) RETURN r.weight")).single().get(0).asLong();
+        long weightTo26311 = session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:26311}) RETURN r.weight")).single().get(0).asLong();
+        Assert.assertEquals(3L, weightTo1);
+        Assert.assertEquals(1L, weightTo26311);
+
+        long connectionSetSynapses = session.readTransaction(tx -> tx.run("MATCH (:`test-ConnectionSet`{datasetBodyIds:'test:8426959:1'})-[:Contains]->(s) RETURN count(s)")).single().get(0).asLong();
+        Assert.assertEquals(6L, connectionSetSynapses);
+
+        Map<String, Object> segment1 = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:1}) RETURN n.name AS name, n.post AS post, n.roiA AS roiA")).single().asMap();
+        Assert.assertEquals("batchName", segment1.get("name"));
+        Assert.assertEquals(true, segment1.get("roiA"));
+        long pre8426959 = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.pre")).single().get(0).asLong();
+        Assert.assertEquals(origPre8426959 + 1, pre8426959);
+
+        // meta node counts and roiInfo updated once for both new synapses
+        Map<String, Object> meta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo, n.latestMutationId AS mutationId")).single().asMap();
+        Assert.assertEquals((long) origMeta.get("pre") + 1, (long) meta.get("pre"));
+        Assert.assertEquals((long) origMeta.get("post") + 1, (long) meta.get("post"));
+        Assert.assertNull(meta.get("mutationId"));
+        Assert.assertEquals(7L, session.readTransaction(tx -> tx.run("MATCH (n:`test-MutationLog`{uuid:'abc'}) RETURN n.latestMutationId")).single().get(0).asLong());
+
+        Gson gson = new Gson();
+        Map<String, SynapseCounter> origRoiInfo = gson.fromJson((String) origMeta.get("roiInfo"), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+        Map<String, SynapseCounter> roiInfo = gson.fromJson((String) meta.get("roiInfo"), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+        Assert.assertEquals(origRoiInfo.get("roiA").getPre() + 1, roiInfo.get("roiA").getPre());
+        Assert.assertEquals(origRoiInfo.get("roiA").getPost() + 1, roiInfo.get("roiA").getPost());
+
+        // replaying the same mutations is a no-op (adding an existing synapse would otherwise fail)
+        session.writeTransaction(tx -> tx.run("CALL proofreader.applyMutations($mutations, 'test')", parameters("mutations", mutations)));
+
+        Map<String, Object> replayedMeta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo")).single().asMap();
+        Assert.assertEquals(meta.get("pre"), replayedMeta.get("pre"));
+        Assert.assertEquals(meta.get("post"), replayedMeta.get("post"));
+        Assert.assertEquals(meta.get("roiInfo"), replayedMeta.get("roiInfo"));
+
+        // deleting the moved synapse restores the original connection
+        List<String> deletion = Collections.singletonList("{\"type\":\"deleteSynapse\",\"mutationUUID\":\"abc\",\"mutationID\":8,\"location\":[5000,1,2]}");
+        session.writeTransaction(tx -> tx.run("CALL proofreader.applyMutations($mutations, 'test')", parameters("mutations", deletion)));
+
+        weightTo1 = session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:1}) RETURN r.weight")).single().get(0).asLong();
+        Assert.assertEquals(2L, weightTo1);
+        long post = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPostCount")).single().get(0).asLong();
+        Assert.assertEquals((long) origMeta.get("post"), post);
+
+    }
+
+    @Test
+    public void shouldSkipMutationsRecordedOnMetaNodeBeforeMutationLogs() {
+
+        Session session = driver.session();
+
+        session.writeTransaction(tx -> tx.run("MATCH (n:Meta) SET n.uuid = 'legacy', n.latestMutationId = 3"));
+
+        List<String> applied = Collections.singletonList("{\"type\":\"deleteNeuron\",\"mutationUUID\":\"legacy\",\"mutationID\":3,\"bodyId\":100554}");
+        session.writeTransaction(tx -> tx.run("CALL proofreader.applyMutations($mutations, 'test')", parameters("mutations", applied)));
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:100554}) RETURN count(n)")).single().get(0).asLong());
+
+        List<String> notApplied = Collections.singletonList("{\"type\":\"deleteNeuron\",\"mutationUUID\":\"legacy\",\"mutationID\":4,\"bodyId\":100554}");
+        session.writeTransaction(tx -> tx.run("CALL proofreader.applyMutations($mutations, 'test')", parameters("mutations", notApplied)));
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:100554}) RETURN count(n)")).single().get(0).asLong());
+
+        // the Meta node is left as it was
+        Map<String, Object> meta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.uuid AS uuid, n.latestMutationId AS latestMutationId")).single().asMap();
+        Assert.assertEquals("legacy", meta.get("uuid"));
+        Assert.assertEquals(3L, meta.get("latestMutationId"));
+        Assert.assertEquals(4L, session.readTransaction(tx -> tx.run("MATCH (n:`test-MutationLog`{uuid:'legacy'}) RETURN n.latestMutationId")).single().get(0).asLong());
+
+    }
+
+    @Test(expected = org.neo4j.driver.v1.exceptions.ClientException.class)
+    public void shouldErrorIfMutationIdIsMissing() {
+
+        Session session = driver.session();
+
+        List<String> mutations = Collections.singletonList("{\"type\":\"deleteNeuron\",\"mutationUUID\":\"def\",\"bodyId\":100541}");
+
+        session.writeTransaction(tx -> tx.run("CALL proofreader.applyMutations($mutations, 'test')", parameters("mutations", mutations)));
+
+    }
+
+}
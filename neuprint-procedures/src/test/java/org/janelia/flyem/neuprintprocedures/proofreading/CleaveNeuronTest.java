@@ -0,0 +1,159 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class CleaveNeuronTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(Create.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(ProofreaderProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldMoveOnlyListedSynapsesAndSplitConnectionSetsIncrementally() {
+
+        Session session = driver.session();
+
+        Map<String, Object> origMeta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo")).single().asMap();
+        Record origBody = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.pre AS pre, n.post AS post, n.size AS size")).single();
+
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959})-[:Contains]->(ss:SynapseSet) SET n.cableLength = 10.0, ss.attachedSkeleton = 'test:8426959', ss.attachedSkelRows = [1] " +
+                "CREATE (n)-[:Contains]->(s:Skeleton:`test-Skeleton`{skeletonId:'test:8426959'})-[:Contains]->(:SkelNode:`test-SkelNode`{skelNodeId:'test:8426959:1'})"));
+
+        String cleaveAction = "{\"DVIDuuid\":\"abc\",\"MutationID\":1,\"Action\":\"cleave\",\"OrigBodyId\":8426959,\"NewBodyId\":999,\"NewBodySize\":766," +
+                "\"NewBodySynapses\":[{\"type\":\"pre\",\"location\":[4287,2277,1502]},{\"type\":\"post\",\"location\":[4000,5000,6000]}]}";
+        session.writeTransaction(tx -> tx.run("CALL proofreader.cleaveNeuron($cleaveAction, 'test')", parameters("cleaveAction", cleaveAction)));
+
+        Record newBody = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:999})-[:Contains]->(s:SynapseSet) RETURN n.pre AS pre, n.post AS post, n.size AS size, n.roiInfo AS roiInfo, size((s)-[:Contains]->()) AS synapseCount")).single();
+        Assert.assertEquals(1L, newBody.get("pre").asLong());
+        Assert.assertEquals(1L, newBody.get("post").asLong());
+        Assert.assertEquals(766L, newBody.get("size").asLong());
+        Assert.assertEquals(2L, newBody.get("synapseCount").asLong());
+        Assert.assertEquals("{\"roiA\":{\"pre\":1,\"post\":1}}", newBody.get("roiInfo").asString());
+
+        Record cleavedBody = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.pre AS pre, n.post AS post, n.size AS size")).single();
+        Assert.assertEquals(origBody.get("pre").asLong() - 1L, cleavedBody.get("pre").asLong());
+        Assert.assertEquals(origBody.get("post").asLong() - 1L, cleavedBody.get("post").asLong());
+        Assert.assertEquals(origBody.get("size").asLong() - 766L, cleavedBody.get("size").asLong());
+
+        // the original body's skeleton, metrics and attachments describe the body before the cleave
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n) WHERE n.skeletonId = 'test:8426959' OR n.skelNodeId STARTS WITH 'test:8426959:' RETURN count(n)")).single().get(0).asLong());
+        Record cleavedBodySkeletonProperties = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959})-[:Contains]->(ss:SynapseSet) RETURN n.cableLength AS cableLength, ss.attachedSkelRows AS attachedSkelRows")).single();
+        Assert.assertTrue(cleavedBodySkeletonProperties.get("cableLength").isNull());
+        Assert.assertTrue(cleavedBodySkeletonProperties.get("attachedSkelRows").isNull());
+
+        // the only connection from 8426959 to 831744 moved to the new body, as did the self connection
+        Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`) WHERE c.datasetBodyIds IN ['test:8426959:831744','test:8426959:8426959'] RETURN count(c) > 0")).single().get(0).asBoolean());
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:999})-[r:ConnectsTo]->(:`test-Segment`{bodyId:8426959}) RETURN r.weight")).single().get(0).asLong());
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:1}) RETURN r.weight")).single().get(0).asLong());
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:26311})-[r:ConnectsTo]->(:`test-Segment`{bodyId:999}) RETURN r.weight")).single().get(0).asLong());
+
+        assertConnectionSetsMatchSynapticConnections(session);
+
+        // Meta counts are unchanged and replaying an applied cleave does nothing
+        session.writeTransaction(tx -> tx.run("CALL proofreader.cleaveNeuron($cleaveAction, 'test')", parameters("cleaveAction", cleaveAction)));
+
+        Map<String, Object> meta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo, n.latestMutationId AS latestMutationId")).single().asMap();
+        Assert.assertEquals(origMeta.get("pre"), meta.get("pre"));
+        Assert.assertEquals(origMeta.get("post"), meta.get("post"));
+        Assert.assertEquals(origMeta.get("roiInfo"), meta.get("roiInfo"));
+        Assert.assertNull(meta.get("latestMutationId"));
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (n:`test-MutationLog`) RETURN n.latestMutationId")).single().get(0).asLong());
+
+    }
+
+    private static void assertConnectionSetsMatchSynapticConnections(Session session) {
+
+        // expected ConnectionSet contents derived from synapse set membership and SynapsesTo relationships
+        Map<String, Set<Long>> expected = new HashMap<>();
+        Map<String, Long> expectedWeights = new HashMap<>();
+        for (Record record : session.readTransaction(tx -> tx.run("MATCH (a:`test-Segment`)-[:Contains]->(:SynapseSet)-[:Contains]->(s)-[:SynapsesTo]->(t)<-[:Contains]-(:SynapseSet)<-[:Contains]-(b:`test-Segment`) " +
+                "WHERE a.bodyId IN [8426959, 999] OR b.bodyId IN [8426959, 999] " +
+                "RETURN 'test:' + a.bodyId + ':' + b.bodyId AS key, collect(DISTINCT id(s)) + collect(DISTINCT id(t)) AS synapses, count(DISTINCT t) AS weight")).list()) {
+            expected.put(record.get("key").asString(), new HashSet<>(record.get("synapses").asList(v -> v.asLong())));
+            expectedWeights.put(record.get("key").asString(), record.get("weight").asLong());
+        }
+
+        Map<String, Set<Long>> actual = new HashMap<>();
+        for (Record record : session.readTransaction(tx -> tx.run("MATCH (a:`test-Segment`)<-[:From]-(c:`test-ConnectionSet`)-[:To]->(b:`test-Segment`) " +
+                "WHERE a.bodyId IN [8426959, 999] OR b.bodyId IN [8426959, 999] " +
+                "OPTIONAL MATCH (c)-[:Contains]->(s) RETURN c.datasetBodyIds AS key, collect(id(s)) AS synapses")).list()) {
+            actual.put(record.get("key").asString(), new HashSet<>(record.get("synapses").asList(v -> v.asLong())));
+        }
+
+        Assert.assertEquals(expected, actual);
+
+        String query = "MATCH (a:`test-Segment`)<-[:From]-(c:`test-ConnectionSet`{datasetBodyIds:$key})-[:To]->(b:`test-Segment`), (a)-[r:ConnectsTo]->(b) " +
+                "RETURN c.roiInfo AS roiInfo, r.weight AS weight, r.weightHP AS weightHP";
+        for (String key : expected.keySet()) {
+            Record incremental = session.readTransaction(tx -> tx.run(query, parameters("key", key))).single();
+            Assert.assertEquals(expectedWeights.get(key).longValue(), incremental.get("weight").asLong());
+
+            session.writeTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`{datasetBodyIds:$key}) CALL temp.updateConnectionSetsAndWeightHP(c, 'test') RETURN c", parameters("key", key)));
+            Record recomputed = session.readTransaction(tx -> tx.run(query, parameters("key", key))).single();
+
+            Assert.assertEquals(recomputed.get("roiInfo").asString(), incremental.get("roiInfo").asString());
+            Assert.assertEquals(recomputed.get("weightHP").asLong(), incremental.get("weightHP").asLong());
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import apoc.create.Create;
+import apoc.refactor.GraphRefactoring;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.SwcSkeleton;
+import org.janelia.flyem.neuprintprocedures.analysis.AnalysisProcedures;
+import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class CompactSkeletonStorageTest {
+
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withProcedure(ProofreaderProcedures.class)
+            .withProcedure(AnalysisProcedures.class)
+            .withFunction(NeuPrintUserFunctions.class)
+            .withProcedure(GraphRefactoring.class)
+            .withProcedure(Create.class);
+
+    private static List<Skeleton> readSkeletons() {
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        return NeuPrintMain.createSkeletonListFromSwcFileArray(new File[]{swcFile1, swcFile2});
+    }
+
+    @Test
+    public void shouldLoadCompactSkeletonsAndCreateSkelNodesOnDemand() {
+
+        List<SwcSkeleton> skeletonList = readSkeletons().stream().map(SwcSkeleton::fromSkeleton).collect(Collectors.toList());
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            neo4jImporter.addCompactSkeletons("test", skeletonList, timeStamp);
+
+            int skelNodeCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-SkelNode`) RETURN count(n)")).single().get(0).asInt();
+            Assert.assertEquals(0, skelNodeCount);
+
+            List<Object> rowNumbers = session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:101})-[:Contains]->(n:`test-Skeleton`) RETURN n.skelRowNumbers")).single().get(0).asList();
+            Assert.assertEquals(50, rowNumbers.size());
+
+            // the skeleton centroids are computed from the arrays
+            String skeletonJson = session.readTransaction(tx -> tx.run("CALL analysis.getConnectionCentroidsAndSkeleton(101,\"test\") YIELD value RETURN value.Skeleton")).single().get(0).asString();
+            Assert.assertTrue(skeletonJson.contains("\"rowNumber\":26"));
+
+            // no SkelNode to return until they are created
+            try {
+                session.readTransaction(tx -> tx.run("CALL analysis.getNearestSkelNodeOnBodyToPoint(101,\"test\",4864,8817,1936) YIELD node RETURN node").single());
+                Assert.fail("Expected an error for a compact skeleton without SkelNodes.");
+            } catch (ClientException e) {
+                Assert.assertTrue(e.getMessage().contains("proofreader.createSkelNodes"));
+            }
+
+            session.writeTransaction(tx -> tx.run("CALL proofreader.createSkelNodes(101,\"test\")"));
+            // creating them again does not duplicate them
+            session.writeTransaction(tx -> tx.run("CALL proofreader.createSkelNodes(101,\"test\")"));
+
+            int skeleton101Degree = session.readTransaction(tx -> tx.run("MATCH (n:`test-Skeleton`{skeletonId:\"test:101\"}) RETURN size((n)-[:Contains]->())")).single().get(0).asInt();
+            Assert.assertEquals(50, skeleton101Degree);
+
+            int skelNode101NumberOfRoots = session.readTransaction(tx -> tx.run("MATCH (n:`test-Skeleton`{skeletonId:\"test:101\"})-[:Contains]->(s:SkelNode) WHERE NOT (s)<-[:LinksTo]-() RETURN count(s)")).single().get(0).asInt();
+            Assert.assertEquals(4, skelNode101NumberOfRoots);
+
+            Node skelNode = session.readTransaction(tx -> tx.run("CALL analysis.getNearestSkelNodeOnBodyToPoint(101,\"test\",4864,8817,1936) YIELD node RETURN node").single().get(0).asNode());
+            Assert.assertEquals("test:101:4864:8817:1936:26", skelNode.asMap().get("skelNodeId"));
+
+            Long distance = session.readTransaction(tx -> tx.run("MATCH (n:SkelNode{skelNodeId:\"test:101:5464:9385:1248:1\"}), (m:SkelNode{skelNodeId:\"test:101:5328:9385:1368:5\"}) WITH n,m CALL analysis.calculateSkeletonDistance(\"test\",n,m) YIELD value RETURN value").single().get(0).asLong());
+            Assert.assertEquals(new Long(207), distance);
+
+            // deleting the skeleton also deletes the SkelNodes created for it
+            session.writeTransaction(tx -> tx.run("CALL proofreader.deleteSkeleton(101,\"test\")"));
+            int skeletonCountAfter = session.readTransaction(tx -> tx.run("MATCH (n:`test-Skeleton`) RETURN count(n)")).single().get(0).asInt();
+            int skelNodeCountAfter = session.readTransaction(tx -> tx.run("MATCH (n:`test-SkelNode`) RETURN count(n)")).single().get(0).asInt();
+            Assert.assertEquals(1, skeletonCountAfter);
+            Assert.assertEquals(0, skelNodeCountAfter);
+        }
+
+    }
+
+    @Test
+    public void shouldCompactExistingSkeletons() {
+
+        List<Skeleton> skeletonList = readSkeletons();
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+            neo4jImporter.addSkeletonNodes("test", skeletonList, timeStamp);
+
+            session.writeTransaction(tx -> tx.run("CALL proofreader.compactSkeletons(\"test\",1)"));
+
+            int skelNodeCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-SkelNode`) RETURN count(n)")).single().get(0).asInt();
+            Assert.assertEquals(0, skelNodeCount);
+
+            int compactSkeletonCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-Skeleton`) WHERE exists(n.skelRowNumbers) RETURN count(n)")).single().get(0).asInt();
+            Assert.assertEquals(2, compactSkeletonCount);
+
+            List<Object> parents = session.readTransaction(tx -> tx.run("MATCH (n:`test-Skeleton`{skeletonId:\"test:101\"}) RETURN n.skelParents")).single().get(0).asList();
+            Assert.assertEquals(4, parents.stream().filter(parent -> ((Number) parent).intValue() == -1).count());
+
+            // the same skel node ids are created again from the arrays
+            session.writeTransaction(tx -> tx.run("CALL proofreader.createSkelNodes(101,\"test\")"));
+
+            Long distanceFromNearestCalculation = session.readTransaction(tx -> tx.run("CALL analysis.getNearestSkelNodeOnBodyToPoint(101,\"test\",5464,9385,1248) YIELD node AS node1 WITH node1" +
+                    " CALL analysis.getNearestSkelNodeOnBodyToPoint(101,\"test\",5328,9385,1368) YIELD node AS node2 WITH node1,node2" +
+                    " CALL analysis.calculateSkeletonDistance(\"test\",node1,node2) YIELD value RETURN value").single().get(0).asLong());
+            Assert.assertEquals(new Long(207), distanceFromNearestCalculation);
+        }
+
+    }
+
+    @Test
+    public void shouldAddCompactSkeletonToNeuron() {
+
+        String fileCall_831744 = "file:./../neuprint-procedures/src/test/resources/831744.swc";
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+
+            Session session = driver.session();
+
+            session.writeTransaction(tx -> tx.run("CREATE (n:`test-Segment`{bodyId:831744}) SET n:Segment, n:test"));
+
+            session.writeTransaction(tx -> tx.run("CALL proofreader.addSkeleton($fileUrl,$datasetLabel,true)", parameters("fileUrl", fileCall_831744, "datasetLabel", "test")));
+
+            Node skeleton = session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:831744})-[:Contains]->(n:`test-Skeleton`:Skeleton:test) RETURN n")).single().get(0).asNode();
+            Assert.assertEquals("test:831744", skeleton.asMap().get("skeletonId"));
+            Assert.assertTrue(skeleton.asMap().containsKey("skelRadii"));
+
+            int skelNodeCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-SkelNode`) RETURN count(n)")).single().get(0).asInt();
+            Assert.assertEquals(0, skelNodeCount);
+        }
+
+    }
+}
@@ -10,6 +10,7 @@ import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprint.model.SynapticConnection;
 import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
 import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.janelia.flyem.neuprintprocedures.triggers.TriggerProcedures;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -44,6 +45,7 @@ public class DeleteNeuronTest {
                 .withProcedure(Create.class)
                 .withProcedure(LoadingProcedures.class)
                 .withProcedure(ProofreaderProcedures.class)
+                .withProcedure(TriggerProcedures.class)
                 .withFunction(NeuPrintUserFunctions.class);
     }
 
@@ -93,6 +95,8 @@ public class DeleteNeuronTest {
         long postCount = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPostCount").single().get(0).asLong());
 
         session.writeTransaction(tx -> tx.run("CALL proofreader.deleteNeuron($bodyId,$dataset)", parameters("bodyId", 8426959, "dataset", "test")));
+        // write the coalesced time stamps without waiting for the window
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
 
         int deletedNeuronNodeCount = session.readTransaction(tx -> tx.run("MATCH (n:Segment{bodyId:8426959}) RETURN count(n)").single().get(0).asInt());
 
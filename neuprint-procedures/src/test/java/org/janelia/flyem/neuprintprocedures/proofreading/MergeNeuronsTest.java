@@ -0,0 +1,165 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintprocedures.analysis.AnalysisProcedures;
+import org.janelia.flyem.neuprintprocedures.triggers.TriggerProcedures;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class MergeNeuronsTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(Create.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(AnalysisProcedures.class)
+                .withProcedure(TriggerProcedures.class)
+                .withProcedure(ProofreaderProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldFoldMergedBodiesIntoTargetIncrementally() {
+
+        Session session = driver.session();
+
+        Map<String, Object> origMeta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo")).single().asMap();
+        Record origCounts = session.readTransaction(tx -> tx.run("MATCH (a:`test-Segment`{bodyId:1}), (b:`test-Segment`{bodyId:2}) RETURN a.pre + b.pre AS pre, a.post + b.post AS post")).single();
+        long expectedSynapsesIn8426959To1 = session.readTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`)-[:Contains]->(s) WHERE c.datasetBodyIds IN ['test:8426959:1','test:8426959:2'] RETURN count(DISTINCT s)")).single().get(0).asLong();
+
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:2}) CREATE (n)-[:Contains]->(s:Skeleton:`test-Skeleton`{skeletonId:'test:2'})-[:Contains]->(a:SkelNode:`test-SkelNode`{skelNodeId:'test:2:1'}), " +
+                "(s)-[:Contains]->(b:SkelNode:`test-SkelNode`{skelNodeId:'test:2:2'}), (a)-[:LinksTo]->(b)"));
+        // the target's synapses are attached to its skeleton
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:1}) CREATE (n)-[:Contains]->(s:Skeleton:`test-Skeleton`{skeletonId:'test:1'})-[:Contains]->" +
+                "(a:SkelNode:`test-SkelNode`{skelNodeId:'test:1:1', rowNumber:1, location:point({x:0,y:0,z:0}), radius:1.0}), " +
+                "(s)-[:Contains]->(b:SkelNode:`test-SkelNode`{skelNodeId:'test:1:2', rowNumber:2, location:point({x:100,y:0,z:0}), radius:1.0}), (a)-[:LinksTo]->(b)"));
+        session.writeTransaction(tx -> tx.run("CALL analysis.writeSynapseAttachments([1], 'test')")).consume();
+        Assert.assertTrue(session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:1})-[:Contains]->(s:SynapseSet) RETURN exists(s.attachedSkelRows)")).single().get(0).asBoolean());
+        // mark the target's entries so that a recompute would show: only the moved synapses should be attached
+        long targetAttachmentCount = session.writeTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:1})-[:Contains]->(s:SynapseSet) SET s.attachedDistances = [d IN s.attachedDistances | -1.0] RETURN size(s.attachedDistances)")).single().get(0).asLong();
+        // time-stamp the nodes just written so the trigger writer does not contend with the merge for their locks
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
+
+        String mergeAction = "{\"DVIDuuid\":\"abc\",\"MutationID\":1,\"Action\":\"merge\",\"TargetBodyID\":1,\"BodiesMerged\":[2],\"TargetBodySize\":5000,\"TargetBodyName\":\"mergedName\"}";
+        session.writeTransaction(tx -> tx.run("CALL proofreader.mergeNeurons($mergeAction, 'test')", parameters("mergeAction", mergeAction)));
+
+        // merged body is gone and its ConnectsTo weights are folded into the target's
+        Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:2}) RETURN count(n) > 0")).single().get(0).asBoolean());
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n) WHERE n.skeletonId = 'test:2' OR n.skelNodeId STARTS WITH 'test:2:' RETURN count(n)")).single().get(0).asLong());
+        Assert.assertEquals(4L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:1}) RETURN r.weight")).single().get(0).asLong());
+        Assert.assertEquals(4L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:1})-[r:ConnectsTo]->(:`test-Segment`{bodyId:26311}) RETURN r.weight")).single().get(0).asLong());
+
+        Record target = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:1})-[:Contains]->(s:SynapseSet) RETURN n.pre AS pre, n.post AS post, n.size AS size, n.name AS name, s.datasetBodyId AS setId, size((s)-[:Contains]->()) AS synapseCount")).single();
+        Assert.assertEquals(origCounts.get("pre").asLong(), target.get("pre").asLong());
+        Assert.assertEquals(origCounts.get("post").asLong(), target.get("post").asLong());
+        Assert.assertEquals(6L, target.get("synapseCount").asLong());
+        Assert.assertEquals(5000L, target.get("size").asLong());
+        Assert.assertEquals("mergedName", target.get("name").asString());
+        Assert.assertEquals("test:1", target.get("setId").asString());
+        // the moved synapses are attached to the target's skeleton and its existing entries are kept as they were
+        Record attachments = session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:1})-[:Contains]->(s:SynapseSet) " +
+                "RETURN s.attachedSkeleton AS skeleton, size(s.attachedSkelRows) AS count, size([d IN s.attachedDistances WHERE d = -1.0]) AS kept, size([d IN s.attachedDistances WHERE d >= 0.0]) AS moved")).single();
+        Assert.assertEquals("test:1", attachments.get("skeleton").asString());
+        Assert.assertEquals(6L, attachments.get("count").asLong());
+        Assert.assertEquals(targetAttachmentCount, attachments.get("kept").asLong());
+        Assert.assertEquals(6L - targetAttachmentCount, attachments.get("moved").asLong());
+        Assert.assertTrue(targetAttachmentCount > 0 && targetAttachmentCount < 6);
+
+        Assert.assertEquals(expectedSynapsesIn8426959To1, session.readTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`{datasetBodyIds:'test:8426959:1'})-[:Contains]->(s) RETURN count(s)")).single().get(0).asLong());
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`) WHERE c.datasetBodyIds CONTAINS ':2:' OR c.datasetBodyIds ENDS WITH ':2' RETURN count(c)")).single().get(0).asLong());
+
+        // incremental ConnectionSet roiInfo and weightHP match a recompute from scratch
+        assertConnectionSetMatchesRecompute(session, 8426959L, 1L);
+        assertConnectionSetMatchesRecompute(session, 1L, 26311L);
+
+        // merging into a body with no existing connection to the partner re-points the ConnectionSet
+        String secondMergeAction = "{\"DVIDuuid\":\"abc\",\"MutationID\":2,\"Action\":\"merge\",\"TargetBodyID\":2589725,\"BodiesMerged\":[831744]}";
+        session.writeTransaction(tx -> tx.run("CALL proofreader.mergeNeurons($mergeAction, 'test')", parameters("mergeAction", secondMergeAction)));
+
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:2589725})<-[:From]-(c:`test-ConnectionSet`{datasetBodyIds:'test:2589725:26311'})-[:To]->(:`test-Segment`{bodyId:26311}) RETURN count(c)")).single().get(0).asLong());
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:2589725})-[r:ConnectsTo]->(:`test-Segment`{bodyId:26311}) RETURN r.weight")).single().get(0).asLong());
+        Assert.assertEquals(2L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:2589725}) RETURN r.weight")).single().get(0).asLong());
+        assertConnectionSetMatchesRecompute(session, 8426959L, 2589725L);
+
+        // Meta counts are unchanged by merges and replaying an applied merge does nothing
+        session.writeTransaction(tx -> tx.run("CALL proofreader.mergeNeurons($mergeAction, 'test')", parameters("mergeAction", mergeAction)));
+
+        Map<String, Object> meta = session.readTransaction(tx -> tx.run("MATCH (n:Meta) RETURN n.totalPreCount AS pre, n.totalPostCount AS post, n.roiInfo AS roiInfo, n.latestMutationId AS latestMutationId")).single().asMap();
+        Assert.assertEquals(origMeta.get("pre"), meta.get("pre"));
+        Assert.assertEquals(origMeta.get("post"), meta.get("post"));
+        Assert.assertEquals(origMeta.get("roiInfo"), meta.get("roiInfo"));
+        Assert.assertNull(meta.get("latestMutationId"));
+        Assert.assertEquals(2L, session.readTransaction(tx -> tx.run("MATCH (n:`test-MutationLog`) RETURN n.latestMutationId")).single().get(0).asLong());
+        Assert.assertEquals(4L, session.readTransaction(tx -> tx.run("MATCH (:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(:`test-Segment`{bodyId:1}) RETURN r.weight")).single().get(0).asLong());
+
+    }
+
+    private static void assertConnectionSetMatchesRecompute(Session session, long preBodyId, long postBodyId) {
+
+        String datasetBodyIds = "test:" + preBodyId + ":" + postBodyId;
+        String query = "MATCH (a:`test-Segment`{bodyId:$pre})-[r:ConnectsTo]->(b:`test-Segment`{bodyId:$post}), (c:`test-ConnectionSet`{datasetBodyIds:$datasetBodyIds}) " +
+                "RETURN c.roiInfo AS roiInfo, r.weight AS weight, r.weightHP AS weightHP";
+
+        Record incremental = session.readTransaction(tx -> tx.run(query, parameters("pre", preBodyId, "post", postBodyId, "datasetBodyIds", datasetBodyIds))).single();
+
+        session.writeTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`{datasetBodyIds:$datasetBodyIds}) CALL temp.updateConnectionSetsAndWeightHP(c, 'test') RETURN c", parameters("datasetBodyIds", datasetBodyIds)));
+
+        Record recomputed = session.readTransaction(tx -> tx.run(query, parameters("pre", preBodyId, "post", postBodyId, "datasetBodyIds", datasetBodyIds))).single();
+
+        Assert.assertEquals(recomputed.get("roiInfo").asString(), incremental.get("roiInfo").asString());
+        Assert.assertEquals(recomputed.get("weight").asLong(), incremental.get("weight").asLong());
+        Assert.assertEquals(recomputed.get("weightHP").asLong(), incremental.get("weightHP").asLong());
+
+    }
+
+}
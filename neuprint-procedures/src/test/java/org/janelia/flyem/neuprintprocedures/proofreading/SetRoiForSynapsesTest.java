@@ -0,0 +1,203 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprint.roi.BoxRoiDefinition;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class SetRoiForSynapsesTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(Create.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(ProofreaderProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldAddRoiToListedSynapsesInBatches() {
+
+        Session session = driver.session();
+
+        List<List<Integer>> locations = Arrays.asList(Arrays.asList(4287, 2277, 1542), Arrays.asList(4222, 2402, 1688), Arrays.asList(1, 2, 3), Arrays.asList(0, 0, 0));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.setRoiForSynapses('roiNew', $locations, 'test', 1)", parameters("locations", locations)));
+
+        Assert.assertEquals(3L, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.roiNew RETURN count(s)")).single().get(0).asLong());
+
+        Map<String, SynapseCounter> roiInfo8426959 = getRoiInfo(session, "MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.roiInfo");
+        Assert.assertEquals(1L, roiInfo8426959.get("roiNew").getPre());
+        Assert.assertEquals(1L, roiInfo8426959.get("roiNew").getPost());
+        Assert.assertTrue(session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:8426959}) RETURN n.roiNew")).single().get(0).asBoolean());
+
+        Map<String, SynapseCounter> metaRoiInfo = getRoiInfo(session, "MATCH (n:Meta) RETURN n.roiInfo");
+        Assert.assertEquals(2L, metaRoiInfo.get("roiNew").getPre());
+        Assert.assertEquals(1L, metaRoiInfo.get("roiNew").getPost());
+
+        assertRoiInfoMatchesSynapses(session, "roiNew");
+
+    }
+
+    @Test
+    public void shouldRemoveRoiFromSynapsesThatAreNotListed() {
+
+        Session session = driver.session();
+
+        List<List<Integer>> locations = Arrays.asList(Arrays.asList(4287, 2277, 1502), Arrays.asList(4000, 5000, 6000));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.setRoiForSynapses('roiA', $locations, 'test', 10000, true)", parameters("locations", locations)));
+
+        Assert.assertEquals(2L, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.roiA RETURN count(s)")).single().get(0).asLong());
+        Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:1}) RETURN exists(n.roiA)")).single().get(0).asBoolean());
+
+        assertRoiInfoMatchesSynapses(session, "roiA");
+
+    }
+
+    @Test
+    public void shouldKeepRoiOnSynapsesThatAreNotListedUnlessExclusive() {
+
+        Session session = driver.session();
+
+        List<List<Integer>> firstLocations = Arrays.asList(Arrays.asList(4287, 2277, 1502), Arrays.asList(4000, 5000, 6000));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.setRoiForSynapses('roiKept', $locations, 'test')", parameters("locations", firstLocations)));
+        List<List<Integer>> secondLocations = Collections.singletonList(Arrays.asList(4287, 2277, 1542));
+        session.writeTransaction(tx -> tx.run("CALL proofreader.setRoiForSynapses('roiKept', $locations, 'test')", parameters("locations", secondLocations)));
+
+        Assert.assertEquals(3L, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.roiKept RETURN count(s)")).single().get(0).asLong());
+        assertRoiInfoMatchesSynapses(session, "roiKept");
+
+        session.writeTransaction(tx -> tx.run("CALL proofreader.setRoiForSynapses('roiKept', $locations, 'test', 10000, true)", parameters("locations", secondLocations)));
+
+        Assert.assertEquals(1L, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.roiKept RETURN count(s)")).single().get(0).asLong());
+        assertRoiInfoMatchesSynapses(session, "roiKept");
+
+    }
+
+    @Test
+    public void shouldAssignRoisFromLocalDefinitionWithImporter() {
+
+        Session session = driver.session();
+
+        BoxRoiDefinition boxRoiDefinition = new BoxRoiDefinition();
+        boxRoiDefinition.addBox("boxRoi", new long[]{4000, 2000, 1500}, new long[]{4500, 2500, 1700});
+        boxRoiDefinition.addBox("emptyBoxRoi", new long[]{-10, -10, -10}, new long[]{-5, -5, -5});
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        neo4jImporter.assignRois("test", boxRoiDefinition, 2);
+
+        long expectedInBox = session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE 4000 <= s.location.x < 4500 AND 2000 <= s.location.y < 2500 AND 1500 <= s.location.z < 1700 RETURN count(s)")).single().get(0).asLong();
+        Assert.assertTrue(expectedInBox > 0);
+        Assert.assertEquals(expectedInBox, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.boxRoi RETURN count(s)")).single().get(0).asLong());
+        Assert.assertFalse(getRoiInfo(session, "MATCH (n:Meta) RETURN n.roiInfo").containsKey("emptyBoxRoi"));
+
+        assertRoiInfoMatchesSynapses(session, "boxRoi");
+
+        // reassigning only changes what differs, and clears ROIs that are no longer defined
+        BoxRoiDefinition smallerBoxRoiDefinition = new BoxRoiDefinition();
+        smallerBoxRoiDefinition.addBox("boxRoi", new long[]{4000, 2000, 1500}, new long[]{4500, 2500, 1600});
+        neo4jImporter.assignRois("test", smallerBoxRoiDefinition, 2);
+
+        long expectedInSmallerBox = session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE 4000 <= s.location.x < 4500 AND 2000 <= s.location.y < 2500 AND 1500 <= s.location.z < 1600 RETURN count(s)")).single().get(0).asLong();
+        Assert.assertTrue(expectedInSmallerBox < expectedInBox);
+        Assert.assertEquals(expectedInSmallerBox, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.boxRoi RETURN count(s)")).single().get(0).asLong());
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) WHERE s.roiA RETURN count(s)")).single().get(0).asLong());
+        Assert.assertFalse(getRoiInfo(session, "MATCH (n:Meta) RETURN n.roiInfo").containsKey("roiA"));
+
+        assertRoiInfoMatchesSynapses(session, "boxRoi");
+        assertRoiInfoMatchesSynapses(session, "roiA");
+
+    }
+
+    private static Map<String, SynapseCounter> getRoiInfo(Session session, String query) {
+        return new Gson().fromJson(session.readTransaction(tx -> tx.run(query)).single().get(0).asString(), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+    }
+
+    private static void assertRoiInfoMatchesSynapses(Session session, String roi) {
+
+        // segments
+        List<Record> segments = session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`)-[:Contains]->(:SynapseSet)-[:Contains]->(s) " +
+                "WITH n, sum(CASE WHEN s[$roi] AND s.type = 'pre' THEN 1 ELSE 0 END) AS pre, sum(CASE WHEN s[$roi] AND s.type = 'post' THEN 1 ELSE 0 END) AS post " +
+                "RETURN n.roiInfo AS roiInfo, pre, post", parameters("roi", roi)).list());
+        for (Record segment : segments) {
+            Map<String, SynapseCounter> roiInfo = new Gson().fromJson(segment.get("roiInfo").asString(), new TypeToken<Map<String, SynapseCounter>>() {
+            }.getType());
+            SynapseCounter counts = roiInfo.getOrDefault(roi, new SynapseCounter());
+            Assert.assertEquals(segment.get("pre").asLong(), counts.getPre());
+            Assert.assertEquals(segment.get("post").asLong(), counts.getPost());
+        }
+
+        // meta node
+        Record datasetCounts = session.readTransaction(tx -> tx.run("MATCH (s:`test-Synapse`) " +
+                "RETURN sum(CASE WHEN s[$roi] AND s.type = 'pre' THEN 1 ELSE 0 END) AS pre, sum(CASE WHEN s[$roi] AND s.type = 'post' THEN 1 ELSE 0 END) AS post", parameters("roi", roi)).single());
+        SynapseCounter metaCounts = getRoiInfo(session, "MATCH (n:Meta) RETURN n.roiInfo").getOrDefault(roi, new SynapseCounter());
+        Assert.assertEquals(datasetCounts.get("pre").asLong(), metaCounts.getPre());
+        Assert.assertEquals(datasetCounts.get("post").asLong(), metaCounts.getPost());
+
+        // connection sets match a recompute from scratch
+        Map<String, String> incremental = new HashMap<>();
+        session.readTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`) RETURN c.datasetBodyIds AS id, c.roiInfo AS roiInfo").list())
+                .forEach(r -> incremental.put(r.get("id").asString(), r.get("roiInfo").asString()));
+        session.writeTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`) CALL temp.updateConnectionSetsAndWeightHP(c, 'test') RETURN count(c)"));
+        session.readTransaction(tx -> tx.run("MATCH (c:`test-ConnectionSet`) RETURN c.datasetBodyIds AS id, c.roiInfo AS roiInfo").list())
+                .forEach(r -> Assert.assertEquals(r.get("id").asString(), r.get("roiInfo").asString(), incremental.get(r.get("id").asString())));
+
+    }
+
+}
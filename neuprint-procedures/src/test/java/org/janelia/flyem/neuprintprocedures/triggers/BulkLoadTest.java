@@ -0,0 +1,113 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.Neo4jImporter;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class BulkLoadTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withConfig(CoalescingTriggerWriter.COALESCE_WINDOW_SETTING, "600000")
+                .withConfig(CoalescingTriggerWriter.BATCH_SIZE_SETTING, "25")
+                .withFunction(Json.class)
+                .withProcedure(Create.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(TriggerProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldSkipTriggersDuringBulkLoadAndTimeStampDatasetOnceAtEnd() {
+
+        final LocalDateTime loadTimeStamp = LocalDateTime.of(2000, 1, 1, 1, 1);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/shortestPathNeuronList.json");
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/shortestPathSynapseList.json");
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/shortestPathConnectionsList.json");
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        Session session = driver.session();
+
+        Assert.assertTrue(neo4jImporter.startBulkLoad("test"));
+        // a second loader of the same dataset keeps the bulk load going until both have ended
+        Assert.assertTrue(neo4jImporter.startBulkLoad("test"));
+
+        NeuPrintMain.runStandardLoadWithoutMetaInfo(neo4jImporter, "test", synapseList, connectionsList, neuronList, new ArrayList<>(), 1.0F, .2D, .8D, 5, true, true, loadTimeStamp);
+        session.writeTransaction(tx -> tx.run("CREATE (:Segment:other{bodyId:1})"));
+
+        Record stats = session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).single();
+
+        Assert.assertTrue(stats.get("nodesSkippedForBulkLoad").asLong() > 0);
+        Assert.assertEquals("test", stats.get("bulkLoadDatasets").asList().get(0));
+
+        // nothing from the load was re-stamped and the Meta node was left alone, but other datasets are still handled
+        // (ConnectionSets are stamped by loader.addPropsAndConnectionInfoToSegment itself)
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n:test) WHERE NOT n:Meta AND NOT n:ConnectionSet AND exists(n.timeStamp) AND n.timeStamp <> $loadTimeStamp RETURN count(n)",
+                parameters("loadTimeStamp", loadTimeStamp))).single().get(0).asLong());
+        Assert.assertEquals(loadTimeStamp, session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.lastDatabaseEdit")).single().get(0).asLocalDateTime());
+        Assert.assertTrue(session.readTransaction(tx -> tx.run("MATCH (n:other{bodyId:1}) RETURN n.timeStamp")).single().get(0).asLocalDateTime().isAfter(loadTimeStamp));
+
+        Assert.assertEquals(0L, neo4jImporter.endBulkLoad("test"));
+        Assert.assertEquals(loadTimeStamp, session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.lastDatabaseEdit")).single().get(0).asLocalDateTime());
+
+        long datasetNodeCount = session.readTransaction(tx -> tx.run("MATCH (n:test) WHERE NOT n:Meta RETURN count(n)")).single().get(0).asLong();
+        Assert.assertTrue(datasetNodeCount > 25);
+        // changes made during the load are not in the change log
+        List<Record> changesDuringLoad = session.readTransaction(tx -> tx.run("CALL neuprint.changesSince(0, 100000) YIELD dataset WHERE dataset = 'test' RETURN dataset")).list();
+        Assert.assertTrue(changesDuringLoad.isEmpty());
+        Assert.assertEquals(datasetNodeCount, neo4jImporter.endBulkLoad("test"));
+
+        // consumers are told to reload the dataset instead
+        Record lastChange = session.readTransaction(tx -> tx.run("CALL neuprint.lastChangeSeq() YIELD value CALL neuprint.changesSince(value - 1) YIELD dataset, fullReload RETURN dataset, fullReload")).single();
+        Assert.assertEquals("test", lastChange.get("dataset").asString());
+        Assert.assertTrue(lastChange.get("fullReload").asBoolean());
+
+        // every node of the dataset has the same new time stamp
+        List<Record> timeStamps = session.readTransaction(tx -> tx.run("MATCH (n:test) WHERE NOT n:Meta RETURN DISTINCT n.timeStamp")).list();
+        Assert.assertEquals(1, timeStamps.size());
+        Assert.assertTrue(timeStamps.get(0).get(0).asLocalDateTime().isAfter(loadTimeStamp));
+        Assert.assertTrue(session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.lastDatabaseEdit")).single().get(0).asLocalDateTime().isAfter(loadTimeStamp));
+
+        stats = session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).single();
+        Assert.assertTrue(stats.get("bulkLoadDatasets").asList().isEmpty());
+        Assert.assertEquals(0L, stats.get("pendingNodes").asLong());
+
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.types.Point;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class ChangeLogTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static {
+        neo4j = new Neo4jRule()
+                .withConfig(CoalescingTriggerWriter.COALESCE_WINDOW_SETTING, "600000")
+                .withProcedure(TriggerProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldRecordTouchedBodiesSynapsesAndConnectionSetsPerCommit() {
+
+        Session session = driver.session();
+        long startSeq = session.readTransaction(tx -> tx.run("CALL neuprint.lastChangeSeq()")).single().get(0).asLong();
+
+        session.writeTransaction(tx -> tx.run("CREATE (:Segment:test:`test-Segment`{bodyId:10}), (:Segment:test:`test-Segment`{bodyId:11}), " +
+                "(c:ConnectionSet:test:`test-ConnectionSet`{datasetBodyIds:'test:10:11'})-[:Contains]->(:Synapse:test:`test-Synapse`{location:point({x:1, y:2, z:3})})"));
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:10}) DETACH DELETE n"));
+        session.writeTransaction(tx -> tx.run("CREATE (:Segment:other:`other-Segment`{bodyId:10})"));
+
+        // the trigger writer's own time stamps are not recorded
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
+        Assert.assertEquals(startSeq + 3, session.readTransaction(tx -> tx.run("CALL neuprint.lastChangeSeq()")).single().get(0).asLong());
+
+        List<Record> records = session.readTransaction(tx -> tx.run("CALL neuprint.changesSince($seq) YIELD seq, dataset, fullReload, bodyIds, synapseLocations, connectionSets " +
+                "RETURN seq, dataset, fullReload, bodyIds, synapseLocations, connectionSets", parameters("seq", startSeq))).list();
+        Assert.assertEquals(3, records.size());
+
+        Record created = records.get(0);
+        Assert.assertEquals(startSeq + 1, created.get("seq").asLong());
+        Assert.assertEquals("test", created.get("dataset").asString());
+        Assert.assertFalse(created.get("fullReload").asBoolean());
+        Assert.assertEquals(2, created.get("bodyIds").size());
+        Assert.assertEquals(10L, created.get("bodyIds").get(0).asLong());
+        Assert.assertEquals(11L, created.get("bodyIds").get(1).asLong());
+        Point location = created.get("synapseLocations").get(0).asPoint();
+        Assert.assertEquals(3.0, location.z(), 0.0001);
+        Assert.assertEquals("test:10:11", created.get("connectionSets").get(0).asString());
+
+        // a deleted body is identified from the transaction data
+        Record deleted = records.get(1);
+        Assert.assertEquals("test", deleted.get("dataset").asString());
+        Assert.assertEquals(1, deleted.get("bodyIds").size());
+        Assert.assertEquals(10L, deleted.get("bodyIds").get(0).asLong());
+
+        Assert.assertEquals("other", records.get(2).get("dataset").asString());
+
+        Assert.assertEquals(1, session.readTransaction(tx -> tx.run("CALL neuprint.changesSince($seq, 1)", parameters("seq", startSeq))).list().size());
+        Assert.assertEquals(0, session.readTransaction(tx -> tx.run("CALL neuprint.changesSince($seq)", parameters("seq", startSeq + 3))).list().size());
+
+    }
+
+    @Test
+    public void shouldRollSegmentsDropOldestAndResumeAfterReopen() throws IOException {
+
+        File directory = temporaryFolder.newFolder();
+        ChangeLog changeLog = ChangeLog.open(directory, 256, 3);
+
+        for (long i = 1; i <= 50; i++) {
+            ChangeRecord record = new ChangeRecord("test");
+            record.addBodyId(i);
+            record.addBodyId(i + 1000);
+            Assert.assertEquals(i, changeLog.append(Collections.singletonList(record)));
+        }
+        Assert.assertEquals(3, directory.listFiles().length);
+
+        long firstSeq = changeLog.getFirstSeq();
+        Assert.assertTrue(firstSeq > 1);
+        List<ChangeRecordResult> records = changeLog.readSince(firstSeq - 1, 1000);
+        Assert.assertEquals(50 - firstSeq + 1, records.size());
+        Assert.assertEquals(firstSeq, (long) records.get(0).seq);
+        Assert.assertEquals(Long.valueOf(firstSeq + 1000), records.get(0).bodyIds.get(1));
+
+        try {
+            changeLog.readSince(1, 10);
+            Assert.fail("Dropped records should not be readable.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            changeLog.readSince(0, 10);
+            Assert.fail("Reading from the start should report dropped records.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        changeLog.close();
+
+        ChangeLog reopened = ChangeLog.open(directory, 256, 3);
+        Assert.assertEquals(50, reopened.getLastSeq());
+        Assert.assertEquals(51, reopened.append(Collections.singletonList(ChangeRecord.fullReload("test"))));
+        List<ChangeRecordResult> latest = reopened.readSince(49, 10);
+        Assert.assertEquals(2, latest.size());
+        Assert.assertEquals(Long.valueOf(50L), latest.get(0).bodyIds.get(0));
+        Assert.assertTrue(latest.get(1).fullReload);
+        reopened.close();
+
+    }
+
+}
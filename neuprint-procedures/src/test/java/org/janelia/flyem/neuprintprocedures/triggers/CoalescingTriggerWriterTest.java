@@ -0,0 +1,179 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.janelia.flyem.neuprintprocedures.cache.ResultCache;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+public class CoalescingTriggerWriterTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withConfig(CoalescingTriggerWriter.COALESCE_WINDOW_SETTING, "600000")
+                .withConfig(CoalescingTriggerWriter.MAX_PENDING_NODES_SETTING, "50")
+                .withConfig(CoalescingTriggerWriter.BATCH_SIZE_SETTING, "7")
+                .withProcedure(TriggerProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+        Session session = driver.session();
+        session.writeTransaction(tx -> tx.run("CREATE (:Meta:test{dataset:'test', lastDatabaseEdit:$yesterday})", parameters("yesterday", LocalDateTime.of(2000, 1, 1, 1, 1))));
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldCoalesceTouchedNodesAcrossCommits() {
+
+        Session session = driver.session();
+
+        Record statsBefore = session.readTransaction(tx -> tx.run("CALL neuprint.triggerStats()")).single();
+        Assert.assertEquals(600000L, statsBefore.get("coalesceWindowMillis").asLong());
+
+        session.writeTransaction(tx -> tx.run("CREATE (:Segment:test:`test-Segment`{bodyId:1}), (:Segment:test:`test-Segment`{bodyId:2})"));
+        for (int i = 0; i < 20; i++) {
+            int finalI = i;
+            session.writeTransaction(tx -> tx.run("MATCH (n:`test-Segment`) WHERE n.bodyId IN [1, 2] SET n.counter=$i", parameters("i", finalI)));
+        }
+
+        // nothing is written until the window elapses or a flush is requested
+        Record pending = session.readTransaction(tx -> tx.run("CALL neuprint.triggerStats()")).single();
+        Assert.assertEquals(statsBefore.get("commits").asLong() + 21, pending.get("commits").asLong());
+        Assert.assertEquals(statsBefore.get("nodeIdsReceived").asLong() + 50, pending.get("nodeIdsReceived").asLong());
+        Assert.assertEquals(2L, pending.get("pendingNodes").asLong());
+        // handler latency is measured for every committed transaction
+        Assert.assertEquals(statsBefore.get("handledTransactions").asLong() + 21, pending.get("handledTransactions").asLong());
+        Assert.assertTrue(pending.get("totalHandlerMicros").asLong() > statsBefore.get("totalHandlerMicros").asLong());
+        Assert.assertTrue(pending.get("maxHandlerMicros").asLong() >= pending.get("lastHandlerMicros").asLong());
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`) WHERE n.bodyId IN [1, 2] AND exists(n.timeStamp) RETURN count(n)")).single().get(0).asLong());
+
+        Record stats = session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).single();
+
+        Assert.assertEquals(0L, stats.get("pendingNodes").asLong());
+        Assert.assertEquals(statsBefore.get("nodesTimeStamped").asLong() + 2, stats.get("nodesTimeStamped").asLong());
+        Assert.assertEquals(statsBefore.get("flushes").asLong() + 1, stats.get("flushes").asLong());
+        Assert.assertEquals(2L, session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`) WHERE n.bodyId IN [1, 2] AND exists(n.timeStamp) RETURN count(n)")).single().get(0).asLong());
+        Assert.assertTrue(session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.lastDatabaseEdit")).single().get(0).asLocalDateTime().isAfter(LocalDateTime.of(2000, 1, 1, 1, 1)));
+
+        // the writer's own time stamps and Meta node update are not queued again
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("CALL neuprint.triggerStats()")).single().get("pendingNodes").asLong());
+
+    }
+
+    @Test
+    public void shouldFlushInBatchesWhenPendingNodesReachCapacity() throws InterruptedException {
+
+        Session session = driver.session();
+
+        Record statsBefore = session.readTransaction(tx -> tx.run("CALL neuprint.triggerStats()")).single();
+
+        session.writeTransaction(tx -> tx.run("UNWIND range(100, 159) AS bodyId CREATE (:Segment:test:`test-Segment`{bodyId:bodyId})"));
+
+        // capacity of 50 is exceeded so the flush starts without waiting for the window
+        Record stats = statsBefore;
+        for (int i = 0; i < 50 && stats.get("nodesTimeStamped").asLong() < statsBefore.get("nodesTimeStamped").asLong() + 60; i++) {
+            TimeUnit.MILLISECONDS.sleep(100);
+            stats = session.readTransaction(tx -> tx.run("CALL neuprint.triggerStats()")).single();
+        }
+
+        Assert.assertEquals(statsBefore.get("capacityFlushes").asLong() + 1, stats.get("capacityFlushes").asLong());
+        Assert.assertEquals(statsBefore.get("nodesTimeStamped").asLong() + 60, stats.get("nodesTimeStamped").asLong());
+        Assert.assertEquals(60L, stats.get("peakPendingNodes").asLong());
+        // the 10 nodes beyond capacity are spilled to a temporary file rather than held in memory
+        Assert.assertEquals(statsBefore.get("spilledNodes").asLong() + 10, stats.get("spilledNodes").asLong());
+        Assert.assertEquals(60L, session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`) WHERE n.bodyId >= 100 AND exists(n.timeStamp) RETURN count(n)")).single().get(0).asLong());
+
+    }
+
+    @Test
+    public void shouldMarkDatasetChangedForNodesTimeStampedByTheirTransaction() {
+
+        Session session = driver.session();
+
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
+        session.writeTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) SET n.lastDatabaseEdit=$yesterday", parameters("yesterday", LocalDateTime.of(2000, 1, 1, 1, 1))));
+
+        try (Transaction tx = neo4j.getGraphDatabaseService().beginTx()) {
+            ResultCache.getInstance().getOrCompute(neo4j.getGraphDatabaseService(), "test.explicitTimeStamp", "test", Collections.emptyList(), () -> "cached");
+            tx.success();
+        }
+        long cachedEntries = ResultCache.getInstance().getStats().entries;
+
+        LocalDateTime explicitTimeStamp = LocalDateTime.of(2001, 1, 1, 1, 1);
+        session.writeTransaction(tx -> tx.run("CREATE (:Segment:test:`test-Segment`{bodyId:50, timeStamp:$timeStamp})", parameters("timeStamp", explicitTimeStamp)));
+        Record stats = session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).single();
+
+        // the node keeps its own time stamp, but its dataset is edited and its cached results are dropped
+        Assert.assertEquals(0L, stats.get("pendingNodes").asLong());
+        Assert.assertEquals(explicitTimeStamp, session.readTransaction(tx -> tx.run("MATCH (n:`test-Segment`{bodyId:50}) RETURN n.timeStamp")).single().get(0).asLocalDateTime());
+        Assert.assertTrue(session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.lastDatabaseEdit")).single().get(0).asLocalDateTime().isAfter(LocalDateTime.of(2000, 1, 1, 1, 1)));
+        Assert.assertEquals(cachedEntries - 1, (long) ResultCache.getInstance().getStats().entries);
+
+    }
+
+    @Test
+    public void longHashSetShouldDeduplicateValues() {
+
+        LongHashSet set = new LongHashSet();
+        for (long i = 0; i < 10000; i++) {
+            Assert.assertTrue(set.add(i * 31));
+        }
+        for (long i = 0; i < 10000; i++) {
+            Assert.assertFalse(set.add(i * 31));
+        }
+        Assert.assertEquals(10000, set.size());
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(31 * 9999));
+        Assert.assertFalse(set.contains(30));
+
+        LongHashSet other = new LongHashSet();
+        other.add(-5);
+        other.add(0);
+        other.add(31);
+        Assert.assertEquals(1, set.addAll(other));
+
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        Assert.assertEquals(10001, values.length);
+        Assert.assertEquals(-5, values[0]);
+        Assert.assertEquals(0, values[1]);
+
+        for (long i = 0; i < 10000; i += 2) {
+            Assert.assertTrue(set.remove(i * 31));
+        }
+        Assert.assertFalse(set.remove(0));
+        Assert.assertEquals(5001, set.size());
+        for (long i = 1; i < 10000; i += 2) {
+            Assert.assertTrue(set.contains(i * 31));
+        }
+        Assert.assertFalse(set.contains(62));
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Map;
+
+public class TriggerMetaCountsTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withConfig(CoalescingTriggerWriter.COALESCE_WINDOW_SETTING, "600000")
+                .withProcedure(TriggerProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+        Session session = driver.session();
+        session.writeTransaction(tx -> tx.run("CREATE (:Meta:test{dataset:'test', triggerMetaCounts:true, totalPreCount:0, totalPostCount:0, roiInfo:'{}'}), " +
+                "(:Meta:other{dataset:'other', totalPreCount:0, totalPostCount:0, roiInfo:'{}'})"));
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldMaintainMetaCountsFromTransactionChangesAndReconcile() {
+
+        Session session = driver.session();
+
+        session.writeTransaction(tx -> tx.run("CREATE (:Synapse:PreSyn:test:`test-Synapse`:`test-PreSyn`{id:1, roiA:true}), " +
+                "(:Synapse:PreSyn:test:`test-Synapse`:`test-PreSyn`{id:2, roiA:true}), " +
+                "(:Synapse:PreSyn:test:`test-Synapse`:`test-PreSyn`{id:3}), " +
+                "(:Synapse:PostSyn:test:`test-Synapse`:`test-PostSyn`{id:4, roiA:true, roiB:true}), " +
+                "(:Synapse:PostSyn:test:`test-Synapse`:`test-PostSyn`{id:5, roiA:true}), " +
+                "(:Synapse:PreSyn:other:`other-Synapse`:`other-PreSyn`{id:6, roiA:true})"));
+
+        Record stats = session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).single();
+        Assert.assertEquals(1L, stats.get("metaCountUpdates").asLong());
+
+        assertMetaCounts(session, 3, 2, 2, 2, 0, 1);
+        // datasets without triggerMetaCounts are left alone
+        Assert.assertEquals(0L, session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'other'}) RETURN n.totalPreCount")).single().get(0).asLong());
+
+        // delete a synapse, move another between ROIs
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Synapse`{id:1}) DELETE n"));
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Synapse`{id:4}) REMOVE n.roiB"));
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Synapse`{id:3}) SET n.roiB = true"));
+        session.writeTransaction(tx -> tx.run("MATCH (n:`test-Synapse`{id:5}) SET n.roiA = false"));
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
+
+        assertMetaCounts(session, 2, 2, 1, 1, 1, 0);
+
+        // a transaction that updates the Meta node counts itself is not counted again
+        session.writeTransaction(tx -> tx.run("MATCH (m:Meta{dataset:'test'}) CREATE (:Synapse:PreSyn:test:`test-Synapse`:`test-PreSyn`{id:7}) " +
+                "SET m.totalPreCount = m.totalPreCount + 1"));
+        session.readTransaction(tx -> tx.run("CALL neuprint.flushTriggers()")).consume();
+
+        assertMetaCounts(session, 3, 2, 1, 1, 1, 0);
+
+        // reconcile replaces corrupted counts with a full recount
+        session.writeTransaction(tx -> tx.run("MATCH (m:Meta{dataset:'test'}) SET m.totalPreCount = 100, m.totalPostCount = 100, " +
+                "m.roiInfo = '{\"roiA\":{\"pre\":9,\"post\":9},\"roiB\":{\"pre\":9,\"post\":9}}'"));
+        Record reconciled = session.writeTransaction(tx -> tx.run("CALL neuprint.reconcileMetaCounts('test', 2)")).single();
+
+        Assert.assertEquals(3L, reconciled.get("totalPreCount").asLong());
+        Assert.assertEquals(0L, reconciled.get("pendingDeltas").asLong());
+        assertMetaCounts(session, 3, 2, 1, 1, 1, 0);
+
+    }
+
+    private static void assertMetaCounts(Session session, long totalPreCount, long totalPostCount, long roiAPre, long roiAPost, long roiBPre, long roiBPost) {
+        Record meta = session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'test'}) RETURN n.totalPreCount, n.totalPostCount, n.roiInfo")).single();
+        Assert.assertEquals(totalPreCount, meta.get(0).asLong());
+        Assert.assertEquals(totalPostCount, meta.get(1).asLong());
+
+        Map<String, SynapseCounter> roiInfo = new Gson().fromJson(meta.get(2).asString(), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+        Assert.assertEquals(roiAPre, roiInfo.get("roiA").getPre());
+        Assert.assertEquals(roiAPost, roiInfo.get("roiA").getPost());
+        if (roiBPre + roiBPost == 0) {
+            Assert.assertFalse(roiInfo.containsKey("roiB"));
+        } else {
+            Assert.assertEquals(roiBPre, roiInfo.get("roiB").getPre());
+            Assert.assertEquals(roiBPost, roiInfo.get("roiB").getPost());
+        }
+    }
+
+}
@@ -0,0 +1,329 @@
+package org.janelia.flyem.neuprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reader for loader input files. Gzip-compressed files (recognized by their magic number, whatever their name) are
+ * decompressed on a separate thread into large chunks; other files are memory-mapped region by region. Both are
+ * decoded as UTF-8, and malformed input is reported instead of replaced. Chunks and regions always end on a character
+ * boundary so each can be decoded on its own.
+ * <p>
+ * When closed, logs the amount read, the throughput and the fraction of the time since opening that was spent reading
+ * (waiting for disk or decompression, and decoding). A small fraction means parsing or importing is the limit.
+ */
+public class InputFileReader extends Reader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InputFileReader.class);
+
+    static final int DEFAULT_REGION_BYTES = 256 * 1024 * 1024;
+    static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+    private static final int CHUNK_QUEUE_SIZE = 4;
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+    private static final ByteBuffer END_OF_INPUT = ByteBuffer.allocate(0);
+
+    private final File file;
+    private final ByteSource source;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private ByteBuffer bytes;
+    private boolean endOfInput;
+
+    private final long openNanos = System.nanoTime();
+    private long readNanos;
+    private long bytesRead;
+    private boolean closed;
+
+    private InputFileReader(final File file, final ByteSource source) {
+        this.file = file;
+        this.source = source;
+        this.chars.flip();
+    }
+
+    /**
+     * Opens a loader input file.
+     *
+     * @param filepath path to the file, gzip-compressed or not
+     * @return reader for the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputFileReader open(final String filepath) throws IOException {
+        return open(new File(filepath), DEFAULT_REGION_BYTES, DEFAULT_CHUNK_BYTES);
+    }
+
+    static InputFileReader open(final File file, final int regionBytes, final int chunkBytes) throws IOException {
+        if (isGzipped(file)) {
+            return new InputFileReader(file, new GzipSource(file, chunkBytes));
+        } else {
+            return new InputFileReader(file, new MappedSource(file, regionBytes));
+        }
+    }
+
+    private static boolean isGzipped(final File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 0x1f && in.read() == 0x8b;
+        }
+    }
+
+    @Override
+    public int read(final char[] buffer, final int offset, final int length) throws IOException {
+        if (closed) {
+            throw new IOException("Reader closed: " + file);
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        final int count = Math.min(length, chars.remaining());
+        chars.get(buffer, offset, count);
+        return count;
+    }
+
+    /**
+     * Decodes the next characters into the char buffer.
+     *
+     * @return false at the end of the file
+     */
+    private boolean fill() throws IOException {
+        final long startNanos = System.nanoTime();
+        try {
+            chars.clear();
+            while (chars.position() == 0 && !endOfInput) {
+                if (bytes == null || !bytes.hasRemaining()) {
+                    bytes = source.next();
+                    if (bytes == null) {
+                        endOfInput = true;
+                        final CoderResult result = decoder.decode(END_OF_INPUT, chars, true);
+                        if (result.isError()) {
+                            result.throwException();
+                        }
+                        decoder.flush(chars);
+                        break;
+                    }
+                    bytesRead += bytes.remaining();
+                }
+                CoderResult result = decoder.decode(bytes, chars, false);
+                if (result.isUnderflow() && bytes.hasRemaining()) {
+                    // chunks end on character boundaries, so the bytes left over are a truncated character
+                    result = decoder.decode(bytes, chars, true);
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        } finally {
+            readNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        source.close();
+        final double elapsedSeconds = (System.nanoTime() - openNanos) / 1e9;
+        final double megabytes = bytesRead / (1024.0 * 1024.0);
+        LOG.info(String.format("Read %s: %.1f MB%s in %.1f s (%.1f MB/s); %.0f%% of the time was spent reading input.",
+                file.getName(), megabytes, source.describe(), elapsedSeconds, elapsedSeconds > 0 ? megabytes / elapsedSeconds : 0.0,
+                elapsedSeconds > 0 ? 100.0 * readNanos / 1e9 / elapsedSeconds : 0.0));
+    }
+
+    /**
+     * Supplies the bytes of a file in chunks that end on a UTF-8 character boundary.
+     */
+    private interface ByteSource {
+
+        /**
+         * @return next chunk, or null at the end of the file
+         */
+        ByteBuffer next() throws IOException;
+
+        /**
+         * @return description of how the file was read, for the throughput report
+         */
+        String describe();
+
+        void close() throws IOException;
+
+    }
+
+    /**
+     * @return length of the longest prefix of the bytes that does not end inside a multi-byte UTF-8 character
+     */
+    static int characterBoundary(final ByteBuffer buffer, final int start, final int end) {
+        // back up over at most three continuation bytes (10xxxxxx) and the lead byte they belong to
+        int boundary = end;
+        while (boundary > start && end - boundary < 3 && (buffer.get(boundary - 1) & 0xC0) == 0x80) {
+            boundary--;
+        }
+        if (boundary > start && (buffer.get(boundary - 1) & 0x80) != 0) {
+            final int lead = buffer.get(boundary - 1) & 0xFF;
+            final int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : 2;
+            if (end - (boundary - 1) < length) {
+                return boundary - 1;
+            }
+        }
+        return end;
+    }
+
+    private static class MappedSource implements ByteSource {
+
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final long size;
+        private final int regionBytes;
+        private long position;
+
+        MappedSource(final File file, final int regionBytes) throws IOException {
+            this.randomAccessFile = new RandomAccessFile(file, "r");
+            this.channel = randomAccessFile.getChannel();
+            this.size = channel.size();
+            this.regionBytes = regionBytes;
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if (position >= size) {
+                return null;
+            }
+            final int length = (int) Math.min(regionBytes, size - position);
+            final ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            final int end = position + length < size ? characterBoundary(region, 0, length) : length;
+            if (end == 0) {
+                throw new IOException("Region size " + regionBytes + " is too small to hold a character.");
+            }
+            region.limit(end);
+            position += end;
+            return region;
+        }
+
+        @Override
+        public String describe() {
+            return "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            randomAccessFile.close();
+        }
+
+    }
+
+    /**
+     * Decompresses on its own thread, a few chunks ahead of the reader.
+     */
+    private static class GzipSource implements ByteSource {
+
+        private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(CHUNK_QUEUE_SIZE);
+        private final long compressedSize;
+        private final Thread thread;
+        private volatile IOException failure;
+        private boolean finished;
+
+        GzipSource(final File file, final int chunkBytes) throws IOException {
+            final InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), chunkBytes), 64 * 1024);
+            this.compressedSize = file.length();
+            this.thread = new Thread(() -> decompress(in, chunkBytes), "gzip-" + file.getName());
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void decompress(final InputStream in, final int chunkBytes) {
+            try (InputStream input = in) {
+                byte[] carry = new byte[0];
+                while (true) {
+                    final byte[] chunk = new byte[chunkBytes];
+                    System.arraycopy(carry, 0, chunk, 0, carry.length);
+                    int length = carry.length;
+                    int count = 0;
+                    while (length < chunkBytes && (count = input.read(chunk, length, chunkBytes - length)) >= 0) {
+                        length += count;
+                    }
+                    final boolean last = count < 0;
+                    final ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+                    final int end = last ? length : characterBoundary(buffer, 0, length);
+                    carry = new byte[length - end];
+                    System.arraycopy(chunk, end, carry, 0, carry.length);
+                    buffer.limit(end);
+                    if (end > 0) {
+                        chunks.put(buffer);
+                    }
+                    if (last) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                // reader closed early
+                return;
+            }
+            try {
+                chunks.put(END_OF_INPUT);
+            } catch (InterruptedException e) {
+                // reader closed early
+            }
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            final ByteBuffer chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed input.");
+            }
+            if (chunk == END_OF_INPUT) {
+                finished = true;
+                if (failure != null) {
+                    throw failure;
+                }
+                return null;
+            }
+            return chunk;
+        }
+
+        @Override
+        public String describe() {
+            return String.format(" (%.1f MB compressed)", compressedSize / (1024.0 * 1024.0));
+        }
+
+        @Override
+        public void close() {
+            thread.interrupt();
+        }
+
+    }
+
+}
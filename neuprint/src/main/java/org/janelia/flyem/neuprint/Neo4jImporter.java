@@ -9,10 +9,13 @@ import org.janelia.flyem.neuprint.db.TransactionBatch;
 import org.janelia.flyem.neuprint.model.Location;
 import org.janelia.flyem.neuprint.model.MetaInfo;
 import org.janelia.flyem.neuprint.model.Neuron;
-import org.janelia.flyem.neuprint.model.SkelNode;
 import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.SwcSkeleton;
 import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprint.roi.RoiAssignment;
+import org.janelia.flyem.neuprint.roi.RoiDefinition;
+import org.janelia.flyem.neuprintloadprocedures.CompactSkeleton;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.driver.v1.AuthTokens;
@@ -28,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +41,13 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_PARENTS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_RADII;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_ROW_NUMBERS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_TYPES;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_X;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_Y;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_Z;
 import static org.neo4j.driver.v1.Values.parameters;
 
 /**
@@ -44,6 +55,11 @@ import static org.neo4j.driver.v1.Values.parameters;
  */
 public class Neo4jImporter implements AutoCloseable {
 
+    /**
+     * Maximum number of skel nodes (or LinksTo relationships) written by one UNWIND statement.
+     */
+    static final int SKEL_NODES_PER_STATEMENT = 5000;
+
     private final Driver driver;
     private final int statementsPerTransaction;
     private final int connectionInfoStatementsPerTransaction;
@@ -138,6 +154,11 @@ public class Neo4jImporter implements AutoCloseable {
                 "CREATE INDEX ON :`" + dataset + "-Segment`(pre)",
                 "CREATE INDEX ON :`" + dataset + "-Segment`(post)",
                 "CREATE INDEX ON :`" + dataset + "-Synapse`(location)",
+                "CREATE INDEX ON :`" + dataset + "-Neuron`(cableLength)",
+                "CREATE INDEX ON :`" + dataset + "-Neuron`(branchPointCount)",
+                "CREATE INDEX ON :`" + dataset + "-Neuron`(tipCount)",
+                "CREATE INDEX ON :`" + dataset + "-Neuron`(maxPathLength)",
+                "CREATE INDEX ON :`" + dataset + "-Neuron`(strahlerOrder)",
                 "CREATE CONSTRAINT ON (n:`" + dataset + "-Segment`) ASSERT n.mutationUuidAndId IS UNIQUE" //used for live updates
         };
 
@@ -152,6 +173,53 @@ public class Neo4jImporter implements AutoCloseable {
 
     }
 
+    /**
+     * Marks a bulk load of the dataset as in progress on the server, so that the server's transaction triggers do not
+     * time-stamp every batch written by the importer (see neuprint.startBulkLoad). Does nothing if the server does not
+     * have the neuPrint procedures installed.
+     *
+     * @param dataset dataset for load
+     * @return true if the bulk load was started and {@link #endBulkLoad(String)} should be called when the load ends
+     */
+    public boolean startBulkLoad(final String dataset) {
+
+        if (driver == null || !isProcedureAvailable("neuprint.startBulkLoad")) {
+            LOG.info("startBulkLoad: neuprint.startBulkLoad is not available. Transaction triggers will run for each batch.");
+            return false;
+        }
+
+        try (Session session = driver.session()) {
+            session.writeTransaction(tx -> tx.run("CALL neuprint.startBulkLoad($dataset)", parameters("dataset", dataset)).consume());
+        }
+        LOG.info("startBulkLoad: Bulk load of dataset " + dataset + " started.");
+        return true;
+
+    }
+
+    /**
+     * Ends a bulk load started with {@link #startBulkLoad(String)}. The server time-stamps all nodes of the dataset in
+     * one batched pass and updates its Meta node.
+     *
+     * @param dataset dataset for load
+     * @return number of nodes time-stamped
+     */
+    public long endBulkLoad(final String dataset) {
+
+        long stamped;
+        try (Session session = driver.session()) {
+            stamped = session.writeTransaction(tx -> tx.run("CALL neuprint.endBulkLoad($dataset)", parameters("dataset", dataset)).single().get("value").asLong());
+        }
+        LOG.info("endBulkLoad: Bulk load of dataset " + dataset + " ended. Time-stamped " + stamped + " nodes.");
+        return stamped;
+
+    }
+
+    private boolean isProcedureAvailable(final String procedureName) {
+        try (Session session = driver.session()) {
+            return session.readTransaction(tx -> tx.run("CALL dbms.procedures() YIELD name WHERE name = $name RETURN count(name) > 0", parameters("name", procedureName)).single().get(0).asBoolean());
+        }
+    }
+
     /**
      * Creates index if clusterNames will be added.
      *
@@ -350,7 +418,6 @@ public class Neo4jImporter implements AutoCloseable {
                     batch.addStatement(new Statement(
                             preSynapseTextWithRois,
                             parameters("location", synapse.getLocationAsPoint(),
-                                    "datasetLocation", dataset + ":" + synapse.getLocationString(),
                                     "confidence", synapse.getConfidence(),
                                     "type", synapse.getType(),
                                     "timeStamp", timeStamp))
@@ -361,7 +428,6 @@ public class Neo4jImporter implements AutoCloseable {
                     batch.addStatement(new Statement(
                             postSynapseTextWithRois,
                             parameters("location", synapse.getLocationAsPoint(),
-                                    "datasetLocation", dataset + ":" + synapse.getLocationString(),
                                     "confidence", synapse.getConfidence(),
                                     "type", synapse.getType(),
                                     "timeStamp", timeStamp))
@@ -703,78 +769,183 @@ public class Neo4jImporter implements AutoCloseable {
      * @param timeStamp    time of data load
      */
     public void addSkeletonNodes(final String dataset, final List<Skeleton> skeletonList, final LocalDateTime timeStamp) {
+        final List<SwcSkeleton> swcSkeletons = new ArrayList<>(skeletonList.size());
+        for (Skeleton skeleton : skeletonList) {
+            swcSkeletons.add(SwcSkeleton.fromSkeleton(skeleton));
+        }
+        addSkeletons(dataset, swcSkeletons, timeStamp);
+    }
+
+    /**
+     * Adds Skeleton and SkelNode nodes to database as {@link #addSkeletonNodes} does, from skeletons held in primitive
+     * arrays. Segments and Skeletons are written with one UNWIND statement per call, and SkelNodes and their LinksTo
+     * relationships with UNWIND statements of up to {@link #SKEL_NODES_PER_STATEMENT} rows per skeleton.
+     *
+     * @param dataset   dataset name
+     * @param skeletons list of {@link SwcSkeleton} objects
+     * @param timeStamp time of data load
+     */
+    public void addSkeletons(final String dataset, final List<SwcSkeleton> skeletons, final LocalDateTime timeStamp) {
 
-        LOG.info("addSkeletonNodes: entry");
+        LOG.info("addSkeletons: entry");
 
-        final String segmentMergeString = "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) ON CREATE SET " +
-                "n.bodyId=$bodyId, " +
+        final String skeletonString = "UNWIND $skeletons AS skeleton \n" +
+                "MERGE (n:`" + dataset + "-Segment`{bodyId:skeleton.bodyId}) ON CREATE SET " +
+                "n.bodyId=skeleton.bodyId, " +
                 "n.timeStamp=$timeStamp, " +
                 "n:Segment, " +
-                "n:" + dataset;
-
-        final String segmentToSkeletonConnectionString = "MERGE (r:`" + dataset + "-Skeleton`{skeletonId:$skeletonId}) ON CREATE SET r.skeletonId=$skeletonId, r.timeStamp=$timeStamp, r:Skeleton, r:" + dataset + " \n" +
-                "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) \n" +
-                "MERGE (n)-[:Contains]->(r) \n";
+                "n:" + dataset + " \n" +
+                "MERGE (r:`" + dataset + "-Skeleton`{skeletonId:skeleton.skeletonId}) ON CREATE SET r.skeletonId=skeleton.skeletonId, r.timeStamp=$timeStamp, r:Skeleton, r:" + dataset + " \n" +
+                "MERGE (n)-[:Contains]->(r)";
 
-        final String parentNodeString = "MERGE (p:`" + dataset + "-SkelNode`{skelNodeId:$parentSkelNodeId}) ON CREATE SET p.skelNodeId=$parentSkelNodeId, p.location=$pLocation, p.radius=$pRadius, p.rowNumber=$pRowNumber, p.type=$pType, p.timeStamp=$timeStamp, p:SkelNode, p:" + dataset + " \n" +
-                "MERGE (r:`" + dataset + "-Skeleton`{skeletonId:$skeletonId}) \n" +
-                "MERGE (r)-[:Contains]->(p) ";
+        final String skelNodeString = "MATCH (r:`" + dataset + "-Skeleton`{skeletonId:$skeletonId}) \n" +
+                "UNWIND $skelNodes AS skelNode \n" +
+                "MERGE (s:`" + dataset + "-SkelNode`{skelNodeId:skelNode.skelNodeId}) ON CREATE SET s.skelNodeId=skelNode.skelNodeId, s.location=skelNode.location, s.radius=skelNode.radius, s.rowNumber=skelNode.rowNumber, s.type=skelNode.type, s.timeStamp=$timeStamp, s:SkelNode, s:" + dataset + " \n" +
+                "MERGE (r)-[:Contains]->(s)";
 
-        final String childNodeString = "MERGE (c:`" + dataset + "-SkelNode`{skelNodeId:$childNodeId}) ON CREATE SET c.skelNodeId=$childNodeId, c.location=$childLocation, c.radius=$childRadius, c.rowNumber=$childRowNumber, c.type=$childType, c.timeStamp=$timeStamp, c:SkelNode, c:" + dataset + " \n" +
-                "MERGE (p:`" + dataset + "-SkelNode`{skelNodeId:$parentSkelNodeId}) \n" +
+        final String linksToString = "UNWIND $links AS link \n" +
+                "MATCH (p:`" + dataset + "-SkelNode`{skelNodeId:link.parent}), (c:`" + dataset + "-SkelNode`{skelNodeId:link.child}) \n" +
                 "MERGE (p)-[:LinksTo]-(c)";
 
         try (final TransactionBatch batch = getBatch()) {
-            for (Skeleton skeleton : skeletonList) {
 
-                Long associatedBodyId = skeleton.getAssociatedBodyId();
-                List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
+            final List<Map<String, Object>> skeletonRows = new ArrayList<>(skeletons.size());
+            for (SwcSkeleton skeleton : skeletons) {
+                final Map<String, Object> skeletonRow = new HashMap<>();
+                skeletonRow.put("bodyId", skeleton.getAssociatedBodyId());
+                skeletonRow.put("skeletonId", dataset + ":" + skeleton.getAssociatedBodyId());
+                skeletonRows.add(skeletonRow);
+            }
+            batch.addStatement(new Statement(skeletonString, parameters("skeletons", skeletonRows, "timeStamp", timeStamp)));
+
+            long skelNodeCount = 0;
+            for (SwcSkeleton skeleton : skeletons) {
+                final String skeletonId = dataset + ":" + skeleton.getAssociatedBodyId();
+                final String[] skelNodeIds = new String[skeleton.getRowCount()];
+                for (int i = 0; i < skeleton.getRowCount(); i++) {
+                    skelNodeIds[i] = skeleton.getSkelNodeId(dataset, i);
+                }
 
-                batch.addStatement(new Statement(segmentMergeString, parameters(
-                        "bodyId", associatedBodyId,
-                        "timeStamp", timeStamp
-                )));
+                for (int start = 0; start < skeleton.getRowCount(); start += SKEL_NODES_PER_STATEMENT) {
+                    final int end = Math.min(start + SKEL_NODES_PER_STATEMENT, skeleton.getRowCount());
+                    final List<Map<String, Object>> skelNodeRows = new ArrayList<>(end - start);
+                    for (int i = start; i < end; i++) {
+                        final Map<String, Object> skelNodeRow = new HashMap<>();
+                        skelNodeRow.put("skelNodeId", skelNodeIds[i]);
+                        skelNodeRow.put("location", skeleton.getLocationAsPoint(i));
+                        skelNodeRow.put("radius", skeleton.getRadius(i));
+                        skelNodeRow.put("rowNumber", skeleton.getRowNumber(i));
+                        skelNodeRow.put("type", skeleton.getType(i));
+                        skelNodeRows.add(skelNodeRow);
+                    }
+                    batch.addStatement(new Statement(skelNodeString, parameters("skeletonId", skeletonId, "skelNodes", skelNodeRows, "timeStamp", timeStamp)));
+                }
 
-                batch.addStatement(new Statement(segmentToSkeletonConnectionString, parameters("bodyId", associatedBodyId,
-                        "skeletonId", dataset + ":" + associatedBodyId,
-                        "timeStamp", timeStamp
-                )));
+                // links are added once all skel nodes of the skeleton exist, as parents may follow their children
+                List<Map<String, Object>> linkRows = new ArrayList<>();
+                for (int i = 0; i < skeleton.getRowCount(); i++) {
+                    if (skeleton.getParentIndex(i) != -1) {
+                        final Map<String, Object> linkRow = new HashMap<>();
+                        linkRow.put("parent", skelNodeIds[skeleton.getParentIndex(i)]);
+                        linkRow.put("child", skelNodeIds[i]);
+                        linkRows.add(linkRow);
+                        if (linkRows.size() == SKEL_NODES_PER_STATEMENT) {
+                            batch.addStatement(new Statement(linksToString, parameters("links", linkRows)));
+                            linkRows = new ArrayList<>();
+                        }
+                    }
+                }
+                if (!linkRows.isEmpty()) {
+                    batch.addStatement(new Statement(linksToString, parameters("links", linkRows)));
+                }
+                skelNodeCount += skeleton.getRowCount();
+            }
+            batch.writeTransaction();
+            LOG.info("Added " + skeletons.size() + " skeletons with " + skelNodeCount + " skel nodes.");
+        }
+        LOG.info("addSkeletons: exit");
+    }
+
+    /**
+     * Adds compact Skeletons to database. Instead of SkelNode nodes, each Skeleton node holds its rows in array
+     * properties (see {@link CompactSkeleton}); SkelNodes can be created later for a single body with
+     * proofreader.createSkelNodes. Segments are connected to Skeletons via Contains relationships.
+     *
+     * @param dataset   dataset name
+     * @param skeletons list of {@link SwcSkeleton} objects
+     * @param timeStamp time of data load
+     */
+    public void addCompactSkeletons(final String dataset, final List<SwcSkeleton> skeletons, final LocalDateTime timeStamp) {
 
-                for (SkelNode skelNode : skelNodeList) {
+        LOG.info("addCompactSkeletons: entry");
 
-                    batch.addStatement(new Statement(parentNodeString, parameters(
-                            "pLocation", skelNode.getLocationAsPoint(),
-                            "pRadius", skelNode.getRadius(),
-                            "skeletonId", dataset + ":" + associatedBodyId,
-                            "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
-                            "pRowNumber", skelNode.getRowNumber(),
-                            "pType", skelNode.getType(),
-                            "timeStamp", timeStamp
-                    )));
-
-                    for (SkelNode childSkelNode : skelNode.getChildren()) {
-                        String childNodeId = childSkelNode.getSkelNodeId(dataset);
-                        batch.addStatement(new Statement(childNodeString, parameters(
-                                "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
-                                "skeletonId", dataset + ":" + associatedBodyId,
-                                "pLocation", skelNode.getLocationAsPoint(),
-                                "pRadius", skelNode.getRadius(),
-                                "pRowNumber", skelNode.getRowNumber(),
-                                "pType", skelNode.getType(),
-                                "timeStamp", timeStamp,
-                                "childNodeId", childNodeId,
-                                "childLocation", childSkelNode.getLocationAsPoint(),
-                                "childRadius", childSkelNode.getRadius(),
-                                "childRowNumber", childSkelNode.getRowNumber(),
-                                "childType", childSkelNode.getType()
-                        )));
-                    }
+        final String skeletonString = "UNWIND $skeletons AS skeleton \n" +
+                "MERGE (n:`" + dataset + "-Segment`{bodyId:skeleton.bodyId}) ON CREATE SET " +
+                "n.bodyId=skeleton.bodyId, " +
+                "n.timeStamp=$timeStamp, " +
+                "n:Segment, " +
+                "n:" + dataset + " \n" +
+                "MERGE (r:`" + dataset + "-Skeleton`{skeletonId:skeleton.skeletonId}) ON CREATE SET r.skeletonId=skeleton.skeletonId, r.timeStamp=$timeStamp, r:Skeleton, r:" + dataset + " \n" +
+                "SET r." + SKEL_ROW_NUMBERS + "=skeleton.rowNumbers, " +
+                "r." + SKEL_PARENTS + "=skeleton.parents, " +
+                "r." + SKEL_X + "=skeleton.x, " +
+                "r." + SKEL_Y + "=skeleton.y, " +
+                "r." + SKEL_Z + "=skeleton.z, " +
+                "r." + SKEL_RADII + "=skeleton.radii, " +
+                "r." + SKEL_TYPES + "=skeleton.types \n" +
+                "MERGE (n)-[:Contains]->(r)";
+
+        try (final TransactionBatch batch = getBatch()) {
+
+            List<Map<String, Object>> skeletonRows = new ArrayList<>();
+            long rowCount = 0;
+            long statementRowCount = 0;
+            for (SwcSkeleton skeleton : skeletons) {
+                final int size = skeleton.getRowCount();
+                final int[] rowNumbers = new int[size];
+                final int[] parents = new int[size];
+                final int[] x = new int[size];
+                final int[] y = new int[size];
+                final int[] z = new int[size];
+                final double[] radii = new double[size];
+                final int[] types = new int[size];
+                for (int i = 0; i < size; i++) {
+                    rowNumbers[i] = skeleton.getRowNumber(i);
+                    parents[i] = skeleton.getParentRowNumber(i);
+                    x[i] = skeleton.getX(i);
+                    y[i] = skeleton.getY(i);
+                    z[i] = skeleton.getZ(i);
+                    radii[i] = skeleton.getRadius(i);
+                    types[i] = skeleton.getType(i);
+                }
+                final Map<String, Object> skeletonRow = new HashMap<>();
+                skeletonRow.put("bodyId", skeleton.getAssociatedBodyId());
+                skeletonRow.put("skeletonId", dataset + ":" + skeleton.getAssociatedBodyId());
+                skeletonRow.put("rowNumbers", rowNumbers);
+                skeletonRow.put("parents", parents);
+                skeletonRow.put("x", x);
+                skeletonRow.put("y", y);
+                skeletonRow.put("z", z);
+                skeletonRow.put("radii", radii);
+                skeletonRow.put("types", types);
+                skeletonRows.add(skeletonRow);
+
+                rowCount += size;
+                statementRowCount += size;
+                // keep statements to about as many rows as a SkelNode statement
+                if (statementRowCount >= SKEL_NODES_PER_STATEMENT) {
+                    batch.addStatement(new Statement(skeletonString, parameters("skeletons", skeletonRows, "timeStamp", timeStamp)));
+                    skeletonRows = new ArrayList<>();
+                    statementRowCount = 0;
                 }
-                LOG.info("Added full skeleton for bodyId: " + skeleton.getAssociatedBodyId());
+            }
+            if (!skeletonRows.isEmpty()) {
+                batch.addStatement(new Statement(skeletonString, parameters("skeletons", skeletonRows, "timeStamp", timeStamp)));
             }
             batch.writeTransaction();
+            LOG.info("Added " + skeletons.size() + " compact skeletons with " + rowCount + " rows.");
         }
-        LOG.info("addSkeletonNodes: exit");
+        LOG.info("addCompactSkeletons: exit");
     }
 
     /**
@@ -806,6 +977,66 @@ public class Neo4jImporter implements AutoCloseable {
         LOG.info("addMetaInfo: exit");
     }
 
+    /**
+     * Assigns ROIs to all synapses in the dataset from a local ROI definition, so that each synapse ends up in exactly
+     * the ROIs of the definition that contain it. ROIs in the Meta node's roiInfo that the definition does not define
+     * are removed from all synapses. Synapse locations and their current ROIs are streamed from the database and looked
+     * up in Morton order. Only the differences are sent back, per ROI in calls of at most batchSize locations to
+     * proofreader.setRoiForSynapses and proofreader.removeRoiFromSynapses (from neuprint-procedures), which update the
+     * roiInfo of affected Neuron/Segment, ConnectionSet and Meta nodes.
+     *
+     * @param dataset       dataset name
+     * @param roiDefinition {@link RoiDefinition}
+     * @param batchSize     number of synapses per call and per committed batch
+     */
+    public void assignRois(final String dataset, final RoiDefinition roiDefinition, final long batchSize) {
+
+        LOG.info("assignRois: entry");
+
+        RoiAssignment roiAssignment = new RoiAssignment();
+        try (Session session = driver.session()) {
+            Set<String> rois = new TreeSet<>(roiDefinition.getRoiNames());
+            rois.addAll(session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset)).getSetOfRois());
+            // share one String per ROI name across all synapses
+            Map<String, String> roiNames = new HashMap<>();
+            rois.forEach(roi -> roiNames.put(roi, roi));
+
+            StatementResult result = session.run("MATCH (s:`" + dataset + "-Synapse`) RETURN s.location.x AS x, s.location.y AS y, s.location.z AS z, [roi IN $rois WHERE s[roi] = true] AS rois",
+                    parameters("rois", new ArrayList<>(rois)));
+            result.forEachRemaining(record -> roiAssignment.addLocation((long) record.get("x").asDouble(), (long) record.get("y").asDouble(), (long) record.get("z").asDouble(),
+                    record.get("rois").asList(roi -> roiNames.get(roi.asString()))));
+        }
+        LOG.info("assignRois: Read " + roiAssignment.getLocationCount() + " synapse locations.");
+
+        RoiAssignment.Changes changes = roiAssignment.getChanges(roiDefinition);
+
+        for (Map.Entry<String, RoiAssignment.Locations> roiLocations : changes.getAdditions().entrySet()) {
+            writeRoiLocationsInBatches("CALL proofreader.setRoiForSynapses($roi, $locations, $dataset, $batchSize)", roiLocations.getKey(), roiLocations.getValue(), dataset, batchSize);
+            LOG.info("assignRois: Added " + roiLocations.getKey() + " to " + roiLocations.getValue().size() + " synapses.");
+        }
+        for (Map.Entry<String, RoiAssignment.Locations> roiLocations : changes.getRemovals().entrySet()) {
+            writeRoiLocationsInBatches("CALL proofreader.removeRoiFromSynapses($roi, $locations, $dataset, $batchSize)", roiLocations.getKey(), roiLocations.getValue(), dataset, batchSize);
+            LOG.info("assignRois: Removed " + roiLocations.getKey() + " from " + roiLocations.getValue().size() + " synapses.");
+        }
+
+        indexBooleanRoiProperties(dataset);
+
+        LOG.info("assignRois: exit");
+    }
+
+    private void writeRoiLocationsInBatches(final String procedureCall, final String roi, final RoiAssignment.Locations locations, final String dataset, final long batchSize) {
+        final int batchLength = (int) Math.min(batchSize, Integer.MAX_VALUE);
+        for (int from = 0; from < locations.size(); from += batchLength) {
+            // only the current batch is boxed for the Bolt parameter
+            List<List<Long>> batchLocations = locations.getLocations(from, Math.min(locations.size(), from + batchLength));
+            try (final TransactionBatch batch = getBatch()) {
+                batch.addStatement(new Statement(procedureCall,
+                        parameters("roi", roi, "locations", batchLocations, "dataset", dataset, "batchSize", batchSize)));
+                batch.writeTransaction();
+            }
+        }
+    }
+
     private static String getMaxInputRoi(final Transaction tx, final String dataset, Long bodyId) {
 
         Gson gson = new Gson();
@@ -6,13 +6,21 @@ import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
 import com.google.common.base.Stopwatch;
 import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.binary.BinaryInputFile;
+import org.janelia.flyem.neuprint.binary.BinaryInputWriter;
 import org.janelia.flyem.neuprint.db.DbConfig;
+import org.janelia.flyem.neuprint.json.ConnectionRecord;
 import org.janelia.flyem.neuprint.json.JsonUtils;
+import org.janelia.flyem.neuprint.json.NeuronRecord;
+import org.janelia.flyem.neuprint.json.RoiDictionary;
+import org.janelia.flyem.neuprint.json.StreamingJsonDecoder;
+import org.janelia.flyem.neuprint.json.SynapseRecord;
 import org.janelia.flyem.neuprint.model.MetaInfo;
 import org.janelia.flyem.neuprint.model.Neuron;
 import org.janelia.flyem.neuprint.model.Skeleton;
 import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprint.roi.RoiDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,19 +57,29 @@ public class NeuPrintMain {
 
         @Parameter(
                 names = "--synapseJson",
-                description = "JSON file containing body synapse data to import")
+                description = "JSON file (optionally gzip-compressed) containing body synapse data to import")
         String synapseJson;
 
         @Parameter(
                 names = "--connectionJson",
-                description = "Path to JSON file containing synaptic connections.")
+                description = "Path to JSON file (optionally gzip-compressed) containing synaptic connections.")
         String connectionJson;
 
         @Parameter(
                 names = "--neuronJson",
-                description = "JSON file containing neuron data to import")
+                description = "JSON file (optionally gzip-compressed) containing neuron data to import")
         String neuronJson;
 
+        @Parameter(
+                names = "--binaryInput",
+                description = "Binary file containing synapse and connection data to import, written by --convertToBinary. Loaded in batches of --synapseBatchSize and --connectionBatchSize (all at once if 0).")
+        String binaryInput;
+
+        @Parameter(
+                names = "--convertToBinary",
+                description = "Converts --synapseJson and --connectionJson into a binary file at this path for use with --binaryInput, then exits without loading.")
+        String convertToBinary;
+
         @Parameter(
                 names = "--synapseBatchSize",
                 description = "If > 0, the synapse JSON file will be loaded in batches of this size."
@@ -86,6 +104,19 @@ public class NeuPrintMain {
         )
         int skeletonBatchSize;
 
+        @Parameter(
+                names = "--skeletonThreads",
+                description = "Number of threads reading skeleton files (number of processors by default)."
+        )
+        int skeletonThreads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(
+                names = "--compactSkeletons",
+                description = "Store each skeleton as array properties on its Skeleton node instead of creating SkelNode nodes; SkelNodes can be created later per body with proofreader.createSkelNodes. (omit to create SkelNodes)",
+                arity = 0
+        )
+        boolean compactSkeletons;
+
         @Parameter(
                 names = "--datasetLabel",
                 description = "Dataset value for all nodes (required)",
@@ -145,6 +176,16 @@ public class NeuPrintMain {
                 arity = 1)
         boolean addClusterNames = true;
 
+        @Parameter(
+                names = "--roiDefinition",
+                description = "JSON file defining ROIs as a label volume or a list of boxes. ROIs are assigned to all synapses in the dataset after loading, and ROIs the definition does not define are removed (requires neuprint-procedures).")
+        String roiDefinition;
+
+        @Parameter(
+                names = "--roiBatchSize",
+                description = "Number of synapses per transaction when assigning ROIs from --roiDefinition (10000 by default)")
+        long roiBatchSize = 10000;
+
         @Parameter(
                 names = "--help",
                 help = true)
@@ -173,9 +214,9 @@ public class NeuPrintMain {
      * @return list of Neurons
      */
     public static List<Neuron> readNeuronsJson(String filepath) {
-        List<Neuron> neuronList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            neuronList = Neuron.fromJson(reader);
+        final List<Neuron> neuronList = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            StreamingJsonDecoder.forEachNeuron(reader, new NeuronRecord(new RoiDictionary()), neuron -> neuronList.add(neuron.toNeuron()));
             LOG.info(String.format("Loaded %d neurons/segments from JSON.", neuronList.size()));
         } catch (Exception e) {
             LOG.error("Error reading neurons JSON: " + e);
@@ -208,14 +249,15 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading neurons in batches of size %d", neuronBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            NeuronRecord neuronRecord = new NeuronRecord(new RoiDictionary());
             reader.beginArray();
             while (reader.hasNext()) {
                 List<Neuron> neuronList = new ArrayList<>();
                 int i = 0;
                 while (reader.hasNext() && i < neuronBatchSize) {
-                    Neuron neuron = Neuron.fromJsonSingleObject(reader);
-                    neuronList.add(neuron);
+                    StreamingJsonDecoder.readNeuron(reader, neuronRecord);
+                    neuronList.add(neuronRecord.toNeuron());
                     i++;
                 }
 
@@ -260,14 +302,15 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading neuron json (connection info only) in batches of size %d", neuronBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            NeuronRecord neuronRecord = new NeuronRecord(new RoiDictionary());
             reader.beginArray();
             while (reader.hasNext()) {
                 List<Neuron> neuronList = new ArrayList<>();
                 int i = 0;
                 while (reader.hasNext() && i < neuronBatchSize) {
-                    Neuron neuron = Neuron.fromJsonSingleObject(reader);
-                    neuronList.add(neuron);
+                    StreamingJsonDecoder.readNeuron(reader, neuronRecord);
+                    neuronList.add(neuronRecord.toNeuron());
                     i++;
                 }
 
@@ -292,9 +335,9 @@ public class NeuPrintMain {
      * @return list of {@link Synapse} objects
      */
     public static List<Synapse> readSynapsesJson(String filepath) {
-        List<Synapse> synapseList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            synapseList = Synapse.fromJson(reader);
+        final List<Synapse> synapseList = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            StreamingJsonDecoder.forEachSynapse(reader, new SynapseRecord(new RoiDictionary()), synapse -> synapseList.add(synapse.toSynapse()));
             LOG.info(String.format("Loaded %d synapses from JSON.", synapseList.size()));
         } catch (Exception e) {
             LOG.error("Error reading synapse JSON: " + e);
@@ -324,14 +367,15 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading synapses in batches of size %d", synapseBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            SynapseRecord synapseRecord = new SynapseRecord(new RoiDictionary());
             reader.beginArray();
             while (reader.hasNext()) {
                 List<Synapse> synapseList = new ArrayList<>();
                 int i = 0;
                 while (reader.hasNext() && i < synapseBatchSize) {
-                    Synapse synapse = Synapse.fromJsonSingleObject(reader);
-                    synapseList.add(synapse);
+                    StreamingJsonDecoder.readSynapse(reader, synapseRecord);
+                    synapseList.add(synapseRecord.toSynapse());
                     i++;
                 }
 
@@ -359,9 +403,9 @@ public class NeuPrintMain {
      * @return list of {@link SynapticConnection} objects
      */
     public static List<SynapticConnection> readConnectionsJson(String filepath) {
-        List<SynapticConnection> connectionList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-            connectionList = SynapticConnection.fromJson(reader);
+        final List<SynapticConnection> connectionList = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            StreamingJsonDecoder.forEachConnection(reader, new ConnectionRecord(), connection -> connectionList.add(connection.toSynapticConnection()));
             LOG.info(String.format("Loaded %d synaptic connections from JSON.", connectionList.size()));
         } catch (Exception e) {
             LOG.error("Error reading connections JSON: " + e);
@@ -390,7 +434,8 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading connections in batches of size %d", connectionBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(InputFileReader.open(filepath))) {
+            ConnectionRecord connectionRecord = new ConnectionRecord();
             reader.beginArray();
             while (reader.hasNext()) {
                 List<SynapticConnection> connectionsList = new ArrayList<>();
@@ -398,8 +443,8 @@ public class NeuPrintMain {
                 // get to start
 
                 while (reader.hasNext() && i < connectionBatchSize) {
-                    SynapticConnection synapticConnection = SynapticConnection.fromJsonSingleObject(reader);
-                    connectionsList.add(synapticConnection);
+                    StreamingJsonDecoder.readConnection(reader, connectionRecord);
+                    connectionsList.add(connectionRecord.toSynapticConnection());
                     i++;
                 }
 
@@ -417,8 +462,72 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * Loads the synapses and then the synaptic connections of a binary input file written by
+     * {@link BinaryInputWriter}.
+     *
+     * @param filepath            path to binary input file
+     * @param synapseBatchSize    synapses per batch (all in one batch if not greater than 0)
+     * @param connectionBatchSize connections per batch (all in one batch if not greater than 0)
+     */
+    public static void loadBinaryInputInBatches(String filepath,
+                                                int synapseBatchSize,
+                                                int connectionBatchSize,
+                                                Neo4jImporter neo4jImporter,
+                                                String dataset,
+                                                boolean databaseInitialized,
+                                                float dataModelVersion,
+                                                double preHPThreshold,
+                                                double postHPThreshold,
+                                                boolean addConnectionSetRoiInfoAndWeightHP,
+                                                boolean addClusterNames,
+                                                LocalDateTime timeStamp) {
+
+        Stopwatch timer = Stopwatch.createUnstarted();
+
+        if (!databaseInitialized) {
+            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
+        }
+
+        try (BinaryInputFile input = BinaryInputFile.open(new File(filepath))) {
+
+            LOG.info(String.format("Loading %d synapses and %d synaptic connections from binary input.", input.getSynapseCount(), input.getConnectionCount()));
+
+            final SynapseRecord synapseRecord = new SynapseRecord(new RoiDictionary());
+            final long synapseBatch = synapseBatchSize > 0 ? synapseBatchSize : Math.max(1, input.getSynapseCount());
+            for (long start = 0; start < input.getSynapseCount(); start += synapseBatch) {
+                final List<Synapse> synapseList = new ArrayList<>();
+                input.readSynapses(start, Math.min(start + synapseBatch, input.getSynapseCount()), synapseRecord, synapse -> synapseList.add(synapse.toSynapse()));
+
+                timer.start();
+                neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+                LOG.info(String.format("Loading batch of synapses took: %s", timer.stop()));
+                timer.reset();
+
+                neo4jImporter.indexBooleanRoiProperties(dataset);
+            }
+
+            final ConnectionRecord connectionRecord = new ConnectionRecord();
+            final long connectionBatch = connectionBatchSize > 0 ? connectionBatchSize : Math.max(1, input.getConnectionCount());
+            for (long start = 0; start < input.getConnectionCount(); start += connectionBatch) {
+                final List<SynapticConnection> connectionsList = new ArrayList<>();
+                input.readConnections(start, Math.min(start + connectionBatch, input.getConnectionCount()), connectionRecord, connection -> connectionsList.add(connection.toSynapticConnection()));
+
+                timer.start();
+                neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+                LOG.info(String.format("Loading batch of synaptic connections took: %s", timer.stop()));
+                timer.reset();
+            }
+
+        } catch (IOException e) {
+            LOG.error("Error reading binary input: " + e);
+            System.exit(1);
+        }
+
+    }
+
     public static MetaInfo readMetaInfoJson(String filepath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        try (BufferedReader reader = new BufferedReader(InputFileReader.open(filepath))) {
             MetaInfo metaInfo = MetaInfo.fromJson(reader);
             LOG.info(String.format("Loaded meta info for dataset: %s", metaInfo));
             return metaInfo;
@@ -464,6 +573,31 @@ public class NeuPrintMain {
                                               boolean addConnectionSetRoiInfoAndWeightHP,
                                               boolean addClusterNames,
                                               LocalDateTime timeStamp) {
+        loadSkeletonsInBatches(arrayOfSwcFiles, skeletonBatchSize, Runtime.getRuntime().availableProcessors(), false, databaseInitialized, neo4jImporter, dataset,
+                dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
+    }
+
+    /**
+     * Reads swc files on a pool of threads and loads them in batches (see {@link ParallelSwcReader}).
+     *
+     * @param arrayOfSwcFiles   {@link File} array of swc files
+     * @param skeletonBatchSize number of skeletons per batch; if not &gt; 0, all skeletons are loaded in one batch
+     * @param skeletonThreads   number of threads reading swc files
+     * @param compactSkeletons  if true, skeletons are stored as array properties on Skeleton nodes without SkelNodes
+     */
+    public static void loadSkeletonsInBatches(File[] arrayOfSwcFiles,
+                                              int skeletonBatchSize,
+                                              int skeletonThreads,
+                                              boolean compactSkeletons,
+                                              boolean databaseInitialized,
+                                              Neo4jImporter neo4jImporter,
+                                              String dataset,
+                                              float dataModelVersion,
+                                              double preHPThreshold,
+                                              double postHPThreshold,
+                                              boolean addConnectionSetRoiInfoAndWeightHP,
+                                              boolean addClusterNames,
+                                              LocalDateTime timeStamp) {
 
         Stopwatch timer = Stopwatch.createUnstarted();
 
@@ -471,32 +605,24 @@ public class NeuPrintMain {
             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
         }
 
-        LOG.info(String.format("Loading skeletons in batches of size %d", skeletonBatchSize));
-
-        int currentFileIndex = 0;
-        while (currentFileIndex < arrayOfSwcFiles.length) {
-            List<Skeleton> skeletonList = new ArrayList<>();
-            int i = 0;
-            while (currentFileIndex < arrayOfSwcFiles.length && i < skeletonBatchSize) {
-                String filepath = arrayOfSwcFiles[currentFileIndex].getAbsolutePath();
-                currentFileIndex++;
-                Long associatedBodyId = setSkeletonAssociatedBodyId(filepath);
-                Skeleton skeleton = new Skeleton();
-                try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-                    skeleton.fromSwc(reader, associatedBodyId);
-                    skeletonList.add(skeleton);
-                    i++;
-                } catch (Exception e) {
-                    LOG.error("Error reading skeleton files: " + e);
-                    System.exit(1);
-                }
-            }
-
-            timer.start();
-            neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
-            LOG.info("Loading all Skeleton nodes took: " + timer.stop());
-            timer.reset();
+        if (skeletonBatchSize > 0) {
+            LOG.info(String.format("Loading skeletons in batches of size %d", skeletonBatchSize));
+        }
 
+        try (ParallelSwcReader swcReader = new ParallelSwcReader(skeletonThreads)) {
+            swcReader.read(arrayOfSwcFiles, skeletonBatchSize, skeletonList -> {
+                timer.start();
+                if (compactSkeletons) {
+                    neo4jImporter.addCompactSkeletons(dataset, skeletonList, timeStamp);
+                } else {
+                    neo4jImporter.addSkeletons(dataset, skeletonList, timeStamp);
+                }
+                LOG.info("Loading all Skeleton nodes took: " + timer.stop());
+                timer.reset();
+            });
+        } catch (Exception e) {
+            LOG.error("Error reading skeleton files: " + e);
+            System.exit(1);
         }
 
     }
@@ -659,10 +785,35 @@ public class NeuPrintMain {
 
         LOG.info("Dataset is: " + dataset);
 
+        if (parameters.convertToBinary != null) {
+            try {
+                BinaryInputWriter.convert(parameters.synapseJson, parameters.connectionJson, new File(parameters.convertToBinary));
+            } catch (Exception e) {
+                LOG.error("Error converting to binary input: " + e);
+                System.exit(1);
+            }
+            return;
+        }
+
+        // suspend the server's transaction triggers for this dataset until the load is done
+        boolean bulkLoadStarted;
+        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+            bulkLoadStarted = neo4jImporter.startBulkLoad(dataset);
+        }
+
+        boolean loadFailed = false;
+
         try {
 
             Stopwatch timer = Stopwatch.createUnstarted();
 
+            if (parameters.binaryInput != null) {
+                try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    loadBinaryInputInBatches(parameters.binaryInput, parameters.synapseBatchSize, parameters.connectionBatchSize, neo4jImporter, dataset, false, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                    databaseInitialized = true;
+                }
+            }
+
             if (parameters.synapseJson != null) {
 
                 if (parameters.synapseBatchSize > 0) {
@@ -791,26 +942,9 @@ public class NeuPrintMain {
                 assert arrayOfSwcFiles != null : "No swc files found.";
                 LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
 
-                if (parameters.skeletonBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadSkeletonsInBatches(arrayOfSwcFiles, parameters.skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        databaseInitialized = true;
-                    }
-                } else {
-
-                    final List<Skeleton> skeletonList = createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
-
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-
-                        if (!databaseInitialized) {
-                            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
-                        }
-
-                        timer.start();
-                        neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
-                        LOG.info("Loading all Skeleton nodes took: " + timer.stop());
-                        timer.reset();
-                    }
+                try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    loadSkeletonsInBatches(arrayOfSwcFiles, parameters.skeletonBatchSize, parameters.skeletonThreads, parameters.compactSkeletons, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                    databaseInitialized = true;
                 }
 
             }
@@ -831,8 +965,30 @@ public class NeuPrintMain {
 
             }
 
+            if (parameters.roiDefinition != null) {
+
+                try (RoiDefinition roiDefinition = RoiDefinition.fromJsonFile(parameters.roiDefinition);
+                     Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    timer.start();
+                    neo4jImporter.assignRois(dataset, roiDefinition, parameters.roiBatchSize);
+                    LOG.info("Assigning ROIs took: " + timer.stop());
+                    timer.reset();
+                }
+
+            }
+
         } catch (Exception e) {
             LOG.error("Error loading data: " + e);
+            loadFailed = true;
+        } finally {
+            if (bulkLoadStarted) {
+                try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    neo4jImporter.endBulkLoad(dataset);
+                }
+            }
+        }
+
+        if (loadFailed) {
             System.exit(1);
         }
 
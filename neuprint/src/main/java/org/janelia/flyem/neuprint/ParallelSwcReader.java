@@ -0,0 +1,145 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.SwcSkeleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reads swc files into {@link SwcSkeleton}s on a pool of worker threads. Skeletons are handed to the caller in batches
+ * and in file order on the calling thread, so that the batches can be written to the database while the workers
+ * parse the next files. Each worker reuses one read buffer for all of its files.
+ */
+public class ParallelSwcReader implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelSwcReader.class);
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[1 << 20]);
+
+    /**
+     * @param threads number of worker threads
+     */
+    public ParallelSwcReader(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required to read swc files.");
+        }
+        this.threads = threads;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "swc-reader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads swc files, passing them to the consumer in batches. The bodyId of each skeleton is taken from the file
+     * name, e.g. 831744.swc.
+     *
+     * @param swcFiles      swc files
+     * @param batchSize     number of skeletons per batch; if not &gt; 0, all skeletons are passed in one batch
+     * @param batchConsumer receives each batch
+     * @throws RuntimeException if a file cannot be read or parsed
+     */
+    public void read(final File[] swcFiles, final int batchSize, final Consumer<List<SwcSkeleton>> batchConsumer) {
+        final int effectiveBatchSize = batchSize > 0 ? batchSize : Math.max(1, swcFiles.length);
+        // parse ahead far enough to keep the workers busy while the caller handles a batch
+        final int readAhead = effectiveBatchSize + 2 * threads;
+
+        final Deque<Future<SwcSkeleton>> pending = new ArrayDeque<>();
+        List<SwcSkeleton> batch = new ArrayList<>(Math.min(effectiveBatchSize, swcFiles.length));
+        int submitted = 0;
+        long rows = 0;
+        final long startTime = System.nanoTime();
+
+        try {
+            for (int next = 0; next < swcFiles.length; next++) {
+                while (submitted < swcFiles.length && submitted < next + readAhead) {
+                    final File swcFile = swcFiles[submitted++];
+                    pending.add(executor.submit(() -> readSwcFile(swcFile)));
+                }
+                final SwcSkeleton skeleton = getResult(pending.remove(), swcFiles[next]);
+                rows += skeleton.getRowCount();
+                batch.add(skeleton);
+                if (batch.size() == effectiveBatchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(effectiveBatchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+            }
+        } finally {
+            for (Future<SwcSkeleton> future : pending) {
+                future.cancel(true);
+            }
+        }
+
+        LOG.info(String.format("Read %d swc files with %d rows on %d threads in %.1f s.",
+                swcFiles.length, rows, threads, (System.nanoTime() - startTime) / 1e9));
+    }
+
+    private SwcSkeleton readSwcFile(final File swcFile) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(swcFile, "r")) {
+            final FileChannel channel = file.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("Swc file is too large: " + swcFile);
+            }
+            byte[] buffer = buffers.get();
+            if (buffer.length < size) {
+                buffer = new byte[(int) Math.max(size, 2L * buffer.length)];
+                buffers.set(buffer);
+            }
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, (int) size);
+            while (byteBuffer.hasRemaining() && channel.read(byteBuffer) != -1) {
+                // read the whole file
+            }
+            return SwcSkeleton.parse(buffer, byteBuffer.position(), bodyIdFromFileName(swcFile));
+        }
+    }
+
+    private static SwcSkeleton getResult(final Future<SwcSkeleton> future, final File swcFile) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error reading skeleton file " + swcFile + ": " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading skeleton file " + swcFile, e);
+        }
+    }
+
+    /**
+     * @param swcFile swc file named after its body, e.g. 831744.swc
+     * @return bodyId
+     */
+    static long bodyIdFromFileName(final File swcFile) {
+        final String name = swcFile.getName();
+        final int extension = name.lastIndexOf('.');
+        return Long.parseLong(extension >= 0 ? name.substring(0, extension) : name);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
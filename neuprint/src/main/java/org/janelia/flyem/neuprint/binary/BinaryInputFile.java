@@ -0,0 +1,203 @@
+package org.janelia.flyem.neuprint.binary;
+
+import org.janelia.flyem.neuprint.json.ConnectionRecord;
+import org.janelia.flyem.neuprint.json.RecordVisitor;
+import org.janelia.flyem.neuprint.json.SynapseRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.CONFIDENCE;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.FIRST_ROI;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.HEADER_BYTES;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.MAGIC;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.POST;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.PRE;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.ROI_BITS;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.ROI_NAMES;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.SECTION_COUNT;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.TYPE;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.VERSION;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.X;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.Y;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.Z;
+
+/**
+ * Memory-mapped reader for the binary loader input described in {@link BinaryInputFormat}. Synapses and connections
+ * are read by index range into reusable records, so a file can be split into ranges (see {@link #rangeStart}) that
+ * are read by parallel workers, each with its own records. Reading is thread-safe.
+ */
+public class BinaryInputFile implements Closeable {
+
+    private final RandomAccessFile file;
+    private final int locationCount;
+    private final int synapseCount;
+    private final long connectionCount;
+    private final int roiWords;
+    private final String[] rois;
+    private final MappedColumn x;
+    private final MappedColumn y;
+    private final MappedColumn z;
+    private final MappedColumn confidence;
+    private final MappedColumn type;
+    private final MappedColumn firstRoi;
+    private final MappedColumn roiBits;
+    private final MappedColumn pre;
+    private final MappedColumn post;
+
+    private BinaryInputFile(final RandomAccessFile file) throws IOException {
+        this.file = file;
+        final FileChannel channel = file.getChannel();
+
+        final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES, channel.size()));
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("Not a neuPrint binary input file.");
+        }
+        final int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary input version " + version + " (expected " + VERSION + ").");
+        }
+        locationCount = header.getInt();
+        synapseCount = header.getInt();
+        connectionCount = header.getLong();
+        final int roiCount = header.getInt();
+        roiWords = header.getInt();
+        final long[] offsets = new long[SECTION_COUNT];
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            offsets[i] = header.getLong();
+        }
+
+        final ByteBuffer roiNames = channel.map(FileChannel.MapMode.READ_ONLY, offsets[ROI_NAMES], offsets[X] - offsets[ROI_NAMES]);
+        rois = new String[roiCount];
+        for (int i = 0; i < roiCount; i++) {
+            final byte[] bytes = new byte[roiNames.getInt()];
+            roiNames.get(bytes);
+            rois[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        x = new MappedColumn(channel, offsets[X], 4L * locationCount);
+        y = new MappedColumn(channel, offsets[Y], 4L * locationCount);
+        z = new MappedColumn(channel, offsets[Z], 4L * locationCount);
+        confidence = new MappedColumn(channel, offsets[CONFIDENCE], 4L * synapseCount);
+        type = new MappedColumn(channel, offsets[TYPE], (synapseCount + 7) / 8);
+        firstRoi = new MappedColumn(channel, offsets[FIRST_ROI], 4L * synapseCount);
+        roiBits = new MappedColumn(channel, offsets[ROI_BITS], 8L * roiWords * synapseCount);
+        pre = new MappedColumn(channel, offsets[PRE], 4L * connectionCount);
+        post = new MappedColumn(channel, offsets[POST], 4L * connectionCount);
+    }
+
+    /**
+     * Opens and maps a binary input file.
+     *
+     * @param file file written by {@link BinaryInputWriter}
+     * @return {@link BinaryInputFile}
+     * @throws IOException if the file cannot be read or is not a binary input file of a supported version
+     */
+    public static BinaryInputFile open(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return new BinaryInputFile(randomAccessFile);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Splits count items into parts of nearly equal size.
+     *
+     * @param count number of items
+     * @param parts number of parts
+     * @param part  part, from 0 to parts (parts gives the end of the last part)
+     * @return index of the first item in the part
+     */
+    public static long rangeStart(final long count, final int parts, final int part) {
+        return count / parts * part + Math.min(part, count % parts);
+    }
+
+    public int getSynapseCount() {
+        return synapseCount;
+    }
+
+    public long getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * @return rois of the dataset, in the order they were first seen in the synapse json
+     */
+    public List<String> getRois() {
+        return Collections.unmodifiableList(Arrays.asList(rois));
+    }
+
+    /**
+     * Reads a range of synapses, passing each to the visitor in the same record. Rois are added with the roi listed
+     * first in the json first, followed by the others in dataset roi order.
+     *
+     * @param start   index of the first synapse
+     * @param end     index after the last synapse
+     * @param record  record to read into
+     * @param visitor receives each synapse
+     */
+    public void readSynapses(final long start, final long end, final SynapseRecord record, final RecordVisitor<SynapseRecord> visitor) {
+        checkRange(start, end, synapseCount);
+        for (long i = start; i < end; i++) {
+            final boolean isPre = (type.getByte(i >>> 3) & (1 << (i & 7))) != 0;
+            record.set(isPre, confidence.getFloat(i), x.getInt(i), y.getInt(i), z.getInt(i));
+            final int first = firstRoi.getInt(i);
+            if (first >= 0) {
+                record.addRoi(rois[first]);
+            }
+            for (int word = 0; word < roiWords; word++) {
+                long bits = roiBits.getLong(i * roiWords + word);
+                while (bits != 0) {
+                    record.addRoi(rois[word * 64 + Long.numberOfTrailingZeros(bits)]);
+                    bits &= bits - 1;
+                }
+            }
+            visitor.visit(record);
+        }
+    }
+
+    /**
+     * Reads a range of connections, passing each to the visitor in the same record.
+     *
+     * @param start   index of the first connection
+     * @param end     index after the last connection
+     * @param record  record to read into
+     * @param visitor receives each connection
+     */
+    public void readConnections(final long start, final long end, final ConnectionRecord record, final RecordVisitor<ConnectionRecord> visitor) {
+        checkRange(start, end, connectionCount);
+        for (long i = start; i < end; i++) {
+            final int preIndex = pre.getInt(i);
+            final int postIndex = post.getInt(i);
+            record.set(x.getInt(preIndex), y.getInt(preIndex), z.getInt(preIndex), x.getInt(postIndex), y.getInt(postIndex), z.getInt(postIndex));
+            visitor.visit(record);
+        }
+    }
+
+    private static void checkRange(final long start, final long end, final long count) {
+        if (start < 0 || end > count || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is outside [0, " + count + ").");
+        }
+    }
+
+    int getLocationCount() {
+        return locationCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.janelia.flyem.neuprint.binary;
+
+/**
+ * Layout of the binary loader input written by {@link BinaryInputWriter} and read by {@link BinaryInputFile}. All
+ * values are big-endian.
+ * <pre>
+ * header
+ *   int    magic ("NPRB")
+ *   int    version
+ *   int    locationCount    number of locations; the first synapseCount are synapses, the rest are connection
+ *                           endpoints that were not listed in the synapse json
+ *   int    synapseCount
+ *   long   connectionCount
+ *   int    roiCount
+ *   int    roiWords         longs per synapse in the roi bitset column
+ *   long[] section offsets  one per section below, each 8-byte aligned
+ * sections
+ *   ROI_NAMES   roiCount length-prefixed UTF-8 roi names; roi index i is bit i of the roi bitsets
+ *   X, Y, Z     int per location
+ *   CONFIDENCE  float per synapse
+ *   TYPE        bit per synapse, 1 for pre (bit i%8 of byte i/8)
+ *   FIRST_ROI   int per synapse: index of the roi listed first in the json (the "super" roi), or -1
+ *   ROI_BITS    roiWords longs per synapse
+ *   PRE, POST   int location index per connection
+ * </pre>
+ */
+final class BinaryInputFormat {
+
+    static final int MAGIC = 0x4E505242;
+    static final int VERSION = 1;
+
+    static final int ROI_NAMES = 0;
+    static final int X = 1;
+    static final int Y = 2;
+    static final int Z = 3;
+    static final int CONFIDENCE = 4;
+    static final int TYPE = 5;
+    static final int FIRST_ROI = 6;
+    static final int ROI_BITS = 7;
+    static final int PRE = 8;
+    static final int POST = 9;
+    static final int SECTION_COUNT = 10;
+
+    static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 4 + 4 + 8 * SECTION_COUNT;
+
+    private BinaryInputFormat() {
+    }
+
+    static long align(final long position) {
+        return (position + 7) & ~7L;
+    }
+
+    static int roiWords(final int roiCount) {
+        return (roiCount + 63) / 64;
+    }
+
+}
@@ -0,0 +1,309 @@
+package org.janelia.flyem.neuprint.binary;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.InputFileReader;
+import org.janelia.flyem.neuprint.json.ConnectionRecord;
+import org.janelia.flyem.neuprint.json.RoiDictionary;
+import org.janelia.flyem.neuprint.json.StreamingJsonDecoder;
+import org.janelia.flyem.neuprint.json.SynapseRecord;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.util.LongIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.CONFIDENCE;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.FIRST_ROI;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.HEADER_BYTES;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.MAGIC;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.POST;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.PRE;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.ROI_BITS;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.ROI_NAMES;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.SECTION_COUNT;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.TYPE;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.VERSION;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.X;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.Y;
+import static org.janelia.flyem.neuprint.binary.BinaryInputFormat.Z;
+
+/**
+ * Converts <a href="http://github.com/janelia-flyem/neuPrint/blob/master/jsonspecs.md" target="_blank">synapse and
+ * connections JSON files</a> into the binary loader input described in {@link BinaryInputFormat}. The json is streamed
+ * into temporary column files next to the output, which are then concatenated; only the index from
+ * {@link Location} keys to location indices, used to turn connection endpoints into location indices, is kept in
+ * memory. Coordinates must therefore be in [{@link Location#MIN_KEY_COORDINATE}, {@link Location#MAX_KEY_COORDINATE}].
+ * <p>
+ * Synapses listed twice at the same location are written once, as the loader merges them into one node anyway.
+ * Connection endpoints that are not in the synapse json are written as extra locations, and are created by the loader
+ * as it does for json input.
+ */
+public class BinaryInputWriter implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryInputWriter.class);
+
+    private final File output;
+    private final Column[] columns = new Column[SECTION_COUNT];
+    private final RoiDictionary roiDictionary = new RoiDictionary();
+    private final LongIntHashMap locationIndices = new LongIntHashMap(1 << 20, -1);
+    private final Column roiLists;
+
+    private int locationCount;
+    private int synapseCount;
+    private long connectionCount;
+    private long duplicateSynapses;
+    private int typeBits;
+
+    private BinaryInputWriter(final File output) throws IOException {
+        this.output = output;
+        final File directory = output.getAbsoluteFile().getParentFile();
+        for (int section = X; section < SECTION_COUNT; section++) {
+            if (section != ROI_BITS) {
+                columns[section] = new Column(directory);
+            }
+        }
+        // roi indices of each synapse until the number of rois, and so the bitset size, is known
+        roiLists = new Column(directory);
+    }
+
+    /**
+     * Converts synapse and connection json into a binary input file.
+     *
+     * @param synapseJson    path to synapse json file (may be gzip-compressed), or null
+     * @param connectionJson path to connections json file (may be gzip-compressed), or null
+     * @param output         binary file to write
+     * @throws IOException        if the json cannot be read or the output cannot be written
+     * @throws JsonParseException if the json is invalid
+     */
+    public static void convert(final String synapseJson, final String connectionJson, final File output) throws IOException {
+        try (BinaryInputWriter writer = new BinaryInputWriter(output)) {
+            if (synapseJson != null) {
+                try (JsonReader reader = new JsonReader(InputFileReader.open(synapseJson))) {
+                    final SynapseRecord record = new SynapseRecord(writer.roiDictionary);
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        StreamingJsonDecoder.readSynapse(reader, record);
+                        writer.addSynapse(record);
+                    }
+                    reader.endArray();
+                }
+            }
+            writer.finishSynapses();
+            if (connectionJson != null) {
+                try (JsonReader reader = new JsonReader(InputFileReader.open(connectionJson))) {
+                    final ConnectionRecord record = new ConnectionRecord();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        StreamingJsonDecoder.readConnection(reader, record);
+                        writer.addConnection(record);
+                    }
+                    reader.endArray();
+                }
+            }
+            writer.write();
+            LOG.info(String.format("Wrote %d synapses, %d connections and %d rois to %s (%d duplicate synapses skipped, %d connection-only locations).",
+                    writer.synapseCount, writer.connectionCount, writer.roiDictionary.size(), output,
+                    writer.duplicateSynapses, writer.locationCount - writer.synapseCount));
+        }
+    }
+
+    private void addSynapse(final SynapseRecord record) throws IOException {
+        final long key = Location.toKey(record.getX(), record.getY(), record.getZ());
+        if (locationIndices.containsKey(key)) {
+            duplicateSynapses++;
+            return;
+        }
+        addLocation(key);
+        columns[CONFIDENCE].out.writeFloat((float) record.getConfidence());
+        if (record.isPre()) {
+            typeBits |= 1 << (synapseCount & 7);
+        }
+        if ((synapseCount & 7) == 7) {
+            columns[TYPE].out.writeByte(typeBits);
+            typeBits = 0;
+        }
+        columns[FIRST_ROI].out.writeInt(record.getRoiCount() > 0 ? record.getRoiIndex(0) : -1);
+        roiLists.out.writeInt(record.getRoiCount());
+        for (int i = 0; i < record.getRoiCount(); i++) {
+            roiLists.out.writeInt(record.getRoiIndex(i));
+        }
+        synapseCount++;
+    }
+
+    private void finishSynapses() throws IOException {
+        if ((synapseCount & 7) != 0) {
+            columns[TYPE].out.writeByte(typeBits);
+        }
+    }
+
+    private void addConnection(final ConnectionRecord record) throws IOException {
+        columns[PRE].out.writeInt(indexOf(Location.toKey(record.getPreX(), record.getPreY(), record.getPreZ())));
+        columns[POST].out.writeInt(indexOf(Location.toKey(record.getPostX(), record.getPostY(), record.getPostZ())));
+        connectionCount++;
+    }
+
+    private int indexOf(final long key) throws IOException {
+        final int index = locationIndices.get(key);
+        return index >= 0 ? index : addLocation(key);
+    }
+
+    private int addLocation(final long key) throws IOException {
+        if (locationCount == Integer.MAX_VALUE) {
+            throw new IOException("Too many locations for the binary input format.");
+        }
+        columns[X].out.writeInt((int) Location.keyX(key));
+        columns[Y].out.writeInt((int) Location.keyY(key));
+        columns[Z].out.writeInt((int) Location.keyZ(key));
+        locationIndices.put(key, locationCount);
+        return locationCount++;
+    }
+
+    private void write() throws IOException {
+        for (Column column : columns) {
+            if (column != null) {
+                column.out.close();
+            }
+        }
+        roiLists.out.close();
+
+        final long[] offsets = new long[SECTION_COUNT];
+        final int roiWords = BinaryInputFormat.roiWords(roiDictionary.size());
+        try (CountingOutput out = new CountingOutput(output)) {
+            out.padTo(HEADER_BYTES);
+
+            offsets[ROI_NAMES] = out.position;
+            for (int i = 0; i < roiDictionary.size(); i++) {
+                final byte[] bytes = roiDictionary.getRoi(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            for (int section = X; section < SECTION_COUNT; section++) {
+                out.padTo(BinaryInputFormat.align(out.position));
+                offsets[section] = out.position;
+                if (section == ROI_BITS) {
+                    writeRoiBits(out, roiWords);
+                } else {
+                    out.copy(columns[section].file);
+                }
+            }
+        }
+
+        try (RandomAccessFile header = new RandomAccessFile(output, "rw")) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(locationCount);
+            header.writeInt(synapseCount);
+            header.writeLong(connectionCount);
+            header.writeInt(roiDictionary.size());
+            header.writeInt(roiWords);
+            for (long offset : offsets) {
+                header.writeLong(offset);
+            }
+        }
+    }
+
+    private void writeRoiBits(final CountingOutput out, final int roiWords) throws IOException {
+        final long[] words = new long[roiWords];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(roiLists.file), 1 << 20))) {
+            for (int i = 0; i < synapseCount; i++) {
+                final int roiCount = in.readInt();
+                for (int j = 0; j < roiCount; j++) {
+                    final int roi = in.readInt();
+                    words[roi >>> 6] |= 1L << (roi & 63);
+                }
+                for (int word = 0; word < roiWords; word++) {
+                    out.writeLong(words[word]);
+                    words[word] = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Column column : columns) {
+            if (column != null) {
+                column.close();
+            }
+        }
+        roiLists.close();
+    }
+
+    /**
+     * Temporary file holding one column while the json is read.
+     */
+    private static class Column implements Closeable {
+
+        private final File file;
+        private final DataOutputStream out;
+
+        Column(final File directory) throws IOException {
+            file = File.createTempFile("neuprint-column-", ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20));
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(file.toPath());
+        }
+
+    }
+
+    private static class CountingOutput implements Closeable {
+
+        private final DataOutputStream out;
+        private long position;
+
+        CountingOutput(final File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20));
+        }
+
+        void writeInt(final int value) throws IOException {
+            out.writeInt(value);
+            position += 4;
+        }
+
+        void writeLong(final long value) throws IOException {
+            out.writeLong(value);
+            position += 8;
+        }
+
+        void write(final byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void padTo(final long newPosition) throws IOException {
+            while (position < newPosition) {
+                out.writeByte(0);
+                position++;
+            }
+        }
+
+        void copy(final File file) throws IOException {
+            position += Files.copy(file.toPath(), out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.janelia.flyem.neuprint.binary;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of one section of a {@link BinaryInputFile}. Sections larger than a single mapping can hold
+ * are mapped in 1 GB chunks; values are at most 8 bytes and aligned to their size, so none spans two chunks.
+ */
+class MappedColumn {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer[] chunks;
+
+    MappedColumn(final FileChannel channel, final long offset, final long length) throws IOException {
+        chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            final long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(1L << CHUNK_SHIFT, length - start));
+        }
+    }
+
+    byte getByte(final long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    int getInt(final long index) {
+        final long position = index << 2;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    float getFloat(final long index) {
+        final long position = index << 2;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getFloat((int) (position & CHUNK_MASK));
+    }
+
+    long getLong(final long index) {
+        final long position = index << 3;
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & CHUNK_MASK));
+    }
+
+}
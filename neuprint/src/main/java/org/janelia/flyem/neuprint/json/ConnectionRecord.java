@@ -0,0 +1,66 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+/**
+ * Reusable buffer for one synaptic connection decoded by {@link StreamingJsonDecoder}.
+ */
+public class ConnectionRecord {
+
+    final long[] preLocation = new long[3];
+    final long[] postLocation = new long[3];
+
+    /**
+     * Sets the values of this record, for decoders of other input formats.
+     *
+     * @param preX  x coordinate of presynaptic location
+     * @param preY  y coordinate of presynaptic location
+     * @param preZ  z coordinate of presynaptic location
+     * @param postX x coordinate of postsynaptic location
+     * @param postY y coordinate of postsynaptic location
+     * @param postZ z coordinate of postsynaptic location
+     */
+    public void set(final long preX, final long preY, final long preZ, final long postX, final long postY, final long postZ) {
+        preLocation[0] = preX;
+        preLocation[1] = preY;
+        preLocation[2] = preZ;
+        postLocation[0] = postX;
+        postLocation[1] = postY;
+        postLocation[2] = postZ;
+    }
+
+    public long getPreX() {
+        return preLocation[0];
+    }
+
+    public long getPreY() {
+        return preLocation[1];
+    }
+
+    public long getPreZ() {
+        return preLocation[2];
+    }
+
+    public long getPostX() {
+        return postLocation[0];
+    }
+
+    public long getPostY() {
+        return postLocation[1];
+    }
+
+    public long getPostZ() {
+        return postLocation[2];
+    }
+
+    /**
+     * @return a {@link SynapticConnection} with the values of this record
+     */
+    public SynapticConnection toSynapticConnection() {
+        return new SynapticConnection(
+                new Location(preLocation[0], preLocation[1], preLocation[2]),
+                new Location(postLocation[0], postLocation[1], postLocation[2]));
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Soma;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reusable buffer for one neuron/segment decoded by {@link StreamingJsonDecoder}. Rois are held as indices into the
+ * decoder's {@link RoiDictionary}; synapse locations are held as consecutive x, y, z coordinates in one array.
+ */
+public class NeuronRecord {
+
+    private final RoiDictionary roiDictionary;
+    long id;
+    String status;
+    String name;
+    String type;
+    String instance;
+    String primaryNeurite;
+    String majorInput;
+    String majorOutput;
+    String clonalUnit;
+    String neurotransmitter;
+    String property;
+    boolean hasSize;
+    long size;
+    final RoiIndexList rois = new RoiIndexList();
+    boolean hasSoma;
+    final long[] somaLocation = new long[3];
+    double somaRadius;
+    long[] synapseLocations = new long[3 * 64];
+    int synapseLocationCount;
+
+    public NeuronRecord(final RoiDictionary roiDictionary) {
+        this.roiDictionary = roiDictionary;
+    }
+
+    void clear() {
+        status = null;
+        name = null;
+        type = null;
+        instance = null;
+        primaryNeurite = null;
+        majorInput = null;
+        majorOutput = null;
+        clonalUnit = null;
+        neurotransmitter = null;
+        property = null;
+        hasSize = false;
+        rois.clear();
+        hasSoma = false;
+        synapseLocationCount = 0;
+    }
+
+    void addRoi(final String roi) {
+        rois.add(roiDictionary.indexOf(roi));
+    }
+
+    /**
+     * @return offset in the synapse location array at which the next location is written
+     */
+    int nextSynapseLocationOffset() {
+        final int offset = 3 * synapseLocationCount++;
+        if (offset + 3 > synapseLocations.length) {
+            synapseLocations = Arrays.copyOf(synapseLocations, synapseLocations.length * 2);
+        }
+        return offset;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getInstance() {
+        return instance;
+    }
+
+    public String getPrimaryNeurite() {
+        return primaryNeurite;
+    }
+
+    public String getMajorInput() {
+        return majorInput;
+    }
+
+    public String getMajorOutput() {
+        return majorOutput;
+    }
+
+    public String getClonalUnit() {
+        return clonalUnit;
+    }
+
+    public String getNeurotransmitter() {
+        return neurotransmitter;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public boolean hasSize() {
+        return hasSize;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getRoiCount() {
+        return rois.size();
+    }
+
+    public int getRoiIndex(final int i) {
+        return rois.get(i);
+    }
+
+    public String getRoi(final int i) {
+        return roiDictionary.getRoi(rois.get(i));
+    }
+
+    public boolean hasSoma() {
+        return hasSoma;
+    }
+
+    public long[] getSomaLocation() {
+        return somaLocation;
+    }
+
+    public double getSomaRadius() {
+        return somaRadius;
+    }
+
+    public int getSynapseLocationCount() {
+        return synapseLocationCount;
+    }
+
+    /**
+     * @return synapse locations as consecutive x, y, z coordinates; only the first 3 * synapseLocationCount values
+     * are set. Duplicate locations are kept.
+     */
+    public long[] getSynapseLocations() {
+        return synapseLocations;
+    }
+
+    /**
+     * @return a {@link Neuron} with the values of this record
+     */
+    public Neuron toNeuron() {
+        final Soma soma = hasSoma ? new Soma(new Location(somaLocation[0], somaLocation[1], somaLocation[2]), somaRadius) : null;
+        final Set<Location> synapseLocationSet = new HashSet<>();
+        for (int i = 0; i < 3 * synapseLocationCount; i += 3) {
+            synapseLocationSet.add(new Location(synapseLocations[i], synapseLocations[i + 1], synapseLocations[i + 2]));
+        }
+        return new Neuron(id, status, name, type, instance,
+                          primaryNeurite, majorInput, majorOutput, clonalUnit, neurotransmitter, property,
+                          hasSize ? size : null, rois.toRoiSet(roiDictionary), soma, synapseLocationSet);
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.janelia.flyem.neuprint.json;
+
+/**
+ * Receives each record decoded by {@link StreamingJsonDecoder}. The record is a buffer that is overwritten by the next
+ * record, so visitors must copy anything they keep.
+ *
+ * @param <R> record type
+ */
+@FunctionalInterface
+public interface RecordVisitor<R> {
+
+    void visit(R record);
+
+}
@@ -0,0 +1,46 @@
+package org.janelia.flyem.neuprint.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a small integer index to each roi name seen by the streaming decoders so that records can hold their rois
+ * as indices instead of strings. Indices are assigned in the order rois are first seen.
+ */
+public class RoiDictionary {
+
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> rois = new ArrayList<>();
+
+    /**
+     * @param roi roi name
+     * @return index of the roi, assigned if the roi has not been seen before
+     */
+    public int indexOf(final String roi) {
+        Integer index = indices.get(roi);
+        if (index == null) {
+            index = rois.size();
+            indices.put(roi, index);
+            rois.add(roi);
+        }
+        return index;
+    }
+
+    /**
+     * @param index roi index
+     * @return roi name
+     */
+    public String getRoi(final int index) {
+        return rois.get(index);
+    }
+
+    /**
+     * @return number of distinct rois seen
+     */
+    public int size() {
+        return rois.size();
+    }
+
+}
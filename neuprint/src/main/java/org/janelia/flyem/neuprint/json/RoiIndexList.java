@@ -0,0 +1,48 @@
+package org.janelia.flyem.neuprint.json;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Growable list of distinct roi indices that keeps the order in which rois were added (order of rois matters for
+ * figuring out super-level rois).
+ */
+class RoiIndexList {
+
+    private int[] indices = new int[8];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(final int index) {
+        for (int i = 0; i < size; i++) {
+            if (indices[i] == index) {
+                return;
+            }
+        }
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        indices[size++] = index;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(final int i) {
+        return indices[i];
+    }
+
+    Set<String> toRoiSet(final RoiDictionary roiDictionary) {
+        final Set<String> rois = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            rois.add(roiDictionary.getRoi(indices[i]));
+        }
+        return rois;
+    }
+
+}
@@ -0,0 +1,370 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Decodes synapse, connection and neuron json directly from a {@link JsonReader} into reusable records, without
+ * building Gson trees or model objects. Accepts the same input as {@link SynapseAdapter}, {@link ConnectionsAdapter}
+ * and {@link NeuronAdapter} and reports invalid input with the same messages; unknown properties and null values are
+ * skipped.
+ */
+public class StreamingJsonDecoder {
+
+    private static final String TYPE_KEY = "type";
+    private static final String CONFIDENCE_KEY = "confidence";
+    private static final String LOCATION_KEY = "location";
+    private static final String ROIS_KEY = "rois";
+    private static final String PRE_KEY = "pre";
+    private static final String POST_KEY = "post";
+    private static final String ID_KEY = "id";
+    private static final String STATUS_KEY = "status";
+    private static final String NAME_KEY = "name";
+    private static final String INSTANCE_KEY = "instance";
+    private static final String PRIMARY_NEURITE_KEY = "primaryNeurite";
+    private static final String MAJOR_INPUT_KEY = "majorInput";
+    private static final String MAJOR_OUTPUT_KEY = "majorOutput";
+    private static final String CLONAL_UNIT_KEY = "clonalUnit";
+    private static final String NEUROTRANSMITTER_KEY = "neurotransmitter";
+    private static final String PROPERTY_KEY = "property";
+    private static final String SIZE_KEY = "size";
+    private static final String SOMA_KEY = "soma";
+    private static final String RADIUS_KEY = "radius";
+    private static final String SYNAPSE_SET_KEY = "synapseSet";
+
+    /**
+     * Decodes a json array of synapses, passing each to the visitor in the same record.
+     *
+     * @param reader  reader positioned before the array
+     * @param record  record to decode into
+     * @param visitor receives each synapse
+     * @return number of synapses decoded
+     * @throws IOException        if the json cannot be read
+     * @throws JsonParseException if a synapse is invalid
+     */
+    public static long forEachSynapse(final JsonReader reader, final SynapseRecord record, final RecordVisitor<SynapseRecord> visitor) throws IOException {
+        long count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readSynapse(reader, record);
+            visitor.visit(record);
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    /**
+     * Decodes a json array of synaptic connections, passing each to the visitor in the same record.
+     *
+     * @param reader  reader positioned before the array
+     * @param record  record to decode into
+     * @param visitor receives each connection
+     * @return number of connections decoded
+     * @throws IOException        if the json cannot be read
+     * @throws JsonParseException if a connection is invalid
+     */
+    public static long forEachConnection(final JsonReader reader, final ConnectionRecord record, final RecordVisitor<ConnectionRecord> visitor) throws IOException {
+        long count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readConnection(reader, record);
+            visitor.visit(record);
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    /**
+     * Decodes a json array of neurons/segments, passing each to the visitor in the same record.
+     *
+     * @param reader  reader positioned before the array
+     * @param record  record to decode into
+     * @param visitor receives each neuron
+     * @return number of neurons decoded
+     * @throws IOException        if the json cannot be read
+     * @throws JsonParseException if a neuron is invalid
+     */
+    public static long forEachNeuron(final JsonReader reader, final NeuronRecord record, final RecordVisitor<NeuronRecord> visitor) throws IOException {
+        long count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            readNeuron(reader, record);
+            visitor.visit(record);
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    /**
+     * Decodes the next json object in the reader as a synapse.
+     *
+     * @param reader reader positioned before the object
+     * @param record record to decode into
+     * @throws IOException        if the json cannot be read
+     * @throws JsonParseException if the synapse is invalid
+     */
+    public static void readSynapse(final JsonReader reader, final SynapseRecord record) throws IOException {
+        record.clear();
+        boolean hasType = false;
+        boolean hasLocation = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (key) {
+                case TYPE_KEY:
+                    final String type = reader.nextString();
+                    if (type.equals("pre")) {
+                        record.pre = true;
+                    } else if (type.equals("post")) {
+                        record.pre = false;
+                    } else {
+                        throw new JsonParseException("Synapse type must be 'pre' or 'post'.");
+                    }
+                    hasType = true;
+                    break;
+                case CONFIDENCE_KEY:
+                    record.confidence = reader.nextDouble();
+                    if (record.confidence < 0 || record.confidence > 1) {
+                        throw new JsonParseException("Synapse confidence must be between 0.0 and 1.0.");
+                    }
+                    break;
+                case LOCATION_KEY:
+                    readLocation(reader, record.location, 0);
+                    hasLocation = true;
+                    break;
+                case ROIS_KEY:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        record.addRoi(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasType) {
+            throw new JsonParseException("Synapse type property missing.");
+        }
+        if (!hasLocation) {
+            throw new JsonParseException("Synapse location property missing.");
+        }
+    }
+
+    /**
+     * Decodes the next json object in the reader as a synaptic connection.
+     *
+     * @param reader reader positioned before the object
+     * @param record record to decode into
+     * @throws IOException        if the json cannot be read
+     * @throws JsonParseException if the connection is invalid
+     */
+    public static void readConnection(final JsonReader reader, final ConnectionRecord record) throws IOException {
+        boolean hasPre = false;
+        boolean hasPost = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (key) {
+                case PRE_KEY:
+                    readLocation(reader, record.preLocation, 0);
+                    hasPre = true;
+                    break;
+                case POST_KEY:
+                    readLocation(reader, record.postLocation, 0);
+                    hasPost = true;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasPre) {
+            throw new JsonParseException("Connection must have 'pre' property.");
+        }
+        if (!hasPost) {
+            throw new JsonParseException("Connection must have 'post' property.");
+        }
+    }
+
+    /**
+     * Decodes the next json object in the reader as a neuron/segment.
+     *
+     * @param reader reader positioned before the object
+     * @param record record to decode into
+     * @throws IOException        if the json cannot be read
+     * @throws JsonParseException if the neuron is invalid
+     */
+    public static void readNeuron(final JsonReader reader, final NeuronRecord record) throws IOException {
+        record.clear();
+        boolean hasId = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (key) {
+                case ID_KEY:
+                    record.id = readInteger(reader, "Neuron ID must be a number.", "Neuron ID must be integer value.");
+                    hasId = true;
+                    break;
+                case STATUS_KEY:
+                    record.status = reader.nextString();
+                    break;
+                case NAME_KEY:
+                    record.name = reader.nextString();
+                    break;
+                case TYPE_KEY:
+                    record.type = reader.nextString();
+                    break;
+                case INSTANCE_KEY:
+                    record.instance = reader.nextString();
+                    break;
+                case PRIMARY_NEURITE_KEY:
+                    record.primaryNeurite = reader.nextString();
+                    break;
+                case MAJOR_INPUT_KEY:
+                    record.majorInput = reader.nextString();
+                    break;
+                case MAJOR_OUTPUT_KEY:
+                    record.majorOutput = reader.nextString();
+                    break;
+                case CLONAL_UNIT_KEY:
+                    record.clonalUnit = reader.nextString();
+                    break;
+                case NEUROTRANSMITTER_KEY:
+                    record.neurotransmitter = reader.nextString();
+                    break;
+                case PROPERTY_KEY:
+                    record.property = reader.nextString();
+                    break;
+                case SIZE_KEY:
+                    try {
+                        record.size = reader.nextLong();
+                    } catch (NumberFormatException nfe) {
+                        // the Gson adapter truncates fractional sizes
+                        record.size = (long) reader.nextDouble();
+                    }
+                    record.hasSize = true;
+                    break;
+                case ROIS_KEY:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        record.addRoi(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case SOMA_KEY:
+                    readSoma(reader, record);
+                    break;
+                case SYNAPSE_SET_KEY:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readLocation(reader, record.synapseLocations, record.nextSynapseLocationOffset());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasId) {
+            throw new JsonParseException("Neuron must have 'id' property.");
+        }
+    }
+
+    private static void readSoma(final JsonReader reader, final NeuronRecord record) throws IOException {
+        boolean hasLocation = false;
+        boolean hasRadius = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (key) {
+                case LOCATION_KEY:
+                    readLocation(reader, record.somaLocation, 0);
+                    hasLocation = true;
+                    break;
+                case RADIUS_KEY:
+                    try {
+                        record.somaRadius = reader.nextDouble();
+                    } catch (NumberFormatException nfe) {
+                        throw new JsonParseException("Radius must be a number.");
+                    }
+                    hasRadius = true;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (hasLocation && !hasRadius) {
+            throw new JsonParseException("Soma must have 'radius' property.");
+        } else if (!hasLocation && hasRadius) {
+            throw new JsonParseException("Soma must have 'location' property.");
+        }
+        // a soma object with neither property is treated as no soma
+        record.hasSoma = hasLocation;
+    }
+
+    /**
+     * Reads a three-dimensional integer location into three consecutive values of an array.
+     */
+    private static void readLocation(final JsonReader reader, final long[] location, final int offset) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            throw new JsonParseException("Location must be three-dimensional.");
+        }
+        reader.beginArray();
+        int i = 0;
+        while (reader.hasNext()) {
+            if (i == 3) {
+                throw new JsonParseException("Location must be three-dimensional.");
+            }
+            location[offset + i++] = readInteger(reader, "Location coordinates must be a number.", "Location coordinates must be integer values.");
+        }
+        reader.endArray();
+        if (i != 3) {
+            throw new JsonParseException("Location must be three-dimensional.");
+        }
+    }
+
+    private static long readInteger(final JsonReader reader, final String notANumberMessage, final String notAnIntegerMessage) throws IOException {
+        try {
+            return reader.nextLong();
+        } catch (NumberFormatException nfe) {
+            // the value is still unread: tell non-numbers from fractional numbers
+            try {
+                reader.nextDouble();
+            } catch (NumberFormatException notANumber) {
+                throw new JsonParseException(notANumberMessage);
+            }
+            throw new JsonParseException(notAnIntegerMessage);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+
+/**
+ * Reusable buffer for one synapse decoded by {@link StreamingJsonDecoder}. Rois are held as indices into the
+ * decoder's {@link RoiDictionary} in the order listed in the json.
+ */
+public class SynapseRecord {
+
+    private final RoiDictionary roiDictionary;
+    boolean pre;
+    double confidence;
+    final long[] location = new long[3];
+    final RoiIndexList rois = new RoiIndexList();
+
+    public SynapseRecord(final RoiDictionary roiDictionary) {
+        this.roiDictionary = roiDictionary;
+    }
+
+    void clear() {
+        confidence = 0.0D;
+        rois.clear();
+    }
+
+    /**
+     * Sets the values of this record and clears its rois, for decoders of other input formats.
+     *
+     * @param pre        true for a presynaptic density, false for a postsynaptic density
+     * @param confidence confidence of prediction
+     * @param x          x coordinate of location
+     * @param y          y coordinate of location
+     * @param z          z coordinate of location
+     */
+    public void set(final boolean pre, final double confidence, final long x, final long y, final long z) {
+        clear();
+        this.pre = pre;
+        this.confidence = confidence;
+        location[0] = x;
+        location[1] = y;
+        location[2] = z;
+    }
+
+    /**
+     * Adds a roi after those already added; rois added twice are kept once.
+     *
+     * @param roi roi name
+     */
+    public void addRoi(final String roi) {
+        rois.add(roiDictionary.indexOf(roi));
+    }
+
+    public boolean isPre() {
+        return pre;
+    }
+
+    public String getType() {
+        return pre ? "pre" : "post";
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public long getX() {
+        return location[0];
+    }
+
+    public long getY() {
+        return location[1];
+    }
+
+    public long getZ() {
+        return location[2];
+    }
+
+    public int getRoiCount() {
+        return rois.size();
+    }
+
+    public int getRoiIndex(final int i) {
+        return rois.get(i);
+    }
+
+    public String getRoi(final int i) {
+        return roiDictionary.getRoi(rois.get(i));
+    }
+
+    /**
+     * @return a {@link Synapse} with the values of this record
+     */
+    public Synapse toSynapse() {
+        return new Synapse(getType(), confidence, new Location(location[0], location[1], location[2]), rois.toRoiSet(roiDictionary));
+    }
+
+}
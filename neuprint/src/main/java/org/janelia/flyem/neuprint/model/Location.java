@@ -7,6 +7,24 @@ import org.neo4j.driver.v1.types.Point;
  * A class representing a 3D location.
  */
 public class Location {
+
+    /**
+     * Number of bits per axis in a location key.
+     */
+    public static final int KEY_BITS_PER_AXIS = 21;
+
+    /**
+     * Smallest coordinate that can be encoded in a location key.
+     */
+    public static final long MIN_KEY_COORDINATE = -(1L << (KEY_BITS_PER_AXIS - 1));
+
+    /**
+     * Largest coordinate that can be encoded in a location key.
+     */
+    public static final long MAX_KEY_COORDINATE = (1L << (KEY_BITS_PER_AXIS - 1)) - 1;
+
+    private static final long KEY_AXIS_MASK = (1L << KEY_BITS_PER_AXIS) - 1;
+
     private Long[] location;
 
     /**
@@ -68,6 +86,75 @@ public class Location {
         return Values.point(9157, location[0], location[1], location[2]).asPoint();
     }
 
+    /**
+     * @return location packed into a single long (see {@link #toKey(long, long, long)})
+     * @throws IllegalArgumentException if a coordinate cannot be encoded
+     */
+    public long getKey() {
+        return toKey(location[0], location[1], location[2]);
+    }
+
+    /**
+     * Packs a location into a single long with 21 bits per axis: x in bits 42-62, y in bits 21-41 and z in bits
+     * 0-20, each offset by -{@link #MIN_KEY_COORDINATE}. Keys are non-negative, distinct for distinct locations, and
+     * can be stored in primitive maps instead of {@link Location} objects or strings.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return location key
+     * @throws IllegalArgumentException if a coordinate is not in [{@link #MIN_KEY_COORDINATE}, {@link #MAX_KEY_COORDINATE}]
+     */
+    public static long toKey(long x, long y, long z) {
+        if (!canEncode(x, y, z)) {
+            throw new IllegalArgumentException("Location " + x + ":" + y + ":" + z + " cannot be encoded as a key; coordinates must be in ["
+                    + MIN_KEY_COORDINATE + ", " + MAX_KEY_COORDINATE + "].");
+        }
+        return ((x - MIN_KEY_COORDINATE) << (2 * KEY_BITS_PER_AXIS)) | ((y - MIN_KEY_COORDINATE) << KEY_BITS_PER_AXIS) | (z - MIN_KEY_COORDINATE);
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return true if the location can be encoded as a key
+     */
+    public static boolean canEncode(long x, long y, long z) {
+        return (((x - MIN_KEY_COORDINATE) | (y - MIN_KEY_COORDINATE) | (z - MIN_KEY_COORDINATE)) & ~KEY_AXIS_MASK) == 0;
+    }
+
+    /**
+     * @param key location key
+     * @return x coordinate of the location
+     */
+    public static long keyX(long key) {
+        return (key >>> (2 * KEY_BITS_PER_AXIS)) + MIN_KEY_COORDINATE;
+    }
+
+    /**
+     * @param key location key
+     * @return y coordinate of the location
+     */
+    public static long keyY(long key) {
+        return ((key >>> KEY_BITS_PER_AXIS) & KEY_AXIS_MASK) + MIN_KEY_COORDINATE;
+    }
+
+    /**
+     * @param key location key
+     * @return z coordinate of the location
+     */
+    public static long keyZ(long key) {
+        return (key & KEY_AXIS_MASK) + MIN_KEY_COORDINATE;
+    }
+
+    /**
+     * @param key location key
+     * @return location encoded by the key
+     */
+    public static Location fromKey(long key) {
+        return new Location(keyX(key), keyY(key), keyZ(key));
+    }
+
     @Override
     public String toString() {
         return this.getX() + ":" + this.getY() + ":" + this.getZ();
@@ -216,5 +216,14 @@ public class SkelNode {
         this.children.add(child);
     }
 
+    /**
+     * Sets the parent of this SkelNode.
+     *
+     * @param parent {@link SkelNode}
+     */
+    void setParent(SkelNode parent) {
+        this.parent = parent;
+    }
+
 }
 
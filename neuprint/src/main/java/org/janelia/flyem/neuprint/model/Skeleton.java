@@ -2,6 +2,7 @@ package org.janelia.flyem.neuprint.model;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -88,7 +89,8 @@ public class Skeleton {
     }
 
     /**
-     * Acquires a list of SkelNodes from a {@link BufferedReader} reading from an swc file.
+     * Acquires a list of SkelNodes from a {@link BufferedReader} reading from an swc file (see {@link SwcSkeleton}
+     * for the accepted format).
      * The SkelNodes and bodyId of the neuron are added to the Skeleton object.
      *
      * @param reader {@link BufferedReader}
@@ -97,58 +99,35 @@ public class Skeleton {
      * @throws IOException when swc file is not readable
      */
     public void fromSwc(final BufferedReader reader, final Long associatedBodyId, final String uuid) throws IOException {
-        String swcLine;
-        List<SkelNode> skelNodeList = new ArrayList<>();
-        List<Integer> location;
-        Double radius;
-        int type;
-        SkelNode parent;
-
-        while ((swcLine = reader.readLine()) != null) {
-
-            if (!swcLine.startsWith("#")) {
-
-                String[] lineComponents = swcLine.split(" ");
-
-                location = new ArrayList<>();
-                for (int i = 2; i < 5; i++) {
-                    int coordinate;
-                    try {
-                        coordinate = Integer.parseInt(lineComponents[i]);
-                    } catch (NumberFormatException nfe) {
-                        coordinate = Math.round(Float.parseFloat(lineComponents[i]));
-                    }
-                    location.add(coordinate);
-                }
-
-                radius = Double.parseDouble(lineComponents[5]);
-
-                type = Integer.parseInt(lineComponents[1]);
-
-                int parentIndex = Integer.parseInt(lineComponents[6]);
-
-                int rowNumber = Integer.parseInt(lineComponents[0]);
-
-                SkelNode skelNode;
-                if (parentIndex != -1) {
-                    parent = skelNodeList.get(parentIndex - 1);
-                    skelNode = new SkelNode(associatedBodyId, location, radius, type, parent, rowNumber);
-                    parent.addChild(skelNode);
-
-                } else {
-                    skelNode = new SkelNode(associatedBodyId, location, radius, type, null, rowNumber);
-                }
-
-                skelNodeList.add(skelNode);
-
-            } else if (swcLine.startsWith("#${\"mutation id\"")) {
-                this.mutationId = Optional.of(Long.parseLong(swcLine.replaceAll("[^0-9]", "")));
+        final StringBuilder swc = new StringBuilder();
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            swc.append(buffer, 0, read);
+        }
+        final byte[] bytes = swc.toString().getBytes(StandardCharsets.UTF_8);
+        final SwcSkeleton swcSkeleton = SwcSkeleton.parse(bytes, bytes.length, associatedBodyId);
+
+        final List<SkelNode> skelNodeList = new ArrayList<>(swcSkeleton.getRowCount());
+        for (int i = 0; i < swcSkeleton.getRowCount(); i++) {
+            final List<Integer> location = new ArrayList<>(3);
+            location.add(swcSkeleton.getX(i));
+            location.add(swcSkeleton.getY(i));
+            location.add(swcSkeleton.getZ(i));
+            skelNodeList.add(new SkelNode(associatedBodyId, location, swcSkeleton.getRadius(i), swcSkeleton.getType(i), null, swcSkeleton.getRowNumber(i)));
+        }
+        // parents may be listed after their children
+        for (int i = 0; i < swcSkeleton.getRowCount(); i++) {
+            if (swcSkeleton.getParentIndex(i) != -1) {
+                final SkelNode parent = skelNodeList.get(swcSkeleton.getParentIndex(i));
+                skelNodeList.get(i).setParent(parent);
+                parent.addChild(skelNodeList.get(i));
             }
-
         }
 
         this.skelNodeList = skelNodeList;
         this.associatedBodyId = associatedBodyId;
+        this.mutationId = swcSkeleton.getMutationId();
         this.mutationUuid = Optional.ofNullable(uuid);
 
     }
@@ -0,0 +1,367 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.janelia.flyem.neuprint.util.LongIntHashMap;
+import org.neo4j.driver.v1.Values;
+import org.neo4j.driver.v1.types.Point;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * A skeleton read from an swc file and held in primitive arrays (one entry per row) instead of {@link SkelNode}
+ * objects. Used for bulk loading, where the tree structure is only needed as parent/child pairs.
+ * <p>
+ * Columns may be separated by any number of spaces or tabs. Lines starting with "#" are comments, except that a
+ * "#${"mutation id": ...}" comment sets the mutation id. Coordinates are rounded to integers.
+ */
+public class SwcSkeleton {
+
+    private static final String MUTATION_ID_PREFIX = "#${\"mutation id\"";
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final long associatedBodyId;
+    private int rowCount;
+    private int[] rowNumber;
+    private int[] type;
+    private int[] x;
+    private int[] y;
+    private int[] z;
+    private double[] radius;
+    private int[] parentRowNumber;
+    private int[] parentIndex;
+    private Optional<Long> mutationId = Optional.empty();
+
+    private SwcSkeleton(final long associatedBodyId, final int expectedRows) {
+        this.associatedBodyId = associatedBodyId;
+        final int capacity = Math.max(16, expectedRows);
+        rowNumber = new int[capacity];
+        type = new int[capacity];
+        x = new int[capacity];
+        y = new int[capacity];
+        z = new int[capacity];
+        radius = new double[capacity];
+        parentRowNumber = new int[capacity];
+    }
+
+    /**
+     * Parses the contents of an swc file.
+     *
+     * @param swc              swc file contents (ASCII or UTF-8)
+     * @param length           number of bytes of swc to parse
+     * @param associatedBodyId bodyId of neuron
+     * @return {@link SwcSkeleton}
+     * @throws IOException if a row is malformed or refers to a parent row that is not in the file
+     */
+    public static SwcSkeleton parse(final byte[] swc, final int length, final long associatedBodyId) throws IOException {
+        // rows are usually about 40 bytes long
+        final SwcSkeleton skeleton = new SwcSkeleton(associatedBodyId, length / 40);
+        final Tokenizer tokenizer = new Tokenizer(swc, length);
+        while (tokenizer.nextLine()) {
+            if (tokenizer.atComment()) {
+                final String comment = tokenizer.restOfLine();
+                if (comment.startsWith(MUTATION_ID_PREFIX)) {
+                    skeleton.mutationId = Optional.of(Long.parseLong(comment.replaceAll("[^0-9]", "")));
+                }
+            } else {
+                skeleton.addRow(tokenizer.nextInt(), tokenizer.nextInt(), tokenizer.nextCoordinate(), tokenizer.nextCoordinate(),
+                        tokenizer.nextCoordinate(), tokenizer.nextDouble(), tokenizer.nextInt());
+                tokenizer.skipLine();
+            }
+        }
+        skeleton.resolveParents();
+        return skeleton;
+    }
+
+    /**
+     * Converts a {@link Skeleton} to primitive arrays.
+     *
+     * @param skeleton {@link Skeleton}
+     * @return {@link SwcSkeleton}
+     */
+    public static SwcSkeleton fromSkeleton(final Skeleton skeleton) {
+        final SwcSkeleton swcSkeleton = new SwcSkeleton(skeleton.getAssociatedBodyId(), skeleton.getSkelNodeList().size());
+        for (SkelNode skelNode : skeleton.getSkelNodeList()) {
+            swcSkeleton.addRow(skelNode.getRowNumber(), skelNode.getType(), skelNode.getX(), skelNode.getY(), skelNode.getZ(), skelNode.getRadius(),
+                    skelNode.getParent() == null ? -1 : skelNode.getParent().getRowNumber());
+        }
+        try {
+            swcSkeleton.resolveParents();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Parent of a skel node is not part of skeleton " + skeleton.getAssociatedBodyId(), e);
+        }
+        swcSkeleton.mutationId = skeleton.getMutationId();
+        return swcSkeleton;
+    }
+
+    private void addRow(final int rowNumber, final int type, final int x, final int y, final int z, final double radius, final int parentRowNumber) {
+        if (rowCount == this.rowNumber.length) {
+            final int capacity = rowCount * 2;
+            this.rowNumber = Arrays.copyOf(this.rowNumber, capacity);
+            this.type = Arrays.copyOf(this.type, capacity);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.parentRowNumber = Arrays.copyOf(this.parentRowNumber, capacity);
+        }
+        this.rowNumber[rowCount] = rowNumber;
+        this.type[rowCount] = type;
+        this.x[rowCount] = x;
+        this.y[rowCount] = y;
+        this.z[rowCount] = z;
+        this.radius[rowCount] = radius;
+        this.parentRowNumber[rowCount] = parentRowNumber;
+        rowCount++;
+    }
+
+    private void resolveParents() throws IOException {
+        parentIndex = new int[rowCount];
+        boolean sequential = true;
+        for (int i = 0; i < rowCount && sequential; i++) {
+            sequential = rowNumber[i] == i + 1;
+        }
+        LongIntHashMap rowIndices = null;
+        if (!sequential) {
+            rowIndices = new LongIntHashMap(rowCount, -1);
+            for (int i = 0; i < rowCount; i++) {
+                rowIndices.put(rowNumber[i], i);
+            }
+        }
+        for (int i = 0; i < rowCount; i++) {
+            final int parentRow = parentRowNumber[i];
+            if (parentRow == -1) {
+                parentIndex[i] = -1;
+            } else {
+                final int index = sequential ? (parentRow >= 1 && parentRow <= rowCount ? parentRow - 1 : -1) : rowIndices.get(parentRow);
+                if (index < 0) {
+                    throw new IOException("Parent row " + parentRow + " of row " + rowNumber[i] + " is not in the swc file.");
+                }
+                parentIndex[i] = index;
+            }
+        }
+    }
+
+    /**
+     * @return bodyId of neuron associated with this skeleton
+     */
+    public long getAssociatedBodyId() {
+        return associatedBodyId;
+    }
+
+    public Optional<Long> getMutationId() {
+        return mutationId;
+    }
+
+    /**
+     * @return number of rows (skel nodes) in this skeleton
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getRowNumber(final int index) {
+        return rowNumber[index];
+    }
+
+    public int getType(final int index) {
+        return type[index];
+    }
+
+    public int getX(final int index) {
+        return x[index];
+    }
+
+    public int getY(final int index) {
+        return y[index];
+    }
+
+    public int getZ(final int index) {
+        return z[index];
+    }
+
+    public double getRadius(final int index) {
+        return radius[index];
+    }
+
+    /**
+     * @param index row index
+     * @return row number of the parent row, or -1 for a root
+     */
+    public int getParentRowNumber(final int index) {
+        return parentRowNumber[index];
+    }
+
+    /**
+     * @param index row index
+     * @return index of the parent row, or -1 for a root
+     */
+    public int getParentIndex(final int index) {
+        return parentIndex[index];
+    }
+
+    /**
+     * @param index row index
+     * @return location of the row as a neo4j {@link Point}
+     */
+    public Point getLocationAsPoint(final int index) {
+        return Values.point(9157, x[index], y[index], z[index]).asPoint();
+    }
+
+    /**
+     * Returns the skelNodeId of a row for use in neo4j, as given by {@link SkelNode#getSkelNodeId(String)}.
+     *
+     * @param dataset relevant dataset
+     * @param index   row index
+     * @return skelNodeId
+     */
+    public String getSkelNodeId(final String dataset, final int index) {
+        return dataset + ":" + associatedBodyId + ":" + x[index] + ":" + y[index] + ":" + z[index] + ":" + rowNumber[index];
+    }
+
+    /**
+     * Splits swc bytes into numeric columns without creating a string per line or column.
+     */
+    private static class Tokenizer {
+
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+        private int line;
+
+        Tokenizer(final byte[] bytes, final int end) {
+            this.bytes = bytes;
+            this.end = end;
+        }
+
+        /**
+         * Moves to the first column of the next non-blank line.
+         *
+         * @return false at the end of the input
+         */
+        boolean nextLine() {
+            while (position < end) {
+                line++;
+                skipBlanks();
+                if (position < end && bytes[position] != '\n') {
+                    return true;
+                }
+                position++;
+            }
+            return false;
+        }
+
+        boolean atComment() {
+            return bytes[position] == '#';
+        }
+
+        String restOfLine() {
+            final int start = position;
+            skipLine();
+            int lineEnd = position;
+            while (lineEnd > start && (bytes[lineEnd - 1] == '\n' || bytes[lineEnd - 1] == '\r')) {
+                lineEnd--;
+            }
+            return new String(bytes, start, lineEnd - start, StandardCharsets.UTF_8);
+        }
+
+        void skipLine() {
+            while (position < end && bytes[position] != '\n') {
+                position++;
+            }
+            if (position < end) {
+                position++;
+            }
+        }
+
+        int nextInt() throws IOException {
+            skipBlanks();
+            final int start = position;
+            final double value = nextDouble();
+            if (value != (int) value) {
+                throw new IOException("Expected an integer but found '" + token(start) + "' on line " + line + " of swc.");
+            }
+            return (int) value;
+        }
+
+        int nextCoordinate() throws IOException {
+            final double value = nextDouble();
+            if (value == Math.rint(value) && Math.abs(value) <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return Math.round((float) value);
+        }
+
+        double nextDouble() throws IOException {
+            skipBlanks();
+            final int start = position;
+            if (position >= end || bytes[position] == '\n') {
+                throw new IOException("Missing column on line " + line + " of swc (expected 7 columns).");
+            }
+
+            final boolean negative = bytes[position] == '-';
+            if (negative || bytes[position] == '+') {
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean fraction = false;
+            for (; position < end; position++) {
+                final byte b = bytes[position];
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fraction) {
+                        fractionDigits++;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+
+            if (digits > 0 && digits <= 15 && (position >= end || isBlank(bytes[position]) || bytes[position] == '\n')) {
+                // exact: both the mantissa and the power of ten are exactly representable, so the quotient is
+                // rounded once, as by Double.parseDouble
+                final double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                return negative ? -value : value;
+            }
+
+            // exponents, long mantissas and anything invalid
+            while (position < end && !isBlank(bytes[position]) && bytes[position] != '\n') {
+                position++;
+            }
+            try {
+                return Double.parseDouble(token(start));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number '" + token(start) + "' on line " + line + " of swc.");
+            }
+        }
+
+        private String token(final int start) {
+            int tokenEnd = start;
+            while (tokenEnd < end && !isBlank(bytes[tokenEnd]) && bytes[tokenEnd] != '\n') {
+                tokenEnd++;
+            }
+            return new String(bytes, start, tokenEnd - start, StandardCharsets.UTF_8);
+        }
+
+        private void skipBlanks() {
+            while (position < end && isBlank(bytes[position])) {
+                position++;
+            }
+        }
+
+        private static boolean isBlank(final byte b) {
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.janelia.flyem.neuprint.roi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ROIs defined as a list of axis-aligned boxes. A box contains a location if min &lt;= location &lt; max on every
+ * axis. An ROI may consist of several boxes, and boxes of different ROIs may overlap. JSON format:
+ * <pre>
+ * {"type": "boxes", "boxes": [{"roi": "roiA", "min": [0, 0, 0], "max": [100, 100, 100]}, ...]}
+ * </pre>
+ */
+public class BoxRoiDefinition implements RoiDefinition {
+
+    static final String TYPE = "boxes";
+
+    private final List<String> boxRois = new ArrayList<>();
+    private final List<long[]> boxMins = new ArrayList<>();
+    private final List<long[]> boxMaxes = new ArrayList<>();
+
+    /**
+     * Adds a box to the definition.
+     *
+     * @param roi ROI name
+     * @param min inclusive minimum corner [x,y,z]
+     * @param max exclusive maximum corner [x,y,z]
+     */
+    public void addBox(String roi, long[] min, long[] max) {
+        if (min.length != 3 || max.length != 3) {
+            throw new IllegalArgumentException("Box corners must have 3 coordinates.");
+        }
+        boxRois.add(roi);
+        boxMins.add(min.clone());
+        boxMaxes.add(max.clone());
+    }
+
+    @Override
+    public Set<String> getRoiNames() {
+        return new TreeSet<>(boxRois);
+    }
+
+    @Override
+    public List<String> getRoisAt(long x, long y, long z) {
+        List<String> rois = Collections.emptyList();
+        for (int i = 0; i < boxRois.size(); i++) {
+            long[] min = boxMins.get(i);
+            long[] max = boxMaxes.get(i);
+            if (x >= min[0] && x < max[0] && y >= min[1] && y < max[1] && z >= min[2] && z < max[2]) {
+                if (rois.isEmpty()) {
+                    rois = new ArrayList<>(1);
+                }
+                if (!rois.contains(boxRois.get(i))) {
+                    rois.add(boxRois.get(i));
+                }
+            }
+        }
+        return rois;
+    }
+
+    static BoxRoiDefinition fromJson(JsonObject definition) {
+        BoxRoiDefinition boxRoiDefinition = new BoxRoiDefinition();
+        for (JsonElement boxElement : definition.getAsJsonArray("boxes")) {
+            JsonObject box = boxElement.getAsJsonObject();
+            boxRoiDefinition.addBox(box.get("roi").getAsString(), toLongArray(box, "min"), toLongArray(box, "max"));
+        }
+        return boxRoiDefinition;
+    }
+
+    static long[] toLongArray(JsonObject object, String memberName) {
+        List<Long> values = new ArrayList<>();
+        for (JsonElement value : object.getAsJsonArray(memberName)) {
+            values.add(value.getAsLong());
+        }
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.janelia.flyem.neuprint.roi;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ROIs defined by a dense volume of unsigned integer labels stored as raw little-endian voxels with x varying fastest,
+ * then y, then z. The file is memory-mapped rather than read, so volumes larger than the heap can be used. Voxel
+ * (i, j, k) covers the locations offset + [i, j, k] * voxelSize up to (but excluding) the next voxel. Label 0 and
+ * labels without an ROI name are outside every ROI. JSON format:
+ * <pre>
+ * {"type": "labelVolume", "path": "rois.raw", "bytesPerVoxel": 2, "dimensions": [nx, ny, nz],
+ *  "offset": [0, 0, 0], "voxelSize": 32, "labels": {"1": "roiA", "2": "roiB"}}
+ * </pre>
+ */
+public class LabelVolumeRoiDefinition implements RoiDefinition {
+
+    static final String TYPE = "labelVolume";
+
+    // mapped regions are limited to 2GB; use 1GB chunks, which are a multiple of every supported voxel size
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] chunks;
+    private final int bytesPerVoxel;
+    private final long[] dimensions;
+    private final long[] offset;
+    private final long voxelSize;
+    private final Map<Long, List<String>> labelToRois = new HashMap<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param volumeFile    raw label volume
+     * @param bytesPerVoxel 1, 2, 4 or 8
+     * @param dimensions    number of voxels along [x,y,z]
+     * @param offset        location of the corner of voxel (0, 0, 0)
+     * @param voxelSize     size of a voxel in location units
+     * @param labelToRoi    ROI name for each label
+     * @throws IOException if the volume cannot be mapped
+     */
+    public LabelVolumeRoiDefinition(File volumeFile, int bytesPerVoxel, long[] dimensions, long[] offset, long voxelSize, Map<Long, String> labelToRoi) throws IOException {
+        if (bytesPerVoxel != 1 && bytesPerVoxel != 2 && bytesPerVoxel != 4 && bytesPerVoxel != 8) {
+            throw new IllegalArgumentException("bytesPerVoxel must be 1, 2, 4 or 8. Was " + bytesPerVoxel + ".");
+        }
+        if (dimensions.length != 3 || offset.length != 3 || voxelSize < 1) {
+            throw new IllegalArgumentException("dimensions and offset must have 3 values and voxelSize must be positive.");
+        }
+
+        this.bytesPerVoxel = bytesPerVoxel;
+        this.dimensions = dimensions.clone();
+        this.offset = offset.clone();
+        this.voxelSize = voxelSize;
+        for (Map.Entry<Long, String> label : labelToRoi.entrySet()) {
+            this.labelToRois.put(label.getKey(), Collections.singletonList(label.getValue()));
+        }
+
+        long expectedBytes = dimensions[0] * dimensions[1] * dimensions[2] * bytesPerVoxel;
+        this.file = new RandomAccessFile(volumeFile, "r");
+        long fileBytes = file.length();
+        if (fileBytes < expectedBytes) {
+            file.close();
+            throw new IllegalArgumentException("Label volume " + volumeFile + " has " + fileBytes + " bytes but its dimensions require " + expectedBytes + ".");
+        }
+
+        FileChannel channel = file.getChannel();
+        this.chunks = new MappedByteBuffer[(int) ((expectedBytes + CHUNK_MASK) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << CHUNK_BITS, expectedBytes - start));
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Override
+    public Set<String> getRoiNames() {
+        Set<String> roiNames = new TreeSet<>();
+        labelToRois.values().forEach(roiNames::addAll);
+        return roiNames;
+    }
+
+    @Override
+    public List<String> getRoisAt(long x, long y, long z) {
+        long i = Math.floorDiv(x - offset[0], voxelSize);
+        long j = Math.floorDiv(y - offset[1], voxelSize);
+        long k = Math.floorDiv(z - offset[2], voxelSize);
+        if (i < 0 || j < 0 || k < 0 || i >= dimensions[0] || j >= dimensions[1] || k >= dimensions[2]) {
+            return Collections.emptyList();
+        }
+        long label = getLabel(((k * dimensions[1] + j) * dimensions[0] + i) * bytesPerVoxel);
+        return label == 0 ? Collections.emptyList() : labelToRois.getOrDefault(label, Collections.emptyList());
+    }
+
+    private long getLabel(long byteOffset) {
+        MappedByteBuffer chunk = chunks[(int) (byteOffset >>> CHUNK_BITS)];
+        int position = (int) (byteOffset & CHUNK_MASK);
+        switch (bytesPerVoxel) {
+            case 1:
+                return chunk.get(position) & 0xFFL;
+            case 2:
+                return chunk.getShort(position) & 0xFFFFL;
+            case 4:
+                return chunk.getInt(position) & 0xFFFFFFFFL;
+            default:
+                return chunk.getLong(position);
+        }
+    }
+
+    @Override
+    public int getMortonShift() {
+        // locations in the same voxel get the same code, so neighbouring lookups touch neighbouring pages
+        return 63 - Long.numberOfLeadingZeros(voxelSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    static LabelVolumeRoiDefinition fromJson(JsonObject definition, File baseDirectory) throws IOException {
+        File volumeFile = new File(definition.get("path").getAsString());
+        if (!volumeFile.isAbsolute()) {
+            volumeFile = new File(baseDirectory, volumeFile.getPath());
+        }
+        Map<Long, String> labelToRoi = new HashMap<>();
+        for (Map.Entry<String, JsonElement> label : definition.getAsJsonObject("labels").entrySet()) {
+            labelToRoi.put(Long.parseLong(label.getKey()), label.getValue().getAsString());
+        }
+        return new LabelVolumeRoiDefinition(volumeFile,
+                definition.has("bytesPerVoxel") ? definition.get("bytesPerVoxel").getAsInt() : 4,
+                BoxRoiDefinition.toLongArray(definition, "dimensions"),
+                definition.has("offset") ? BoxRoiDefinition.toLongArray(definition, "offset") : new long[]{0, 0, 0},
+                definition.has("voxelSize") ? definition.get("voxelSize").getAsLong() : 1,
+                labelToRoi);
+    }
+
+}
@@ -0,0 +1,262 @@
+package org.janelia.flyem.neuprint.roi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns synapse locations to the ROIs of a {@link RoiDefinition}. Locations are collected in primitive arrays and
+ * looked up in Morton (Z-order) order so that consecutive lookups into a label volume touch nearby memory. The ROIs a
+ * synapse is currently in can be collected with its location, so that only the differences need to be written. The
+ * differences are also kept in primitive arrays, so that memory stays proportional to the number of changed synapses
+ * without an object per synapse.
+ */
+public class RoiAssignment {
+
+    private static final int MORTON_BITS_PER_AXIS = 21;
+    private static final long MORTON_AXIS_MAX = (1L << MORTON_BITS_PER_AXIS) - 1;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final String[] NO_ROIS = new String[0];
+
+    private long[] x = new long[1024];
+    private long[] y = new long[1024];
+    private long[] z = new long[1024];
+    private String[][] currentRois = new String[1024][];
+    private int count = 0;
+    // one array per distinct combination of current ROIs, shared by all synapses in it
+    private final Map<List<String>, String[]> roiCombinations = new HashMap<>();
+
+    /**
+     * Adds a synapse location to be assigned.
+     *
+     * @param locationX x coordinate
+     * @param locationY y coordinate
+     * @param locationZ z coordinate
+     */
+    public void addLocation(long locationX, long locationY, long locationZ) {
+        addLocation(locationX, locationY, locationZ, NO_ROIS);
+    }
+
+    /**
+     * Adds a synapse location to be assigned, along with the ROIs the synapse is currently in.
+     *
+     * @param locationX   x coordinate
+     * @param locationY   y coordinate
+     * @param locationZ   z coordinate
+     * @param synapseRois names of the ROIs the synapse is currently in
+     */
+    public void addLocation(long locationX, long locationY, long locationZ, List<String> synapseRois) {
+        addLocation(locationX, locationY, locationZ, synapseRois.isEmpty() ? NO_ROIS : roiCombinations.computeIfAbsent(synapseRois, rois -> rois.toArray(NO_ROIS)));
+    }
+
+    private void addLocation(long locationX, long locationY, long locationZ, String[] synapseRois) {
+        if (count == x.length) {
+            int newLength = x.length * 2;
+            x = Arrays.copyOf(x, newLength);
+            y = Arrays.copyOf(y, newLength);
+            z = Arrays.copyOf(z, newLength);
+            currentRois = Arrays.copyOf(currentRois, newLength);
+        }
+        x[count] = locationX;
+        y[count] = locationY;
+        z[count] = locationZ;
+        currentRois[count] = synapseRois;
+        count++;
+    }
+
+    public int getLocationCount() {
+        return count;
+    }
+
+    /**
+     * Compares the ROIs of the definition that contain each location with the ROIs the synapse is currently in. A
+     * current ROI that the definition does not contain the location in, including any ROI that the definition does not
+     * define, is removed.
+     *
+     * @param roiDefinition {@link RoiDefinition}
+     * @return locations to add to and to remove from each ROI, in Morton order
+     */
+    public Changes getChanges(RoiDefinition roiDefinition) {
+        Changes changes = new Changes();
+        for (int i : getMortonOrder(roiDefinition.getMortonShift())) {
+            List<String> rois = roiDefinition.getRoisAt(x[i], y[i], z[i]);
+            String[] synapseRois = currentRois[i];
+            if (rois.isEmpty() && synapseRois.length == 0) {
+                continue;
+            }
+            for (String roi : rois) {
+                if (!contains(synapseRois, roi)) {
+                    changes.additions.computeIfAbsent(roi, r -> new Locations()).add(x[i], y[i], z[i]);
+                }
+            }
+            for (String roi : synapseRois) {
+                if (!rois.contains(roi)) {
+                    changes.removals.computeIfAbsent(roi, r -> new Locations()).add(x[i], y[i], z[i]);
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static boolean contains(String[] rois, String roi) {
+        for (String synapseRoi : rois) {
+            if (synapseRoi.equals(roi)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param shift number of bits coordinates are shifted right by before interleaving
+     * @return indices of the collected locations sorted by Morton code
+     */
+    int[] getMortonOrder(int shift) {
+        long[] codes = new long[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = mortonCode(x[i] >> shift, y[i] >> shift, z[i] >> shift);
+            order[i] = i;
+        }
+        sortByCode(codes, order, 0, count - 1);
+        return order;
+    }
+
+    /**
+     * Interleaves the low 21 bits of each coordinate (x in the lowest bit). Negative coordinates are treated as 0 and
+     * larger coordinates are clamped, which only affects the lookup order.
+     *
+     * @param mortonX x coordinate
+     * @param mortonY y coordinate
+     * @param mortonZ z coordinate
+     * @return Morton code
+     */
+    static long mortonCode(long mortonX, long mortonY, long mortonZ) {
+        return spreadBits(mortonX) | (spreadBits(mortonY) << 1) | (spreadBits(mortonZ) << 2);
+    }
+
+    private static long spreadBits(long value) {
+        long v = Math.min(Math.max(value, 0), MORTON_AXIS_MAX);
+        v = (v | (v << 32)) & 0x1F00000000FFFFL;
+        v = (v | (v << 16)) & 0x1F0000FF0000FFL;
+        v = (v | (v << 8)) & 0x100F00F00F00F00FL;
+        v = (v | (v << 4)) & 0x10C30C30C30C30C3L;
+        v = (v | (v << 2)) & 0x1249249249249249L;
+        return v;
+    }
+
+    // quicksort of codes that applies the same swaps to order, avoiding boxed comparators for large synapse counts
+    private static void sortByCode(long[] codes, int[] order, int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            int middle = (low + high) >>> 1;
+            if (codes[middle] < codes[low]) {
+                swap(codes, order, middle, low);
+            }
+            if (codes[high] < codes[low]) {
+                swap(codes, order, high, low);
+            }
+            if (codes[high] < codes[middle]) {
+                swap(codes, order, high, middle);
+            }
+            long pivot = codes[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (codes[i] < pivot) {
+                    i++;
+                }
+                while (codes[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(codes, order, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller part to bound the stack depth
+            if (j - low < high - i) {
+                sortByCode(codes, order, low, j);
+                low = i;
+            } else {
+                sortByCode(codes, order, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && codes[j] < codes[j - 1]; j--) {
+                swap(codes, order, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(long[] codes, int[] order, int i, int j) {
+        long code = codes[i];
+        codes[i] = codes[j];
+        codes[j] = code;
+        int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+    }
+
+    /**
+     * Locations to add to and to remove from each ROI. ROIs with no changes are absent.
+     */
+    public static class Changes {
+
+        private final Map<String, Locations> additions = new TreeMap<>();
+        private final Map<String, Locations> removals = new TreeMap<>();
+
+        public Map<String, Locations> getAdditions() {
+            return additions;
+        }
+
+        public Map<String, Locations> getRemovals() {
+            return removals;
+        }
+
+    }
+
+    /**
+     * Synapse locations stored as consecutive x, y and z coordinates in one primitive array.
+     */
+    public static class Locations {
+
+        private long[] coordinates = new long[3 * 16];
+        private int size = 0;
+
+        void add(long locationX, long locationY, long locationZ) {
+            if (3 * size == coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+            }
+            coordinates[3 * size] = locationX;
+            coordinates[3 * size + 1] = locationY;
+            coordinates[3 * size + 2] = locationZ;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Boxes a range of locations, e.g. as the parameter of one batch.
+         *
+         * @param from index of the first location
+         * @param to   index after the last location
+         * @return [x,y,z] locations from index from to index to - 1
+         */
+        public List<List<Long>> getLocations(int from, int to) {
+            List<List<Long>> locations = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                locations.add(Arrays.asList(coordinates[3 * i], coordinates[3 * i + 1], coordinates[3 * i + 2]));
+            }
+            return locations;
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.janelia.flyem.neuprint.roi;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A local definition of ROIs in the coordinate space of the synapse locations. Definitions are read from a JSON file
+ * whose "type" is either "labelVolume" (see {@link LabelVolumeRoiDefinition}) or "boxes" (see {@link BoxRoiDefinition}).
+ */
+public interface RoiDefinition extends AutoCloseable {
+
+    /**
+     * @return names of all ROIs in the definition
+     */
+    Set<String> getRoiNames();
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return names of the ROIs containing the location (empty if none)
+     */
+    List<String> getRoisAt(long x, long y, long z);
+
+    /**
+     * @return number of bits coordinates are shifted right by before computing the Morton code used to order lookups
+     */
+    default int getMortonShift() {
+        return 0;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Reads an ROI definition from a JSON file. Relative paths in the definition are resolved against the
+     * directory of the JSON file.
+     *
+     * @param filepath path to ROI definition JSON
+     * @return {@link RoiDefinition}
+     * @throws IOException if the definition or label volume cannot be read
+     */
+    static RoiDefinition fromJsonFile(String filepath) throws IOException {
+        File file = new File(filepath);
+        JsonObject definition;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            definition = new JsonParser().parse(reader).getAsJsonObject();
+        }
+        String type = definition.has("type") ? definition.get("type").getAsString() : null;
+        if (LabelVolumeRoiDefinition.TYPE.equals(type)) {
+            return LabelVolumeRoiDefinition.fromJson(definition, file.getAbsoluteFile().getParentFile());
+        } else if (BoxRoiDefinition.TYPE.equals(type)) {
+            return BoxRoiDefinition.fromJson(definition);
+        } else {
+            throw new IllegalArgumentException("ROI definition type must be '" + LabelVolumeRoiDefinition.TYPE + "' or '" + BoxRoiDefinition.TYPE + "'. Was " + type + ".");
+        }
+    }
+
+}
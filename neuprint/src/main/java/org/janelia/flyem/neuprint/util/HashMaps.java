@@ -0,0 +1,40 @@
+package org.janelia.flyem.neuprint.util;
+
+/**
+ * Hashing and sizing shared by the primitive hash maps.
+ */
+final class HashMaps {
+
+    static final double LOAD_FACTOR = 0.75;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private HashMaps() {
+    }
+
+    static int slot(long key, int mask) {
+        // murmur3 finalizer; location keys and ids are clustered, so the low bits alone would collide
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    static int grow(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Primitive hash map cannot grow beyond " + MAX_CAPACITY + " slots.");
+        }
+        return capacity << 1;
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        final long capacity = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many entries for a primitive hash map: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+
+}
@@ -0,0 +1,205 @@
+package org.janelia.flyem.neuprint.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive longs to primitive longs (linear probing, no boxing), e.g. from
+ * {@link org.janelia.flyem.neuprint.model.Location} keys to bodyIds. Uses two long arrays instead of a node and two
+ * boxed values per entry. Lookups of absent keys return the missing value given at construction. Not thread-safe.
+ */
+public class LongLongHashMap {
+
+    private static final long EMPTY = 0L;
+
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private boolean hasEmptyKey;
+    private long emptyKeyValue;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    /**
+     * @param expectedSize number of entries the map holds without resizing
+     * @param missingValue value returned for absent keys
+     */
+    public LongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(HashMaps.tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @param key   key
+     * @param value value
+     * @return previous value of the key, or the missing value if it had none
+     */
+    public long put(long key, long value) {
+        if (key == EMPTY) {
+            final long previous = hasEmptyKey ? emptyKeyValue : missingValue;
+            if (!hasEmptyKey) {
+                hasEmptyKey = true;
+                size++;
+            }
+            emptyKeyValue = value;
+            return previous;
+        }
+        int slot = HashMaps.slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                final long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(HashMaps.grow(keys.length));
+        }
+        return missingValue;
+    }
+
+    /**
+     * @param key   key
+     * @param value value stored if the key is absent
+     * @return value of the key if it was present (and is kept), otherwise the missing value
+     */
+    public long putIfAbsent(long key, long value) {
+        final long current = get(key);
+        if (current == missingValue && !containsKey(key)) {
+            put(key, value);
+        }
+        return current;
+    }
+
+    /**
+     * @param key key
+     * @return value of the key, or the missing value if it is absent
+     */
+    public long get(long key) {
+        if (key == EMPTY) {
+            return hasEmptyKey ? emptyKeyValue : missingValue;
+        }
+        int slot = HashMaps.slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return hasEmptyKey;
+        }
+        int slot = HashMaps.slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param key key
+     * @return value the key had, or the missing value if it was absent
+     */
+    public long remove(long key) {
+        if (key == EMPTY) {
+            if (!hasEmptyKey) {
+                return missingValue;
+            }
+            hasEmptyKey = false;
+            size--;
+            return emptyKeyValue;
+        }
+        int slot = HashMaps.slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return missingValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final long previous = values[slot];
+        // shift following entries of the probe sequence back so that lookups do not stop at the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            final int home = HashMaps.slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param consumer receives each key and its value, in no particular order
+     */
+    public void forEach(LongLongConsumer consumer) {
+        if (hasEmptyKey) {
+            consumer.accept(EMPTY, emptyKeyValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        hasEmptyKey = false;
+        size = 0;
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = HashMaps.slot(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * HashMaps.LOAD_FACTOR);
+    }
+
+    @FunctionalInterface
+    public interface LongLongConsumer {
+
+        void accept(long key, long value);
+
+    }
+
+}
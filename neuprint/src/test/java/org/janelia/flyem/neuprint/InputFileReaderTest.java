@@ -0,0 +1,96 @@
+package org.janelia.flyem.neuprint;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+public class InputFileReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // one-, two-, three- and four-byte UTF-8 characters so that small regions and chunks split characters
+    private static final String TEXT;
+
+    static {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("{\"name\": \"aé中😀\", \"id\": ").append(i).append("}\n");
+        }
+        TEXT = text.toString();
+    }
+
+    @Test
+    public void shouldReadMappedFileAcrossRegions() throws IOException {
+
+        File file = temporaryFolder.newFile("input.json");
+        Files.write(file.toPath(), TEXT.getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals(TEXT, readAll(InputFileReader.open(file, 7, InputFileReader.DEFAULT_CHUNK_BYTES)));
+        Assert.assertEquals(TEXT, readAll(InputFileReader.open(file.getPath())));
+
+    }
+
+    @Test
+    public void shouldReadGzippedFileWhateverItsName() throws IOException {
+
+        File file = temporaryFolder.newFile("input.json");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Assert.assertEquals(TEXT, readAll(InputFileReader.open(file, InputFileReader.DEFAULT_REGION_BYTES, 5)));
+        Assert.assertEquals(TEXT, readAll(InputFileReader.open(file.getPath())));
+
+    }
+
+    @Test
+    public void shouldStopDecompressingWhenClosedEarly() throws IOException {
+
+        File file = temporaryFolder.newFile("input.json.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (Reader reader = InputFileReader.open(file, InputFileReader.DEFAULT_REGION_BYTES, 16)) {
+            char[] buffer = new char[10];
+            Assert.assertEquals(10, reader.read(buffer));
+            Assert.assertEquals("{\"name\": \"", new String(buffer));
+        }
+
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void shouldReportMalformedInput() throws IOException {
+
+        File file = temporaryFolder.newFile("input.json");
+        Files.write(file.toPath(), new byte[]{'[', (byte) 0xC3, ']'});
+
+        readAll(InputFileReader.open(file.getPath()));
+
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (Reader in = reader) {
+            char[] buffer = new char[1000];
+            int count;
+            while ((count = in.read(buffer, 0, buffer.length)) >= 0) {
+                text.append(buffer, 0, count);
+            }
+        }
+        return text.toString();
+    }
+
+}
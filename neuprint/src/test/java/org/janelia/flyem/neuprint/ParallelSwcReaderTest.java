@@ -0,0 +1,62 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.model.SwcSkeleton;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelSwcReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldPassSkeletonsInFileOrderAndBatches() {
+
+        File[] swcFiles = new File[]{
+                new File("src/test/resources/101.swc"),
+                new File("src/test/resources/831744.swc"),
+                new File("src/test/resources/102.swc")};
+
+        List<Integer> batchSizes = new ArrayList<>();
+        List<SwcSkeleton> skeletons = new ArrayList<>();
+        try (ParallelSwcReader reader = new ParallelSwcReader(2)) {
+            reader.read(swcFiles, 2, batch -> {
+                batchSizes.add(batch.size());
+                skeletons.addAll(batch);
+            });
+        }
+
+        Assert.assertEquals(2, (int) batchSizes.get(0));
+        Assert.assertEquals(1, (int) batchSizes.get(1));
+        Assert.assertEquals(101L, skeletons.get(0).getAssociatedBodyId());
+        Assert.assertEquals(831744L, skeletons.get(1).getAssociatedBodyId());
+        Assert.assertEquals(102L, skeletons.get(2).getAssociatedBodyId());
+        Assert.assertEquals(50, skeletons.get(0).getRowCount());
+        Assert.assertEquals(1679, skeletons.get(1).getRowCount());
+
+    }
+
+    @Test
+    public void shouldReportFileThatCannotBeParsed() throws IOException {
+
+        File swcFile = temporaryFolder.newFile("7.swc");
+        Files.write(swcFile.toPath(), "1 0 1 2\n".getBytes());
+
+        try (ParallelSwcReader reader = new ParallelSwcReader(1)) {
+            reader.read(new File[]{swcFile}, 0, batch -> Assert.fail("no batch expected"));
+            Assert.fail("expected RuntimeException");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("7.swc"));
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.janelia.flyem.neuprint.binary;
+
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.json.ConnectionRecord;
+import org.janelia.flyem.neuprint.json.RoiDictionary;
+import org.janelia.flyem.neuprint.json.SynapseRecord;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BinaryInputFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadBackSynapsesAndConnectionsConvertedFromJson() throws IOException {
+
+        String synapseJson = "src/test/resources/synapseList.json";
+        String connectionJson = "src/test/resources/connectionsList.json";
+        File output = temporaryFolder.newFile("dataset.bin");
+        BinaryInputWriter.convert(synapseJson, connectionJson, output);
+        // only the output is left in the directory
+        Assert.assertEquals(1, output.getParentFile().listFiles().length);
+
+        List<Synapse> expectedSynapses = NeuPrintMain.readSynapsesJson(synapseJson);
+        List<SynapticConnection> expectedConnections = NeuPrintMain.readConnectionsJson(connectionJson);
+
+        try (BinaryInputFile input = BinaryInputFile.open(output)) {
+
+            Assert.assertEquals(expectedSynapses.size(), input.getSynapseCount());
+            Assert.assertEquals(expectedConnections.size(), input.getConnectionCount());
+
+            // read in three ranges as parallel workers would
+            List<Synapse> synapses = new ArrayList<>();
+            SynapseRecord synapseRecord = new SynapseRecord(new RoiDictionary());
+            for (int part = 0; part < 3; part++) {
+                input.readSynapses(BinaryInputFile.rangeStart(input.getSynapseCount(), 3, part), BinaryInputFile.rangeStart(input.getSynapseCount(), 3, part + 1),
+                        synapseRecord, synapse -> synapses.add(synapse.toSynapse()));
+            }
+
+            Assert.assertEquals(expectedSynapses.size(), synapses.size());
+            for (int i = 0; i < synapses.size(); i++) {
+                Synapse expected = expectedSynapses.get(i);
+                Synapse synapse = synapses.get(i);
+                Assert.assertEquals(expected.getType(), synapse.getType());
+                Assert.assertEquals(expected.getLocation(), synapse.getLocation());
+                // confidence is stored as a float
+                Assert.assertEquals(expected.getConfidence(), synapse.getConfidence(), 1e-6);
+                Assert.assertEquals(expected.getRois(), synapse.getRois());
+                if (!expected.getRois().isEmpty()) {
+                    // first listed roi is kept first
+                    Assert.assertEquals(expected.getRois().iterator().next(), synapse.getRois().iterator().next());
+                }
+            }
+
+            List<SynapticConnection> connections = new ArrayList<>();
+            input.readConnections(0, input.getConnectionCount(), new ConnectionRecord(), connection -> connections.add(connection.toSynapticConnection()));
+            for (int i = 0; i < connections.size(); i++) {
+                Assert.assertEquals(expectedConnections.get(i).getPreLocation(), connections.get(i).getPreLocation());
+                Assert.assertEquals(expectedConnections.get(i).getPostLocation(), connections.get(i).getPostLocation());
+            }
+        }
+
+    }
+
+    @Test
+    public void shouldKeepConnectionEndpointsMissingFromSynapses() throws IOException {
+
+        File connectionJson = temporaryFolder.newFile("connections.json");
+        Files.write(connectionJson.toPath(), "[{\"pre\": [1,2,3], \"post\": [4,5,6]}, {\"pre\": [1,2,3], \"post\": [7,8,-9]}]".getBytes());
+        File output = temporaryFolder.newFile("dataset.bin");
+        BinaryInputWriter.convert(null, connectionJson.getPath(), output);
+
+        try (BinaryInputFile input = BinaryInputFile.open(output)) {
+            Assert.assertEquals(0, input.getSynapseCount());
+            Assert.assertEquals(3, input.getLocationCount());
+            List<SynapticConnection> connections = new ArrayList<>();
+            input.readConnections(1, 2, new ConnectionRecord(), connection -> connections.add(connection.toSynapticConnection()));
+            Assert.assertEquals(new Location(1L, 2L, 3L), connections.get(0).getPreLocation());
+            Assert.assertEquals(new Location(7L, 8L, -9L), connections.get(0).getPostLocation());
+        }
+
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectOtherFiles() throws IOException {
+
+        File output = temporaryFolder.newFile("dataset.bin");
+        Files.write(output.toPath(), new byte[200]);
+        BinaryInputFile.open(output);
+
+    }
+
+    @Test
+    public void shouldSplitRangesEvenly() {
+
+        Assert.assertEquals(0, BinaryInputFile.rangeStart(10, 3, 0));
+        Assert.assertEquals(4, BinaryInputFile.rangeStart(10, 3, 1));
+        Assert.assertEquals(7, BinaryInputFile.rangeStart(10, 3, 2));
+        Assert.assertEquals(10, BinaryInputFile.rangeStart(10, 3, 3));
+
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.janelia.flyem.neuprint.json.JsonUtils.GSON;
+
+public class StreamingJsonDecoderTest {
+
+    @Test
+    public void shouldDecodeSameSynapsesAsGsonAdapter() throws IOException {
+
+        String filepath = "src/test/resources/synapseList.json";
+        List<Synapse> expected = Synapse.fromJson(new BufferedReader(new FileReader(filepath)));
+
+        RoiDictionary roiDictionary = new RoiDictionary();
+        List<Synapse> decoded = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+            long count = StreamingJsonDecoder.forEachSynapse(reader, new SynapseRecord(roiDictionary), synapse -> decoded.add(synapse.toSynapse()));
+            Assert.assertEquals(expected.size(), count);
+        }
+
+        Assert.assertEquals(GSON.toJson(expected), GSON.toJson(decoded));
+
+    }
+
+    @Test
+    public void shouldDecodeSameConnectionsAsGsonAdapter() throws IOException {
+
+        String filepath = "src/test/resources/connectionsList.json";
+        List<SynapticConnection> expected = SynapticConnection.fromJson(new BufferedReader(new FileReader(filepath)));
+
+        List<SynapticConnection> decoded = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+            StreamingJsonDecoder.forEachConnection(reader, new ConnectionRecord(), connection -> decoded.add(connection.toSynapticConnection()));
+        }
+
+        Assert.assertEquals(GSON.toJson(expected), GSON.toJson(decoded));
+
+    }
+
+    @Test
+    public void shouldDecodeSameNeuronsAsGsonAdapter() throws IOException {
+
+        String filepath = "src/test/resources/neuronList.json";
+        List<Neuron> expected = Neuron.fromJson(new BufferedReader(new FileReader(filepath)));
+
+        List<Neuron> decoded = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+            StreamingJsonDecoder.forEachNeuron(reader, new NeuronRecord(new RoiDictionary()), neuron -> decoded.add(neuron.toNeuron()));
+        }
+
+        Assert.assertEquals(expected.size(), decoded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Neuron expectedNeuron = expected.get(i);
+            Neuron decodedNeuron = decoded.get(i);
+            Assert.assertEquals(expectedNeuron.getId(), decodedNeuron.getId());
+            Assert.assertEquals(expectedNeuron.getStatus(), decodedNeuron.getStatus());
+            Assert.assertEquals(expectedNeuron.getName(), decodedNeuron.getName());
+            Assert.assertEquals(expectedNeuron.getType(), decodedNeuron.getType());
+            Assert.assertEquals(expectedNeuron.getInstance(), decodedNeuron.getInstance());
+            Assert.assertEquals(expectedNeuron.getSize(), decodedNeuron.getSize());
+            Assert.assertEquals(new ArrayList<>(expectedNeuron.getRois()), new ArrayList<>(decodedNeuron.getRois()));
+            Assert.assertEquals(GSON.toJson(expectedNeuron.getSoma()), GSON.toJson(decodedNeuron.getSoma()));
+            Assert.assertEquals(expectedNeuron.getSynapseLocationSet(), decodedNeuron.getSynapseLocationSet());
+        }
+
+    }
+
+    @Test
+    public void shouldReuseRecordAndRoiIndices() throws IOException {
+
+        String synapsesJson = "[" +
+                "{\"type\": \"pre\", \"confidence\": 0.5, \"location\": [5,6,7], \"rois\": [\"roiB\",\"roiA\",\"roiB\"], \"extra\": {\"a\": [1]}}," +
+                "{\"type\": \"post\", \"location\": [8.0,9,10], \"rois\": [\"roiA\"], \"confidence\": null}" +
+                "]";
+
+        RoiDictionary roiDictionary = new RoiDictionary();
+        SynapseRecord record = new SynapseRecord(roiDictionary);
+        List<String> visited = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(synapsesJson))) {
+            StreamingJsonDecoder.forEachSynapse(reader, record, synapse -> {
+                Assert.assertSame(record, synapse);
+                StringBuilder rois = new StringBuilder();
+                for (int i = 0; i < synapse.getRoiCount(); i++) {
+                    rois.append(synapse.getRoiIndex(i));
+                }
+                visited.add(synapse.getType() + ":" + synapse.getConfidence() + ":" + synapse.getX() + ":" + synapse.getZ() + ":" + rois);
+            });
+        }
+
+        Assert.assertEquals("pre:0.5:5:7:01", visited.get(0));
+        // confidence is reset between records
+        Assert.assertEquals("post:0.0:8:10:1", visited.get(1));
+        Assert.assertEquals(2, roiDictionary.size());
+        Assert.assertEquals("roiB", roiDictionary.getRoi(0));
+
+    }
+
+    @Test
+    public void shouldRejectInvalidInputWithAdapterMessages() throws IOException {
+
+        assertSynapseError("{\"type\": \"sjdfka\", \"location\": [5,6,7]}", "Synapse type must be 'pre' or 'post'.");
+        assertSynapseError("{\"location\": [5,6,7]}", "Synapse type property missing.");
+        assertSynapseError("{\"type\": \"post\"}", "Synapse location property missing.");
+        assertSynapseError("{\"type\": \"post\", \"confidence\": 5, \"location\": [5,6,7]}", "Synapse confidence must be between 0.0 and 1.0.");
+        assertSynapseError("{\"type\": \"post\", \"location\": [5,6]}", "Location must be three-dimensional.");
+        assertSynapseError("{\"type\": \"post\", \"location\": [5,6,7,8]}", "Location must be three-dimensional.");
+        assertSynapseError("{\"type\": \"post\", \"location\": [5,6.5,7]}", "Location coordinates must be integer values.");
+        assertSynapseError("{\"type\": \"post\", \"location\": [5,\"x\",7]}", "Location coordinates must be a number.");
+
+        try (JsonReader reader = new JsonReader(new StringReader("{\"pre\": [1,2,3]}"))) {
+            StreamingJsonDecoder.readConnection(reader, new ConnectionRecord());
+            Assert.fail("Connection without post should not decode.");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("Connection must have 'post' property.", e.getMessage());
+        }
+
+        try (JsonReader reader = new JsonReader(new StringReader("{\"id\": 1.5}"))) {
+            StreamingJsonDecoder.readNeuron(reader, new NeuronRecord(new RoiDictionary()));
+            Assert.fail("Neuron with fractional id should not decode.");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("Neuron ID must be integer value.", e.getMessage());
+        }
+
+        try (JsonReader reader = new JsonReader(new StringReader("{\"id\": 1, \"soma\": {\"location\": [1,2,3]}}"))) {
+            StreamingJsonDecoder.readNeuron(reader, new NeuronRecord(new RoiDictionary()));
+            Assert.fail("Soma without radius should not decode.");
+        } catch (JsonParseException e) {
+            Assert.assertEquals("Soma must have 'radius' property.", e.getMessage());
+        }
+
+    }
+
+    private static void assertSynapseError(String synapseJson, String message) throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader(synapseJson))) {
+            StreamingJsonDecoder.readSynapse(reader, new SynapseRecord(new RoiDictionary()));
+            Assert.fail("Invalid synapse should not decode: " + synapseJson);
+        } catch (JsonParseException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Location} key encoding.
+ */
+public class LocationTest {
+
+    @Test
+    public void shouldRoundTripLocationKeys() {
+
+        final long[][] coordinates = {
+                {0, 0, 0},
+                {4301, 23781, 13689},
+                {-9, 8, 7},
+                {Location.MIN_KEY_COORDINATE, Location.MAX_KEY_COORDINATE, 0},
+                {Location.MAX_KEY_COORDINATE, Location.MIN_KEY_COORDINATE, Location.MAX_KEY_COORDINATE}
+        };
+
+        for (long[] c : coordinates) {
+            final Location location = new Location(c[0], c[1], c[2]);
+            final long key = location.getKey();
+            Assert.assertTrue(key >= 0);
+            Assert.assertEquals(location, Location.fromKey(key));
+            Assert.assertEquals(c[0], Location.keyX(key));
+            Assert.assertEquals(c[1], Location.keyY(key));
+            Assert.assertEquals(c[2], Location.keyZ(key));
+        }
+
+        Assert.assertNotEquals(Location.toKey(1, 2, 3), Location.toKey(3, 2, 1));
+        Assert.assertNotEquals(Location.toKey(0, 0, -1), Location.toKey(0, -1, Location.MAX_KEY_COORDINATE));
+
+    }
+
+    @Test
+    public void shouldRejectCoordinatesOutsideKeyRange() {
+
+        Assert.assertTrue(Location.canEncode(Location.MAX_KEY_COORDINATE, 0, Location.MIN_KEY_COORDINATE));
+        Assert.assertFalse(Location.canEncode(Location.MAX_KEY_COORDINATE + 1, 0, 0));
+        Assert.assertFalse(Location.canEncode(0, Location.MIN_KEY_COORDINATE - 1, 0));
+        Assert.assertFalse(Location.canEncode(0, 0, Long.MIN_VALUE));
+
+        try {
+            new Location(0L, 0L, 1L << 40).getKey();
+            Assert.fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("cannot be encoded"));
+        }
+
+    }
+
+}
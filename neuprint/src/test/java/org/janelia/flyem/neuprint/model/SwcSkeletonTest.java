@@ -0,0 +1,101 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Tests the {@link SwcSkeleton} class.
+ */
+public class SwcSkeletonTest {
+
+    @Test
+    public void shouldMatchSkeletonReadFromSameFile() throws IOException {
+
+        String filepath = "src/test/resources/831744.swc";
+        byte[] bytes = Files.readAllBytes(Paths.get(filepath));
+        SwcSkeleton swcSkeleton = SwcSkeleton.parse(bytes, bytes.length, 831744L);
+
+        Skeleton skeleton = new Skeleton();
+        skeleton.fromSwc(new BufferedReader(new FileReader(filepath)), 831744L);
+        List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
+
+        Assert.assertEquals(Long.valueOf(1002248266L), swcSkeleton.getMutationId().orElse(null));
+        Assert.assertEquals(skelNodeList.size(), swcSkeleton.getRowCount());
+        for (int i = 0; i < skelNodeList.size(); i++) {
+            SkelNode skelNode = skelNodeList.get(i);
+            Assert.assertEquals(skelNode.getSkelNodeId("test"), swcSkeleton.getSkelNodeId("test", i));
+            Assert.assertEquals(skelNode.getLocationAsPoint(), swcSkeleton.getLocationAsPoint(i));
+            Assert.assertEquals(skelNode.getRadius(), swcSkeleton.getRadius(i), 0);
+            Assert.assertEquals(skelNode.getType(), swcSkeleton.getType(i));
+            Assert.assertEquals(skelNode.getParent() == null ? -1 : skelNode.getParent().getRowNumber() - 1, swcSkeleton.getParentIndex(i));
+        }
+
+    }
+
+    @Test
+    public void shouldTolerateTabsSpacesAndDecimals() throws IOException {
+
+        String swc = "# comment\r\n" +
+                "\n" +
+                "  1\t0\t5464\t9385.4\t1248   4.25  -1\r\n" +
+                "3  2    100.5   -7  1e3\t\t0.5 2  extra\n" +
+                "2 0 1 2 3 1.0E1 1";
+
+        SwcSkeleton skeleton = parse(swc);
+
+        Assert.assertEquals(3, skeleton.getRowCount());
+        Assert.assertEquals(9385, skeleton.getY(0));
+        Assert.assertEquals(4.25, skeleton.getRadius(0), 0);
+        Assert.assertEquals(3, skeleton.getRowNumber(1));
+        Assert.assertEquals(2, skeleton.getType(1));
+        Assert.assertEquals(Math.round(100.5f), skeleton.getX(1));
+        Assert.assertEquals(-7, skeleton.getY(1));
+        Assert.assertEquals(1000, skeleton.getZ(1));
+        Assert.assertEquals(10.0, skeleton.getRadius(2), 0);
+        // parents are resolved by row number, also when listed after their children
+        Assert.assertEquals(-1, skeleton.getParentIndex(0));
+        Assert.assertEquals(2, skeleton.getParentIndex(1));
+        Assert.assertEquals(0, skeleton.getParentIndex(2));
+
+        Skeleton fromSwc = new Skeleton();
+        fromSwc.fromSwc(new BufferedReader(new StringReader(swc)), 5L);
+        SkelNode row3 = fromSwc.getSkelNodeList().get(1);
+        Assert.assertEquals(fromSwc.getSkelNodeList().get(2), row3.getParent());
+        Assert.assertTrue(fromSwc.getSkelNodeList().get(2).getChildren().contains(row3));
+
+    }
+
+    @Test
+    public void shouldReportMalformedRows() {
+
+        assertInvalid("1 0 1 2 3 4\n", "Missing column on line 1");
+        assertInvalid("# c\n1 0 1 2 x 4 -1\n", "Invalid number 'x' on line 2");
+        assertInvalid("1 0.5 1 2 3 4 -1\n", "Expected an integer but found '0.5'");
+        assertInvalid("1 0 1 2 3 4 -1\n2 0 1 2 3 4 7\n", "Parent row 7 of row 2");
+
+    }
+
+    private static SwcSkeleton parse(String swc) throws IOException {
+        byte[] bytes = swc.getBytes(StandardCharsets.UTF_8);
+        return SwcSkeleton.parse(bytes, bytes.length, 5L);
+    }
+
+    private static void assertInvalid(String swc, String message) {
+        try {
+            parse(swc);
+            Assert.fail("expected IOException for " + swc);
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.janelia.flyem.neuprint.roi;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Tests the {@link RoiAssignment} class and the {@link RoiDefinition} implementations.
+ */
+public class RoiAssignmentTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldInterleaveCoordinateBitsInMortonCode() {
+        Assert.assertEquals(0L, RoiAssignment.mortonCode(0, 0, 0));
+        Assert.assertEquals(1L, RoiAssignment.mortonCode(1, 0, 0));
+        Assert.assertEquals(2L, RoiAssignment.mortonCode(0, 1, 0));
+        Assert.assertEquals(4L, RoiAssignment.mortonCode(0, 0, 1));
+        Assert.assertEquals(8L, RoiAssignment.mortonCode(2, 0, 0));
+        Assert.assertEquals(63L, RoiAssignment.mortonCode(3, 3, 3));
+        Assert.assertEquals(0x7FFFFFFFFFFFFFFFL, RoiAssignment.mortonCode(1L << 30, 1L << 30, 1L << 30));
+        Assert.assertEquals(0L, RoiAssignment.mortonCode(-5, -5, -5));
+    }
+
+    @Test
+    public void shouldOrderLocationsByMortonCode() {
+        RoiAssignment roiAssignment = new RoiAssignment();
+        long[][] locations = new long[5000][];
+        Random random = new Random(7);
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = new long[]{random.nextInt(4096), random.nextInt(4096), random.nextInt(4096)};
+            roiAssignment.addLocation(locations[i][0], locations[i][1], locations[i][2]);
+        }
+
+        int[] order = roiAssignment.getMortonOrder(0);
+        Assert.assertEquals(locations.length, order.length);
+        Assert.assertEquals(locations.length, Arrays.stream(order).distinct().count());
+        for (int i = 1; i < order.length; i++) {
+            long previous = RoiAssignment.mortonCode(locations[order[i - 1]][0], locations[order[i - 1]][1], locations[order[i - 1]][2]);
+            long current = RoiAssignment.mortonCode(locations[order[i]][0], locations[order[i]][1], locations[order[i]][2]);
+            Assert.assertTrue(previous <= current);
+        }
+    }
+
+    @Test
+    public void shouldAssignLocationsToOverlappingBoxes() {
+        BoxRoiDefinition boxRoiDefinition = new BoxRoiDefinition();
+        boxRoiDefinition.addBox("roiA", new long[]{0, 0, 0}, new long[]{10, 10, 10});
+        boxRoiDefinition.addBox("roiB", new long[]{5, 5, 5}, new long[]{20, 20, 20});
+        boxRoiDefinition.addBox("roiC", new long[]{100, 100, 100}, new long[]{101, 101, 101});
+
+        RoiAssignment roiAssignment = new RoiAssignment();
+        roiAssignment.addLocation(1, 1, 1);
+        roiAssignment.addLocation(7, 7, 7);
+        roiAssignment.addLocation(10, 10, 10);
+        roiAssignment.addLocation(50, 50, 50);
+
+        RoiAssignment.Changes changes = roiAssignment.getChanges(boxRoiDefinition);
+        Map<String, RoiAssignment.Locations> locationsPerRoi = changes.getAdditions();
+
+        Assert.assertEquals(Arrays.asList("roiA", "roiB"), Arrays.asList(locationsPerRoi.keySet().toArray()));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1L, 1L, 1L), Arrays.asList(7L, 7L, 7L)), getAll(locationsPerRoi.get("roiA")));
+        Assert.assertEquals(Arrays.asList(Arrays.asList(7L, 7L, 7L), Arrays.asList(10L, 10L, 10L)), getAll(locationsPerRoi.get("roiB")));
+        // a batch boxes only its own range
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(10L, 10L, 10L)), locationsPerRoi.get("roiB").getLocations(1, 2));
+        Assert.assertTrue(changes.getRemovals().isEmpty());
+    }
+
+    @Test
+    public void shouldOnlyChangeRoisThatDifferFromCurrentRois() {
+        BoxRoiDefinition boxRoiDefinition = new BoxRoiDefinition();
+        boxRoiDefinition.addBox("roiA", new long[]{0, 0, 0}, new long[]{10, 10, 10});
+        boxRoiDefinition.addBox("roiB", new long[]{5, 5, 5}, new long[]{20, 20, 20});
+
+        RoiAssignment roiAssignment = new RoiAssignment();
+        // already correct
+        roiAssignment.addLocation(1, 1, 1, Collections.singletonList("roiA"));
+        // gains roiB, loses the undefined roiOld
+        roiAssignment.addLocation(7, 7, 7, Arrays.asList("roiA", "roiOld"));
+        // no longer in roiA
+        roiAssignment.addLocation(50, 50, 50, Collections.singletonList("roiA"));
+
+        RoiAssignment.Changes changes = roiAssignment.getChanges(boxRoiDefinition);
+
+        Assert.assertEquals(Collections.singleton("roiB"), changes.getAdditions().keySet());
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(7L, 7L, 7L)), getAll(changes.getAdditions().get("roiB")));
+        Assert.assertEquals(Arrays.asList("roiA", "roiOld"), Arrays.asList(changes.getRemovals().keySet().toArray()));
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(50L, 50L, 50L)), getAll(changes.getRemovals().get("roiA")));
+        Assert.assertEquals(Collections.singletonList(Arrays.asList(7L, 7L, 7L)), getAll(changes.getRemovals().get("roiOld")));
+    }
+
+    @Test
+    public void shouldLookUpLabelsInMemoryMappedVolume() throws IOException {
+        // 4 x 3 x 2 voxels of 10 units, uint16 labels equal to the voxel index
+        File volumeFile = temporaryFolder.newFile("rois.raw");
+        ByteBuffer buffer = ByteBuffer.allocate(4 * 3 * 2 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 24; i++) {
+            buffer.putShort((short) i);
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(volumeFile)) {
+            outputStream.write(buffer.array());
+        }
+
+        File definitionFile = temporaryFolder.newFile("rois.json");
+        try (FileWriter writer = new FileWriter(definitionFile)) {
+            writer.write("{\"type\":\"labelVolume\",\"path\":\"rois.raw\",\"bytesPerVoxel\":2,\"dimensions\":[4,3,2],\"offset\":[100,100,100],\"voxelSize\":10," +
+                    "\"labels\":{\"5\":\"roiA\",\"23\":\"roiB\"}}");
+        }
+
+        try (RoiDefinition roiDefinition = RoiDefinition.fromJsonFile(definitionFile.getPath())) {
+            Assert.assertEquals(new TreeSet<>(Arrays.asList("roiA", "roiB")), roiDefinition.getRoiNames());
+            // voxel (1,1,0) has index 5
+            Assert.assertEquals(Collections.singletonList("roiA"), roiDefinition.getRoisAt(115, 119, 100));
+            // voxel (3,2,1) has index 23
+            Assert.assertEquals(Collections.singletonList("roiB"), roiDefinition.getRoisAt(139, 120, 119));
+            // labels without an roi, and locations outside the volume
+            Assert.assertTrue(roiDefinition.getRoisAt(100, 100, 100).isEmpty());
+            Assert.assertTrue(roiDefinition.getRoisAt(99, 100, 100).isEmpty());
+            Assert.assertTrue(roiDefinition.getRoisAt(140, 100, 100).isEmpty());
+            Assert.assertEquals(3, roiDefinition.getMortonShift());
+
+            RoiAssignment roiAssignment = new RoiAssignment();
+            roiAssignment.addLocation(115, 119, 100);
+            roiAssignment.addLocation(0, 0, 0);
+            Map<String, RoiAssignment.Locations> locationsPerRoi = roiAssignment.getChanges(roiDefinition).getAdditions();
+            Assert.assertEquals(Collections.singletonList(Arrays.asList(115L, 119L, 100L)), getAll(locationsPerRoi.get("roiA")));
+            Assert.assertFalse(locationsPerRoi.containsKey("roiB"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectVolumeSmallerThanItsDimensions() throws IOException {
+        File volumeFile = temporaryFolder.newFile("small.raw");
+        try (FileOutputStream outputStream = new FileOutputStream(volumeFile)) {
+            outputStream.write(new byte[10]);
+        }
+        new LabelVolumeRoiDefinition(volumeFile, 1, new long[]{4, 4, 4}, new long[]{0, 0, 0}, 1, new HashMap<>());
+    }
+
+    private static List<List<Long>> getAll(RoiAssignment.Locations locations) {
+        return locations.getLocations(0, locations.size());
+    }
+
+}
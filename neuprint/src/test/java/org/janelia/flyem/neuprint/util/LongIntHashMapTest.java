@@ -0,0 +1,35 @@
+package org.janelia.flyem.neuprint.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void shouldStoreIndicesForKeys() {
+
+        final LongIntHashMap map = new LongIntHashMap(16, -1);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(-1, map.put(i * 1000003L, i));
+        }
+        Assert.assertEquals(1000, map.size());
+        Assert.assertEquals(17, map.get(17 * 1000003L));
+        Assert.assertEquals(-1, map.get(1L));
+        Assert.assertEquals(0, map.remove(0L));
+
+        for (int i = 1; i < 1000; i += 2) {
+            Assert.assertEquals(i, map.remove(i * 1000003L));
+        }
+        for (int i = 2; i < 1000; i += 2) {
+            Assert.assertEquals(i, map.get(i * 1000003L));
+        }
+        Assert.assertEquals(499, map.size());
+
+        final int[] sum = {0};
+        map.forEach((key, value) -> sum[0] += value);
+        Assert.assertEquals(249500, sum[0]);
+
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.janelia.flyem.neuprint.util;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongLongHashMapTest {
+
+    @Test
+    public void shouldMatchHashMapThroughGrowthAndRemoval() {
+
+        final LongLongHashMap map = new LongLongHashMap(4, -1L);
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(7);
+
+        for (int i = 0; i < 20000; i++) {
+            // clustered location keys, including key 0, to exercise probing and backward-shift removal
+            final long key = Location.toKey(random.nextInt(40) + Location.MIN_KEY_COORDINATE, random.nextInt(40) + Location.MIN_KEY_COORDINATE, random.nextInt(40) + Location.MIN_KEY_COORDINATE);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.getOrDefault(key, -1L).longValue(), map.remove(key));
+                expected.remove(key);
+            } else {
+                Assert.assertEquals(expected.getOrDefault(key, -1L).longValue(), map.put(key, i));
+                expected.put(key, (long) i);
+            }
+        }
+
+        Assert.assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertTrue(map.containsKey(entry.getKey()));
+            Assert.assertEquals(entry.getValue().longValue(), map.get(entry.getKey()));
+        }
+
+        final Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        Assert.assertEquals(expected, visited);
+
+    }
+
+    @Test
+    public void shouldHandleKeyZeroAndMissingValues() {
+
+        final LongLongHashMap map = new LongLongHashMap(0, Long.MIN_VALUE);
+
+        Assert.assertEquals(Long.MIN_VALUE, map.get(0L));
+        Assert.assertFalse(map.containsKey(0L));
+        Assert.assertEquals(Long.MIN_VALUE, map.put(0L, 8426959L));
+        Assert.assertEquals(8426959L, map.putIfAbsent(0L, 1L));
+        Assert.assertEquals(Long.MIN_VALUE, map.putIfAbsent(5L, 1L));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(8426959L, map.remove(0L));
+        Assert.assertEquals(Long.MIN_VALUE, map.remove(0L));
+        Assert.assertEquals(1, map.size());
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertFalse(map.containsKey(5L));
+
+    }
+
+}